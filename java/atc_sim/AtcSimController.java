@@ -4,6 +4,8 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.icao4.eqasbackend2.common.ApiResponse;
+import org.icao4.eqasbackend2.entity.MediaAsset;
+import org.icao4.eqasbackend2.impl.media.MediaStorageService;
 import org.icao4.eqasbackend2.dto.request.*;
 import org.icao4.eqasbackend2.dto.response.*;
 import org.icao4.eqasbackend2.entity.atc_sim.Airport;
@@ -43,6 +45,7 @@ public class AtcSimController {
     private final AtcScenarioService atcScenarioService;
     private final AtcTurnService atcTurnService;
     private final AtcTurnResponseService atcTurnResponseService;
+    private final MediaStorageService mediaStorageService;
 
     // ==================== 机场管理 ====================
 
@@ -854,14 +857,10 @@ public class AtcSimController {
             @RequestParam(required = false) Long questionId,
             @RequestParam(required = false) String quality) {
         try {
-            // TODO: 实现音频文件上传逻辑
-            Map<String, Object> result = Map.of(
-                    "filename", file.getOriginalFilename(),
-                    "size", file.getSize(),
-                    "url", "/uploads/audio/" + file.getOriginalFilename(),
-                    "questionId", questionId != null ? questionId : 0L,
-                    "quality", quality != null ? quality : "medium"
-            );
+            MediaStorageService.StoredMedia stored = mediaStorageService.store(file, MediaAsset.MediaType.audio, null);
+            Map<String, Object> result = stored.toResultMap();
+            result.put("questionId", questionId != null ? questionId : 0L);
+            result.put("quality", quality != null ? quality : "medium");
             return ResponseEntity.ok(ApiResponse.success(result));
         } catch (Exception e) {
             log.error("上传ATC题目音频失败: {}", e.getMessage(), e);
@@ -0,0 +1,501 @@
+package org.icao4.eqasbackend2.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 有界缓存区域
+ * 按条目估算字节数限制总容量，写入后超过 TTL 即失效。淘汰策略参照 W-TinyLFU：
+ * 新条目先进入约占 1% 容量的窗口 LRU，被挤出窗口后与主区（SLRU：试用 20% / 保护 80%）
+ * 的淘汰候选比较近似访问频次，频次更高者留下。一次性的大量新键不会冲掉热点条目。
+ * 读操作只在能立即拿到策略锁时调整顺序，锁竞争时跳过，不阻塞命中路径。
+ * 加载期间条目被失效（evict / clear / {@link #invalidateLoads()}）时，加载结果只返回给调用方，不写回缓存；
+ * 非 sync 的 @Cacheable（get 未命中、回源、put）按本线程未命中时的失效计数同样判断。
+ */
+@Slf4j
+public class BoundedCache extends AbstractValueAdaptingCache {
+
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private static final int LOAD_STRIPES = 256;
+
+    private final String name;
+    private final long maxWeight;
+    private final long ttlNanos;
+    private final CacheWeigher weigher;
+
+    private final ConcurrentHashMap<Object, Node> data = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Object, Object> loadLocks = new ConcurrentHashMap<>();
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final FrequencySketch sketch;
+
+    private final AccessQueue window = new AccessQueue();
+    private final AccessQueue probation = new AccessQueue();
+    private final AccessQueue protectedQueue = new AccessQueue();
+    private final long windowMax;
+    private final long protectedMax;
+
+    /**
+     * 条目因容量或过期被移除时回调（参数为缓存键），显式 evict/clear 也会回调
+     */
+    private final List<Consumer<Object>> removalListeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder staleLoads = new LongAdder();
+
+    /**
+     * 失效计数：evict 递增键所在分段，clear 和 invalidateLoads 递增整个区域；加载前后计数不同即放弃写入
+     */
+    private final AtomicLongArray keyEpochs = new AtomicLongArray(LOAD_STRIPES);
+    private final AtomicLong regionEpoch = new AtomicLong();
+    private final MissStamps missStamps = new MissStamps();
+
+    public BoundedCache(String name, long maxWeight, long ttlNanos, CacheWeigher weigher) {
+        super(true);
+        this.name = name;
+        this.maxWeight = Math.max(1, maxWeight);
+        this.ttlNanos = ttlNanos;
+        this.weigher = weigher;
+        this.windowMax = Math.max(1, (long) (this.maxWeight * WINDOW_RATIO));
+        this.protectedMax = (long) ((this.maxWeight - windowMax) * PROTECTED_RATIO);
+        // 按平均 1KB 一个条目估算频次表宽度
+        this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, this.maxWeight / 1024));
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return data;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Node node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            missStamps.record(key, loadStamp(key));
+            recordAccess(key, null);
+            return null;
+        }
+        if (node.isExpired(System.nanoTime(), ttlNanos)) {
+            misses.increment();
+            missStamps.record(key, loadStamp(key));
+            if (removeNode(key, node)) {
+                expirations.increment();
+                notifyRemoval(key);
+            }
+            return null;
+        }
+        hits.increment();
+        recordAccess(key, node);
+        return node.value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object stored = lookup(key);
+        if (stored != null) {
+            return (T) fromStoreValue(stored);
+        }
+        // 同一个键只允许一个线程加载（对应 @Cacheable(sync = true)）
+        Object lock = loadLocks.computeIfAbsent(key, k -> new Object());
+        try {
+            synchronized (lock) {
+                Node node = data.get(key);
+                if (node != null && !node.isExpired(System.nanoTime(), ttlNanos)) {
+                    return (T) fromStoreValue(node.value);
+                }
+                missStamps.take(key);
+                long stamp = loadStamp(key);
+                T value;
+                try {
+                    value = valueLoader.call();
+                } catch (Exception e) {
+                    throw new ValueRetrievalException(key, valueLoader, e);
+                }
+                if (loadStamp(key) == stamp) {
+                    store(key, value);
+                } else {
+                    staleLoads.increment();
+                    log.debug("加载期间条目已失效, 不写入: cache={}, key={}", name, key);
+                }
+                return value;
+            }
+        } finally {
+            loadLocks.remove(key, lock);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        putIfCurrent(key, value);
+    }
+
+    /**
+     * 写入条目；本线程对该键未命中之后发生过失效时（回源期间被 evict / clear / invalidateLoads）不写入
+     *
+     * @return 是否写入
+     */
+    public boolean putIfCurrent(Object key, Object value) {
+        Long stamp = missStamps.take(key);
+        if (stamp != null && loadStamp(key) != stamp) {
+            staleLoads.increment();
+            log.debug("未命中后条目已失效, 不写入: cache={}, key={}", name, key);
+            return false;
+        }
+        return store(key, value);
+    }
+
+    private boolean store(Object key, Object value) {
+        Object stored = toStoreValue(value);
+        long weight = Math.max(1, weigher.weigh(key, stored));
+        if (weight > windowMax && weight > maxWeight / 2) {
+            // 单个条目超过区域一半容量，缓存它只会冲掉其他所有条目
+            rejections.increment();
+            log.debug("缓存条目过大, 不写入: cache={}, key={}, weight={}", name, key, weight);
+            evict(key);
+            return false;
+        }
+        puts.increment();
+        Node node = new Node(key, stored, weight, System.nanoTime());
+        List<Object> removed = new ArrayList<>();
+        policyLock.lock();
+        try {
+            Node previous = data.put(key, node);
+            if (previous != null) {
+                unlink(previous);
+            }
+            window.addFirst(node);
+            sketch.increment(key);
+            removed.addAll(evictOverflow());
+        } finally {
+            policyLock.unlock();
+        }
+        for (Object evictedKey : removed) {
+            notifyRemoval(evictedKey);
+        }
+        return true;
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        Object existing = lookup(key);
+        if (existing != null) {
+            return toValueWrapper(existing);
+        }
+        put(key, value);
+        return null;
+    }
+
+    @Override
+    public void evict(Object key) {
+        keyEpochs.incrementAndGet(stripe(key));
+        Node node = data.get(key);
+        if (node != null && removeNode(key, node)) {
+            notifyRemoval(key);
+        }
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        keyEpochs.incrementAndGet(stripe(key));
+        Node node = data.get(key);
+        if (node != null && removeNode(key, node)) {
+            notifyRemoval(key);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        regionEpoch.incrementAndGet();
+        List<Object> keys;
+        policyLock.lock();
+        try {
+            keys = new ArrayList<>(data.keySet());
+            for (Node node : data.values()) {
+                node.queue = null;
+            }
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+        } finally {
+            policyLock.unlock();
+        }
+        for (Object key : keys) {
+            notifyRemoval(key);
+        }
+    }
+
+    // ==================== 维护与统计 ====================
+
+    /**
+     * 让正在进行的加载全部作废（按标签或前缀失效时调用，受影响的键可能还没有条目）
+     */
+    public void invalidateLoads() {
+        regionEpoch.incrementAndGet();
+    }
+
+    /**
+     * 键的失效计数快照，加载前取一次，写入前比较
+     */
+    long loadStamp(Object key) {
+        return regionEpoch.get() + keyEpochs.get(stripe(key));
+    }
+
+    public void addRemovalListener(Consumer<Object> listener) {
+        removalListeners.add(listener);
+    }
+
+    /**
+     * 清理已过期但一直未被访问的条目
+     *
+     * @return 清理的条目数
+     */
+    public int cleanUp() {
+        if (ttlNanos <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        int count = 0;
+        for (Map.Entry<Object, Node> entry : data.entrySet()) {
+            if (entry.getValue().isExpired(now, ttlNanos) && removeNode(entry.getKey(), entry.getValue())) {
+                expirations.increment();
+                notifyRemoval(entry.getKey());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long weightedSize;
+        policyLock.lock();
+        try {
+            weightedSize = window.weight + probation.weight + protectedQueue.weight;
+        } finally {
+            policyLock.unlock();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", data.size());
+        stats.put("weightedSize", weightedSize);
+        stats.put("maxWeight", maxWeight);
+        stats.put("ttlSeconds", ttlNanos / 1_000_000_000L);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("puts", puts.sum());
+        stats.put("evictions", sizeEvictions.sum());
+        stats.put("expirations", expirations.sum());
+        stats.put("rejections", rejections.sum());
+        stats.put("staleLoads", staleLoads.sum());
+        return stats;
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 读命中时更新频次和访问顺序；拿不到锁时丢弃本次记录
+     */
+    private void recordAccess(Object key, Node node) {
+        if (!policyLock.tryLock()) {
+            return;
+        }
+        try {
+            sketch.increment(key);
+            if (node == null || node.queue == null) {
+                return;
+            }
+            if (node.queue == probation) {
+                // 试用区再次命中，晋升到保护区
+                probation.remove(node);
+                protectedQueue.addFirst(node);
+                while (protectedQueue.weight > protectedMax && protectedQueue.tail != null) {
+                    Node demoted = protectedQueue.tail;
+                    protectedQueue.remove(demoted);
+                    probation.addFirst(demoted);
+                }
+            } else {
+                node.queue.moveToFront(node);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * 窗口溢出的条目转入试用区，总量超限时在候选与试用区尾部之间按频次淘汰
+     * 调用方需持有策略锁
+     */
+    private List<Object> evictOverflow() {
+        Deque<Node> candidates = new ArrayDeque<>();
+        while (window.weight > windowMax && window.tail != null && window.tail != window.head) {
+            Node moved = window.tail;
+            window.remove(moved);
+            probation.addFirst(moved);
+            candidates.addFirst(moved);
+        }
+
+        List<Object> removed = new ArrayList<>();
+        while (totalWeight() > maxWeight) {
+            Node victim = probation.tail;
+            Node candidate = candidates.pollLast();
+            Node evicted;
+            if (victim == null) {
+                evicted = protectedQueue.tail != null ? protectedQueue.tail : window.tail;
+            } else if (candidate == null || candidate == victim || candidate.queue != probation) {
+                evicted = victim;
+            } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evicted = victim;
+                candidates.addLast(candidate);
+            } else {
+                evicted = candidate;
+            }
+            if (evicted == null) {
+                break;
+            }
+            unlink(evicted);
+            data.remove(evicted.key, evicted);
+            sizeEvictions.increment();
+            removed.add(evicted.key);
+        }
+        return removed;
+    }
+
+    private long totalWeight() {
+        return window.weight + probation.weight + protectedQueue.weight;
+    }
+
+    private static int stripe(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (LOAD_STRIPES - 1);
+    }
+
+    private boolean removeNode(Object key, Node node) {
+        policyLock.lock();
+        try {
+            if (!data.remove(key, node)) {
+                return false;
+            }
+            unlink(node);
+            return true;
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void unlink(Node node) {
+        if (node.queue != null) {
+            node.queue.remove(node);
+        }
+    }
+
+    private void notifyRemoval(Object key) {
+        for (Consumer<Object> listener : removalListeners) {
+            try {
+                listener.accept(key);
+            } catch (Exception e) {
+                log.warn("缓存移除回调失败: cache={}, key={}, error={}", name, key, e.getMessage());
+            }
+        }
+    }
+
+    private static final class Node {
+        private final Object key;
+        private final Object value;
+        private final long weight;
+        private final long writeTime;
+        private AccessQueue queue;
+        private Node prev;
+        private Node next;
+
+        private Node(Object key, Object value, long weight, long writeTime) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = writeTime;
+        }
+
+        private boolean isExpired(long now, long ttlNanos) {
+            return ttlNanos > 0 && now - writeTime >= ttlNanos;
+        }
+    }
+
+    /**
+     * 按访问顺序排列的双向链表，head 为最近访问
+     */
+    private static final class AccessQueue {
+        private Node head;
+        private Node tail;
+        private long weight;
+
+        private void addFirst(Node node) {
+            node.queue = this;
+            node.prev = null;
+            node.next = head;
+            if (head != null) {
+                head.prev = node;
+            }
+            head = node;
+            if (tail == null) {
+                tail = node;
+            }
+            weight += node.weight;
+        }
+
+        private void remove(Node node) {
+            if (node.prev != null) {
+                node.prev.next = node.next;
+            } else {
+                head = node.next;
+            }
+            if (node.next != null) {
+                node.next.prev = node.prev;
+            } else {
+                tail = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.queue = null;
+            weight -= node.weight;
+        }
+
+        private void moveToFront(Node node) {
+            if (head != node) {
+                remove(node);
+                addFirst(node);
+            }
+        }
+
+        private void clear() {
+            head = null;
+            tail = null;
+            weight = 0;
+        }
+    }
+}
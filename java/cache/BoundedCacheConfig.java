@@ -0,0 +1,55 @@
+package org.icao4.eqasbackend2.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 有界缓存配置
+ * 以 {@link BoundedCacheManager} 作为应用的 CacheManager，区域配置见 {@link BoundedCacheProperties}。
+ * 存在 {@link SharedCacheStore} 或 {@link CacheInvalidationBus} Bean 时启用两级缓存。
+ */
+@Configuration
+@EnableConfigurationProperties(BoundedCacheProperties.class)
+public class BoundedCacheConfig {
+
+    @Bean
+    public CacheWeigher cacheWeigher(ObjectMapper objectMapper, BoundedCacheProperties properties) {
+        return new JsonCacheWeigher(objectMapper, properties.getFallbackEntryWeight().toBytes());
+    }
+
+    @Bean
+    public CacheManager cacheManager(BoundedCacheProperties properties, CacheWeigher cacheWeigher,
+                                     ObjectProvider<SharedCacheStore> sharedStore,
+                                     ObjectProvider<CacheInvalidationBus> invalidationBus) {
+        return new BoundedCacheManager(properties, cacheWeigher,
+                sharedStore.getIfAvailable(), invalidationBus.getIfAvailable());
+    }
+
+    // ==================== 多节点 ====================
+
+    @Bean
+    @ConditionalOnProperty(prefix = "app.cache.cluster", name = "shared-store", havingValue = "in-memory")
+    public SharedCacheStore inMemorySharedCacheStore(BoundedCacheProperties properties, CacheWeigher cacheWeigher) {
+        return new InMemorySharedCacheStore(properties, cacheWeigher);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "app.cache.cluster", name = "bus", havingValue = "in-process")
+    public CacheInvalidationBus inProcessCacheInvalidationBus() {
+        return new InProcessCacheInvalidationBus();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "app.cache.cluster", name = "bus", havingValue = "jdbc")
+    public CacheInvalidationBus jdbcCacheInvalidationBus(JdbcTemplate jdbcTemplate, BoundedCacheProperties properties) {
+        BoundedCacheProperties.Cluster cluster = properties.getCluster();
+        return new JdbcCacheInvalidationBus(jdbcTemplate, cluster.getPollInterval(), cluster.getRetention(),
+                cluster.getGapTimeout());
+    }
+}
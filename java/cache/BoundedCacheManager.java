@@ -0,0 +1,140 @@
+package org.icao4.eqasbackend2.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 有界缓存管理器
+ * 按名称懒创建 {@link BoundedCache}，容量和 TTL 取自 {@link BoundedCacheProperties}，
+ * 任何区域都不会无界增长。后台线程定期清理过期条目。
+ * 配置了共享层或失效总线时，每个区域包装为 {@link TwoTierCache}。
+ */
+@Slf4j
+public class BoundedCacheManager implements CacheManager, AutoCloseable {
+
+    private final BoundedCacheProperties properties;
+    private final CacheWeigher weigher;
+    private final SharedCacheStore sharedStore;
+    private final CacheInvalidationBus invalidationBus;
+    private final String nodeId;
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService cleaner;
+
+    public BoundedCacheManager(BoundedCacheProperties properties, CacheWeigher weigher) {
+        this(properties, weigher, null, null);
+    }
+
+    /**
+     * @param sharedStore     共享层，可为 null
+     * @param invalidationBus 失效总线，可为 null
+     */
+    public BoundedCacheManager(BoundedCacheProperties properties, CacheWeigher weigher,
+                               SharedCacheStore sharedStore, CacheInvalidationBus invalidationBus) {
+        this.properties = properties;
+        this.weigher = weigher;
+        this.sharedStore = sharedStore;
+        this.invalidationBus = invalidationBus;
+        this.nodeId = UUID.randomUUID().toString();
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bounded-cache-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, properties.getCleanupInterval().getSeconds());
+        cleaner.scheduleWithFixedDelay(this::cleanUp, interval, interval, TimeUnit.SECONDS);
+        if (invalidationBus != null) {
+            invalidationBus.subscribe(nodeId, this::onRemoteInvalidation);
+            log.info("缓存失效广播已订阅: nodeId={}", nodeId);
+        }
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::create);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    /**
+     * 各区域的容量、命中和淘汰统计
+     */
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        caches.forEach((name, cache) -> stats.put(name, statsOf(cache)));
+        return stats;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void close() {
+        cleaner.shutdownNow();
+    }
+
+    /**
+     * 单个缓存的统计；不是本模块创建的缓存返回 null
+     */
+    public static Map<String, Object> statsOf(Cache cache) {
+        if (cache instanceof DependencyTrackingCache) {
+            cache = ((DependencyTrackingCache) cache).getDelegate();
+        }
+        if (cache instanceof TwoTierCache) {
+            return ((TwoTierCache) cache).getStats();
+        }
+        if (cache instanceof BoundedCache) {
+            return ((BoundedCache) cache).getStats();
+        }
+        return null;
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private Cache create(String name) {
+        BoundedCacheProperties.Region region = properties.resolve(name);
+        long ttlNanos = region.getTtl() == null ? 0 : region.getTtl().toNanos();
+        log.info("创建缓存区域: name={}, maxWeight={}, ttl={}", name, region.getMaxWeight(), region.getTtl());
+        BoundedCache local = new BoundedCache(name, region.getMaxWeight().toBytes(), ttlNanos, weigher);
+        if (sharedStore == null && invalidationBus == null) {
+            return local;
+        }
+        return new TwoTierCache(local, sharedStore, invalidationBus, nodeId);
+    }
+
+    private void onRemoteInvalidation(CacheInvalidationBus.Event event) {
+        // 本节点还没创建的区域没有本地条目，无需处理
+        Cache cache = caches.get(event.getRegion());
+        if (cache instanceof TwoTierCache) {
+            ((TwoTierCache) cache).onRemoteInvalidation(event);
+        }
+    }
+
+    private BoundedCache localOf(Cache cache) {
+        return cache instanceof TwoTierCache ? ((TwoTierCache) cache).getLocal() : (BoundedCache) cache;
+    }
+
+    private void cleanUp() {
+        caches.values().forEach(cache -> {
+            BoundedCache local = localOf(cache);
+            try {
+                int removed = local.cleanUp();
+                if (removed > 0) {
+                    log.debug("清理过期缓存条目: cache={}, count={}", local.getName(), removed);
+                }
+            } catch (Exception e) {
+                log.warn("清理过期缓存失败: cache={}, error={}", local.getName(), e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,115 @@
+package org.icao4.eqasbackend2.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 缓存区域配置
+ * 所有缓存区域的容量上限（估算字节数）和过期时间集中在这里声明，
+ * 可通过 app.cache.regions.&lt;name&gt;.max-weight / ttl 覆盖；未声明的区域使用 defaults。
+ * 多节点部署时通过 app.cache.cluster 启用共享层和跨节点失效广播。
+ */
+@Data
+@ConfigurationProperties(prefix = "app.cache")
+public class BoundedCacheProperties {
+
+    /**
+     * 未单独声明的区域使用的配置
+     */
+    private Region defaults = new Region(DataSize.ofMegabytes(8), Duration.ofMinutes(10));
+
+    /**
+     * 无法估算大小的条目按该值计重
+     */
+    private DataSize fallbackEntryWeight = DataSize.ofKilobytes(4);
+
+    /**
+     * 过期条目的清理间隔
+     */
+    private Duration cleanupInterval = Duration.ofSeconds(30);
+
+    private Map<String, Region> regions = new LinkedHashMap<>();
+
+    /**
+     * 多节点部署的共享层与失效广播
+     */
+    private Cluster cluster = new Cluster();
+
+    public BoundedCacheProperties() {
+        region("avTerms", 64, 30);
+        region("avTermStats", 4, 10);
+        region("avVocabs", 32, 30);
+        region("avVocabStats", 1, 10);
+        region("avVocabTopics", 8, 60);
+        region("avVocabTopicMaps", 16, 30);
+        region("avVocabTopicStats", 1, 10);
+        region("avVocabMappingStats", 1, 10);
+        region("mediaAssets", 16, 10);
+        region("examPapers", 32, 30);
+        region("examModules", 16, 30);
+        region("examRecords", 16, 5);
+        region("examStatistics", 16, 720);
+    }
+
+    /**
+     * 获取区域配置，未声明的字段取默认值
+     */
+    public Region resolve(String name) {
+        Region region = regions.get(name);
+        if (region == null) {
+            return defaults;
+        }
+        return new Region(
+                region.getMaxWeight() != null ? region.getMaxWeight() : defaults.getMaxWeight(),
+                region.getTtl() != null ? region.getTtl() : defaults.getTtl());
+    }
+
+    private void region(String name, long maxMegabytes, long ttlMinutes) {
+        regions.put(name, new Region(DataSize.ofMegabytes(maxMegabytes), Duration.ofMinutes(ttlMinutes)));
+    }
+
+    @Data
+    public static class Cluster {
+        /**
+         * 失效广播方式：none 仅本地；in-process 同一 JVM 内广播；jdbc 通过共用的数据库表广播
+         */
+        private String bus = "none";
+        /**
+         * 共享层：none 不启用；in-memory 进程内共享（测试用）；其他实现以 SharedCacheStore Bean 提供
+         */
+        private String sharedStore = "none";
+        /**
+         * jdbc 总线的拉取间隔，即跨节点失效的最大传播延迟
+         */
+        private Duration pollInterval = Duration.ofMillis(500);
+        /**
+         * 失效事件在表中的保留时间
+         */
+        private Duration retention = Duration.ofHours(1);
+        /**
+         * 自增ID空洞的最长等待时间，超过后视为已回滚的事务留下的空洞
+         */
+        private Duration gapTimeout = Duration.ofSeconds(5);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Region {
+        /**
+         * 区域内条目估算字节数之和的上限
+         */
+        private DataSize maxWeight;
+        /**
+         * 写入后的存活时间
+         */
+        private Duration ttl;
+    }
+}
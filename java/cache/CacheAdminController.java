@@ -0,0 +1,57 @@
+package org.icao4.eqasbackend2.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.cache.BoundedCacheManager;
+import org.icao4.eqasbackend2.common.ApiResponse;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 缓存管理控制器
+ * 查看各缓存区域的容量、命中和淘汰统计，必要时手动清空区域
+ */
+@Slf4j
+@RestController
+@RequestMapping("/cache")
+@RequiredArgsConstructor
+public class CacheAdminController {
+
+    private final CacheManager cacheManager;
+
+    /**
+     * 获取各缓存区域统计
+     */
+    @GetMapping("/regions")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<Map<String, Map<String, Object>>>> getRegionStats() {
+        log.info("API - 获取缓存区域统计");
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        for (String name : cacheManager.getCacheNames()) {
+            Map<String, Object> regionStats = BoundedCacheManager.statsOf(cacheManager.getCache(name));
+            if (regionStats != null) {
+                stats.put(name, regionStats);
+            }
+        }
+        return ResponseEntity.ok(ApiResponse.success(stats));
+    }
+
+    /**
+     * 清空指定缓存区域
+     */
+    @DeleteMapping("/regions/{name}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<Void>> clearRegion(@PathVariable String name) {
+        log.info("API - 清空缓存区域: {}", name);
+        if (!cacheManager.getCacheNames().contains(name)) {
+            return ResponseEntity.ok(ApiResponse.error(404, "缓存区域不存在: " + name));
+        }
+        cacheManager.getCache(name).clear();
+        return ResponseEntity.ok(ApiResponse.success("清空缓存区域成功"));
+    }
+}
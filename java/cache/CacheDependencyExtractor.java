@@ -0,0 +1,25 @@
+package org.icao4.eqasbackend2.cache;
+
+import java.util.Set;
+
+/**
+ * 缓存依赖提取器
+ * 从缓存值中提取其依赖的业务对象标签（如 "term:12"、"topic:3"），
+ * 数据变更时按标签只失效受影响的条目。
+ */
+public interface CacheDependencyExtractor {
+
+    /**
+     * 适用的缓存名称
+     */
+    String cacheName();
+
+    /**
+     * 提取依赖标签
+     *
+     * @param key   缓存键
+     * @param value 缓存值（可能为 ResponseEntity、Page、List 等包装类型）
+     * @return 依赖标签集合，不能为 null
+     */
+    Set<String> extract(Object key, Object value);
+}
@@ -0,0 +1,55 @@
+package org.icao4.eqasbackend2.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * 跨节点缓存失效广播
+ * 一个节点上的 evict / clear 通过总线发给其他所有节点，由它们清除各自的本地缓存。
+ */
+public interface CacheInvalidationBus {
+
+    /**
+     * 发布失效事件
+     *
+     * @param key 编码后的缓存键，为 null 表示清空整个区域
+     */
+    void publish(String origin, String region, String key);
+
+    /**
+     * 订阅其他节点发布的事件（不会收到 origin 相同的事件）
+     */
+    void subscribe(String origin, Consumer<Event> listener);
+
+    final class Event {
+        private final String origin;
+        private final String region;
+        private final String key;
+        /**
+         * 从发布到本节点处理之间的延迟
+         */
+        private final long lagMillis;
+
+        public Event(String origin, String region, String key, long lagMillis) {
+            this.origin = origin;
+            this.region = region;
+            this.key = key;
+            this.lagMillis = lagMillis;
+        }
+
+        public String getOrigin() {
+            return origin;
+        }
+
+        public String getRegion() {
+            return region;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getLagMillis() {
+            return lagMillis;
+        }
+    }
+}
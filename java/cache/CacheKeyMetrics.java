@@ -0,0 +1,85 @@
+package org.icao4.eqasbackend2.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按缓存键前缀统计命中、未命中和失效次数
+ * 前缀取键中第一个下划线之前的部分（含下划线），如 "headword_"、"cefr_"。
+ * 没有下划线的键和超出前缀数上限后新出现的前缀都计入 {@link #OTHER}，统计表大小有界。
+ */
+public class CacheKeyMetrics {
+
+    /**
+     * 无法归类的键的统计项
+     */
+    public static final String OTHER = "(other)";
+
+    /**
+     * 最多单独统计的前缀数
+     */
+    private static final int MAX_PREFIXES = 128;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public void recordHit(Object key) {
+        counter(key).hits.increment();
+    }
+
+    public void recordMiss(Object key) {
+        counter(key).misses.increment();
+    }
+
+    public void recordEviction(Object key) {
+        counter(key).evictions.increment();
+    }
+
+    /**
+     * 获取各前缀的统计快照
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        counters.forEach((prefix, counter) -> {
+            long hits = counter.hits.sum();
+            long misses = counter.misses.sum();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("hits", hits);
+            stats.put("misses", misses);
+            stats.put("evictions", counter.evictions.sum());
+            stats.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+            result.put(prefix, stats);
+        });
+        return result;
+    }
+
+    /**
+     * 计算键前缀；没有下划线时返回 {@link #OTHER}
+     */
+    public static String prefixOf(Object key) {
+        String text = String.valueOf(key);
+        int index = text.indexOf('_');
+        return index < 0 ? OTHER : text.substring(0, index + 1);
+    }
+
+    private Counter counter(Object key) {
+        String prefix = prefixOf(key);
+        Counter counter = counters.get(prefix);
+        if (counter != null) {
+            return counter;
+        }
+        // 上限是近似的：并发时可能略微超出，但不会无限增长
+        if (counters.size() >= MAX_PREFIXES) {
+            prefix = OTHER;
+        }
+        return counters.computeIfAbsent(prefix, k -> new Counter());
+    }
+
+    private static final class Counter {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+    }
+}
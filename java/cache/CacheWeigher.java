@@ -0,0 +1,16 @@
+package org.icao4.eqasbackend2.cache;
+
+/**
+ * 缓存条目大小估算
+ */
+@FunctionalInterface
+public interface CacheWeigher {
+
+    /**
+     * 估算条目占用的字节数
+     *
+     * @param key   缓存键
+     * @param value 缓存值（空值为 Spring 的 NullValue）
+     */
+    long weigh(Object key, Object value);
+}
@@ -0,0 +1,411 @@
+package org.icao4.eqasbackend2.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 依赖跟踪缓存
+ * 包装实际的缓存实现，写入时记录每个条目依赖的标签，
+ * 变更时可按标签或键前缀只失效受影响的条目，而不是 allEntries 全部清空。
+ * 底层为 {@link TwoTierCache} 时，按标签或前缀的失效整体广播给其他节点，由它们按各自的索引清除；
+ * 从共享层命中的条目在读取时补记标签。失效同时作废正在进行的加载，旧值不会写回：
+ * 非 sync 的 @Cacheable 在 get 未命中时记下失效计数，put 时与之比较。
+ * 批量变更用 {@link #evictAll(Collection, Collection, Collection)} 合并为一次共享层清除和一个广播事件。
+ */
+@Slf4j
+public class DependencyTrackingCache implements Cache {
+
+    private final Cache delegate;
+    private final CacheDependencyExtractor extractor;
+    private final CacheKeyMetrics metrics = new CacheKeyMetrics();
+
+    /**
+     * 底层为两级缓存时非空
+     */
+    private final TwoTierCache twoTier;
+
+    /**
+     * 标签 -> 依赖该标签的缓存键
+     */
+    private final Map<String, Set<Object>> keysByTag = new ConcurrentHashMap<>();
+
+    /**
+     * 缓存键 -> 该条目的依赖标签（同时作为已跟踪键的全集）
+     */
+    private final Map<Object, Set<String>> tagsByKey = new ConcurrentHashMap<>();
+
+    /**
+     * 按标签、前缀或全部失效的次数；put 期间有失效发生时撤回刚写入的条目
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+    private final MissStamps missStamps = new MissStamps();
+
+    public DependencyTrackingCache(Cache delegate, CacheDependencyExtractor extractor) {
+        this.delegate = delegate;
+        this.extractor = extractor;
+        // 底层缓存按容量、过期或远端失效移除条目时同步清理标签索引
+        if (delegate instanceof BoundedCache) {
+            ((BoundedCache) delegate).addRemovalListener(this::untrack);
+        }
+        if (delegate instanceof TwoTierCache) {
+            twoTier = (TwoTierCache) delegate;
+            twoTier.addRemovalListener(this::untrack);
+            twoTier.setGroupHandler(this::onRemoteGroup);
+        } else {
+            twoTier = null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper wrapper = delegate.get(key);
+        if (wrapper != null) {
+            metrics.recordHit(key);
+            trackIfAbsent(key, wrapper.get());
+        } else {
+            metrics.recordMiss(key);
+            missStamps.record(key, invalidations.get());
+        }
+        return wrapper;
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        T value = delegate.get(key, type);
+        if (value != null) {
+            metrics.recordHit(key);
+            trackIfAbsent(key, value);
+        } else {
+            metrics.recordMiss(key);
+            missStamps.record(key, invalidations.get());
+        }
+        return value;
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        boolean[] loaded = {false};
+        T value = delegate.get(key, () -> {
+            loaded[0] = true;
+            T loadedValue = valueLoader.call();
+            track(key, loadedValue);
+            return loadedValue;
+        });
+        if (loaded[0]) {
+            metrics.recordMiss(key);
+        } else {
+            // 可能来自共享层（其他节点加载），本节点还没有记录它的标签
+            metrics.recordHit(key);
+            trackIfAbsent(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * 先记标签再写入，失效总能通过索引找到该键；
+     * 从本线程未命中（回源开始）到写入完成之间发生过失效时撤回本次写入，
+     * 底层为有界或两级缓存时由底层按同一时点判断，直接不写入
+     */
+    @Override
+    public void put(Object key, Object value) {
+        Long missStamp = missStamps.take(key);
+        long stamp = missStamp != null ? missStamp : invalidations.get();
+        track(key, value);
+        if (!putDelegate(key, value)) {
+            untrack(key);
+            return;
+        }
+        if (invalidations.get() != stamp) {
+            delegate.evict(key);
+            untrack(key);
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+        untrack(key);
+        metrics.recordEviction(key);
+    }
+
+    @Override
+    public void clear() {
+        invalidations.incrementAndGet();
+        delegate.clear();
+        for (Object key : new ArrayList<>(tagsByKey.keySet())) {
+            metrics.recordEviction(key);
+        }
+        tagsByKey.clear();
+        keysByTag.clear();
+    }
+
+    // ==================== 精确失效 ====================
+
+    /**
+     * 失效所有依赖指定标签的条目
+     *
+     * @return 失效的条目数
+     */
+    public int evictByTag(String tag) {
+        startGroup(TwoTierCache.TAG_GROUP + tag);
+        return evictTagLocally(tag);
+    }
+
+    /**
+     * 失效所有键以指定前缀开头的条目
+     */
+    public int evictByKeyPrefix(String prefix) {
+        return evictIf(prefix, key -> String.valueOf(key).startsWith(prefix));
+    }
+
+    /**
+     * 一次失效多个标签、键前缀和键（批量变更时使用）：共享层只清一次，只广播一个事件，
+     * 事件键超出总线限制或含无法编码的键时其他节点清空整个区域
+     *
+     * @return 失效的条目数
+     */
+    public int evictAll(Collection<String> tags, Collection<String> prefixes, Collection<?> keys) {
+        startGroup(encodeBatch(tags, prefixes, keys));
+        return evictBatchLocally(tags, prefixes, keys);
+    }
+
+    /**
+     * 失效所有满足条件的条目；条件无法广播，其他节点清空整个区域
+     */
+    public int evictIf(Predicate<Object> keyPredicate) {
+        return evictIf(null, keyPredicate);
+    }
+
+    /**
+     * 失效所有满足条件的条目；其他节点按 prefix 失效（应覆盖满足条件的全部键），prefix 为 null 时清空整个区域
+     */
+    public int evictIf(String prefix, Predicate<Object> keyPredicate) {
+        startGroup(prefix == null ? null : TwoTierCache.PREFIX_GROUP + prefix);
+        return evictLocallyIf(keyPredicate);
+    }
+
+    /**
+     * 按键前缀统计的命中、未命中和失效次数
+     */
+    public Map<String, Map<String, Object>> getMetrics() {
+        return metrics.snapshot();
+    }
+
+    /**
+     * 被包装的实际缓存
+     */
+    public Cache getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * 当前跟踪的条目数
+     */
+    public int trackedSize() {
+        return tagsByKey.size();
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 作废正在进行的加载，并清除共享层、通知其他节点；本地条目随后按索引清除
+     */
+    private void startGroup(String group) {
+        if (twoTier != null) {
+            twoTier.evictGroup(group);
+        } else if (delegate instanceof BoundedCache) {
+            ((BoundedCache) delegate).invalidateLoads();
+        }
+    }
+
+    /**
+     * 其他节点按标签或前缀失效：只清本节点的本地条目
+     */
+    private void onRemoteGroup(String group) {
+        if (group.startsWith(TwoTierCache.BATCH_GROUP)) {
+            onRemoteBatch(group.substring(TwoTierCache.BATCH_GROUP.length()));
+        } else if (group.startsWith(TwoTierCache.TAG_GROUP)) {
+            evictTagLocally(group.substring(TwoTierCache.TAG_GROUP.length()));
+        } else {
+            String prefix = group.substring(TwoTierCache.PREFIX_GROUP.length());
+            evictLocallyIf(key -> String.valueOf(key).startsWith(prefix));
+        }
+    }
+
+    private void onRemoteBatch(String encoded) {
+        List<String> tags = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        List<Object> keys = new ArrayList<>();
+        for (String item : encoded.split(String.valueOf(TwoTierCache.BATCH_SEPARATOR))) {
+            if (item.startsWith(TwoTierCache.TAG_GROUP)) {
+                tags.add(item.substring(TwoTierCache.TAG_GROUP.length()));
+            } else if (item.startsWith(TwoTierCache.PREFIX_GROUP)) {
+                prefixes.add(item.substring(TwoTierCache.PREFIX_GROUP.length()));
+            } else {
+                Object key = TwoTierCache.decodeKey(item);
+                if (key != null) {
+                    keys.add(key);
+                }
+            }
+        }
+        evictBatchLocally(tags, prefixes, keys);
+    }
+
+    /**
+     * 合并失效的事件键；含无法编码的键或分隔符时返回 null（按清空区域广播）
+     */
+    private static String encodeBatch(Collection<String> tags, Collection<String> prefixes, Collection<?> keys) {
+        StringBuilder encoded = new StringBuilder(TwoTierCache.BATCH_GROUP);
+        List<String> items = new ArrayList<>(tags.size() + prefixes.size() + keys.size());
+        tags.forEach(tag -> items.add(TwoTierCache.TAG_GROUP + tag));
+        prefixes.forEach(prefix -> items.add(TwoTierCache.PREFIX_GROUP + prefix));
+        for (Object key : keys) {
+            String item = TwoTierCache.encodeKey(key);
+            if (item == null) {
+                return null;
+            }
+            items.add(item);
+        }
+        for (int i = 0; i < items.size(); i++) {
+            String item = items.get(i);
+            if (item.indexOf(TwoTierCache.BATCH_SEPARATOR) >= 0) {
+                return null;
+            }
+            if (i > 0) {
+                encoded.append(TwoTierCache.BATCH_SEPARATOR);
+            }
+            encoded.append(item);
+        }
+        return encoded.toString();
+    }
+
+    private int evictBatchLocally(Collection<String> tags, Collection<String> prefixes, Collection<?> keys) {
+        int count = 0;
+        for (String tag : tags) {
+            count += evictTagLocally(tag);
+        }
+        if (!prefixes.isEmpty()) {
+            count += evictLocallyIf(key -> {
+                String text = String.valueOf(key);
+                for (String prefix : prefixes) {
+                    if (text.startsWith(prefix)) {
+                        return true;
+                    }
+                }
+                return false;
+            });
+        }
+        for (Object key : keys) {
+            if (tagsByKey.containsKey(key)) {
+                count++;
+            }
+            evictLocally(key);
+        }
+        return count;
+    }
+
+    private int evictTagLocally(String tag) {
+        invalidations.incrementAndGet();
+        Set<Object> keys = keysByTag.remove(tag);
+        if (keys == null) {
+            return 0;
+        }
+        int count = 0;
+        for (Object key : new ArrayList<>(keys)) {
+            evictLocally(key);
+            count++;
+        }
+        return count;
+    }
+
+    private int evictLocallyIf(Predicate<Object> keyPredicate) {
+        invalidations.incrementAndGet();
+        int count = 0;
+        for (Object key : new ArrayList<>(tagsByKey.keySet())) {
+            if (keyPredicate.test(key)) {
+                evictLocally(key);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void evictLocally(Object key) {
+        if (twoTier != null) {
+            twoTier.evictLocal(key);
+        } else {
+            delegate.evict(key);
+        }
+        untrack(key);
+        metrics.recordEviction(key);
+    }
+
+    /**
+     * 写入底层缓存，底层判定为回源期间已失效的旧值时返回 false
+     */
+    private boolean putDelegate(Object key, Object value) {
+        if (twoTier != null) {
+            return twoTier.putIfCurrent(key, value);
+        }
+        if (delegate instanceof BoundedCache) {
+            return ((BoundedCache) delegate).putIfCurrent(key, value);
+        }
+        delegate.put(key, value);
+        return true;
+    }
+
+    private void trackIfAbsent(Object key, Object value) {
+        if (!tagsByKey.containsKey(key)) {
+            track(key, value);
+        }
+    }
+
+    private void track(Object key, Object value) {
+        untrack(key);
+        Set<String> tags;
+        try {
+            tags = extractor.extract(key, value);
+        } catch (Exception e) {
+            log.warn("提取缓存依赖失败, 条目将仅能按前缀失效: cache={}, key={}, error={}",
+                    getName(), key, e.getMessage());
+            tags = Collections.emptySet();
+        }
+        Set<String> copy = tags.isEmpty() ? Collections.emptySet() : new HashSet<>(tags);
+        tagsByKey.put(key, copy);
+        for (String tag : copy) {
+            keysByTag.computeIfAbsent(tag, t -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    private void untrack(Object key) {
+        Set<String> tags = tagsByKey.remove(key);
+        if (tags == null) {
+            return;
+        }
+        for (String tag : tags) {
+            Set<Object> keys = keysByTag.get(tag);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByTag.remove(tag, keys);
+                }
+            }
+        }
+    }
+}
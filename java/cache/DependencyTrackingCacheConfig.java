@@ -0,0 +1,81 @@
+package org.icao4.eqasbackend2.cache;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 依赖跟踪缓存配置
+ * 对注册了 {@link CacheDependencyExtractor} 的缓存区域，用 {@link DependencyTrackingCache} 包装原有缓存，
+ * 其余区域保持不变。
+ */
+@Configuration
+public class DependencyTrackingCacheConfig {
+
+    @Bean
+    public static BeanPostProcessor dependencyTrackingCacheManagerPostProcessor(
+            ObjectProvider<CacheDependencyExtractor> extractors) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof CacheManager && !(bean instanceof TrackingCacheManager)) {
+                    return new TrackingCacheManager((CacheManager) bean, extractors);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * 包装 CacheManager，按名称返回依赖跟踪缓存
+     */
+    static class TrackingCacheManager implements CacheManager {
+
+        private final CacheManager delegate;
+        private final ObjectProvider<CacheDependencyExtractor> extractorProvider;
+        private final Map<String, Cache> wrapped = new ConcurrentHashMap<>();
+        private volatile Map<String, CacheDependencyExtractor> extractors;
+
+        TrackingCacheManager(CacheManager delegate, ObjectProvider<CacheDependencyExtractor> extractorProvider) {
+            this.delegate = delegate;
+            this.extractorProvider = extractorProvider;
+        }
+
+        @Override
+        public Cache getCache(String name) {
+            Cache cache = delegate.getCache(name);
+            if (cache == null) {
+                return null;
+            }
+            CacheDependencyExtractor extractor = extractors().get(name);
+            if (extractor == null) {
+                return cache;
+            }
+            return wrapped.computeIfAbsent(name, n -> new DependencyTrackingCache(cache, extractor));
+        }
+
+        @Override
+        public Collection<String> getCacheNames() {
+            return delegate.getCacheNames();
+        }
+
+        /**
+         * 延迟获取提取器，避免 CacheManager 初始化时提前实例化业务 Bean
+         */
+        private Map<String, CacheDependencyExtractor> extractors() {
+            if (extractors == null) {
+                extractors = extractorProvider.orderedStream()
+                        .collect(Collectors.toMap(CacheDependencyExtractor::cacheName, e -> e, (a, b) -> a));
+            }
+            return extractors;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.icao4.eqasbackend2.cache;
+
+/**
+ * 近似访问频次统计（Count-Min Sketch，4 位饱和计数）
+ * 计数总数达到采样上限时所有计数减半，让历史热度逐步衰减。
+ * 非线程安全，由 {@link BoundedCache} 在持有策略锁时调用。
+ */
+final class FrequencySketch {
+
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0xb7b2a0b5, 0x4f6c3b1d, 0x2c1b3c6d};
+
+    private final byte[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(64, Math.min(expectedEntries, 1 << 22)) - 1) << 1;
+        this.table = new byte[width];
+        this.mask = width - 1;
+        this.sampleSize = width * 10;
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int min = MAX_COUNT;
+        for (int seed : SEEDS) {
+            min = Math.min(min, table[index(hash, seed)]);
+        }
+        return min;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int seed : SEEDS) {
+            int index = index(hash, seed);
+            if (table[index] < MAX_COUNT) {
+                table[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (byte) (table[i] >>> 1);
+        }
+        additions >>>= 1;
+    }
+
+    private int index(int hash, int seed) {
+        int h = (hash ^ seed) * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+}
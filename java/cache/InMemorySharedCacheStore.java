@@ -0,0 +1,50 @@
+package org.icao4.eqasbackend2.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内共享层
+ * 同一 JVM 内的多个缓存管理器共用，用于测试或单机部署；容量和 TTL 与本地区域配置一致。
+ */
+public class InMemorySharedCacheStore implements SharedCacheStore {
+
+    private final BoundedCacheProperties properties;
+    private final CacheWeigher weigher;
+    private final Map<String, BoundedCache> regions = new ConcurrentHashMap<>();
+
+    public InMemorySharedCacheStore(BoundedCacheProperties properties, CacheWeigher weigher) {
+        this.properties = properties;
+        this.weigher = weigher;
+    }
+
+    @Override
+    public Cache.ValueWrapper get(String region, Object key) {
+        return region(region).get(key);
+    }
+
+    @Override
+    public void put(String region, Object key, Object value) {
+        region(region).put(key, value);
+    }
+
+    @Override
+    public void evict(String region, Object key) {
+        region(region).evict(key);
+    }
+
+    @Override
+    public void clear(String region) {
+        region(region).clear();
+    }
+
+    private BoundedCache region(String name) {
+        return regions.computeIfAbsent(name, n -> {
+            BoundedCacheProperties.Region region = properties.resolve(n);
+            long ttlNanos = region.getTtl() == null ? 0 : region.getTtl().toNanos();
+            return new BoundedCache(n, region.getMaxWeight().toBytes(), ttlNanos, weigher);
+        });
+    }
+}
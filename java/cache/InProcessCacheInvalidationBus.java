@@ -0,0 +1,29 @@
+package org.icao4.eqasbackend2.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 进程内失效总线
+ * 同步投递给同一 JVM 内的其他订阅者，用于测试多节点行为或单机部署。
+ */
+public class InProcessCacheInvalidationBus implements CacheInvalidationBus {
+
+    private final Map<String, Consumer<Event>> subscribers = new ConcurrentHashMap<>();
+
+    @Override
+    public void publish(String origin, String region, String key) {
+        long publishedAt = System.currentTimeMillis();
+        subscribers.forEach((subscriber, listener) -> {
+            if (!subscriber.equals(origin)) {
+                listener.accept(new Event(origin, region, key, System.currentTimeMillis() - publishedAt));
+            }
+        });
+    }
+
+    @Override
+    public void subscribe(String origin, Consumer<Event> listener) {
+        subscribers.put(origin, listener);
+    }
+}
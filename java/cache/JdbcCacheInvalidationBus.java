@@ -0,0 +1,172 @@
+package org.icao4.eqasbackend2.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 基于数据库的失效总线
+ * 各节点已共用同一个 MySQL，失效事件写入 cache_invalidation_events，
+ * 各节点按固定间隔拉取自增 ID 之后的新事件，最大传播延迟约为一个拉取间隔。
+ * 延迟由数据库时钟计算（NOW(3) - created_at），不受节点间时钟偏差影响。
+ */
+@Slf4j
+public class JdbcCacheInvalidationBus implements CacheInvalidationBus, AutoCloseable {
+
+    private static final String CREATE_SQL = "CREATE TABLE IF NOT EXISTS cache_invalidation_events ("
+            + "id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+            + "region VARCHAR(128) NOT NULL, "
+            + "cache_key VARCHAR(512) NULL, "
+            + "origin VARCHAR(64) NOT NULL, "
+            + "created_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3), "
+            + "INDEX idx_created_at (created_at))";
+
+    private static final String INSERT_SQL = "INSERT INTO cache_invalidation_events (region, cache_key, origin) VALUES (?, ?, ?)";
+
+    private static final String POLL_SQL = "SELECT id, region, cache_key, origin, "
+            + "TIMESTAMPDIFF(MICROSECOND, created_at, NOW(3)) AS lag_us "
+            + "FROM cache_invalidation_events WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String PURGE_SQL = "DELETE FROM cache_invalidation_events "
+            + "WHERE created_at < NOW(3) - INTERVAL ? SECOND LIMIT 1000";
+
+    private static final int POLL_LIMIT = 1000;
+
+    /**
+     * 键超过列宽时改为清空整个区域
+     */
+    private static final int MAX_KEY_LENGTH = 512;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration pollInterval;
+    private final Duration retention;
+    private final Duration gapTimeout;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService poller;
+
+    /**
+     * 已连续处理到的事件ID
+     */
+    private long cursor = -1;
+
+    /**
+     * 游标之后已处理的事件ID；并发写入可能晚于更大的ID提交，出现空洞时保留这些ID避免重复处理
+     */
+    private final NavigableSet<Long> delivered = new TreeSet<>();
+    private long gapSince;
+    private long pollCount;
+
+    public JdbcCacheInvalidationBus(JdbcTemplate jdbcTemplate, Duration pollInterval, Duration retention,
+                                    Duration gapTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pollInterval = pollInterval;
+        this.retention = retention;
+        this.gapTimeout = gapTimeout;
+    }
+
+    @Override
+    public void publish(String origin, String region, String key) {
+        try {
+            jdbcTemplate.update(INSERT_SQL, region, key != null && key.length() > MAX_KEY_LENGTH ? null : key, origin);
+        } catch (Exception e) {
+            log.warn("发布缓存失效事件失败, 其他节点将在 TTL 到期后更新: region={}, key={}, error={}",
+                    region, key, e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void subscribe(String origin, Consumer<Event> listener) {
+        subscribers.add(new Subscriber(origin, listener));
+        if (poller == null) {
+            start();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private void start() {
+        jdbcTemplate.execute(CREATE_SQL);
+        Long max = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM cache_invalidation_events", Long.class);
+        cursor = max == null ? 0 : max;
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-invalidation-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(10, pollInterval.toMillis());
+        poller.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("缓存失效总线已启动: pollInterval={}ms, cursor={}", interval, cursor);
+    }
+
+    private void poll() {
+        try {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(POLL_SQL, cursor, POLL_LIMIT);
+            for (Map<String, Object> row : rows) {
+                long id = ((Number) row.get("id")).longValue();
+                if (!delivered.add(id)) {
+                    continue;
+                }
+                Object lag = row.get("lag_us");
+                Event event = new Event((String) row.get("origin"), (String) row.get("region"),
+                        (String) row.get("cache_key"), lag == null ? 0 : ((Number) lag).longValue() / 1000);
+                for (Subscriber subscriber : subscribers) {
+                    if (!subscriber.origin.equals(event.getOrigin())) {
+                        subscriber.listener.accept(event);
+                    }
+                }
+            }
+            advanceCursor();
+            if (++pollCount % Math.max(1, 60_000 / Math.max(10, pollInterval.toMillis())) == 0) {
+                jdbcTemplate.update(PURGE_SQL, retention.getSeconds());
+            }
+        } catch (Exception e) {
+            log.warn("拉取缓存失效事件失败: cursor={}, error={}", cursor, e.getMessage());
+        }
+    }
+
+    /**
+     * 游标推进到连续处理过的最大ID；空洞超过 gapTimeout 视为回滚留下的永久空洞，直接跳过
+     */
+    private void advanceCursor() {
+        while (!delivered.isEmpty() && delivered.first() == cursor + 1) {
+            cursor = delivered.pollFirst();
+        }
+        if (delivered.isEmpty()) {
+            gapSince = 0;
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (gapSince == 0) {
+            gapSince = now;
+        } else if (now - gapSince > gapTimeout.toMillis()) {
+            cursor = delivered.first() - 1;
+            gapSince = 0;
+            advanceCursor();
+        }
+    }
+
+    private static final class Subscriber {
+        private final String origin;
+        private final Consumer<Event> listener;
+
+        private Subscriber(String origin, Consumer<Event> listener) {
+            this.origin = origin;
+            this.listener = listener;
+        }
+    }
+}
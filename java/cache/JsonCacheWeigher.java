@@ -0,0 +1,60 @@
+package org.icao4.eqasbackend2.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.OutputStream;
+
+/**
+ * 按 JSON 序列化长度估算条目大小
+ * 缓存的多为接口返回值，序列化长度与其在堆中的大小大致成正比；只计数不保留输出。
+ * 无法序列化的值按固定大小计重。
+ */
+@Slf4j
+public class JsonCacheWeigher implements CacheWeigher {
+
+    /**
+     * 对象头、包装和字段引用的额外开销
+     */
+    private static final long ENTRY_OVERHEAD = 128;
+
+    private final ObjectMapper objectMapper;
+    private final long fallbackWeight;
+
+    public JsonCacheWeigher(ObjectMapper objectMapper, long fallbackWeight) {
+        this.objectMapper = objectMapper;
+        this.fallbackWeight = fallbackWeight;
+    }
+
+    @Override
+    public long weigh(Object key, Object value) {
+        long keyWeight = String.valueOf(key).length() * 2L;
+        if (value == null) {
+            return ENTRY_OVERHEAD + keyWeight;
+        }
+        CountingOutputStream counter = new CountingOutputStream();
+        try {
+            objectMapper.writeValue(counter, value);
+            // JSON 按 UTF-8 计数，堆内字符串和装箱对象通常更大
+            return ENTRY_OVERHEAD + keyWeight + counter.count * 2;
+        } catch (Exception e) {
+            log.debug("缓存条目无法序列化, 按默认大小计重: key={}, type={}, error={}",
+                    key, value.getClass().getName(), e.getMessage());
+            return ENTRY_OVERHEAD + keyWeight + fallbackWeight;
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.icao4.eqasbackend2.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 当前线程未命中时的失效计数
+ * 非 sync 的 @Cacheable 先 get 未命中、回源、再在同一线程 put，
+ * put 时取出未命中时的计数与当前比较，回源期间发生过失效就不写入旧值。
+ * 未命中后没有 put（如 unless 条件不满足）的记录会留在线程中，超过上限时整体丢弃。
+ */
+final class MissStamps {
+
+    private static final int MAX_PENDING = 32;
+
+    private final ThreadLocal<Map<Object, Long>> stamps = ThreadLocal.withInitial(HashMap::new);
+
+    void record(Object key, long stamp) {
+        Map<Object, Long> pending = stamps.get();
+        if (pending.size() >= MAX_PENDING && !pending.containsKey(key)) {
+            pending.clear();
+        }
+        pending.put(key, stamp);
+    }
+
+    /**
+     * 取出并移除未命中时的计数；本线程没有该键的未命中记录时返回 null
+     */
+    Long take(Object key) {
+        return stamps.get().remove(key);
+    }
+}
@@ -0,0 +1,22 @@
+package org.icao4.eqasbackend2.cache;
+
+import org.springframework.cache.Cache;
+
+/**
+ * 两级缓存的共享层
+ * 所有节点共用的缓存存储（如 Redis），本地缓存未命中时先查这里再回源。
+ * 实现需自行处理值的序列化；值为 null 的条目以 Spring 的 NullValue 传入。
+ */
+public interface SharedCacheStore {
+
+    /**
+     * @return 未命中时返回 null
+     */
+    Cache.ValueWrapper get(String region, Object key);
+
+    void put(String region, Object key, Object value);
+
+    void evict(String region, Object key);
+
+    void clear(String region);
+}
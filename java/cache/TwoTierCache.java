@@ -0,0 +1,329 @@
+package org.icao4.eqasbackend2.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 两级缓存
+ * 本地 {@link BoundedCache} 作为近端缓存，未命中时查共享层，再未命中才回源。
+ * evict / clear 同时清除本地和共享层，并通过 {@link CacheInvalidationBus} 通知其他节点清除各自的本地缓存。
+ * 只有字符串和整数键能精确广播，其他类型的键在远端按整个区域清空处理。
+ * 按标签或键前缀的失效（{@link #evictGroup(String)}）整体广播，远端交给注册的处理器按各自的索引清除，
+ * 没有处理器时清空本地区域；共享层没有标签索引，按整个区域清空。
+ * 收到失效事件的节点也清一次共享层，覆盖本节点在事件到达前把旧值写入共享层的情况。
+ * 回源期间本地发生过失效的值两级都不写入；写共享层期间发生失效时撤回共享层的写入。
+ * 一次失效多个标签、前缀和键时合并为一个 {@link #BATCH_GROUP} 事件。
+ */
+@Slf4j
+public class TwoTierCache implements Cache {
+
+    /**
+     * 按标签失效的事件键前缀
+     */
+    static final String TAG_GROUP = "t:";
+
+    /**
+     * 按键前缀失效的事件键前缀
+     */
+    static final String PREFIX_GROUP = "p:";
+
+    /**
+     * 合并失效的事件键前缀，后接以 {@link #BATCH_SEPARATOR} 分隔的标签组、前缀组和编码后的键
+     */
+    static final String BATCH_GROUP = "b:";
+
+    static final char BATCH_SEPARATOR = '\u001F';
+
+    private final BoundedCache local;
+    private final SharedCacheStore shared;
+    private final CacheInvalidationBus bus;
+    private final String nodeId;
+
+    private final LongAdder sharedHits = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private final LongAdder totalLagMillis = new LongAdder();
+
+    private volatile Consumer<String> groupHandler;
+
+    public TwoTierCache(BoundedCache local, SharedCacheStore shared, CacheInvalidationBus bus, String nodeId) {
+        this.local = local;
+        this.shared = shared;
+        this.bus = bus;
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public String getName() {
+        return local.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper wrapper = local.get(key);
+        if (wrapper != null || shared == null) {
+            return wrapper;
+        }
+        long stamp = local.loadStamp(key);
+        wrapper = sharedGet(key);
+        if (wrapper != null && local.loadStamp(key) == stamp) {
+            local.put(key, wrapper.get());
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper == null ? null : wrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("缓存值类型不匹配: 需要 " + type.getName() + ", 实际 " + value.getClass().getName());
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return local.get(key, () -> {
+            if (shared != null) {
+                ValueWrapper wrapper = sharedGet(key);
+                if (wrapper != null) {
+                    return (T) wrapper.get();
+                }
+            }
+            long stamp = local.loadStamp(key);
+            T value = valueLoader.call();
+            // 加载期间被失效的值不写入共享层，本地层由 BoundedCache 同样判断
+            if (shared != null && local.loadStamp(key) == stamp) {
+                putShared(key, value, stamp);
+            }
+            return value;
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        putIfCurrent(key, value);
+    }
+
+    /**
+     * 写入两级缓存；本线程未命中后该键被失效过（非 sync 的 @Cacheable 回源期间）时两级都不写入
+     *
+     * @return 是否写入
+     */
+    public boolean putIfCurrent(Object key, Object value) {
+        long stamp = local.loadStamp(key);
+        if (!local.putIfCurrent(key, value)) {
+            return false;
+        }
+        if (shared != null) {
+            putShared(key, value, stamp);
+        }
+        return true;
+    }
+
+    @Override
+    public void evict(Object key) {
+        local.evict(key);
+        if (shared != null) {
+            shared.evict(getName(), key);
+        }
+        publish(encodeKey(key), key);
+    }
+
+    @Override
+    public void clear() {
+        local.clear();
+        if (shared != null) {
+            shared.clear(getName());
+        }
+        publish(null, null);
+    }
+
+    /**
+     * 按标签（{@link #TAG_GROUP}）、键前缀（{@link #PREFIX_GROUP}）或合并（{@link #BATCH_GROUP}）失效，
+     * group 为 null 时按清空区域广播。
+     * 本地条目由调用方按自己的索引用 {@link #evictLocal(Object)} 清除，需在本方法之后调用。
+     */
+    public void evictGroup(String group) {
+        local.invalidateLoads();
+        if (shared != null) {
+            shared.clear(getName());
+        }
+        publish(group, null);
+    }
+
+    /**
+     * 只清除本地条目，不广播（按组失效时由调用方逐个清除）
+     */
+    public void evictLocal(Object key) {
+        local.evict(key);
+    }
+
+    /**
+     * 注册远端按组失效的处理器，参数为 {@link #TAG_GROUP}、{@link #PREFIX_GROUP} 或 {@link #BATCH_GROUP} 开头的事件键
+     */
+    public void setGroupHandler(Consumer<String> handler) {
+        this.groupHandler = handler;
+    }
+
+    // ==================== 跨节点失效 ====================
+
+    /**
+     * 处理其他节点发来的失效事件
+     */
+    public void onRemoteInvalidation(CacheInvalidationBus.Event event) {
+        received.increment();
+        lastLagMillis.set(event.getLagMillis());
+        maxLagMillis.accumulateAndGet(event.getLagMillis(), Math::max);
+        totalLagMillis.add(event.getLagMillis());
+        String encoded = event.getKey();
+        Consumer<String> handler = groupHandler;
+        if (isGroup(encoded)) {
+            local.invalidateLoads();
+            sharedQuietly(() -> shared.clear(getName()));
+            if (handler != null) {
+                handler.accept(encoded);
+            } else {
+                local.clear();
+            }
+            return;
+        }
+        Object key = decodeKey(encoded);
+        if (key == null) {
+            local.clear();
+            sharedQuietly(() -> shared.clear(getName()));
+        } else {
+            local.evict(key);
+            sharedQuietly(() -> shared.evict(getName(), key));
+        }
+    }
+
+    public void addRemovalListener(Consumer<Object> listener) {
+        local.addRemovalListener(listener);
+    }
+
+    public BoundedCache getLocal() {
+        return local;
+    }
+
+    /**
+     * 本地缓存统计，加上共享层命中数和失效广播的收发数、传播延迟
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(local.getStats());
+        long receivedCount = received.sum();
+        stats.put("sharedHits", sharedHits.sum());
+        stats.put("invalidationsPublished", published.sum());
+        stats.put("invalidationsReceived", receivedCount);
+        stats.put("invalidationLagLastMs", lastLagMillis.get());
+        stats.put("invalidationLagMaxMs", maxLagMillis.get());
+        stats.put("invalidationLagAvgMs", receivedCount == 0 ? 0.0 : (double) totalLagMillis.sum() / receivedCount);
+        return stats;
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 写入共享层；写入期间本地发生失效（失效方可能已先清过共享层）时撤回
+     */
+    private void putShared(Object key, Object value, long stamp) {
+        shared.put(getName(), key, value);
+        if (local.loadStamp(key) != stamp) {
+            sharedQuietly(() -> shared.evict(getName(), key));
+        }
+    }
+
+    private void sharedQuietly(Runnable action) {
+        if (shared == null) {
+            return;
+        }
+        try {
+            action.run();
+        } catch (Exception e) {
+            log.warn("清除共享缓存失败: cache={}, error={}", getName(), e.getMessage());
+        }
+    }
+
+    private ValueWrapper sharedGet(Object key) {
+        try {
+            ValueWrapper wrapper = shared.get(getName(), key);
+            if (wrapper != null) {
+                sharedHits.increment();
+            }
+            return wrapper;
+        } catch (Exception e) {
+            log.warn("读取共享缓存失败, 回源查询: cache={}, key={}, error={}", getName(), key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param encoded 编码后的键；原始键无法编码时传 null，远端按清空区域处理
+     */
+    private void publish(String encoded, Object key) {
+        if (bus == null) {
+            return;
+        }
+        if (encoded == null && key != null) {
+            log.debug("缓存键无法编码, 广播清空区域: cache={}, keyType={}", getName(), key.getClass().getName());
+        }
+        bus.publish(nodeId, getName(), encoded);
+        published.increment();
+    }
+
+    static boolean isGroup(String encoded) {
+        return encoded != null && (encoded.startsWith(TAG_GROUP) || encoded.startsWith(PREFIX_GROUP)
+                || encoded.startsWith(BATCH_GROUP));
+    }
+
+    static String encodeKey(Object key) {
+        if (key instanceof String) {
+            return "s:" + key;
+        }
+        if (key instanceof Long) {
+            return "l:" + key;
+        }
+        if (key instanceof Integer) {
+            return "i:" + key;
+        }
+        return null;
+    }
+
+    static Object decodeKey(String encoded) {
+        if (encoded == null || encoded.length() < 2) {
+            return null;
+        }
+        String value = encoded.substring(2);
+        try {
+            switch (encoded.charAt(0)) {
+                case 's':
+                    return value;
+                case 'l':
+                    return Long.valueOf(value);
+                case 'i':
+                    return Integer.valueOf(value);
+                default:
+                    return null;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
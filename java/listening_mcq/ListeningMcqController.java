@@ -13,16 +13,25 @@ import org.icao4.eqasbackend2.service.listening_mcq.McqChoiceService;
 import org.icao4.eqasbackend2.service.listening_mcq.McqQuestionService;
 import org.icao4.eqasbackend2.service.listening_mcq.McqResponseService;
 import org.icao4.eqasbackend2.service.MediaAssetService;
+import org.icao4.eqasbackend2.impl.media.MediaStorageService;
+import org.icao4.eqasbackend2.impl.media.MediaUploadJobService;
+import org.icao4.eqasbackend2.impl.listening_mcq.McqAnswerIngestService;
+import org.icao4.eqasbackend2.impl.listening_mcq.McqAnswerKeyService;
+import org.icao4.eqasbackend2.impl.listening_mcq.McqItemAnalysisEngine;
+import org.icao4.eqasbackend2.impl.listening_mcq.McqQuestionExportService;
+import org.icao4.eqasbackend2.impl.listening_mcq.McqQuestionImportService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
@@ -31,6 +40,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 听力理解选择题控制器
@@ -42,12 +52,29 @@ import java.util.Optional;
 @RequestMapping("/listening-mcq")
 @RequiredArgsConstructor
 public class ListeningMcqController {
+
+    /**
+     * 同步批量上传的最长等待时间
+     */
+    private static final long BATCH_UPLOAD_TIMEOUT_SECONDS = 600;
+
+    /**
+     * 批量题目统计单次最多题目数
+     */
+    private static final int MAX_STATS_QUESTIONS = 500;
     
     private final McqQuestionService mcqQuestionService;
     private final McqChoiceService mcqChoiceService;
     private final McqResponseService mcqResponseService;
     private final MediaAssetService mediaAssetService;
+    private final MediaStorageService mediaStorageService;
+    private final MediaUploadJobService mediaUploadJobService;
     private final ExamModuleService examModuleService;
+    private final McqAnswerIngestService mcqAnswerIngestService;
+    private final McqAnswerKeyService mcqAnswerKeyService;
+    private final McqItemAnalysisEngine mcqItemAnalysisEngine;
+    private final McqQuestionExportService mcqQuestionExportService;
+    private final McqQuestionImportService mcqQuestionImportService;
     // ==================== 题目相关接口 ====================
     
     /**
@@ -204,6 +231,7 @@ public class ListeningMcqController {
             }
             
             mcqQuestionService.deleteById(id);
+            mcqAnswerKeyService.refreshQuestion(id);
             return ResponseEntity.ok(ApiResponse.success("题目删除成功"));
         } catch (Exception e) {
             log.error("删除题目失败: id={}, error={}", id, e.getMessage(), e);
@@ -297,6 +325,7 @@ public class ListeningMcqController {
     public ResponseEntity<ApiResponse<McqChoice>> createChoice(@Valid @RequestBody McqChoice choice) {
         try {
             McqChoice createdChoice = mcqChoiceService.save(choice);
+            mcqAnswerKeyService.refreshQuestion(createdChoice.getQuestionId());
             return ResponseEntity.status(HttpStatus.CREATED)
                     .body(ApiResponse.success(createdChoice));
         } catch (Exception e) {
@@ -326,6 +355,7 @@ public class ListeningMcqController {
             }
             
             List<McqChoice> choices = mcqChoiceService.createStandardChoices(questionId, contents, correctLabel);
+            mcqAnswerKeyService.refreshQuestion(questionId);
             return ResponseEntity.status(HttpStatus.CREATED)
                     .body(ApiResponse.success(choices));
         } catch (Exception e) {
@@ -352,6 +382,7 @@ public class ListeningMcqController {
             
             choice.setId(id);
             McqChoice updatedChoice = mcqChoiceService.save(choice);
+            mcqAnswerKeyService.refreshChoice(id);
             return ResponseEntity.ok(ApiResponse.success(updatedChoice));
         } catch (Exception e) {
             log.error("更新选项失败: id={}, error={}", id, e.getMessage(), e);
@@ -373,6 +404,7 @@ public class ListeningMcqController {
             }
             
             mcqChoiceService.deleteById(id);
+            mcqAnswerKeyService.refreshChoice(id);
             return ResponseEntity.ok(ApiResponse.success("选项删除成功"));
         } catch (Exception e) {
             log.error("删除选项失败: id={}, error={}", id, e.getMessage(), e);
@@ -389,6 +421,7 @@ public class ListeningMcqController {
     public ResponseEntity<ApiResponse<McqChoice>> setChoiceAsCorrect(@PathVariable Long id) {
         try {
             McqChoice choice = mcqChoiceService.setAsCorrect(id);
+            mcqAnswerKeyService.refreshChoice(id);
             return ResponseEntity.ok(ApiResponse.success(choice));
         } catch (Exception e) {
             log.error("设置正确答案失败: id={}, error={}", id, e.getMessage(), e);
@@ -405,6 +438,7 @@ public class ListeningMcqController {
     public ResponseEntity<ApiResponse<McqChoice>> toggleChoiceCorrectness(@PathVariable Long id) {
         try {
             McqChoice choice = mcqChoiceService.toggleCorrectness(id);
+            mcqAnswerKeyService.refreshChoice(id);
             return ResponseEntity.ok(ApiResponse.success(choice));
         } catch (Exception e) {
             log.error("切换选项正确性失败: id={}, error={}", id, e.getMessage(), e);
@@ -479,6 +513,7 @@ public class ListeningMcqController {
     
     /**
      * 提交回答
+     * 启用写后入库时写入本地日志即返回 202（回答随后批量写库，id 为空）
      */
     @PostMapping("/responses/submit")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN') or hasRole('SUPER_ADMIN')")
@@ -489,9 +524,21 @@ public class ListeningMcqController {
             Integer elapsedMs = request.get("elapsedMs") != null ? 
                     Integer.valueOf(request.get("elapsedMs").toString()) : 0;
             
+            if (mcqAnswerIngestService.isEnabled()) {
+                McqResponse response = mcqAnswerIngestService.submit(questionId, selectedChoiceId, elapsedMs);
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .body(ApiResponse.success(response));
+            }
             McqResponse response = mcqResponseService.submitResponse(questionId, selectedChoiceId, elapsedMs);
             return ResponseEntity.status(HttpStatus.CREATED)
                     .body(ApiResponse.success(response));
+        } catch (McqAnswerIngestService.IngestRejectedException e) {
+            log.warn("提交回答被拒绝: error={}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(ApiResponse.error(503, e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.ok(ApiResponse.error(400, e.getMessage()));
         } catch (Exception e) {
             log.error("提交回答失败: error={}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -499,6 +546,17 @@ public class ListeningMcqController {
         }
     }
     
+    /**
+     * 获取回答写后入库的运行统计
+     */
+    @GetMapping("/responses/ingest/stats")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getIngestStats() {
+        Map<String, Object> stats = mcqAnswerIngestService.getStats();
+        stats.put("answerKey", mcqAnswerKeyService.getStats());
+        return ResponseEntity.ok(ApiResponse.success(stats));
+    }
+
     /**
      * 创建回答记录
      */
@@ -524,6 +582,7 @@ public class ListeningMcqController {
     public ResponseEntity<ApiResponse<McqResponse>> gradeResponse(@PathVariable Long id) {
         try {
             McqResponse response = mcqResponseService.gradeResponse(id);
+            mcqItemAnalysisEngine.invalidate(response.getQuestionId());
             return ResponseEntity.ok(ApiResponse.success(response));
         } catch (Exception e) {
             log.error("判分回答失败: id={}, error={}", id, e.getMessage(), e);
@@ -533,14 +592,17 @@ public class ListeningMcqController {
     }
     
     /**
-     * 批量判分回答
+     * 批量判分回答（按当前正确答案一条语句更新，返回更新数量）
      */
     @PutMapping("/responses/batch-grade")
     @PreAuthorize("hasRole('ADMIN') or hasRole('SUPER_ADMIN')")
-    public ResponseEntity<ApiResponse<List<McqResponse>>> batchGradeResponses(@RequestBody List<Long> responseIds) {
+    public ResponseEntity<ApiResponse<Map<String, Object>>> batchGradeResponses(@RequestBody List<Long> responseIds) {
         try {
-            List<McqResponse> responses = mcqResponseService.batchGradeResponses(responseIds);
-            return ResponseEntity.ok(ApiResponse.success(responses));
+            Map<String, Object> result = new HashMap<>();
+            result.put("requested", responseIds.size());
+            result.put("graded", mcqAnswerKeyService.gradeByIds(responseIds));
+            mcqItemAnalysisEngine.invalidateAll();
+            return ResponseEntity.ok(ApiResponse.success(result));
         } catch (Exception e) {
             log.error("批量判分回答失败: count={}, error={}", responseIds.size(), e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -549,14 +611,17 @@ public class ListeningMcqController {
     }
     
     /**
-     * 判分题目的所有回答
+     * 判分题目的所有回答（按当前正确答案重新判分，返回更新数量）
      */
     @PutMapping("/questions/{questionId}/responses/grade-all")
     @PreAuthorize("hasRole('ADMIN') or hasRole('SUPER_ADMIN')")
-    public ResponseEntity<ApiResponse<List<McqResponse>>> gradeAllResponsesByQuestion(@PathVariable Long questionId) {
+    public ResponseEntity<ApiResponse<Map<String, Object>>> gradeAllResponsesByQuestion(@PathVariable Long questionId) {
         try {
-            List<McqResponse> responses = mcqResponseService.gradeAllResponsesByQuestion(questionId);
-            return ResponseEntity.ok(ApiResponse.success(responses));
+            Map<String, Object> result = new HashMap<>();
+            result.put("questionId", questionId);
+            result.put("graded", mcqAnswerKeyService.gradeByQuestion(questionId));
+            mcqItemAnalysisEngine.invalidate(questionId);
+            return ResponseEntity.ok(ApiResponse.success(result));
         } catch (Exception e) {
             log.error("判分题目所有回答失败: questionId={}, error={}", questionId, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -577,6 +642,7 @@ public class ListeningMcqController {
             }
             
             mcqResponseService.deleteById(id);
+            mcqItemAnalysisEngine.invalidateAll();
             return ResponseEntity.ok(ApiResponse.success("回答删除成功"));
         } catch (Exception e) {
             log.error("删除回答失败: id={}, error={}", id, e.getMessage(), e);
@@ -594,30 +660,8 @@ public class ListeningMcqController {
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN') or hasRole('SUPER_ADMIN')")
     public ResponseEntity<ApiResponse<Map<String, Object>>> getQuestionStats(@PathVariable Long questionId) {
         try {
-            Map<String, Object> stats = new HashMap<>();
-            
-            // 基础统计
-            stats.put("totalResponses", mcqResponseService.countByQuestionId(questionId));
-            stats.put("correctResponses", mcqResponseService.countCorrectResponsesByQuestionId(questionId));
-            stats.put("incorrectResponses", mcqResponseService.countIncorrectResponsesByQuestionId(questionId));
-            stats.put("ungradedResponses", mcqResponseService.countUngradedResponsesByQuestionId(questionId));
-            
-            // 选项统计
-            List<McqChoice> choices = mcqChoiceService.findByQuestionIdOrderByLabel(questionId);
-            Map<String, Long> choiceStats = new HashMap<>();
-            for (McqChoice choice : choices) {
-                choiceStats.put(choice.getLabel(), mcqResponseService.countBySelectedChoiceId(choice.getId()));
-            }
-            stats.put("choiceSelections", choiceStats);
-            
-            // 平均回答时间
-            stats.put("averageResponseTime", mcqResponseService.getAverageResponseTimeByQuestion(questionId));
-            
-            // 难度分析
-            stats.put("difficulty", mcqResponseService.analyzeDifficultyByQuestion(questionId));
-            
+            Map<String, Object> stats = mcqItemAnalysisEngine.analyze(List.of(questionId)).get(questionId);
             stats.put("timestamp", LocalDateTime.now());
-            
             return ResponseEntity.ok(ApiResponse.success(stats));
         } catch (Exception e) {
             log.error("获取题目统计失败: questionId={}, error={}", questionId, e.getMessage(), e);
@@ -626,6 +670,27 @@ public class ListeningMcqController {
         }
     }
     
+    /**
+     * 批量获取题目统计信息（一次分组扫描，返回 题目ID -> 统计）
+     */
+    @PostMapping("/questions/stats/bulk")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN') or hasRole('SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<Map<Long, Map<String, Object>>>> getQuestionStatsBulk(@RequestBody List<Long> questionIds) {
+        if (questionIds == null || questionIds.isEmpty()) {
+            return ResponseEntity.ok(ApiResponse.error(400, "题目ID列表不能为空"));
+        }
+        if (questionIds.size() > MAX_STATS_QUESTIONS) {
+            return ResponseEntity.ok(ApiResponse.error(400, "单次最多统计 " + MAX_STATS_QUESTIONS + " 道题目"));
+        }
+        try {
+            return ResponseEntity.ok(ApiResponse.success(mcqItemAnalysisEngine.analyze(questionIds)));
+        } catch (Exception e) {
+            log.error("批量获取题目统计失败: count={}, error={}", questionIds.size(), e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("批量获取题目统计失败"));
+        }
+    }
+    
     
     // ==================== 批量操作接口 ====================
     
@@ -669,6 +734,7 @@ public class ListeningMcqController {
     public ResponseEntity<ApiResponse<String>> batchDeleteResponses(@RequestBody List<Long> responseIds) {
         try {
             mcqResponseService.batchDeleteResponses(responseIds);
+            mcqItemAnalysisEngine.invalidateAll();
             return ResponseEntity.ok(ApiResponse.success("批量删除回答成功"));
         } catch (Exception e) {
             log.error("批量删除回答失败: count={}, error={}", responseIds.size(), e.getMessage(), e);
@@ -716,6 +782,28 @@ public class ListeningMcqController {
         }
     }
 
+    /**
+     * 从 CSV / XLSX 文件导入题目到模块（文件中的模块ID被忽略）
+     */
+    @PostMapping(value = "/modules/{moduleId}/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('ADMIN') or hasRole('SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> importQuestionFileToModule(
+            @PathVariable Long moduleId,
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(required = false, defaultValue = "true") Boolean skipDuplicates,
+            @RequestParam(required = false, defaultValue = "false") Boolean updateExisting) {
+        try {
+            Map<String, Object> result = mcqQuestionImportService.importFile(file, moduleId, skipDuplicates,
+                    updateExisting, true);
+            return ResponseEntity.ok(ApiResponse.success(result));
+        } catch (Exception e) {
+            log.error("导入题目文件到模块失败: moduleId={}, file={}, error={}",
+                     moduleId, file.getOriginalFilename(), e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("导入题目文件到模块失败: " + e.getMessage()));
+        }
+    }
+
     // ==================== 题库管理系统 - 听力选择题相关接口 ====================
 
     /**
@@ -800,6 +888,7 @@ public class ListeningMcqController {
                         .body(ApiResponse.error("听力选择题不存在"));
             }
             mcqQuestionService.deleteById(id);
+            mcqAnswerKeyService.refreshQuestion(id);
             return ResponseEntity.ok(ApiResponse.success("听力选择题删除成功"));
         } catch (Exception e) {
             log.error("删除听力选择题失败: id={}, error={}", id, e.getMessage(), e);
@@ -957,17 +1046,7 @@ public class ListeningMcqController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
         try {
-            // TODO: 实现获取导入历史逻辑
-            List<Map<String, Object>> history = List.of(
-                    Map.of("id", 1L, "filename", "questions_batch1.xlsx", "importTime", LocalDateTime.now().minusDays(1), "status", "success", "totalRows", 100, "successCount", 95),
-                    Map.of("id", 2L, "filename", "questions_batch2.xlsx", "importTime", LocalDateTime.now().minusDays(2), "status", "partial", "totalRows", 50, "successCount", 45)
-            );
-            
-            Pageable pageable = PageRequest.of(page, size);
-            // TODO: 实现真正的分页逻辑
-            Page<Map<String, Object>> historyPage = new org.springframework.data.domain.PageImpl<>(history, pageable, history.size());
-            
-            return ResponseEntity.ok(ApiResponse.success(historyPage));
+            return ResponseEntity.ok(ApiResponse.success(mcqQuestionImportService.getHistory(page, size)));
         } catch (Exception e) {
             log.error("获取导入历史失败: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -975,6 +1054,26 @@ public class ListeningMcqController {
         }
     }
 
+    /**
+     * 获取单次导入详情（含逐行错误报告）
+     */
+    @GetMapping("/question-bank/questions/import/history/{jobId}")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getImportJob(@PathVariable Long jobId) {
+        try {
+            Map<String, Object> job = mcqQuestionImportService.getJob(jobId);
+            if (job == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("导入记录不存在"));
+            }
+            return ResponseEntity.ok(ApiResponse.success(job));
+        } catch (Exception e) {
+            log.error("获取导入详情失败: jobId={}, error={}", jobId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("获取导入详情失败"));
+        }
+    }
+
     // ==================== 新增的前端API对应接口 ====================
     // 注意：许多接口已在上面实现，这里添加缺失的接口
 
@@ -997,36 +1096,12 @@ public class ListeningMcqController {
                         .body(ApiResponse.error("只支持音频文件上传"));
             }
             
-            // 创建媒体资源记录
-            MediaAsset mediaAsset = new MediaAsset();
-            mediaAsset.setMediaType(MediaAsset.MediaType.audio);
-            // 注意：MediaAsset 实体使用 Lombok @Data，没有 setOriginalName 和 setSize 方法
-            // 这些信息存储在 extraMetaJson 中
-            Map<String, Object> metaData = new HashMap<>();
-            metaData.put("originalName", file.getOriginalFilename());
-            metaData.put("size", file.getSize());
+            // 流式写入存储并创建（或复用相同内容的）媒体资源记录
+            MediaStorageService.StoredMedia stored = mediaStorageService.store(file, MediaAsset.MediaType.audio, null);
             
-            // TODO: 实现实际的文件存储逻辑
-            String fileName = System.currentTimeMillis() + "_" + file.getOriginalFilename();
-            String fileUrl = "/uploads/audio/" + fileName;
-            mediaAsset.setUri(fileUrl);
-            try {
-                mediaAsset.setExtraMetaJson(new ObjectMapper().writeValueAsString(metaData));
-            } catch (Exception jsonException) {
-                log.warn("Failed to serialize metadata: {}", jsonException.getMessage());
-            }
-            
-            MediaAsset savedAsset = mediaAssetService.createMediaAsset(mediaAsset);
-            
-            Map<String, Object> result = new HashMap<>();
-            result.put("id", savedAsset.getId());
-            result.put("filename", file.getOriginalFilename());
-            result.put("size", file.getSize());
-            result.put("url", fileUrl);
+            Map<String, Object> result = stored.toResultMap();
             result.put("questionId", questionId);
             result.put("quality", quality != null ? quality : "medium");
-            result.put("mediaType", "audio");
-            result.put("uploadTime", LocalDateTime.now());
             
             return ResponseEntity.ok(ApiResponse.success(result));
         } catch (Exception e) {
@@ -1038,77 +1113,63 @@ public class ListeningMcqController {
 
     /**
      * 批量上传听力选择题音频文件 (对应前端 batchUploadListeningMCQAudio)
+     * 文件在后台线程池并行处理；async=true 时立即返回任务ID，通过任务接口轮询进度。
+     * 同步模式用 Servlet 异步等待任务结束，不占用请求线程；超时后返回任务进度，改为轮询。
      */
     @PostMapping("/question-bank/upload/audio/batch")
     @PreAuthorize("hasRole('ADMIN') or hasRole('SUPER_ADMIN')")
-    public ResponseEntity<ApiResponse<List<Map<String, Object>>>> batchUploadListeningMCQAudio(
+    public DeferredResult<ResponseEntity<ApiResponse<Object>>> batchUploadListeningMCQAudio(
             @RequestParam("files") List<MultipartFile> files,
-            @RequestParam(required = false) List<Long> questionIds) {
+            @RequestParam(required = false) List<Long> questionIds,
+            @RequestParam(defaultValue = "false") boolean async) {
+        DeferredResult<ResponseEntity<ApiResponse<Object>>> deferred =
+                new DeferredResult<>(TimeUnit.SECONDS.toMillis(BATCH_UPLOAD_TIMEOUT_SECONDS));
         try {
-            List<Map<String, Object>> results = new ArrayList<>();
-            
+            List<Map<String, Object>> extraFields = new ArrayList<>();
             for (int i = 0; i < files.size(); i++) {
-                MultipartFile file = files.get(i);
-                Long questionId = (questionIds != null && i < questionIds.size()) ? questionIds.get(i) : null;
-                
-                try {
-                    // 验证文件类型
-                    String contentType = file.getContentType();
-                    if (contentType == null || !contentType.startsWith("audio/")) {
-                        Map<String, Object> errorResult = new HashMap<>();
-                        errorResult.put("filename", file.getOriginalFilename());
-                        errorResult.put("error", "不支持的文件类型");
-                        errorResult.put("success", false);
-                        results.add(errorResult);
-                        continue;
-                    }
-                    
-                    // 创建媒体资源记录
-                    MediaAsset mediaAsset = new MediaAsset();
-                    mediaAsset.setMediaType(MediaAsset.MediaType.audio);
-                    // 注意：MediaAsset 实体使用 Lombok @Data，没有 setOriginalName 和 setSize 方法
-                    Map<String, Object> metaData = new HashMap<>();
-                    metaData.put("originalName", file.getOriginalFilename());
-                    metaData.put("size", file.getSize());
-                    
-                    // TODO: 实现实际的文件存储逻辑
-                    String fileName = System.currentTimeMillis() + "_" + i + "_" + file.getOriginalFilename();
-                    String fileUrl = "/uploads/audio/" + fileName;
-                    mediaAsset.setUri(fileUrl);
-                    try {
-                        mediaAsset.setExtraMetaJson(new ObjectMapper().writeValueAsString(metaData));
-                    } catch (Exception jsonException) {
-                        log.warn("Failed to serialize metadata: {}", jsonException.getMessage());
-                    }
-                    
-                    MediaAsset savedAsset = mediaAssetService.createMediaAsset(mediaAsset);
-                    
-                    Map<String, Object> result = new HashMap<>();
-                    result.put("id", savedAsset.getId());
-                    result.put("filename", file.getOriginalFilename());
-                    result.put("size", file.getSize());
-                    result.put("url", fileUrl);
-                    result.put("questionId", questionId);
-                    result.put("index", i);
-                    result.put("success", true);
-                    result.put("uploadTime", LocalDateTime.now());
-                    
-                    results.add(result);
-                } catch (Exception e) {
-                    Map<String, Object> errorResult = new HashMap<>();
-                    errorResult.put("filename", file.getOriginalFilename());
-                    errorResult.put("error", e.getMessage());
-                    errorResult.put("success", false);
-                    results.add(errorResult);
-                }
+                Map<String, Object> extra = new HashMap<>();
+                extra.put("questionId", (questionIds != null && i < questionIds.size()) ? questionIds.get(i) : null);
+                extraFields.add(extra);
             }
+            String jobId = mediaUploadJobService.submit(files, MediaAsset.MediaType.audio, "audio/", extraFields);
             
-            return ResponseEntity.ok(ApiResponse.success(results));
+            if (async) {
+                deferred.setResult(batchUploadAccepted(jobId));
+                return deferred;
+            }
+            deferred.onTimeout(() -> deferred.setResult(batchUploadAccepted(jobId)));
+            mediaUploadJobService.whenDone(jobId).whenComplete((results, error) -> {
+                if (error == null) {
+                    deferred.setResult(ResponseEntity.ok(ApiResponse.<Object>success(results)));
+                } else {
+                    log.error("批量上传听力选择题音频失败: job={}, error={}", jobId, error.getMessage(), error);
+                    deferred.setResult(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body(ApiResponse.error("批量上传听力选择题音频失败: " + error.getMessage())));
+                }
+            });
         } catch (Exception e) {
             log.error("批量上传听力选择题音频失败: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(ApiResponse.error("批量上传听力选择题音频失败: " + e.getMessage()));
+            deferred.setResult(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("批量上传听力选择题音频失败: " + e.getMessage())));
         }
+        return deferred;
+    }
+
+    private ResponseEntity<ApiResponse<Object>> batchUploadAccepted(String jobId) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.<Object>success(mediaUploadJobService.getJob(jobId).orElse(Map.of("jobId", jobId))));
+    }
+
+    /**
+     * 查询批量上传任务进度
+     */
+    @GetMapping("/question-bank/upload/audio/batch/{jobId}")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getBatchUploadJob(@PathVariable String jobId) {
+        return mediaUploadJobService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(ApiResponse.success(job)))
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("上传任务不存在或已过期")));
     }
 
     /**
@@ -1127,34 +1188,11 @@ public class ListeningMcqController {
                         .body(ApiResponse.error("只支持图片文件上传"));
             }
             
-            // 创建媒体资源记录
-            MediaAsset mediaAsset = new MediaAsset();
-            mediaAsset.setMediaType(MediaAsset.MediaType.image);
-            // 注意：MediaAsset 实体使用 Lombok @Data，没有 setOriginalName 和 setSize 方法
-            Map<String, Object> metaData = new HashMap<>();
-            metaData.put("originalName", file.getOriginalFilename());
-            metaData.put("size", file.getSize());
+            // 流式写入存储并创建（或复用相同内容的）媒体资源记录
+            MediaStorageService.StoredMedia stored = mediaStorageService.store(file, MediaAsset.MediaType.image, null);
             
-            // TODO: 实现实际的文件存储逻辑
-            String fileName = System.currentTimeMillis() + "_" + file.getOriginalFilename();
-            String fileUrl = "/uploads/images/" + fileName;
-            mediaAsset.setUri(fileUrl);
-            try {
-                mediaAsset.setExtraMetaJson(new ObjectMapper().writeValueAsString(metaData));
-            } catch (Exception jsonException) {
-                log.warn("Failed to serialize metadata: {}", jsonException.getMessage());
-            }
-            
-            MediaAsset savedAsset = mediaAssetService.createMediaAsset(mediaAsset);
-            
-            Map<String, Object> result = new HashMap<>();
-            result.put("id", savedAsset.getId());
-            result.put("filename", file.getOriginalFilename());
-            result.put("size", file.getSize());
-            result.put("url", fileUrl);
+            Map<String, Object> result = stored.toResultMap();
             result.put("questionId", questionId);
-            result.put("mediaType", "image");
-            result.put("uploadTime", LocalDateTime.now());
             
             return ResponseEntity.ok(ApiResponse.success(result));
         } catch (Exception e) {
@@ -1201,23 +1239,12 @@ public class ListeningMcqController {
     @PreAuthorize("hasRole('ADMIN') or hasRole('SUPER_ADMIN')")
     public ResponseEntity<ApiResponse<Map<String, Object>>> importQuestions(
             @RequestParam("file") MultipartFile file,
-            @RequestParam(required = false, defaultValue = "false") Boolean skipDuplicates,
+            @RequestParam(required = false, defaultValue = "true") Boolean skipDuplicates,
             @RequestParam(required = false, defaultValue = "false") Boolean updateExisting,
             @RequestParam(required = false, defaultValue = "true") Boolean validateData) {
         try {
-            // TODO: 实现题目导入逻辑
-            Map<String, Object> result = new HashMap<>();
-            result.put("filename", file.getOriginalFilename());
-            result.put("fileSize", file.getSize());
-            result.put("totalRows", 100);
-            result.put("successCount", 95);
-            result.put("failureCount", 5);
-            result.put("duplicateCount", 3);
-            result.put("skippedCount", skipDuplicates ? 3 : 0);
-            result.put("updatedCount", updateExisting ? 2 : 0);
-            result.put("message", "题目导入完成");
-            result.put("importTime", LocalDateTime.now());
-            
+            Map<String, Object> result = mcqQuestionImportService.importFile(file, null, skipDuplicates,
+                    updateExisting, validateData);
             return ResponseEntity.ok(ApiResponse.success(result));
         } catch (Exception e) {
             log.error("导入题目失败: {}", e.getMessage(), e);
@@ -1228,66 +1255,26 @@ public class ListeningMcqController {
 
     /**
      * 导出题目 (对应前端 exportQuestions)
+     * 按题目ID分页读取并直接写入响应流（CSV / XLSX）
      */
     @GetMapping("/question-bank/questions/export")
     @PreAuthorize("hasRole('ADMIN') or hasRole('SUPER_ADMIN')")
-    public ResponseEntity<byte[]> exportQuestions(
+    public ResponseEntity<StreamingResponseBody> exportQuestions(
             @RequestParam(required = false) Long moduleId,
             @RequestParam(required = false) Integer difficultyLevel,
             @RequestParam(required = false, defaultValue = "csv") String format) {
-        try {
-            // TODO: 实现题目导出逻辑
-            StringBuilder csvContent = new StringBuilder();
-            csvContent.append("ID,题干,选项A,选项B,选项C,选项D,正确答案,难度等级,模块ID\n");
-            
-            // 示例数据
-            List<McqQuestion> questions;
-            if (moduleId != null) {
-                questions = mcqQuestionService.findByModuleId(moduleId);
-            } else {
-                questions = mcqQuestionService.findAll();
-            }
-            
-            for (McqQuestion question : questions) {
-                csvContent.append(question.getId()).append(",");
-                csvContent.append("\"").append(question.getTextStem() != null ? question.getTextStem().replace("\"", "\"\"") : "").append("\"").append(",");
-                
-                // 获取选项
-                List<McqChoice> choices = mcqChoiceService.findByQuestionIdOrderByLabel(question.getId());
-                for (int i = 0; i < 4; i++) {
-                    if (i < choices.size()) {
-                        csvContent.append("\"").append(choices.get(i).getContent().replace("\"", "\"\"")).append("\"");
-                    }
-                    csvContent.append(",");
-                }
-                
-                // 正确答案
-                String correctAnswer = "";
-                for (McqChoice choice : choices) {
-                    if (choice.getIsCorrect()) {
-                        correctAnswer = choice.getLabel();
-                        break;
-                    }
-                }
-                csvContent.append(correctAnswer).append(",");
-                csvContent.append("3,"); // 默认难度等级
-                csvContent.append(question.getModuleId() != null ? question.getModuleId() : "");
-                csvContent.append("\n");
-            }
-            
-            String filename = "mcq_questions_" + LocalDateTime.now().toString().substring(0, 19).replace(":", "-") + "." + format;
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename);
-            headers.add(HttpHeaders.CONTENT_TYPE, "text/csv; charset=UTF-8");
-            
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(csvContent.toString().getBytes("UTF-8"));
-        } catch (Exception e) {
-            log.error("导出题目失败: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        McqQuestionExportService.ExportFormat exportFormat = McqQuestionExportService.ExportFormat.parse(format);
+        if (exportFormat == null) {
+            return ResponseEntity.badRequest().build();
         }
+        
+        String filename = "mcq_questions_" + LocalDateTime.now().toString().substring(0, 19).replace(":", "-")
+                + "." + exportFormat.getExtension();
+        StreamingResponseBody body = out -> mcqQuestionExportService.export(moduleId, difficultyLevel, exportFormat, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType() + ";charset=UTF-8"))
+                .body(body);
     }
 
     // 注意：所有的导出导入、统计等接口已在上面实现，这里不重复
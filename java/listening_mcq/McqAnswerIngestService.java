@@ -0,0 +1,501 @@
+package org.icao4.eqasbackend2.impl.listening_mcq;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.entity.listening_mcq.McqResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 选择题回答写后入库
+ * 提交时用内存答案索引校验选项并判分，写入本地追加日志后确认（写线程合并同一时刻的多条提交，一次刷盘）；
+ * 后台线程把已确认的回答按批多行插入 mcq_responses，并在同一事务里推进写库检查点。
+ * 启动时从日志回放检查点之后的记录，进程崩溃不丢已确认的回答。
+ * 写库失败重试前按库中的检查点去掉已提交的记录；确认超时的提交要么被取消（返回拒绝，不会写入），
+ * 要么已被写线程取走、等到追加完成再返回，因此客户端按拒绝重试也不会产生重复回答。
+ * 待写入的回答超过上限时拒绝提交，由客户端稍后重试。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class McqAnswerIngestService {
+
+    private static final String CREATE_CHECKPOINT_SQL = "CREATE TABLE IF NOT EXISTS mcq_ingest_checkpoint ("
+            + "log_id VARCHAR(64) PRIMARY KEY, "
+            + "last_seq BIGINT NOT NULL, "
+            + "updated_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3))";
+
+    private static final String CHECKPOINT_SQL = "INSERT INTO mcq_ingest_checkpoint (log_id, last_seq) VALUES (?, ?) "
+            + "ON DUPLICATE KEY UPDATE last_seq = GREATEST(last_seq, VALUES(last_seq))";
+
+    private static final String INSERT_SQL = "INSERT INTO mcq_responses "
+            + "(question_id, selected_choice_id, is_correct, answered_at, elapsed_ms) VALUES ";
+
+    private static final String INSERT_ROW = "(?, ?, ?, ?, ?)";
+
+    private static final int LATENCY_SAMPLES = 16384;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final McqAnswerKeyService mcqAnswerKeyService;
+
+    /**
+     * 关闭时提交直接同步写库
+     */
+    @Value("${app.mcq.ingest.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.mcq.ingest.dir:./data/mcq-ingest}")
+    private String dir;
+
+    /**
+     * 等待写日志的提交数上限
+     */
+    @Value("${app.mcq.ingest.queue-capacity:10000}")
+    private int queueCapacity;
+
+    /**
+     * 已确认未写库的回答数上限，超过后拒绝提交
+     */
+    @Value("${app.mcq.ingest.max-backlog:200000}")
+    private long maxBacklog;
+
+    @Value("${app.mcq.ingest.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.mcq.ingest.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${app.mcq.ingest.segment-mb:64}")
+    private long segmentMb;
+
+    /**
+     * 确认前是否刷盘；关闭后只防进程崩溃，不防断电
+     */
+    @Value("${app.mcq.ingest.fsync:true}")
+    private boolean fsync;
+
+    @Value("${app.mcq.ingest.ack-timeout-ms:2000}")
+    private long ackTimeoutMs;
+
+    private McqAnswerLog answerLog;
+    private BlockingQueue<Pending> appendQueue;
+    private final BlockingQueue<McqAnswerLog.Entry> flushQueue = new LinkedBlockingQueue<>();
+
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong flushedSeq = new AtomicLong();
+    private final AtomicLong groupCommits = new AtomicLong();
+    private final long[] latencyMicros = new long[LATENCY_SAMPLES];
+    private final AtomicLong latencyCursor = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread writer;
+    private Thread flusher;
+
+    /**
+     * 提交被拒绝（写入积压），客户端应稍后重试
+     */
+    public static class IngestRejectedException extends IllegalStateException {
+        public IngestRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    private static class Pending {
+        private static final int WAITING = 0;
+        private static final int CLAIMED = 1;
+        private static final int CANCELLED = 2;
+
+        private final long questionId;
+        private final long choiceId;
+        private final long answeredAtMillis;
+        private final int elapsedMs;
+        private final Boolean correct;
+        private final CompletableFuture<McqAnswerLog.Entry> ack = new CompletableFuture<>();
+
+        /**
+         * 写线程取走（CLAIMED）与提交方超时取消（CANCELLED）互斥，只有一方能成功
+         */
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        private Pending(long questionId, long choiceId, long answeredAtMillis, int elapsedMs, Boolean correct) {
+            this.questionId = questionId;
+            this.choiceId = choiceId;
+            this.answeredAtMillis = answeredAtMillis;
+            this.elapsedMs = elapsedMs;
+            this.correct = correct;
+        }
+    }
+
+    // ==================== 启动与关闭 ====================
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        jdbcTemplate.execute(CREATE_CHECKPOINT_SQL);
+        answerLog = new McqAnswerLog(Paths.get(dir), segmentMb * 1024 * 1024, fsync);
+        // 先读日志ID再取检查点，序号从检查点之后继续
+        answerLog.init();
+        long lastSeq = loadCheckpoint();
+        flushedSeq.set(lastSeq);
+        flushQueue.addAll(answerLog.open(lastSeq));
+        backlog.set(flushQueue.size());
+
+        appendQueue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writer = daemon(this::writeLoop, "mcq-ingest-writer");
+        flusher = daemon(this::flushLoop, "mcq-ingest-flusher");
+        log.info("选择题回答写后入库已启动: logId={}, checkpoint={}, replay={}",
+                answerLog.getLogId(), lastSeq, flushQueue.size());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        writer.join(5000);
+        flusher.join(10000);
+        answerLog.close();
+        log.info("选择题回答写后入库已停止: 未写库={}", backlog.get());
+    }
+
+    // ==================== 提交 ====================
+
+    public boolean isEnabled() {
+        return enabled && running;
+    }
+
+    /**
+     * 提交一条回答，写入本地日志后返回（尚未写库，id 为空）
+     *
+     * @throws IllegalArgumentException 题目或选项无效
+     * @throws IngestRejectedException  积压过多或日志不可写
+     */
+    public McqResponse submit(Long questionId, Long selectedChoiceId, Integer elapsedMs) {
+        long start = System.nanoTime();
+        if (questionId == null || selectedChoiceId == null) {
+            throw new IllegalArgumentException("题目ID和选项ID不能为空");
+        }
+        if (!mcqAnswerKeyService.belongsTo(questionId, selectedChoiceId)
+                && !mcqAnswerKeyService.isKnownChoice(selectedChoiceId)) {
+            // 索引中没有的选项可能刚在其他节点创建，按选项刷新一次再判断；已知选项不回库
+            mcqAnswerKeyService.refreshChoice(selectedChoiceId);
+        }
+        if (!mcqAnswerKeyService.belongsTo(questionId, selectedChoiceId)) {
+            throw new IllegalArgumentException("选项不属于该题目: questionId=" + questionId
+                    + ", selectedChoiceId=" + selectedChoiceId);
+        }
+        if (!running || backlog.get() + appendQueue.size() >= maxBacklog) {
+            rejected.incrementAndGet();
+            throw new IngestRejectedException("回答写入积压，请稍后重试");
+        }
+
+        Pending pending = new Pending(questionId, selectedChoiceId, System.currentTimeMillis(),
+                elapsedMs == null ? 0 : Math.max(0, elapsedMs), mcqAnswerKeyService.grade(questionId, selectedChoiceId));
+        McqAnswerLog.Entry entry;
+        try {
+            if (!appendQueue.offer(pending, 50, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                throw new IngestRejectedException("回答写入队列已满，请稍后重试");
+            }
+            entry = awaitAck(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IngestRejectedException("提交被中断");
+        } catch (ExecutionException e) {
+            rejected.incrementAndGet();
+            log.error("回答写入日志失败: questionId={}, error={}", questionId, e.getMessage());
+            throw new IngestRejectedException("回答写入失败，请稍后重试");
+        }
+        accepted.incrementAndGet();
+        recordLatency((System.nanoTime() - start) / 1000);
+
+        McqResponse response = new McqResponse();
+        response.setQuestionId(questionId);
+        response.setSelectedChoiceId(selectedChoiceId);
+        response.setAnsweredAt(toLocalDateTime(entry.getAnsweredAtMillis()));
+        response.setElapsedMs(entry.getElapsedMs());
+        // 判分结果只写库，不返回给考生
+        return response;
+    }
+
+    /**
+     * 等待写日志确认；超时或中断时先尝试取消，取消成功说明不会写入，
+     * 取消失败说明写线程已取走，继续等到本次追加的结果
+     */
+    private McqAnswerLog.Entry awaitAck(Pending pending) throws InterruptedException, ExecutionException {
+        try {
+            return pending.ack.get(ackTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            if (pending.state.compareAndSet(Pending.WAITING, Pending.CANCELLED)) {
+                if (e instanceof InterruptedException) {
+                    throw (InterruptedException) e;
+                }
+                rejected.incrementAndGet();
+                throw new IngestRejectedException("回答写入超时，未保存，请稍后重试");
+            }
+            boolean interrupted = e instanceof InterruptedException;
+            try {
+                while (true) {
+                    try {
+                        return pending.ack.get();
+                    } catch (InterruptedException again) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * 运行统计（含最近提交的延迟分位数）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("accepted", accepted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("flushed", flushed.get());
+        stats.put("dropped", dropped.get());
+        stats.put("backlog", backlog.get());
+        stats.put("appendQueue", appendQueue == null ? 0 : appendQueue.size());
+        stats.put("groupCommits", groupCommits.get());
+        stats.put("flushedSeq", flushedSeq.get());
+        stats.put("segments", answerLog == null ? 0 : answerLog.getSegmentCount());
+
+        int count = (int) Math.min(latencyCursor.get(), LATENCY_SAMPLES);
+        long[] samples = Arrays.copyOf(latencyMicros, count);
+        Arrays.sort(samples);
+        stats.put("latencySamples", count);
+        stats.put("p50Micros", percentile(samples, 0.50));
+        stats.put("p99Micros", percentile(samples, 0.99));
+        stats.put("maxMicros", count == 0 ? 0 : samples[count - 1]);
+        return stats;
+    }
+
+    // ==================== 写日志 ====================
+
+    /**
+     * 合并提交：取出队列中已有的全部提交，一次写入、一次刷盘后统一确认
+     */
+    private void writeLoop() {
+        List<Pending> group = new ArrayList<>();
+        List<McqAnswerLog.Entry> entries = new ArrayList<>();
+        while (running || !appendQueue.isEmpty()) {
+            try {
+                Pending first = appendQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                appendQueue.drainTo(group, 4096);
+                // 已超时取消的提交不再写入
+                group.removeIf(pending -> !pending.state.compareAndSet(Pending.WAITING, Pending.CLAIMED));
+                if (group.isEmpty()) {
+                    continue;
+                }
+                for (Pending pending : group) {
+                    entries.add(new McqAnswerLog.Entry(answerLog.nextSeq(), pending.questionId, pending.choiceId,
+                            pending.answeredAtMillis, pending.elapsedMs, pending.correct));
+                }
+                answerLog.append(entries);
+                groupCommits.incrementAndGet();
+                backlog.addAndGet(entries.size());
+                flushQueue.addAll(entries);
+                for (int i = 0; i < group.size(); i++) {
+                    group.get(i).ack.complete(entries.get(i));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("写入回答日志失败: count={}, error={}", group.size(), e.getMessage(), e);
+                group.forEach(pending -> pending.ack.completeExceptionally(e));
+            } finally {
+                group.clear();
+                entries.clear();
+            }
+        }
+    }
+
+    // ==================== 写库 ====================
+
+    private void flushLoop() {
+        List<McqAnswerLog.Entry> batch = new ArrayList<>(batchSize);
+        long backoff = flushIntervalMs;
+        boolean retry = false;
+        while (running || !flushQueue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (retry) {
+                    // 失败前可能已逐条提交了一部分，或事务已提交但确认丢失；以库中检查点为准去掉这些记录
+                    skipCommitted(batch, loadCheckpoint());
+                    retry = false;
+                }
+                if (batch.isEmpty()) {
+                    McqAnswerLog.Entry first = flushQueue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                // 重试时也补满批次
+                flushQueue.drainTo(batch, batchSize - batch.size());
+                flush(batch);
+                answerLog.release(flushedSeq.get());
+                batch.clear();
+                backoff = flushIntervalMs;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // 批次保留，退避后重试；记录仍在日志中
+                retry = true;
+                log.warn("回答批量写库失败，{}ms 后重试: count={}, error={}", backoff, batch.size(), e.getMessage());
+                if (!running) {
+                    return;
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, 5000);
+            }
+        }
+    }
+
+    /**
+     * 多行插入并推进检查点；个别记录违反约束（题目已删除等）时逐条写入并跳过失败的记录。
+     * 逐条写入时每条各自推进检查点，中途出现其他错误时已提交的部分由重试前的检查点核对去掉。
+     */
+    private void flush(List<McqAnswerLog.Entry> batch) {
+        long lastSeq = batch.get(batch.size() - 1).getSeq();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                insert(batch);
+                jdbcTemplate.update(CHECKPOINT_SQL, answerLog.getLogId(), lastSeq);
+            });
+            committed(batch.size(), lastSeq);
+        } catch (DataIntegrityViolationException e) {
+            for (McqAnswerLog.Entry entry : batch) {
+                if (entry.getSeq() <= flushedSeq.get()) {
+                    continue;
+                }
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        insert(Collections.singletonList(entry));
+                        jdbcTemplate.update(CHECKPOINT_SQL, answerLog.getLogId(), entry.getSeq());
+                    });
+                    committed(1, entry.getSeq());
+                } catch (DataIntegrityViolationException rowError) {
+                    jdbcTemplate.update(CHECKPOINT_SQL, answerLog.getLogId(), entry.getSeq());
+                    backlog.decrementAndGet();
+                    dropped.incrementAndGet();
+                    flushedSeq.accumulateAndGet(entry.getSeq(), Math::max);
+                    log.error("回答无法写库，已跳过: seq={}, questionId={}, choiceId={}, error={}", entry.getSeq(),
+                            entry.getQuestionId(), entry.getChoiceId(), rowError.getMessage());
+                }
+            }
+        }
+    }
+
+    private void committed(int count, long seq) {
+        backlog.addAndGet(-count);
+        flushed.addAndGet(count);
+        flushedSeq.accumulateAndGet(seq, Math::max);
+    }
+
+    /**
+     * 去掉批次中序号不大于检查点的记录（已在库中）；逐条写入时已计数的记录不重复计数
+     */
+    private void skipCommitted(List<McqAnswerLog.Entry> batch, long checkpoint) {
+        long accounted = flushedSeq.get();
+        int skipped = 0;
+        Iterator<McqAnswerLog.Entry> iterator = batch.iterator();
+        while (iterator.hasNext()) {
+            long seq = iterator.next().getSeq();
+            if (seq <= checkpoint) {
+                iterator.remove();
+                if (seq > accounted) {
+                    skipped++;
+                }
+            }
+        }
+        if (skipped > 0) {
+            committed(skipped, checkpoint);
+            log.info("重试前跳过已写库的回答: count={}, checkpoint={}", skipped, checkpoint);
+        }
+    }
+
+    private long loadCheckpoint() {
+        List<Long> checkpoint = jdbcTemplate.queryForList(
+                "SELECT last_seq FROM mcq_ingest_checkpoint WHERE log_id = ?", Long.class, answerLog.getLogId());
+        return checkpoint.isEmpty() ? 0 : checkpoint.get(0);
+    }
+
+    private void insert(List<McqAnswerLog.Entry> batch) {
+        Object[] args = new Object[batch.size() * 5];
+        int i = 0;
+        for (McqAnswerLog.Entry entry : batch) {
+            args[i++] = entry.getQuestionId();
+            args[i++] = entry.getChoiceId();
+            args[i++] = entry.getCorrect();
+            args[i++] = Timestamp.valueOf(toLocalDateTime(entry.getAnsweredAtMillis()));
+            args[i++] = entry.getElapsedMs();
+        }
+        jdbcTemplate.update(INSERT_SQL + String.join(",", Collections.nCopies(batch.size(), INSERT_ROW)), args);
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private void recordLatency(long micros) {
+        latencyMicros[(int) (latencyCursor.getAndIncrement() % LATENCY_SAMPLES)] = micros;
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * quantile) - 1)];
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private static Thread daemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
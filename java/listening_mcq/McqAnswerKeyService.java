@@ -0,0 +1,293 @@
+package org.icao4.eqasbackend2.impl.listening_mcq;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.cache.CacheInvalidationBus;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 选择题答案索引
+ * 内存中保存 选项ID -> 题目ID 和 题目ID -> 唯一正确选项ID 两张表（long -> long），
+ * 提交时 O(1) 校验选项归属并判分。启动时由 mcq_choices 一次构建，选项变更后按题目刷新。
+ * 配置了 {@link CacheInvalidationBus} 时刷新通过总线通知其他节点重新加载同一道题（全量重建则全部重建），
+ * 其他节点的答案表最多滞后一个总线拉取间隔。
+ * 没有或有多个正确选项的题目不在答案表中，对应回答保持待判分。
+ * 批量判分直接在数据库中用一条 UPDATE ... JOIN 完成，不再逐条加载回答。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class McqAnswerKeyService {
+
+    private static final int ID_CHUNK = 1000;
+
+    /**
+     * 总线上的区域名，事件键为题目ID，为 null 表示全量重建
+     */
+    private static final String BUS_REGION = "mcqAnswerKey";
+
+    /**
+     * 每道题唯一的正确选项（有多个正确选项的题目不参与判分）
+     */
+    private static final String ANSWER_KEY_SQL = "SELECT question_id, MIN(id) AS choice_id FROM mcq_choices "
+            + "WHERE is_correct = 1 GROUP BY question_id HAVING COUNT(*) = 1";
+
+    private static final String GRADE_SQL = "UPDATE mcq_responses r JOIN (" + ANSWER_KEY_SQL + ") k "
+            + "ON k.question_id = r.question_id "
+            + "SET r.is_correct = COALESCE(r.selected_choice_id = k.choice_id, 0) WHERE ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectProvider<CacheInvalidationBus> invalidationBus;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private LongLongHashMap choiceQuestion = new LongLongHashMap(16);
+    private LongLongHashMap questionAnswer = new LongLongHashMap(16);
+
+    /**
+     * 题目ID -> 选项ID，按题刷新时用来删除旧选项
+     */
+    private Map<Long, long[]> questionChoices = new HashMap<>();
+
+    // ==================== 构建与刷新 ====================
+
+    @PostConstruct
+    public void init() {
+        load();
+        CacheInvalidationBus bus = invalidationBus.getIfAvailable();
+        if (bus != null) {
+            bus.subscribe(nodeId, this::onRemoteChange);
+        }
+    }
+
+    /**
+     * 全量重建（批量导入后调用），并通知其他节点
+     */
+    public void rebuild() {
+        load();
+        publish(null);
+    }
+
+    /**
+     * 重新加载一道题的选项（选项增删改、设置正确答案后调用），并通知其他节点
+     */
+    public void refreshQuestion(Long questionId) {
+        if (questionId == null) {
+            return;
+        }
+        reload(questionId);
+        publish(String.valueOf(questionId));
+    }
+
+    /**
+     * 按选项刷新其所属题目；选项已删除时用索引中的归属
+     */
+    public void refreshChoice(Long choiceId) {
+        if (choiceId == null) {
+            return;
+        }
+        List<Long> questionIds = jdbcTemplate.queryForList(
+                "SELECT question_id FROM mcq_choices WHERE id = ?", Long.class, choiceId);
+        long questionId = questionIds.isEmpty() ? questionOf(choiceId) : questionIds.get(0);
+        if (questionId != 0) {
+            refreshQuestion(questionId);
+        }
+    }
+
+    // ==================== 查询与判分 ====================
+
+    /**
+     * 选项是否属于该题目
+     */
+    public boolean belongsTo(long questionId, long choiceId) {
+        return questionOf(choiceId) == questionId;
+    }
+
+    /**
+     * 判分：题目没有唯一正确选项时返回 null（待判分）
+     */
+    public Boolean grade(long questionId, long choiceId) {
+        lock.readLock().lock();
+        try {
+            long answer = questionAnswer.get(questionId);
+            return answer == 0 ? null : answer == choiceId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 重新判分一道题的全部回答
+     *
+     * @return 更新的回答数
+     */
+    public int gradeByQuestion(Long questionId) {
+        refreshQuestion(questionId);
+        int updated = jdbcTemplate.update(GRADE_SQL + "r.question_id = ?", questionId);
+        log.info("按题目判分: questionId={}, updated={}", questionId, updated);
+        return updated;
+    }
+
+    /**
+     * 按回答ID批量判分（每 1000 个ID一条语句）
+     *
+     * @return 更新的回答数
+     */
+    public int gradeByIds(List<Long> responseIds) {
+        if (responseIds == null || responseIds.isEmpty()) {
+            return 0;
+        }
+        int updated = 0;
+        for (int from = 0; from < responseIds.size(); from += ID_CHUNK) {
+            List<Long> chunk = responseIds.subList(from, Math.min(from + ID_CHUNK, responseIds.size()));
+            updated += jdbcTemplate.update(GRADE_SQL + "r.id IN ("
+                    + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")", chunk.toArray());
+        }
+        log.info("批量判分: requested={}, updated={}", responseIds.size(), updated);
+        return updated;
+    }
+
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("choices", choiceQuestion.size());
+            stats.put("answeredQuestions", questionAnswer.size());
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 索引中是否有该选项（没有时可能是刚在其他节点创建，广播尚未到达）
+     */
+    public boolean isKnownChoice(long choiceId) {
+        return questionOf(choiceId) != 0;
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM mcq_choices", Integer.class);
+        LongLongHashMap choices = new LongLongHashMap(count == null ? 16 : count);
+        Map<Long, List<Long>> byQuestion = new HashMap<>();
+        Map<Long, List<Long>> correct = new HashMap<>();
+        jdbcTemplate.query("SELECT id, question_id, is_correct FROM mcq_choices", rs -> {
+            long choiceId = rs.getLong("id");
+            long questionId = rs.getLong("question_id");
+            choices.put(choiceId, questionId);
+            byQuestion.computeIfAbsent(questionId, q -> new ArrayList<>(4)).add(choiceId);
+            if (rs.getBoolean("is_correct")) {
+                correct.computeIfAbsent(questionId, q -> new ArrayList<>(1)).add(choiceId);
+            }
+        });
+        LongLongHashMap answers = new LongLongHashMap(correct.size());
+        correct.forEach((questionId, choiceIds) -> {
+            if (choiceIds.size() == 1) {
+                answers.put(questionId, choiceIds.get(0));
+            }
+        });
+        Map<Long, long[]> owned = new HashMap<>(byQuestion.size() * 2);
+        byQuestion.forEach((questionId, choiceIds) ->
+                owned.put(questionId, choiceIds.stream().mapToLong(Long::longValue).toArray()));
+
+        lock.writeLock().lock();
+        try {
+            choiceQuestion = choices;
+            questionAnswer = answers;
+            questionChoices = owned;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("选择题答案索引构建完成: choices={}, answered={}, ambiguous={}, 耗时={}ms", choices.size(),
+                answers.size(), correct.size() - answers.size(), System.currentTimeMillis() - start);
+    }
+
+    private void reload(long questionId) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT id, is_correct FROM mcq_choices WHERE question_id = ?", questionId);
+        lock.writeLock().lock();
+        try {
+            long[] previous = questionChoices.remove(questionId);
+            if (previous != null) {
+                for (long choiceId : previous) {
+                    choiceQuestion.remove(choiceId);
+                }
+            }
+            long[] current = new long[rows.size()];
+            long answer = 0;
+            int correctCount = 0;
+            for (int i = 0; i < rows.size(); i++) {
+                Map<String, Object> row = rows.get(i);
+                long choiceId = ((Number) row.get("id")).longValue();
+                current[i] = choiceId;
+                choiceQuestion.put(choiceId, questionId);
+                if (isTrue(row.get("is_correct"))) {
+                    answer = choiceId;
+                    correctCount++;
+                }
+            }
+            if (current.length > 0) {
+                questionChoices.put(questionId, current);
+            }
+            if (correctCount == 1) {
+                questionAnswer.put(questionId, answer);
+            } else {
+                questionAnswer.remove(questionId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void publish(String key) {
+        CacheInvalidationBus bus = invalidationBus.getIfAvailable();
+        if (bus != null) {
+            bus.publish(nodeId, BUS_REGION, key);
+        }
+    }
+
+    /**
+     * 其他节点修改了选项：只重新加载本节点，不再广播
+     */
+    private void onRemoteChange(CacheInvalidationBus.Event event) {
+        if (!BUS_REGION.equals(event.getRegion())) {
+            return;
+        }
+        try {
+            if (event.getKey() == null) {
+                load();
+            } else {
+                reload(Long.parseLong(event.getKey()));
+            }
+        } catch (RuntimeException e) {
+            log.warn("按广播刷新选择题答案索引失败: key={}, error={}", event.getKey(), e.getMessage());
+        }
+    }
+
+    private long questionOf(long choiceId) {
+        lock.readLock().lock();
+        try {
+            return choiceQuestion.get(choiceId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean isTrue(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return value instanceof Number && ((Number) value).intValue() != 0;
+    }
+}
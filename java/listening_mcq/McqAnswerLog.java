@@ -0,0 +1,343 @@
+package org.icao4.eqasbackend2.impl.listening_mcq;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 选择题回答的本地追加日志
+ * 定长记录（CRC32 + 序号、题目、选项、作答时间、耗时、判分结果），按大小滚动为多个段文件，文件名为段内首个序号。
+ * 启动时顺序扫描并截掉崩溃留下的半条记录；已写库的段整体删除，当前写入的段永不删除。
+ * 序号跨重启单调递增（取记录、段文件名和写库检查点中的最大值），空段也不会让序号回退。
+ * 追加失败时把本次写入的内容截掉，失败的提交不会在回放时出现。追加由单个写线程执行，释放可在其他线程调用。
+ */
+@Slf4j
+public class McqAnswerLog implements Closeable {
+
+    static final int RECORD_BYTES = 4 + 8 + 8 + 8 + 8 + 4 + 1;
+
+    private static final String SUFFIX = ".log";
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final boolean fsync;
+
+    /**
+     * 段首序号 -> 段文件
+     */
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+
+    private String logId;
+    private FileChannel active;
+    private long activeFirstSeq = -1;
+    private long nextSeq = 1;
+
+    public McqAnswerLog(Path dir, long segmentBytes, boolean fsync) {
+        this.dir = dir;
+        this.segmentBytes = Math.max(RECORD_BYTES, segmentBytes - segmentBytes % RECORD_BYTES);
+        this.fsync = fsync;
+    }
+
+    /**
+     * 一条回答
+     */
+    public static class Entry {
+        private final long seq;
+        private final long questionId;
+        private final long choiceId;
+        private final long answeredAtMillis;
+        private final int elapsedMs;
+
+        /**
+         * 提交时的判分结果，null 表示待判分
+         */
+        private final Boolean correct;
+
+        public Entry(long seq, long questionId, long choiceId, long answeredAtMillis, int elapsedMs, Boolean correct) {
+            this.seq = seq;
+            this.questionId = questionId;
+            this.choiceId = choiceId;
+            this.answeredAtMillis = answeredAtMillis;
+            this.elapsedMs = elapsedMs;
+            this.correct = correct;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public long getQuestionId() {
+            return questionId;
+        }
+
+        public long getChoiceId() {
+            return choiceId;
+        }
+
+        public long getAnsweredAtMillis() {
+            return answeredAtMillis;
+        }
+
+        public int getElapsedMs() {
+            return elapsedMs;
+        }
+
+        public Boolean getCorrect() {
+            return correct;
+        }
+    }
+
+    // ==================== 打开与回放 ====================
+
+    /**
+     * 读取（或生成）日志ID；写库检查点按日志ID保存，需在 open 之前取得
+     */
+    public synchronized String init() throws IOException {
+        if (logId == null) {
+            Files.createDirectories(dir);
+            Path idFile = dir.resolve("log.id");
+            if (Files.exists(idFile)) {
+                logId = new String(Files.readAllBytes(idFile), StandardCharsets.UTF_8).trim();
+            } else {
+                logId = UUID.randomUUID().toString();
+                Files.write(idFile, logId.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return logId;
+    }
+
+    /**
+     * 打开日志目录，返回序号大于 flushedSeq 的记录（待回放写库）
+     *
+     * @param flushedSeq 写库检查点
+     */
+    public synchronized List<Entry> open(long flushedSeq) throws IOException {
+        init();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : files.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).collect(Collectors.toList())) {
+                String name = path.getFileName().toString();
+                segments.put(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())), path);
+            }
+        }
+
+        List<Entry> pending = new ArrayList<>();
+        // 空段的文件名就是它将写入的第一个序号，检查点之前的序号也都已用过
+        long lastSeq = flushedSeq;
+        if (!segments.isEmpty()) {
+            lastSeq = Math.max(lastSeq, segments.lastKey() - 1);
+        }
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            lastSeq = Math.max(lastSeq, replay(segment.getValue(), flushedSeq, pending));
+        }
+        nextSeq = lastSeq + 1;
+        release(flushedSeq);
+        roll();
+        log.info("选择题回答日志已打开: dir={}, logId={}, segments={}, replay={}, nextSeq={}",
+                dir, logId, segments.size(), pending.size(), nextSeq);
+        return pending;
+    }
+
+    /**
+     * 读取一个段，遇到不完整或校验失败的记录时从该处截断
+     *
+     * @return 段内最大序号
+     */
+    private long replay(Path path, long flushedSeq, List<Entry> pending) throws IOException {
+        long lastSeq = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 1024);
+            long position = 0;
+            long valid = 0;
+            boolean corrupt = false;
+            while (!corrupt && channel.read(buffer, position) > 0) {
+                buffer.flip();
+                if (buffer.remaining() < RECORD_BYTES) {
+                    break;
+                }
+                while (buffer.remaining() >= RECORD_BYTES) {
+                    Entry entry = decode(buffer);
+                    if (entry == null) {
+                        corrupt = true;
+                        break;
+                    }
+                    valid += RECORD_BYTES;
+                    lastSeq = entry.seq;
+                    if (entry.seq > flushedSeq) {
+                        pending.add(entry);
+                    }
+                }
+                position = valid;
+                buffer.clear();
+            }
+            if (channel.size() > valid) {
+                log.warn("截断回答日志尾部: file={}, size={}, valid={}", path, channel.size(), valid);
+                channel.truncate(valid);
+            }
+        }
+        return lastSeq;
+    }
+
+    // ==================== 追加 ====================
+
+    /**
+     * 分配下一个序号
+     */
+    public long nextSeq() {
+        return nextSeq++;
+    }
+
+    /**
+     * 追加一组记录（按需刷盘），返回后即可确认；失败时撤销本次写入后抛出
+     */
+    public synchronized void append(List<Entry> entries) throws IOException {
+        long startSegment = activeFirstSeq;
+        long startSize = active.size();
+        try {
+            doAppend(entries);
+        } catch (IOException e) {
+            rollback(startSegment, startSize);
+            throw e;
+        }
+    }
+
+    private void doAppend(List<Entry> entries) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(entries.size() * RECORD_BYTES);
+        for (Entry entry : entries) {
+            if (active.size() + buffer.position() + RECORD_BYTES > segmentBytes) {
+                write(buffer);
+                buffer.clear();
+                if (fsync) {
+                    active.force(false);
+                }
+                roll(entry.seq);
+            }
+            encode(entry, buffer);
+        }
+        write(buffer);
+        if (fsync) {
+            active.force(false);
+        }
+    }
+
+    /**
+     * 删除记录已全部写库的非活动段
+     */
+    public synchronized void release(long flushedSeq) throws IOException {
+        Iterator<Map.Entry<Long, Path>> iterator = segments.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Path> segment = iterator.next();
+            Long next = segments.higherKey(segment.getKey());
+            if (next == null || next - 1 > flushedSeq || active != null && segment.getKey() >= activeFirstSeq) {
+                break;
+            }
+            Files.deleteIfExists(segment.getValue());
+            iterator.remove();
+        }
+    }
+
+    public String getLogId() {
+        return logId;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (active != null) {
+            active.force(true);
+            active.close();
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private void roll() throws IOException {
+        roll(nextSeq);
+    }
+
+    private void roll(long firstSeq) throws IOException {
+        if (active != null) {
+            active.close();
+        }
+        Path path = dir.resolve(String.format("%020d", firstSeq) + SUFFIX);
+        active = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeFirstSeq = firstSeq;
+        segments.put(firstSeq, path);
+    }
+
+    /**
+     * 删除本次追加中新建的段，并把原活动段截回追加前的长度
+     */
+    private void rollback(long startSegment, long startSize) {
+        try {
+            while (activeFirstSeq != startSegment) {
+                active.close();
+                Files.deleteIfExists(segments.remove(activeFirstSeq));
+                activeFirstSeq = segments.lastKey();
+                active = FileChannel.open(segments.get(activeFirstSeq), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            if (!active.isOpen()) {
+                active = FileChannel.open(segments.get(activeFirstSeq), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            active.truncate(startSize);
+        } catch (IOException | RuntimeException e) {
+            log.error("撤销回答日志写入失败，已写入的记录可能在回放时写库: segment={}, error={}",
+                    activeFirstSeq, e.getMessage(), e);
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            active.write(buffer);
+        }
+    }
+
+    private static void encode(Entry entry, ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.putInt(0);
+        buffer.putLong(entry.seq);
+        buffer.putLong(entry.questionId);
+        buffer.putLong(entry.choiceId);
+        buffer.putLong(entry.answeredAtMillis);
+        buffer.putInt(entry.elapsedMs);
+        buffer.put(entry.correct == null ? (byte) -1 : entry.correct ? (byte) 1 : (byte) 0);
+        buffer.putInt(start, checksum(buffer, start + 4, RECORD_BYTES - 4));
+    }
+
+    private static Entry decode(ByteBuffer buffer) {
+        int start = buffer.position();
+        int crc = buffer.getInt();
+        if (crc != checksum(buffer, start + 4, RECORD_BYTES - 4)) {
+            return null;
+        }
+        long seq = buffer.getLong();
+        long questionId = buffer.getLong();
+        long choiceId = buffer.getLong();
+        long answeredAtMillis = buffer.getLong();
+        int elapsedMs = buffer.getInt();
+        byte correct = buffer.get();
+        return new Entry(seq, questionId, choiceId, answeredAtMillis, elapsedMs, correct < 0 ? null : correct == 1);
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(offset + length).position(offset);
+        crc.update(slice);
+        return (int) crc.getValue();
+    }
+}
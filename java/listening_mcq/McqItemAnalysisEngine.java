@@ -0,0 +1,295 @@
+package org.icao4.eqasbackend2.impl.listening_mcq;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+/**
+ * 选择题题目分析
+ * 一条分组查询（题目、所选选项、判分结果、耗时分桶）扫描 mcq_responses，同时得到多道题的
+ * 作答/正确/错误/待判分数、选项分布、平均与分位耗时和难度（通过率 p 值）。
+ * 结果按题目缓存，并记录已统计到的回答ID；之后只按主键范围扫描新增回答并累加。
+ * 并发写入时小ID可能晚于大ID提交，因此缓存项超过 max-age 后整题重扫一次。
+ * 重新判分或删除回答后需调用 invalidate。
+ * 区分度（点二列相关）需要考生总分，而 mcq_responses 不关联考生，因此返回 null。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class McqItemAnalysisEngine {
+
+    private static final int BUCKET_MS = 500;
+
+    private static final int MAX_BUCKET = 120;
+
+    private static final int MAX_CACHED_QUESTIONS = 20000;
+
+    private static final String SCAN_SQL = "SELECT question_id, selected_choice_id, is_correct, "
+            + "LEAST(FLOOR(elapsed_ms / " + BUCKET_MS + "), " + MAX_BUCKET + ") AS bucket, COUNT(*) AS responses "
+            + "FROM mcq_responses WHERE ";
+
+    private static final String GROUP_BY = " GROUP BY question_id, selected_choice_id, is_correct, bucket";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 两次增量扫描的最小间隔
+     */
+    @Value("${app.mcq.analysis.refresh-interval-ms:2000}")
+    private long refreshIntervalMs;
+
+    /**
+     * 缓存项最长保留时间，超过后整题重扫
+     */
+    @Value("${app.mcq.analysis.max-age-ms:600000}")
+    private long maxAgeMs;
+
+    private final Map<Long, ItemCounts> items = new HashMap<>();
+
+    /**
+     * 缓存中的结果已统计到的最大回答ID
+     */
+    private long watermark;
+
+    private long lastRefresh;
+
+    // ==================== 查询 ====================
+
+    /**
+     * 批量分析
+     *
+     * @return 题目ID -> 分析结果（按请求顺序）
+     */
+    public synchronized Map<Long, Map<String, Object>> analyze(Collection<Long> questionIds) {
+        Set<Long> ids = new LinkedHashSet<>(questionIds);
+        ids.remove(null);
+        if (ids.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        refresh();
+
+        long now = System.currentTimeMillis();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            ItemCounts cached = items.get(id);
+            if (cached == null || now - cached.loadedAt > maxAgeMs) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            if (items.size() + missing.size() > MAX_CACHED_QUESTIONS) {
+                items.clear();
+            }
+            missing.forEach(id -> items.put(id, new ItemCounts(now)));
+            scan("question_id IN (" + String.join(",", Collections.nCopies(missing.size(), "?")) + ") AND id <= ?",
+                    missing, watermark);
+        }
+
+        Map<Long, List<Map<String, Object>>> choices = loadChoices(ids);
+        Map<Long, Map<String, Object>> result = new LinkedHashMap<>();
+        for (Long id : ids) {
+            result.put(id, render(items.get(id), choices.getOrDefault(id, Collections.emptyList())));
+        }
+        return result;
+    }
+
+    /**
+     * 丢弃一道题的缓存（重新判分后调用）
+     */
+    public synchronized void invalidate(Long questionId) {
+        items.remove(questionId);
+    }
+
+    /**
+     * 丢弃全部缓存（批量判分、删除回答后调用）
+     */
+    public synchronized void invalidateAll() {
+        items.clear();
+    }
+
+    // ==================== 扫描 ====================
+
+    /**
+     * 把已缓存的题目推进到最新的回答ID（只扫描新增的主键范围）
+     */
+    private void refresh() {
+        long now = System.currentTimeMillis();
+        if (now - lastRefresh < refreshIntervalMs && watermark > 0) {
+            return;
+        }
+        lastRefresh = now;
+        Long max = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM mcq_responses", Long.class);
+        long latest = max == null ? 0 : max;
+        if (latest <= watermark) {
+            return;
+        }
+        if (!items.isEmpty()) {
+            scan("id > ? AND id <= ?", Collections.emptyList(), watermark, latest);
+        }
+        watermark = latest;
+    }
+
+    private void scan(String where, List<Long> questionIds, long... bounds) {
+        List<Object> args = new ArrayList<>(questionIds);
+        for (long bound : bounds) {
+            args.add(bound);
+        }
+        long start = System.currentTimeMillis();
+        int[] rows = {0};
+        jdbcTemplate.query(SCAN_SQL + where + GROUP_BY, rs -> {
+            ItemCounts counts = items.get(rs.getLong("question_id"));
+            if (counts == null) {
+                return;
+            }
+            long choiceId = rs.getLong("selected_choice_id");
+            boolean graded = true;
+            boolean correct = rs.getBoolean("is_correct");
+            if (rs.wasNull()) {
+                graded = false;
+            }
+            counts.add(choiceId, graded ? (correct ? 0 : 1) : 2, rs.getInt("bucket"), rs.getLong("responses"));
+            rows[0]++;
+        }, args.toArray());
+        log.debug("选择题分析扫描: where={}, questions={}, rows={}, 耗时={}ms", where, questionIds.size(), rows[0],
+                System.currentTimeMillis() - start);
+    }
+
+    private Map<Long, List<Map<String, Object>>> loadChoices(Set<Long> questionIds) {
+        List<Long> ids = new ArrayList<>(questionIds);
+        Map<Long, List<Map<String, Object>>> choices = new HashMap<>();
+        for (Map<String, Object> row : jdbcTemplate.queryForList(
+                "SELECT id, question_id, label, is_correct FROM mcq_choices WHERE question_id IN ("
+                        + String.join(",", Collections.nCopies(ids.size(), "?")) + ") ORDER BY question_id, label",
+                ids.toArray())) {
+            choices.computeIfAbsent(((Number) row.get("question_id")).longValue(), q -> new ArrayList<>()).add(row);
+        }
+        return choices;
+    }
+
+    // ==================== 汇总输出 ====================
+
+    private static Map<String, Object> render(ItemCounts counts, List<Map<String, Object>> choices) {
+        long correct = counts.totals[0];
+        long incorrect = counts.totals[1];
+        long ungraded = counts.totals[2];
+        long total = correct + incorrect + ungraded;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("totalResponses", total);
+        result.put("correctResponses", correct);
+        result.put("incorrectResponses", incorrect);
+        result.put("ungradedResponses", ungraded);
+
+        Map<String, Object> selections = new LinkedHashMap<>();
+        List<Map<String, Object>> distribution = new ArrayList<>();
+        for (Map<String, Object> choice : choices) {
+            long choiceId = ((Number) choice.get("id")).longValue();
+            long[] byGrade = counts.choices.getOrDefault(choiceId, new long[3]);
+            long selected = byGrade[0] + byGrade[1] + byGrade[2];
+            String label = String.valueOf(choice.get("label"));
+            selections.put(label, selected);
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("choiceId", choiceId);
+            row.put("label", label);
+            row.put("isCorrect", isTrue(choice.get("is_correct")));
+            row.put("selected", selected);
+            row.put("ratio", ratio(selected, total));
+            distribution.add(row);
+        }
+        long[] unanswered = counts.choices.get(0L);
+        if (unanswered != null) {
+            selections.put("none", unanswered[0] + unanswered[1] + unanswered[2]);
+        }
+        result.put("choiceSelections", selections);
+        result.put("choiceDistribution", distribution);
+
+        result.put("averageResponseTime", total == 0 ? null : counts.meanElapsed(total));
+        result.put("medianResponseTime", total == 0 ? null : counts.percentileElapsed(total, 0.5));
+        result.put("p90ResponseTime", total == 0 ? null : counts.percentileElapsed(total, 0.9));
+
+        // 难度：已判分回答的通过率（p 值），越低越难
+        BigDecimal pValue = correct + incorrect == 0 ? null : ratio(correct, correct + incorrect);
+        result.put("difficulty", pValue);
+        result.put("difficultyLevel", pValue == null ? null
+                : pValue.doubleValue() >= 0.8 ? "EASY" : pValue.doubleValue() >= 0.3 ? "MEDIUM" : "HARD");
+        result.put("discrimination", null);
+        return result;
+    }
+
+    private static BigDecimal ratio(long part, long total) {
+        return total == 0 ? BigDecimal.ZERO
+                : BigDecimal.valueOf(part).divide(BigDecimal.valueOf(total), 4, RoundingMode.HALF_UP);
+    }
+
+    private static boolean isTrue(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return value instanceof Number && ((Number) value).intValue() != 0;
+    }
+
+    /**
+     * 单道题的可累加计数
+     */
+    private static class ItemCounts {
+        private final long loadedAt;
+
+        /**
+         * [正确, 错误, 待判分]
+         */
+        private final long[] totals = new long[3];
+
+        /**
+         * 选项ID（未作答为 0）-> [正确, 错误, 待判分]
+         */
+        private final Map<Long, long[]> choices = new HashMap<>();
+
+        /**
+         * 耗时分桶（每桶 500ms，最后一桶为 60 秒及以上）
+         */
+        private final long[] elapsed = new long[MAX_BUCKET + 1];
+
+        private ItemCounts(long loadedAt) {
+            this.loadedAt = loadedAt;
+        }
+
+        private void add(long choiceId, int grade, int bucket, long responses) {
+            totals[grade] += responses;
+            choices.computeIfAbsent(choiceId, c -> new long[3])[grade] += responses;
+            elapsed[Math.min(Math.max(bucket, 0), MAX_BUCKET)] += responses;
+        }
+
+        /**
+         * 按桶中点估算，误差在 250ms 内
+         */
+        private long meanElapsed(long total) {
+            double sum = 0;
+            for (int bucket = 0; bucket <= MAX_BUCKET; bucket++) {
+                sum += elapsed[bucket] * midpoint(bucket);
+            }
+            return Math.round(sum / total);
+        }
+
+        private long percentileElapsed(long total, double quantile) {
+            long rank = (long) Math.ceil(total * quantile);
+            long seen = 0;
+            for (int bucket = 0; bucket <= MAX_BUCKET; bucket++) {
+                seen += elapsed[bucket];
+                if (seen >= rank) {
+                    return midpoint(bucket);
+                }
+            }
+            return midpoint(MAX_BUCKET);
+        }
+
+        private static long midpoint(int bucket) {
+            return bucket == MAX_BUCKET ? (long) MAX_BUCKET * BUCKET_MS : (long) bucket * BUCKET_MS + BUCKET_MS / 2;
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package org.icao4.eqasbackend2.impl.listening_mcq;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 选择题题库流式导出服务
+ * 按题目ID键集分页读取 mcq_questions，每页一次查询选项、一次查询判分统计，
+ * 以 CSV 或 XLSX 直接写入响应输出流，内存占用只与页大小有关。
+ * 题目表没有难度字段，难度等级按已判分回答的通过率换算（1 最易，5 最难），没有已判分回答时为空。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class McqQuestionExportService {
+
+    static final String[] HEADER = {
+            "ID", "题干", "选项A", "选项B", "选项C", "选项D", "正确答案", "难度等级", "模块ID",
+            "音频ID", "仅播放一次", "作答秒数"
+    };
+
+    static final List<String> LABELS = Arrays.asList("A", "B", "C", "D");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 每页题目数
+     */
+    @Value("${app.mcq.export.page-size:1000}")
+    private int pageSize;
+
+    /**
+     * 导出格式
+     */
+    public enum ExportFormat {
+        CSV("text/csv", "csv"),
+        XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx");
+
+        private final String contentType;
+        private final String extension;
+
+        ExportFormat(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * 解析格式参数，无法识别时返回 null
+         */
+        public static ExportFormat parse(String format) {
+            if (format == null) {
+                return null;
+            }
+            switch (format.trim().toLowerCase()) {
+                case "csv":
+                    return CSV;
+                case "xlsx":
+                case "excel":
+                    return XLSX;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * 导出题目
+     *
+     * @param moduleId        模块ID，为空时导出全部
+     * @param difficultyLevel 难度等级（1-5），为空时不过滤
+     * @param format          导出格式
+     * @param out             响应输出流
+     * @return 导出的行数
+     */
+    public long export(Long moduleId, Integer difficultyLevel, ExportFormat format, OutputStream out) throws IOException {
+        RowSink sink = format == ExportFormat.XLSX ? new XlsxSink(out) : new CsvSink(out);
+        sink.begin();
+
+        long count = 0;
+        long lastId = 0;
+        long start = System.currentTimeMillis();
+        while (true) {
+            List<Map<String, Object>> page = loadPage(moduleId, lastId);
+            if (page.isEmpty()) {
+                break;
+            }
+            lastId = ((Number) page.get(page.size() - 1).get("id")).longValue();
+            List<Object> ids = new ArrayList<>(page.size());
+            page.forEach(row -> ids.add(row.get("id")));
+            Map<Long, Map<String, String>> choices = loadChoices(ids);
+            Map<Long, Integer> levels = loadDifficultyLevels(ids);
+
+            for (Map<String, Object> question : page) {
+                long id = ((Number) question.get("id")).longValue();
+                Integer level = levels.get(id);
+                if (difficultyLevel != null && !difficultyLevel.equals(level)) {
+                    continue;
+                }
+                Map<String, String> byLabel = choices.getOrDefault(id, Collections.emptyMap());
+                List<Object> values = new ArrayList<>(HEADER.length);
+                values.add(id);
+                values.add(question.get("text_stem"));
+                for (String label : LABELS) {
+                    values.add(byLabel.get(label));
+                }
+                values.add(byLabel.get(""));
+                values.add(level);
+                values.add(question.get("module_id"));
+                values.add(question.get("audio_id"));
+                values.add(isTrue(question.get("play_once")) ? 1 : 0);
+                values.add(question.get("answer_seconds"));
+                sink.write(values);
+                count++;
+            }
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+
+        sink.end();
+        log.info("选择题流式导出完成: format={}, moduleId={}, difficultyLevel={}, rows={}, 耗时={}ms",
+                format, moduleId, difficultyLevel, count, System.currentTimeMillis() - start);
+        return count;
+    }
+
+    /**
+     * 按通过率换算难度等级：≥0.8 为 1，≥0.6 为 2，≥0.4 为 3，≥0.2 为 4，其余为 5
+     */
+    static Integer difficultyLevel(long correct, long graded) {
+        if (graded == 0) {
+            return null;
+        }
+        double pValue = (double) correct / graded;
+        return pValue >= 0.8 ? 1 : pValue >= 0.6 ? 2 : pValue >= 0.4 ? 3 : pValue >= 0.2 ? 4 : 5;
+    }
+
+    // ==================== 分页查询 ====================
+
+    private List<Map<String, Object>> loadPage(Long moduleId, long lastId) {
+        String sql = "SELECT id, module_id, audio_id, text_stem, play_once, answer_seconds FROM mcq_questions WHERE "
+                + (moduleId != null ? "module_id = ? AND " : "") + "id > ? ORDER BY id LIMIT ?";
+        return moduleId != null
+                ? jdbcTemplate.queryForList(sql, moduleId, lastId, pageSize)
+                : jdbcTemplate.queryForList(sql, lastId, pageSize);
+    }
+
+    /**
+     * 题目ID -> 选项标签 -> 内容；空字符串键为正确答案标签（多个正确选项时依次拼接）
+     */
+    private Map<Long, Map<String, String>> loadChoices(List<Object> ids) {
+        Map<Long, Map<String, String>> result = new HashMap<>();
+        jdbcTemplate.query("SELECT question_id, label, content, is_correct FROM mcq_choices WHERE question_id IN ("
+                + placeholders(ids.size()) + ") ORDER BY question_id, label", rs -> {
+            Map<String, String> byLabel = result.computeIfAbsent(rs.getLong("question_id"), q -> new HashMap<>());
+            String label = rs.getString("label");
+            byLabel.put(label, rs.getString("content"));
+            if (rs.getBoolean("is_correct")) {
+                byLabel.merge("", label, String::concat);
+            }
+        }, ids.toArray());
+        return result;
+    }
+
+    private Map<Long, Integer> loadDifficultyLevels(List<Object> ids) {
+        Map<Long, Integer> result = new HashMap<>();
+        jdbcTemplate.query("SELECT question_id, SUM(is_correct = 1) AS correct, COUNT(is_correct) AS graded "
+                + "FROM mcq_responses WHERE question_id IN (" + placeholders(ids.size()) + ") GROUP BY question_id", rs -> {
+            Integer level = difficultyLevel(rs.getLong("correct"), rs.getLong("graded"));
+            if (level != null) {
+                result.put(rs.getLong("question_id"), level);
+            }
+        }, ids.toArray());
+        return result;
+    }
+
+    private static String placeholders(int n) {
+        return String.join(",", Collections.nCopies(n, "?"));
+    }
+
+    private static boolean isTrue(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return value instanceof Number && ((Number) value).intValue() != 0;
+    }
+
+    // ==================== 输出格式 ====================
+
+    private interface RowSink {
+        void begin() throws IOException;
+
+        void write(List<Object> values) throws IOException;
+
+        void end() throws IOException;
+    }
+
+    /**
+     * CSV：RFC 4180 转义，带 UTF-8 BOM 以便 Excel 正确识别中文
+     */
+    private static final class CsvSink implements RowSink {
+        private final Writer writer;
+
+        private CsvSink(OutputStream out) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        }
+
+        @Override
+        public void begin() throws IOException {
+            writer.write('\uFEFF');
+            write(Arrays.asList((Object[]) HEADER));
+        }
+
+        @Override
+        public void write(List<Object> values) throws IOException {
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(escape(values.get(i)));
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void end() throws IOException {
+            writer.flush();
+        }
+
+        private static String escape(Object value) {
+            if (value == null) {
+                return "";
+            }
+            String text = value.toString();
+            if (value instanceof CharSequence && !text.isEmpty() && "=+-@\t\r".indexOf(text.charAt(0)) >= 0) {
+                // 以公式字符开头的文本加单引号，防止 Excel 打开时当作公式执行
+                text = "'" + text;
+            }
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                return text;
+            }
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    /**
+     * XLSX：单个工作表，字符串使用内联字符串，工作表 XML 边生成边压缩写出
+     */
+    private static final class XlsxSink implements RowSink {
+        private final ZipOutputStream zip;
+        private final Writer writer;
+        private int rowNumber;
+
+        private XlsxSink(OutputStream out) {
+            this.zip = new ZipOutputStream(new BufferedOutputStream(out, 64 * 1024), StandardCharsets.UTF_8);
+            this.writer = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void begin() throws IOException {
+            part("[Content_Types].xml", "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                    + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                    + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                    + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+                    + "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+                    + "</Types>");
+            part("_rels/.rels", "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                    + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                    + "</Relationships>");
+            part("xl/workbook.xml", "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" "
+                    + "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+                    + "<sheets><sheet name=\"questions\" sheetId=\"1\" r:id=\"rId1\"/></sheets></workbook>");
+            part("xl/_rels/workbook.xml.rels", "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                    + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+                    + "</Relationships>");
+
+            zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>");
+            write(Arrays.asList((Object[]) HEADER));
+        }
+
+        @Override
+        public void write(List<Object> values) throws IOException {
+            writer.write("<row r=\"" + (++rowNumber) + "\">");
+            for (Object value : values) {
+                if (value == null) {
+                    writer.write("<c/>");
+                } else if (value instanceof Number) {
+                    writer.write("<c><v>" + value + "</v></c>");
+                } else {
+                    writer.write("<c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+                    writer.write(escape(value.toString()));
+                    writer.write("</t></is></c>");
+                }
+            }
+            writer.write("</row>");
+        }
+
+        @Override
+        public void end() throws IOException {
+            writer.write("</sheetData></worksheet>");
+            writer.flush();
+            zip.closeEntry();
+            zip.finish();
+            zip.flush();
+        }
+
+        private void part(String name, String xml) throws IOException {
+            zip.putNextEntry(new ZipEntry(name));
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+            writer.write(xml);
+            writer.flush();
+            zip.closeEntry();
+        }
+
+        /**
+         * XML 转义，并去掉 XML 1.0 不允许的控制字符
+         */
+        private static String escape(String text) {
+            StringBuilder escaped = new StringBuilder(text.length() + 16);
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '<':
+                        escaped.append("&lt;");
+                        break;
+                    case '>':
+                        escaped.append("&gt;");
+                        break;
+                    case '&':
+                        escaped.append("&amp;");
+                        break;
+                    case '"':
+                        escaped.append("&quot;");
+                        break;
+                    default:
+                        if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                            escaped.append(c);
+                        }
+                }
+            }
+            return escaped.toString();
+        }
+    }
+}
@@ -0,0 +1,950 @@
+package org.icao4.eqasbackend2.impl.listening_mcq;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * 选择题题库导入服务
+ * 流式读取 CSV / XLSX（列名与导出一致），按块（默认 500 行）处理：
+ * 先校验行结构（A-D 连续填写、唯一正确答案等），再用一次查询批量核对本块的音频、模块和已有题目ID，
+ * 最后在一个事务内用 JDBC 批量插入题目与选项。某块写入失败时逐行重试，定位出错的行。
+ * 每次导入记录在 mcq_import_jobs 中，包括逐行错误报告。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class McqQuestionImportService {
+
+    private static final String CREATE_JOBS_SQL = "CREATE TABLE IF NOT EXISTS mcq_import_jobs ("
+            + "id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+            + "filename VARCHAR(255), "
+            + "file_size BIGINT, "
+            + "format VARCHAR(8), "
+            + "module_id BIGINT NULL, "
+            + "status VARCHAR(16) NOT NULL, "
+            + "total_rows INT NOT NULL DEFAULT 0, "
+            + "inserted_count INT NOT NULL DEFAULT 0, "
+            + "updated_count INT NOT NULL DEFAULT 0, "
+            + "skipped_count INT NOT NULL DEFAULT 0, "
+            + "duplicate_count INT NOT NULL DEFAULT 0, "
+            + "failure_count INT NOT NULL DEFAULT 0, "
+            + "message VARCHAR(500), "
+            + "errors_json MEDIUMTEXT, "
+            + "started_at DATETIME(3) NOT NULL, "
+            + "finished_at DATETIME(3) NULL)";
+
+    private static final String JOB_COLUMNS = "id, filename, file_size, format, module_id, status, total_rows, "
+            + "inserted_count, updated_count, skipped_count, duplicate_count, failure_count, message, started_at, finished_at";
+
+    private static final String INSERT_QUESTION_SQL = "INSERT INTO mcq_questions "
+            + "(module_id, audio_id, text_stem, play_once, answer_seconds, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    /**
+     * 更新已有题目：文件中缺列或留空的可选字段保留原值
+     */
+    private static final String UPDATE_QUESTION_SQL = "UPDATE mcq_questions SET module_id = COALESCE(?, module_id), "
+            + "audio_id = ?, text_stem = COALESCE(?, text_stem), play_once = COALESCE(?, play_once), "
+            + "answer_seconds = COALESCE(?, answer_seconds) WHERE id = ?";
+
+    private static final String INSERT_CHOICE_SQL = "INSERT INTO mcq_choices "
+            + "(question_id, label, content, is_correct) VALUES (?, ?, ?, ?)";
+
+    private static final String UPDATE_CHOICE_SQL = "UPDATE mcq_choices "
+            + "SET content = ?, is_correct = ? WHERE question_id = ? AND label = ?";
+
+    private static final int MAX_ANSWER_SECONDS = 300;
+
+    private static final int DEFAULT_ANSWER_SECONDS = 15;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final McqAnswerKeyService mcqAnswerKeyService;
+
+    /**
+     * 每块行数（一次校验查询、一个写入事务）
+     */
+    @Value("${app.mcq.import.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * 导入记录中保存的最大错误条数
+     */
+    @Value("${app.mcq.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    @PostConstruct
+    public void init() {
+        jdbcTemplate.execute(CREATE_JOBS_SQL);
+    }
+
+    // ==================== 导入 ====================
+
+    /**
+     * 导入题目文件
+     *
+     * @param moduleId        目标模块，非空时覆盖文件中的模块ID
+     * @param skipDuplicates  文件中的题目ID已存在时跳过该行；为 false 时作为新题插入，结果中给出警告
+     * @param updateExisting  文件中的题目ID已存在时更新该题（优先于 skipDuplicates），缺列或留空的可选字段保留原值
+     * @param validateData    是否批量核对音频ID是否存在；关闭时由数据库约束兜底
+     * @return 导入结果（含逐行错误）
+     */
+    public Map<String, Object> importFile(MultipartFile file, Long moduleId, boolean skipDuplicates,
+                                          boolean updateExisting, boolean validateData) throws IOException {
+        String filename = file.getOriginalFilename();
+        boolean xlsx = filename != null && filename.toLowerCase().endsWith(".xlsx");
+        ImportJob job = new ImportJob(filename, file.getSize(), xlsx ? "xlsx" : "csv", moduleId,
+                skipDuplicates, updateExisting, validateData);
+        job.id = createJob(job);
+
+        long start = System.currentTimeMillis();
+        try (RowReader reader = xlsx ? new XlsxRowReader(file) : new CsvRowReader(file.getInputStream())) {
+            Map<Field, Integer> columns = mapHeader(reader.next());
+            List<ImportRow> chunk = new ArrayList<>(chunkSize);
+            List<String> cells;
+            while ((cells = reader.next()) != null) {
+                if (isBlank(cells)) {
+                    continue;
+                }
+                job.totalRows++;
+                chunk.add(parseRow(reader.rowNumber(), cells, columns, job));
+                if (chunk.size() >= chunkSize) {
+                    processChunk(chunk, job);
+                    chunk.clear();
+                }
+            }
+            processChunk(chunk, job);
+            if (job.totalRows == 0) {
+                job.message = "文件中没有数据行";
+            }
+        } catch (ImportFileException e) {
+            job.message = e.getMessage();
+        } catch (IOException | RuntimeException e) {
+            job.message = "导入中断: " + e.getMessage();
+            finishJob(job);
+            throw e;
+        }
+        finishJob(job);
+
+        if (job.inserted + job.updated > 0) {
+            mcqAnswerKeyService.rebuild();
+        }
+        log.info("选择题导入完成: jobId={}, file={}, status={}, rows={}, inserted={}, updated={}, skipped={}, failed={}, 耗时={}ms",
+                job.id, filename, job.status(), job.totalRows, job.inserted, job.updated, job.skipped, job.failures,
+                System.currentTimeMillis() - start);
+        return job.toResult();
+    }
+
+    // ==================== 导入记录 ====================
+
+    public Page<Map<String, Object>> getHistory(int page, int size) {
+        int pageSize = Math.max(1, Math.min(size, 100));
+        int pageNumber = Math.max(0, page);
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM mcq_import_jobs", Long.class);
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT " + JOB_COLUMNS
+                + " FROM mcq_import_jobs ORDER BY id DESC LIMIT ? OFFSET ?", pageSize, (long) pageNumber * pageSize);
+        return new PageImpl<>(rows.stream().map(McqQuestionImportService::toJobView).collect(Collectors.toList()),
+                PageRequest.of(pageNumber, pageSize), total == null ? 0 : total);
+    }
+
+    /**
+     * 单次导入的详情（含错误报告），不存在时返回 null
+     */
+    public Map<String, Object> getJob(Long id) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT " + JOB_COLUMNS
+                + ", errors_json FROM mcq_import_jobs WHERE id = ?", id);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> job = toJobView(rows.get(0));
+        Object errors = rows.get(0).get("errors_json");
+        try {
+            job.put("errors", errors == null ? Collections.emptyList() : objectMapper.readValue(errors.toString(), List.class));
+        } catch (JsonProcessingException e) {
+            job.put("errors", Collections.emptyList());
+        }
+        return job;
+    }
+
+    // ==================== 解析与校验 ====================
+
+    /**
+     * 导入文件的列；别名同时接受导出的中文列名和英文列名
+     */
+    enum Field {
+        ID(true, "id", "题目id"),
+        STEM(false, "题干", "textstem", "stem"),
+        A(true, "选项a", "a", "choicea", "optiona"),
+        B(true, "选项b", "b", "choiceb", "optionb"),
+        C(false, "选项c", "c", "choicec", "optionc"),
+        D(false, "选项d", "d", "choiced", "optiond"),
+        ANSWER(true, "正确答案", "answer", "correct", "correctanswer"),
+        MODULE(false, "模块id", "moduleid"),
+        AUDIO(true, "音频id", "audioid"),
+        PLAY_ONCE(false, "仅播放一次", "playonce"),
+        ANSWER_SECONDS(false, "作答秒数", "answerseconds");
+
+        private final boolean required;
+        private final String[] aliases;
+
+        Field(boolean required, String... aliases) {
+            this.required = required;
+            this.aliases = aliases;
+        }
+    }
+
+    private static Map<Field, Integer> mapHeader(List<String> header) {
+        if (header == null) {
+            throw new ImportFileException("文件为空");
+        }
+        Map<String, Field> byAlias = new HashMap<>();
+        for (Field field : Field.values()) {
+            for (String alias : field.aliases) {
+                byAlias.put(alias, field);
+            }
+        }
+        Map<Field, Integer> columns = new EnumMap<>(Field.class);
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i) == null ? "" : header.get(i).replace("\uFEFF", "").replaceAll("[\\s_]", "").toLowerCase();
+            Field field = byAlias.get(name);
+            if (field != null) {
+                columns.putIfAbsent(field, i);
+            }
+        }
+        List<String> missing = new ArrayList<>();
+        for (Field field : Field.values()) {
+            if (field.required && field != Field.ID && !columns.containsKey(field)) {
+                missing.add(field.aliases[0]);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new ImportFileException("缺少必需的列: " + String.join(", ", missing));
+        }
+        return columns;
+    }
+
+    /**
+     * 解析并校验一行的结构；出错时记录到 row.error，不抛异常
+     */
+    private static ImportRow parseRow(int rowNumber, List<String> cells, Map<Field, Integer> columns, ImportJob job) {
+        ImportRow row = new ImportRow(rowNumber);
+        try {
+            row.id = parseLong(cell(cells, columns, Field.ID), "题目ID");
+            row.stem = cell(cells, columns, Field.STEM);
+            row.audioId = parseLong(cell(cells, columns, Field.AUDIO), "音频ID");
+            row.moduleId = job.moduleId != null ? job.moduleId : parseLong(cell(cells, columns, Field.MODULE), "模块ID");
+            if (row.audioId == null) {
+                throw new IllegalArgumentException("音频ID不能为空");
+            }
+
+            Field[] choiceFields = {Field.A, Field.B, Field.C, Field.D};
+            int filled = 0;
+            for (int i = 0; i < choiceFields.length; i++) {
+                row.choices[i] = cell(cells, columns, choiceFields[i]);
+                if (row.choices[i] != null) {
+                    if (filled != i) {
+                        throw new IllegalArgumentException("选项需从 A 开始连续填写");
+                    }
+                    filled++;
+                }
+            }
+            if (filled < 2) {
+                throw new IllegalArgumentException("至少需要 A、B 两个选项");
+            }
+
+            String answer = cell(cells, columns, Field.ANSWER);
+            answer = answer == null ? "" : answer.replaceAll("[\\s,;，；、]", "").toUpperCase();
+            if (answer.length() != 1) {
+                throw new IllegalArgumentException("必须且只能有一个正确答案");
+            }
+            int answerIndex = McqQuestionExportService.LABELS.indexOf(answer);
+            if (answerIndex < 0) {
+                throw new IllegalArgumentException("正确答案必须是 A-D: " + answer);
+            }
+            if (row.choices[answerIndex] == null) {
+                throw new IllegalArgumentException("正确答案 " + answer + " 对应的选项为空");
+            }
+            row.answerIndex = answerIndex;
+
+            row.playOnce = parseBoolean(cell(cells, columns, Field.PLAY_ONCE));
+            Long seconds = parseLong(cell(cells, columns, Field.ANSWER_SECONDS), "作答秒数");
+            row.answerSeconds = seconds == null ? null : seconds.intValue();
+            if (row.answerSeconds != null && (row.answerSeconds < 1 || row.answerSeconds > MAX_ANSWER_SECONDS)) {
+                throw new IllegalArgumentException("作答秒数必须在 1-" + MAX_ANSWER_SECONDS + " 之间");
+            }
+        } catch (IllegalArgumentException e) {
+            row.error = e.getMessage();
+        }
+        return row;
+    }
+
+    /**
+     * 批量核对一块的音频、模块和已有题目ID，然后写入
+     */
+    private void processChunk(List<ImportRow> chunk, ImportJob job) {
+        List<ImportRow> candidates = chunk.stream().filter(row -> row.error == null).collect(Collectors.toList());
+        if (!candidates.isEmpty()) {
+            if (job.validateData) {
+                Set<Long> audios = existingIds("SELECT id FROM media_assets WHERE media_type = 'audio' AND id IN ",
+                        candidates.stream().map(row -> row.audioId));
+                candidates.stream().filter(row -> !audios.contains(row.audioId))
+                        .forEach(row -> row.error = "音频不存在或不是音频资源: " + row.audioId);
+            }
+            Set<Long> modules = existingIds("SELECT id FROM exam_modules WHERE module_type = 'LISTENING_MCQ' AND id IN ",
+                    candidates.stream().map(row -> row.moduleId).filter(Objects::nonNull));
+            candidates.stream().filter(row -> row.error == null && row.moduleId != null && !modules.contains(row.moduleId))
+                    .forEach(row -> row.error = "模块不存在或不是听力选择题模块: " + row.moduleId);
+
+            Set<Long> existing = existingIds("SELECT id FROM mcq_questions WHERE id IN ",
+                    candidates.stream().map(row -> row.id).filter(Objects::nonNull));
+            for (ImportRow row : candidates) {
+                if (row.error != null || row.id == null || !existing.contains(row.id)) {
+                    row.id = null;
+                    continue;
+                }
+                job.duplicates++;
+                if (!job.updateExisting) {
+                    row.skipped = job.skipDuplicates;
+                    if (!row.skipped) {
+                        row.id = null;
+                        row.reinserted = true;
+                    }
+                }
+            }
+        }
+
+        List<ImportRow> writes = new ArrayList<>();
+        for (ImportRow row : chunk) {
+            if (row.error != null) {
+                job.fail(row);
+            } else if (row.skipped) {
+                job.skipped++;
+            } else {
+                writes.add(row);
+            }
+        }
+        if (writes.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(writes));
+            writes.forEach(job::succeed);
+        } catch (DataAccessException e) {
+            log.warn("选择题导入块写入失败，逐行重试: jobId={}, rows={}, error={}", job.id, writes.size(), e.getMessage());
+            for (ImportRow row : writes) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> write(Collections.singletonList(row)));
+                    job.succeed(row);
+                } catch (DataAccessException rowError) {
+                    Throwable cause = rowError.getMostSpecificCause();
+                    row.error = "写入失败: " + (cause != null ? cause.getMessage() : rowError.getMessage());
+                    job.fail(row);
+                }
+            }
+        }
+    }
+
+    // ==================== 写入 ====================
+
+    /**
+     * 批量写入（需在事务中调用）：新题批量插入并取回自增ID，已有题目批量更新
+     */
+    private void write(List<ImportRow> rows) {
+        List<ImportRow> inserts = rows.stream().filter(row -> row.id == null).collect(Collectors.toList());
+        List<ImportRow> updates = rows.stream().filter(row -> row.id != null).collect(Collectors.toList());
+
+        List<Object[]> choiceInserts = new ArrayList<>();
+        if (!inserts.isEmpty()) {
+            List<Long> ids = insertQuestions(inserts);
+            for (int i = 0; i < inserts.size(); i++) {
+                addChoices(ids.get(i), inserts.get(i), choiceInserts);
+            }
+        }
+
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_QUESTION_SQL, updates.stream().map(row -> new Object[]{
+                    row.moduleId, row.audioId, row.stem, row.playOnce, row.answerSeconds, row.id
+            }).collect(Collectors.toList()));
+            List<Object> ids = updates.stream().map(row -> (Object) row.id).collect(Collectors.toList());
+            String in = "(" + String.join(",", Collections.nCopies(ids.size(), "?")) + ")";
+            jdbcTemplate.update("UPDATE mcq_choices SET is_correct = 0 WHERE question_id IN " + in, ids.toArray());
+            Set<String> existingLabels = new HashSet<>();
+            jdbcTemplate.query("SELECT question_id, label FROM mcq_choices WHERE question_id IN " + in,
+                    rs -> {
+                        existingLabels.add(rs.getLong("question_id") + ":" + rs.getString("label"));
+                    }, ids.toArray());
+
+            List<Object[]> choiceUpdates = new ArrayList<>();
+            for (ImportRow row : updates) {
+                List<Object[]> choices = new ArrayList<>();
+                addChoices(row.id, row, choices);
+                for (Object[] choice : choices) {
+                    if (existingLabels.contains(row.id + ":" + choice[1])) {
+                        choiceUpdates.add(new Object[]{choice[2], choice[3], choice[0], choice[1]});
+                    } else {
+                        choiceInserts.add(choice);
+                    }
+                }
+            }
+            jdbcTemplate.batchUpdate(UPDATE_CHOICE_SQL, choiceUpdates);
+        }
+
+        if (!choiceInserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_CHOICE_SQL, choiceInserts);
+        }
+    }
+
+    private List<Long> insertQuestions(List<ImportRow> rows) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(INSERT_QUESTION_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (ImportRow row : rows) {
+                    ps.setObject(1, row.moduleId);
+                    ps.setLong(2, row.audioId);
+                    ps.setString(3, row.stem);
+                    ps.setBoolean(4, row.playOnce == null || row.playOnce);
+                    ps.setInt(5, row.answerSeconds != null ? row.answerSeconds : DEFAULT_ANSWER_SECONDS);
+                    ps.setTimestamp(6, now);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                List<Long> ids = new ArrayList<>(rows.size());
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.add(keys.getLong(1));
+                    }
+                }
+                if (ids.size() != rows.size()) {
+                    throw new SQLException("自增ID数量与插入行数不一致: " + ids.size() + " / " + rows.size());
+                }
+                return ids;
+            }
+        });
+    }
+
+    private static void addChoices(long questionId, ImportRow row, List<Object[]> target) {
+        for (int i = 0; i < row.choices.length; i++) {
+            if (row.choices[i] != null) {
+                target.add(new Object[]{questionId, McqQuestionExportService.LABELS.get(i), row.choices[i], i == row.answerIndex});
+            }
+        }
+    }
+
+    private Set<Long> existingIds(String sqlPrefix, Stream<Long> ids) {
+        List<Object> distinct = ids.distinct().map(id -> (Object) id).collect(Collectors.toList());
+        if (distinct.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(sqlPrefix + "("
+                + String.join(",", Collections.nCopies(distinct.size(), "?")) + ")", Long.class, distinct.toArray()));
+    }
+
+    // ==================== 导入记录读写 ====================
+
+    private long createJob(ImportJob job) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement("INSERT INTO mcq_import_jobs "
+                    + "(filename, file_size, format, module_id, status, started_at) VALUES (?, ?, ?, ?, 'running', ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, job.filename);
+            ps.setLong(2, job.fileSize);
+            ps.setString(3, job.format);
+            ps.setObject(4, job.moduleId);
+            ps.setTimestamp(5, Timestamp.valueOf(job.startedAt));
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    private void finishJob(ImportJob job) {
+        job.finishedAt = LocalDateTime.now();
+        String errors;
+        try {
+            errors = objectMapper.writeValueAsString(job.errors);
+        } catch (JsonProcessingException e) {
+            errors = "[]";
+        }
+        jdbcTemplate.update("UPDATE mcq_import_jobs SET status = ?, total_rows = ?, inserted_count = ?, updated_count = ?, "
+                        + "skipped_count = ?, duplicate_count = ?, failure_count = ?, message = ?, errors_json = ?, "
+                        + "finished_at = ? WHERE id = ?",
+                job.status(), job.totalRows, job.inserted, job.updated, job.skipped, job.duplicates, job.failures,
+                job.message, errors, Timestamp.valueOf(job.finishedAt), job.id);
+    }
+
+    private static Map<String, Object> toJobView(Map<String, Object> row) {
+        Map<String, Object> job = new LinkedHashMap<>();
+        job.put("id", row.get("id"));
+        job.put("filename", row.get("filename"));
+        job.put("fileSize", row.get("file_size"));
+        job.put("format", row.get("format"));
+        job.put("moduleId", row.get("module_id"));
+        job.put("status", row.get("status"));
+        job.put("totalRows", row.get("total_rows"));
+        Number inserted = (Number) row.get("inserted_count");
+        Number updated = (Number) row.get("updated_count");
+        job.put("successCount", inserted.intValue() + updated.intValue());
+        job.put("insertedCount", inserted);
+        job.put("updatedCount", updated);
+        job.put("skippedCount", row.get("skipped_count"));
+        job.put("duplicateCount", row.get("duplicate_count"));
+        job.put("failureCount", row.get("failure_count"));
+        job.put("message", row.get("message"));
+        job.put("importTime", row.get("started_at"));
+        job.put("finishedAt", row.get("finished_at"));
+        return job;
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private static String cell(List<String> cells, Map<Field, Integer> columns, Field field) {
+        Integer index = columns.get(field);
+        if (index == null || index >= cells.size() || cells.get(index) == null) {
+            return null;
+        }
+        String value = cells.get(index).trim();
+        if (value.length() > 1 && value.charAt(0) == '\'' && "=+-@".indexOf(value.charAt(1)) >= 0) {
+            // 导出时为防公式注入加的单引号
+            value = value.substring(1);
+        }
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Long parseLong(String value, String name) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value).longValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new IllegalArgumentException(name + "不是有效的整数: " + value);
+        }
+    }
+
+    private static Boolean parseBoolean(String value) {
+        if (value == null) {
+            return null;
+        }
+        switch (value.toLowerCase()) {
+            case "0":
+            case "false":
+            case "否":
+            case "n":
+            case "no":
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private static boolean isBlank(List<String> cells) {
+        for (String cell : cells) {
+            if (cell != null && !cell.trim().isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 文件级错误（格式不对、缺少列），整个导入不写入任何行
+     */
+    private static class ImportFileException extends RuntimeException {
+        ImportFileException(String message) {
+            super(message);
+        }
+    }
+
+    private static class ImportRow {
+        private final int rowNumber;
+        private Long id;
+        private String stem;
+        private final String[] choices = new String[4];
+        private int answerIndex;
+        private Long moduleId;
+        private Long audioId;
+        /**
+         * 可选字段，未填写时为 null：插入时取默认值，更新时保留原值
+         */
+        private Boolean playOnce;
+        private Integer answerSeconds;
+        private boolean skipped;
+        /**
+         * 题目ID已存在但未开启跳过或更新，作为新题插入
+         */
+        private boolean reinserted;
+        private String error;
+
+        private ImportRow(int rowNumber) {
+            this.rowNumber = rowNumber;
+        }
+    }
+
+    private class ImportJob {
+        private long id;
+        private final String filename;
+        private final long fileSize;
+        private final String format;
+        private final Long moduleId;
+        private final boolean skipDuplicates;
+        private final boolean updateExisting;
+        private final boolean validateData;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private LocalDateTime finishedAt;
+        private int totalRows;
+        private int inserted;
+        private int updated;
+        private int skipped;
+        private int duplicates;
+        private int reinserted;
+        private int failures;
+        private String message;
+        private final List<Map<String, Object>> errors = new ArrayList<>();
+
+        private ImportJob(String filename, long fileSize, String format, Long moduleId,
+                          boolean skipDuplicates, boolean updateExisting, boolean validateData) {
+            this.filename = filename;
+            this.fileSize = fileSize;
+            this.format = format;
+            this.moduleId = moduleId;
+            this.skipDuplicates = skipDuplicates;
+            this.updateExisting = updateExisting;
+            this.validateData = validateData;
+        }
+
+        private void succeed(ImportRow row) {
+            if (row.id == null) {
+                inserted++;
+                if (row.reinserted) {
+                    reinserted++;
+                }
+            } else {
+                updated++;
+            }
+        }
+
+        private void fail(ImportRow row) {
+            failures++;
+            if (errors.size() < maxReportedErrors) {
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("row", row.rowNumber);
+                error.put("message", row.error);
+                errors.add(error);
+            }
+        }
+
+        /**
+         * 有文件级错误或失败行时，按是否写入过数据区分 partial / failed
+         */
+        private String status() {
+            if (message == null && failures == 0) {
+                return "success";
+            }
+            return inserted + updated > 0 ? "partial" : "failed";
+        }
+
+        private Map<String, Object> toResult() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("jobId", id);
+            result.put("filename", filename);
+            result.put("fileSize", fileSize);
+            result.put("status", status());
+            result.put("totalRows", totalRows);
+            result.put("successCount", inserted + updated);
+            result.put("insertedCount", inserted);
+            result.put("updatedCount", updated);
+            result.put("skippedCount", skipped);
+            result.put("duplicateCount", duplicates);
+            result.put("failureCount", failures);
+            result.put("errors", errors);
+            result.put("message", message != null ? message : "题目导入完成");
+            if (reinserted > 0) {
+                result.put("warning", reinserted + " 行的题目ID已存在，未开启跳过或更新，已作为新题重复插入");
+            }
+            result.put("importTime", startedAt);
+            return result;
+        }
+    }
+
+    // ==================== 文件读取 ====================
+
+    private interface RowReader extends Closeable {
+        /**
+         * 读取下一行单元格，文件结束时返回 null
+         */
+        List<String> next() throws IOException;
+
+        /**
+         * 最近一次读取的行号（从 1 开始，含表头）
+         */
+        int rowNumber();
+    }
+
+    /**
+     * RFC 4180 CSV，逐字符读取，支持引号内的逗号和换行，忽略 UTF-8 BOM
+     */
+    static final class CsvRowReader implements RowReader {
+        private final Reader reader;
+        private int rowNumber;
+        private boolean eof;
+
+        CsvRowReader(InputStream in) {
+            this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        }
+
+        @Override
+        public List<String> next() throws IOException {
+            if (eof) {
+                return null;
+            }
+            List<String> cells = new ArrayList<>();
+            StringBuilder cell = new StringBuilder();
+            boolean quoted = false;
+            boolean any = false;
+            int c;
+            while ((c = reader.read()) >= 0) {
+                any = true;
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            cell.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        cell.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    cells.add(cell.toString());
+                    cell.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c == '\uFEFF' && rowNumber == 0 && cells.isEmpty() && cell.length() == 0) {
+                    continue;
+                } else if (c != '\r') {
+                    cell.append((char) c);
+                }
+            }
+            if (c < 0) {
+                eof = true;
+                if (!any) {
+                    return null;
+                }
+            }
+            cells.add(cell.toString());
+            rowNumber++;
+            return cells;
+        }
+
+        @Override
+        public int rowNumber() {
+            return rowNumber;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * XLSX 第一个工作表，用 StAX 流式解析；共享字符串表需整体读入，其余按行读取
+     */
+    static final class XlsxRowReader implements RowReader {
+        private final Path temp;
+        private final ZipFile zip;
+        private final List<String> sharedStrings = new ArrayList<>();
+        private final XMLStreamReader xml;
+        private int rowNumber;
+
+        XlsxRowReader(MultipartFile file) throws IOException {
+            this(file.getInputStream());
+        }
+
+        XlsxRowReader(InputStream in) throws IOException {
+            temp = Files.createTempFile("mcq-import-", ".xlsx");
+            try {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                zip = new ZipFile(temp.toFile());
+                ZipEntry strings = zip.getEntry("xl/sharedStrings.xml");
+                if (strings != null) {
+                    readSharedStrings(zip.getInputStream(strings));
+                }
+                ZipEntry sheet = zip.getEntry("xl/worksheets/sheet1.xml");
+                if (sheet == null) {
+                    sheet = zip.stream().filter(e -> e.getName().startsWith("xl/worksheets/sheet") && e.getName().endsWith(".xml"))
+                            .min(Comparator.comparing(ZipEntry::getName))
+                            .orElseThrow(() -> new ImportFileException("XLSX 中没有工作表"));
+                }
+                xml = factory().createXMLStreamReader(zip.getInputStream(sheet), "UTF-8");
+            } catch (XMLStreamException | ZipException e) {
+                Files.deleteIfExists(temp);
+                throw new ImportFileException("无法解析 XLSX 文件: " + e.getMessage());
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+        }
+
+        @Override
+        public List<String> next() throws IOException {
+            try {
+                while (xml.hasNext()) {
+                    if (xml.next() == XMLStreamConstants.START_ELEMENT && "row".equals(xml.getLocalName())) {
+                        String r = xml.getAttributeValue(null, "r");
+                        rowNumber = r != null ? Integer.parseInt(r) : rowNumber + 1;
+                        return readRow();
+                    }
+                }
+                return null;
+            } catch (XMLStreamException | NumberFormatException e) {
+                throw new ImportFileException("XLSX 第 " + (rowNumber + 1) + " 行解析失败: " + e.getMessage());
+            }
+        }
+
+        private List<String> readRow() throws XMLStreamException {
+            List<String> cells = new ArrayList<>();
+            String type = null;
+            int column = -1;
+            StringBuilder text = null;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if ("c".equals(name)) {
+                        type = xml.getAttributeValue(null, "t");
+                        String ref = xml.getAttributeValue(null, "r");
+                        column = ref != null ? columnIndex(ref) : column + 1;
+                        text = new StringBuilder();
+                    } else if (("v".equals(name) || "t".equals(name)) && text != null) {
+                        text.append(xml.getElementText());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if ("c".equals(name) && text != null) {
+                        while (cells.size() < column) {
+                            cells.add(null);
+                        }
+                        String value = text.toString();
+                        if ("s".equals(type) && !value.isEmpty()) {
+                            int index = Integer.parseInt(value.trim());
+                            value = index < sharedStrings.size() ? sharedStrings.get(index) : null;
+                        } else if ("b".equals(type)) {
+                            value = "1".equals(value) ? "1" : "0";
+                        }
+                        cells.add(value);
+                        text = null;
+                    } else if ("row".equals(name)) {
+                        return cells;
+                    }
+                }
+            }
+            return cells;
+        }
+
+        /**
+         * 读取共享字符串表，跳过注音（rPh）中的文本
+         */
+        private void readSharedStrings(InputStream in) throws XMLStreamException {
+            XMLStreamReader reader = factory().createXMLStreamReader(in, "UTF-8");
+            StringBuilder text = null;
+            int phonetic = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT && "rPh".equals(reader.getLocalName())) {
+                    phonetic++;
+                } else if (event == XMLStreamConstants.END_ELEMENT && "rPh".equals(reader.getLocalName())) {
+                    phonetic--;
+                } else if (phonetic > 0) {
+                    continue;
+                } else if (event == XMLStreamConstants.START_ELEMENT) {
+                    if ("si".equals(reader.getLocalName())) {
+                        text = new StringBuilder();
+                    } else if ("t".equals(reader.getLocalName()) && text != null) {
+                        text.append(reader.getElementText());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "si".equals(reader.getLocalName()) && text != null) {
+                    sharedStrings.add(text.toString());
+                    text = null;
+                }
+            }
+            reader.close();
+        }
+
+        private static int columnIndex(String ref) {
+            int index = 0;
+            for (int i = 0; i < ref.length() && Character.isLetter(ref.charAt(i)); i++) {
+                index = index * 26 + (Character.toUpperCase(ref.charAt(i)) - 'A' + 1);
+            }
+            return index - 1;
+        }
+
+        /**
+         * 关闭 DTD 和外部实体，防止 XXE
+         */
+        private static XMLInputFactory factory() {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            return factory;
+        }
+
+        @Override
+        public int rowNumber() {
+            return rowNumber;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                xml.close();
+            } catch (XMLStreamException e) {
+                log.debug("关闭 XLSX 解析器失败: {}", e.getMessage());
+            }
+            zip.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+}
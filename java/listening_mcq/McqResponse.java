@@ -12,7 +12,9 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "mcq_responses")
+@Table(name = "mcq_responses", indexes = {
+        @Index(name = "idx_mcq_responses_answered_at", columnList = "answered_at")
+})
 public class McqResponse {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
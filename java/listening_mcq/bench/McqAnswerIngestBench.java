@@ -0,0 +1,505 @@
+package org.icao4.eqasbackend2.impl.listening_mcq;
+
+import org.icao4.eqasbackend2.cache.CacheInvalidationBus;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * 选择题回答写后入库的压测与故障回放（手动运行，不随应用启动）
+ * 用内存数据库代替 MySQL（每条语句固定延迟，事务提交前暂存），验证：
+ * 1. 多线程同时提交的 p50/p99 延迟与合并刷盘效果；
+ * 2. 数据库不可用时崩溃，重启回放后回答恰好写入一次；
+ * 3. 无提交的重启不会让序号回退；
+ * 4. 事务已提交但确认丢失、逐条写入中途失败时重试不重复写入；
+ * 5. 确认超时被拒绝的提交不会写库。
+ * 每条回答的耗时字段写入唯一编号，用于检查重复和遗漏。
+ * <p>
+ * 运行：java ... McqAnswerIngestBench [线程数=500] [每线程提交数=40] [fsync=true] [语句延迟ms=5]
+ */
+public class McqAnswerIngestBench {
+
+    private static final int QUESTIONS = 200;
+
+    private static final AtomicInteger TAGS = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        boolean fsync = args.length <= 2 || Boolean.parseBoolean(args[2]);
+        long statementDelayMs = args.length > 3 ? Long.parseLong(args[3]) : 5;
+
+        Path root = Files.createTempDirectory("mcq-ingest-bench");
+        MemoryJdbcTemplate db = new MemoryJdbcTemplate(statementDelayMs);
+        boolean ok = true;
+        ok &= load(db, root.resolve("load"), threads, rounds, fsync);
+        ok &= crashReplay(db, root.resolve("crash"), fsync);
+        ok &= idleRestart(db, root.resolve("idle"), fsync);
+        ok &= lostCommitAck(db, root.resolve("ack"), fsync);
+        ok &= partialFallback(db, root.resolve("fallback"), fsync);
+        ok &= ackTimeout(db, root.resolve("timeout"), threads, fsync);
+        System.out.println(ok ? "ALL PASSED" : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+
+    // ==================== 场景 ====================
+
+    private static boolean load(MemoryJdbcTemplate db, Path dir, int threads, int rounds, boolean fsync)
+            throws Exception {
+        db.reset();
+        McqAnswerIngestService service = start(db, dir, fsync, 2000);
+        AtomicLong errors = new AtomicLong();
+        long wallMs = submitInLockstep(service, threads, rounds, errors);
+        int expected = threads * rounds;
+        waitFor(() -> db.rowCount() >= expected, 60000);
+        Map<String, Object> stats = service.getStats();
+        service.shutdown();
+        boolean ok = errors.get() == 0 && db.rowCount() == expected && db.duplicateTags().isEmpty();
+        System.out.printf("[load] fsync=%s threads=%d submitted=%d errors=%d wallMs=%d p50Micros=%s p99Micros=%s "
+                        + "maxMicros=%s answersPerFsync=%.1f rows=%d -> %s%n", fsync, threads, expected, errors.get(),
+                wallMs, stats.get("p50Micros"), stats.get("p99Micros"), stats.get("maxMicros"),
+                (double) expected / (Long) stats.get("groupCommits"), db.rowCount(), ok ? "OK" : "FAIL");
+        return ok;
+    }
+
+    private static boolean crashReplay(MemoryJdbcTemplate db, Path dir, boolean fsync) throws Exception {
+        db.reset();
+        McqAnswerIngestService service = start(db, dir, fsync, 2000);
+        submit(service, 500);
+        waitFor(() -> db.rowCount() >= 500, 10000);
+        db.down = true;
+        submit(service, 1000);
+        crash(service);
+        int before = db.rowCount();
+        db.down = false;
+        McqAnswerIngestService recovered = start(db, dir, fsync, 2000);
+        waitFor(() -> db.rowCount() >= 1500, 10000);
+        recovered.shutdown();
+        boolean ok = before == 500 && db.rowCount() == 1500 && db.duplicateTags().isEmpty();
+        System.out.printf("[crash-replay] beforeCrash=%d afterReplay=%d duplicates=%d -> %s%n", before,
+                db.rowCount(), db.duplicateTags().size(), ok ? "OK" : "FAIL");
+        return ok;
+    }
+
+    private static boolean idleRestart(MemoryJdbcTemplate db, Path dir, boolean fsync) throws Exception {
+        db.reset();
+        McqAnswerIngestService first = start(db, dir, fsync, 2000);
+        submit(first, 100);
+        waitFor(() -> db.rowCount() >= 100, 10000);
+        first.shutdown();
+        long firstSeq = (Long) first.getStats().get("flushedSeq");
+
+        // 无提交的重启：检查点之前的段已删除，只剩空的活动段
+        start(db, dir, fsync, 2000).shutdown();
+
+        McqAnswerIngestService third = start(db, dir, fsync, 2000);
+        submit(third, 100);
+        waitFor(() -> db.rowCount() >= 200, 10000);
+        third.shutdown();
+        long thirdSeq = (Long) third.getStats().get("flushedSeq");
+        boolean ok = db.rowCount() == 200 && thirdSeq > firstSeq && db.duplicateTags().isEmpty();
+        System.out.printf("[idle-restart] rows=%d firstSeq=%d thirdSeq=%d -> %s%n", db.rowCount(), firstSeq,
+                thirdSeq, ok ? "OK" : "FAIL");
+        return ok;
+    }
+
+    private static boolean lostCommitAck(MemoryJdbcTemplate db, Path dir, boolean fsync) throws Exception {
+        db.reset();
+        McqAnswerIngestService service = start(db, dir, fsync, 2000);
+        db.lostAcks.set(3);
+        submit(service, 300);
+        waitFor(() -> db.rowCount() >= 300 && db.lostAcks.get() <= 0, 20000);
+        Thread.sleep(500);
+        long backlog = (Long) service.getStats().get("backlog");
+        service.shutdown();
+        boolean ok = db.rowCount() == 300 && db.duplicateTags().isEmpty() && backlog == 0;
+        System.out.printf("[lost-commit-ack] rows=%d duplicates=%d -> %s%n", db.rowCount(),
+                db.duplicateTags().size(), ok ? "OK" : "FAIL");
+        return ok;
+    }
+
+    private static boolean partialFallback(MemoryJdbcTemplate db, Path dir, boolean fsync) throws Exception {
+        db.reset();
+        McqAnswerIngestService service = start(db, dir, fsync, 2000);
+        // 阻塞写库，让整批回答一起刷出：题目 2 在提交后被删除，逐条写入到第 20 条时连接断开一次
+        db.down = true;
+        for (int i = 0; i < 50; i++) {
+            long questionId = i % 10 == 0 ? 2 : 1;
+            service.submit(questionId, questionId * 10 + 1, TAGS.incrementAndGet());
+        }
+        db.deletedQuestions.add(2L);
+        db.failAfterRows.set(20);
+        db.down = false;
+        waitFor(() -> db.rowCount() >= 45, 20000);
+        Thread.sleep(500);
+        Map<String, Object> stats = service.getStats();
+        service.shutdown();
+        boolean ok = db.rowCount() == 45 && db.duplicateTags().isEmpty() && (Long) stats.get("dropped") == 5
+                && (Long) stats.get("backlog") == 0;
+        System.out.printf("[partial-fallback] rows=%d dropped=%s duplicates=%d -> %s%n", db.rowCount(),
+                stats.get("dropped"), db.duplicateTags().size(), ok ? "OK" : "FAIL");
+        db.deletedQuestions.clear();
+        return ok;
+    }
+
+    private static boolean ackTimeout(MemoryJdbcTemplate db, Path dir, int threads, boolean fsync) throws Exception {
+        db.reset();
+        McqAnswerIngestService service = start(db, dir, fsync, 1);
+        Set<Integer> rejectedTags = ConcurrentHashMap.newKeySet();
+        AtomicLong accepted = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                for (int r = 0; r < 10; r++) {
+                    int tag = TAGS.incrementAndGet();
+                    try {
+                        service.submit(1L, 11L, tag);
+                        accepted.incrementAndGet();
+                    } catch (McqAnswerIngestService.IngestRejectedException e) {
+                        rejectedTags.add(tag);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        waitFor(() -> db.rowCount() >= accepted.get(), 20000);
+        Thread.sleep(500);
+        service.shutdown();
+        Set<Integer> written = db.tags();
+        boolean ok = db.rowCount() == accepted.get() && rejectedTags.stream().noneMatch(written::contains)
+                && db.duplicateTags().isEmpty();
+        System.out.printf("[ack-timeout] accepted=%d rejected=%d rows=%d -> %s%n", accepted.get(),
+                rejectedTags.size(), db.rowCount(), ok ? "OK" : "FAIL");
+        return ok;
+    }
+
+    // ==================== 辅助 ====================
+
+    private static McqAnswerIngestService start(MemoryJdbcTemplate db, Path dir, boolean fsync, long ackTimeoutMs)
+            throws Exception {
+        McqAnswerKeyService answerKey = new McqAnswerKeyService(db,
+                new StaticListableBeanFactory().getBeanProvider(CacheInvalidationBus.class));
+        answerKey.init();
+        McqAnswerIngestService service = new McqAnswerIngestService(db, new MemoryTransactionTemplate(db), answerKey);
+        set(service, "enabled", true);
+        set(service, "dir", dir.toString());
+        set(service, "queueCapacity", 10000);
+        set(service, "maxBacklog", 200000L);
+        set(service, "batchSize", 500);
+        set(service, "flushIntervalMs", 50L);
+        set(service, "segmentMb", 1L);
+        set(service, "fsync", fsync);
+        set(service, "ackTimeoutMs", ackTimeoutMs);
+        service.start();
+        return service;
+    }
+
+    /**
+     * 模拟进程崩溃：停止后台线程但不等待写库
+     */
+    private static void crash(McqAnswerIngestService service) throws Exception {
+        set(service, "running", false);
+        for (String name : new String[]{"writer", "flusher"}) {
+            Field field = McqAnswerIngestService.class.getDeclaredField(name);
+            field.setAccessible(true);
+            ((Thread) field.get(service)).join(10000);
+        }
+    }
+
+    private static long submitInLockstep(McqAnswerIngestService service, int threads, int rounds, AtomicLong errors)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                for (int r = 0; r < rounds; r++) {
+                    try {
+                        barrier.await();
+                        long questionId = r % QUESTIONS + 1;
+                        service.submit(questionId, questionId * 10 + 1 + r % 4, TAGS.incrementAndGet());
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static void submit(McqAnswerIngestService service, int count) {
+        for (int i = 0; i < count; i++) {
+            long questionId = i % QUESTIONS + 1;
+            service.submit(questionId, questionId * 10 + 1, TAGS.incrementAndGet());
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    private static void set(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    // ==================== 内存数据库 ====================
+
+    /**
+     * 只实现写后入库和答案索引用到的语句；事务内的写入暂存到提交时生效
+     */
+    static class MemoryJdbcTemplate extends JdbcTemplate {
+
+        private final long statementDelayMs;
+
+        private final List<Object[]> rows = Collections.synchronizedList(new ArrayList<>());
+        private final Map<String, Long> checkpoints = new ConcurrentHashMap<>();
+        private final ThreadLocal<Transaction> transaction = new ThreadLocal<>();
+
+        volatile boolean down;
+        final Set<Long> deletedQuestions = ConcurrentHashMap.newKeySet();
+
+        /**
+         * 逐条写入到第 N 条时抛出一次连接错误
+         */
+        final AtomicInteger failAfterRows = new AtomicInteger(-1);
+
+        /**
+         * 事务提交成功后仍报错的次数（模拟提交确认丢失）
+         */
+        final AtomicInteger lostAcks = new AtomicInteger();
+
+        MemoryJdbcTemplate(long statementDelayMs) {
+            this.statementDelayMs = statementDelayMs;
+        }
+
+        private static class Transaction {
+            private final List<Object[]> rows = new ArrayList<>();
+            private final Map<String, Long> checkpoints = new HashMap<>();
+        }
+
+        void reset() {
+            rows.clear();
+            checkpoints.clear();
+            down = false;
+            failAfterRows.set(-1);
+            lostAcks.set(0);
+        }
+
+        int rowCount() {
+            return rows.size();
+        }
+
+        Set<Integer> tags() {
+            synchronized (rows) {
+                return rows.stream().map(row -> (Integer) row[4]).collect(Collectors.toSet());
+            }
+        }
+
+        Set<Integer> duplicateTags() {
+            Set<Integer> seen = new HashSet<>();
+            Set<Integer> duplicates = new HashSet<>();
+            synchronized (rows) {
+                for (Object[] row : rows) {
+                    if (!seen.add((Integer) row[4])) {
+                        duplicates.add((Integer) row[4]);
+                    }
+                }
+            }
+            return duplicates;
+        }
+
+        void begin() {
+            transaction.set(new Transaction());
+        }
+
+        void commit() {
+            Transaction tx = transaction.get();
+            transaction.remove();
+            rows.addAll(tx.rows);
+            tx.checkpoints.forEach((logId, seq) -> checkpoints.merge(logId, seq, Math::max));
+        }
+
+        void rollback() {
+            transaction.remove();
+        }
+
+        @Override
+        public void execute(String sql) {
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            if (down) {
+                throw new DataAccessResourceFailureException("数据库不可用");
+            }
+            Transaction tx = transaction.get();
+            if (sql.contains("mcq_ingest_checkpoint")) {
+                if (tx == null) {
+                    checkpoints.merge((String) args[0], (Long) args[1], Math::max);
+                } else {
+                    tx.checkpoints.merge((String) args[0], (Long) args[1], Math::max);
+                }
+                return 1;
+            }
+            sleep(statementDelayMs);
+            List<Object[]> inserted = new ArrayList<>();
+            for (int i = 0; i < args.length; i += 5) {
+                if (deletedQuestions.contains((Long) args[i])) {
+                    throw new DataIntegrityViolationException("外键约束失败: question_id=" + args[i]);
+                }
+                inserted.add(Arrays.copyOfRange(args, i, i + 5));
+            }
+            if (inserted.size() == 1 && failAfterRows.get() > 0 && failAfterRows.decrementAndGet() == 0) {
+                throw new TransientDataAccessResourceException("连接断开");
+            }
+            if (tx == null) {
+                rows.addAll(inserted);
+            } else {
+                tx.rows.addAll(inserted);
+            }
+            return inserted.size();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            if (down) {
+                throw new DataAccessResourceFailureException("数据库不可用");
+            }
+            List<T> result = new ArrayList<>();
+            if (sql.contains("mcq_ingest_checkpoint")) {
+                Long seq = checkpoints.get((String) args[0]);
+                if (seq != null) {
+                    result.add((T) seq);
+                }
+            } else if (sql.contains("FROM mcq_choices WHERE id = ?")) {
+                long choiceId = (Long) args[0];
+                long questionId = choiceId / 10;
+                if (questionId >= 1 && questionId <= QUESTIONS && choiceId % 10 >= 1 && choiceId % 10 <= 4) {
+                    result.add((T) Long.valueOf(questionId));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public List<Map<String, Object>> queryForList(String sql, Object... args) {
+            List<Map<String, Object>> result = new ArrayList<>();
+            if (sql.contains("FROM mcq_choices WHERE question_id = ?")) {
+                long questionId = (Long) args[0];
+                for (long label = 1; label <= 4; label++) {
+                    Map<String, Object> row = new HashMap<>();
+                    row.put("id", questionId * 10 + label);
+                    row.put("is_correct", label == 1);
+                    result.add(row);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType) {
+            return requiredType.cast(QUESTIONS * 4);
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler handler) {
+            try {
+                for (long questionId = 1; questionId <= QUESTIONS; questionId++) {
+                    for (long label = 1; label <= 4; label++) {
+                        handler.processRow(choiceRow(questionId, label));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static ResultSet choiceRow(long questionId, long label) {
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    (proxy, method, methodArgs) -> {
+                        String column = (String) methodArgs[0];
+                        switch (method.getName()) {
+                            case "getLong":
+                                return "id".equals(column) ? questionId * 10 + label : questionId;
+                            case "getBoolean":
+                                return label == 1;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+
+        private static void sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 串行执行事务（与单个写库线程一致），回调成功后提交
+     */
+    static class MemoryTransactionTemplate extends TransactionTemplate {
+
+        private final MemoryJdbcTemplate db;
+
+        MemoryTransactionTemplate(MemoryJdbcTemplate db) {
+            this.db = db;
+        }
+
+        @Override
+        public synchronized <T> T execute(TransactionCallback<T> action) {
+            db.begin();
+            T result;
+            try {
+                result = action.doInTransaction(new SimpleTransactionStatus());
+            } catch (RuntimeException e) {
+                db.rollback();
+                throw e;
+            }
+            db.commit();
+            if (db.lostAcks.get() > 0 && db.lostAcks.decrementAndGet() >= 0) {
+                throw new TransientDataAccessResourceException("提交后连接断开");
+            }
+            return result;
+        }
+    }
+}
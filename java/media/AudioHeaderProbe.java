@@ -0,0 +1,480 @@
+package org.icao4.eqasbackend2.impl.media;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 音频文件头解析
+ * 只解析容器和帧头，不解码音频数据：
+ * <ul>
+ *     <li>WAV：RIFF 块头；峰值波形直接取 PCM 采样（按步长抽样）</li>
+ *     <li>MP3：逐帧读取帧头累计时长；峰值波形用 Layer III 边信息中的 global_gain 近似，为相对最响帧的幅度</li>
+ *     <li>OGG（Vorbis/Opus）：首页的标识头取采样参数，末页的 granule position 取时长；不生成波形</li>
+ * </ul>
+ */
+public final class AudioHeaderProbe {
+
+    private static final int MAX_SAMPLES_PER_BUCKET = 2048;
+
+    private static final int[][] MP3_BITRATES = {
+            // MPEG1 Layer I, II, III
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            // MPEG2/2.5 Layer I, II/III
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+    };
+
+    private static final int[] MP3_SAMPLE_RATES = {44100, 48000, 32000};
+
+    /**
+     * 查找首个帧同步字的最大范围
+     */
+    private static final int MP3_SYNC_SEARCH_LIMIT = 64 * 1024;
+
+    private AudioHeaderProbe() {
+    }
+
+    /**
+     * 解析音频格式、时长、采样率和声道数；无法识别时返回 empty
+     */
+    public static Optional<AudioInfo> probe(Path file) throws IOException {
+        return probe(file, 0);
+    }
+
+    /**
+     * 解析音频信息并生成降采样峰值波形
+     *
+     * @param peakBuckets 波形点数，0 表示不生成波形
+     */
+    public static Optional<AudioInfo> probe(Path file, int peakBuckets) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 12 || size > Integer.MAX_VALUE) {
+                return Optional.empty();
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) == 0x46464952 && buffer.getInt(8) == 0x45564157) {
+                return probeWav(buffer, peakBuckets);
+            }
+            if (buffer.getInt(0) == 0x5367674f) {
+                return probeOgg(buffer);
+            }
+            return probeMp3(buffer, peakBuckets);
+        }
+    }
+
+    // ==================== WAV ====================
+
+    /**
+     * 遍历 RIFF 块，取 fmt 块的采样参数与 data 块的位置和长度
+     */
+    private static Optional<AudioInfo> probeWav(MappedByteBuffer buf, int peakBuckets) {
+        int size = buf.limit();
+        int position = 12;
+        int formatTag = 0;
+        Integer channels = null;
+        Integer sampleRate = null;
+        Integer byteRate = null;
+        Integer blockAlign = null;
+        Integer bitsPerSample = null;
+        int dataOffset = -1;
+        long dataSize = 0;
+
+        while (position + 8 <= size && (byteRate == null || dataOffset < 0)) {
+            int id = buf.getInt(position);
+            long length = Integer.toUnsignedLong(buf.getInt(position + 4));
+            int body = position + 8;
+            if (id == 0x20746d66 && body + 16 <= size) {
+                formatTag = buf.getShort(body) & 0xFFFF;
+                channels = (int) buf.getShort(body + 2);
+                sampleRate = buf.getInt(body + 4);
+                byteRate = buf.getInt(body + 8);
+                blockAlign = (int) buf.getShort(body + 12);
+                bitsPerSample = (int) buf.getShort(body + 14);
+                if (formatTag == 0xFFFE && length >= 26 && body + 26 <= size) {
+                    // WAVE_FORMAT_EXTENSIBLE：子格式 GUID 的前两字节即实际格式
+                    formatTag = buf.getShort(body + 24) & 0xFFFF;
+                }
+            } else if (id == 0x61746164) {
+                dataOffset = body;
+                // 流式写出的文件 data 长度可能为 0 或 0xFFFFFFFF，以实际文件大小为准
+                dataSize = length == 0 || body + length > size ? size - body : length;
+            }
+            // 块长度为奇数时有 1 字节填充
+            position = (int) Math.min(Integer.MAX_VALUE, body + length + (length & 1));
+        }
+
+        if (byteRate == null || byteRate <= 0 || dataOffset < 0) {
+            return Optional.empty();
+        }
+        List<Double> peaks = null;
+        if (peakBuckets > 0 && blockAlign != null && blockAlign > 0 && channels != null && channels > 0
+                && bitsPerSample != null
+                && (formatTag == 1 || formatTag == 3)) {
+            peaks = wavPeaks(buf, dataOffset, dataSize / blockAlign, blockAlign, channels, bitsPerSample,
+                    formatTag == 3, peakBuckets);
+        }
+        return Optional.of(new AudioInfo("wav", dataSize * 1000 / byteRate, sampleRate, channels, bitsPerSample, peaks));
+    }
+
+    private static List<Double> wavPeaks(MappedByteBuffer buf, int dataOffset, long frames, int blockAlign,
+                                         int channels, int bits, boolean isFloat, int buckets) {
+        int bytesPerSample = bits / 8;
+        if (frames <= 0 || bytesPerSample <= 0 || bytesPerSample * channels > blockAlign) {
+            return null;
+        }
+        List<Double> peaks = new ArrayList<>(buckets);
+        for (int b = 0; b < buckets; b++) {
+            long from = frames * b / buckets;
+            long to = Math.max(from + 1, frames * (b + 1) / buckets);
+            long step = Math.max(1, (to - from) / MAX_SAMPLES_PER_BUCKET);
+            double peak = 0;
+            for (long frame = from; frame < to && frame < frames; frame += step) {
+                int offset = (int) (dataOffset + frame * blockAlign);
+                for (int c = 0; c < channels; c++) {
+                    peak = Math.max(peak, Math.abs(sample(buf, offset + c * bytesPerSample, bytesPerSample, isFloat)));
+                }
+            }
+            peaks.add(Math.min(1.0, peak));
+        }
+        return peaks;
+    }
+
+    /**
+     * 读取单个采样并归一化到 [-1, 1]
+     */
+    private static double sample(MappedByteBuffer buf, int offset, int bytes, boolean isFloat) {
+        switch (bytes) {
+            case 1:
+                return ((buf.get(offset) & 0xFF) - 128) / 128.0;
+            case 2:
+                return buf.getShort(offset) / 32768.0;
+            case 3:
+                int value = (buf.get(offset) & 0xFF) | ((buf.get(offset + 1) & 0xFF) << 8) | (buf.get(offset + 2) << 16);
+                return value / 8388608.0;
+            case 4:
+                return isFloat ? buf.getFloat(offset) : buf.getInt(offset) / 2147483648.0;
+            default:
+                return 0;
+        }
+    }
+
+    // ==================== MP3 ====================
+
+    private static Optional<AudioInfo> probeMp3(MappedByteBuffer buf, int peakBuckets) {
+        int size = buf.limit();
+        int start = skipId3v2(buf);
+        int position = start;
+        int sampleRate = 0;
+        int channels = 0;
+        long totalSamples = 0;
+        List<Integer> frameGains = peakBuckets > 0 ? new ArrayList<>() : null;
+        List<Long> frameStarts = peakBuckets > 0 ? new ArrayList<>() : null;
+        boolean first = true;
+
+        while (position + 4 <= size) {
+            if (first && position - start > MP3_SYNC_SEARCH_LIMIT) {
+                return Optional.empty();
+            }
+            Mp3Frame frame = Mp3Frame.parse(buf, position);
+            if (frame == null || position + frame.length > size) {
+                if (totalSamples > 0 && frame != null) {
+                    break;
+                }
+                position++;
+                continue;
+            }
+            if (first) {
+                // 首帧要求紧跟着另一个合法帧头（或文件结束），排除数据中的伪同步字
+                int next = position + frame.length;
+                if (next + 4 <= size && Mp3Frame.parse(buf, next) == null) {
+                    position++;
+                    continue;
+                }
+                first = false;
+                sampleRate = frame.sampleRate;
+                channels = frame.channels;
+                if (frame.isInfoFrame(buf, position)) {
+                    // Xing/Info 帧不含音频
+                    position += frame.length;
+                    continue;
+                }
+            }
+            if (frameGains != null && frame.layer == 3) {
+                frameStarts.add(totalSamples);
+                frameGains.add(frame.maxGlobalGain(buf, position));
+            }
+            totalSamples += frame.samples;
+            position += frame.length;
+        }
+
+        if (totalSamples == 0 || sampleRate == 0) {
+            return Optional.empty();
+        }
+        List<Double> peaks = null;
+        if (frameGains != null && !frameGains.isEmpty()) {
+            peaks = gainPeaks(frameGains, frameStarts, totalSamples, peakBuckets);
+        }
+        return Optional.of(new AudioInfo("mp3", totalSamples * 1000 / sampleRate, sampleRate, channels, null, peaks));
+    }
+
+    /**
+     * global_gain 每增加 1 对应幅度乘 2^(1/4)，以最响帧为 1 换算相对幅度
+     */
+    private static List<Double> gainPeaks(List<Integer> gains, List<Long> starts, long totalSamples, int buckets) {
+        int maxGain = 0;
+        int[] bucketGain = new int[buckets];
+        for (int i = 0; i < gains.size(); i++) {
+            int gain = gains.get(i);
+            int bucket = (int) Math.min(buckets - 1, starts.get(i) * buckets / totalSamples);
+            bucketGain[bucket] = Math.max(bucketGain[bucket], gain);
+            maxGain = Math.max(maxGain, gain);
+        }
+        List<Double> peaks = new ArrayList<>(buckets);
+        for (int gain : bucketGain) {
+            peaks.add(gain == 0 ? 0.0 : Math.pow(2, (gain - maxGain) / 4.0));
+        }
+        return peaks;
+    }
+
+    private static int skipId3v2(MappedByteBuffer buf) {
+        if (buf.limit() < 10 || buf.get(0) != 'I' || buf.get(1) != 'D' || buf.get(2) != '3') {
+            return 0;
+        }
+        int tagSize = ((buf.get(6) & 0x7F) << 21) | ((buf.get(7) & 0x7F) << 14)
+                | ((buf.get(8) & 0x7F) << 7) | (buf.get(9) & 0x7F);
+        boolean footer = (buf.get(5) & 0x10) != 0;
+        return 10 + tagSize + (footer ? 10 : 0);
+    }
+
+    /**
+     * MPEG 音频帧头
+     */
+    private static final class Mp3Frame {
+        private int mpegVersion;
+        private int layer;
+        private boolean crc;
+        private int sampleRate;
+        private int channels;
+        private int samples;
+        private int length;
+
+        /**
+         * 解析帧头，非法帧头返回 null
+         */
+        private static Mp3Frame parse(MappedByteBuffer buf, int offset) {
+            int b0 = buf.get(offset) & 0xFF;
+            int b1 = buf.get(offset + 1) & 0xFF;
+            int b2 = buf.get(offset + 2) & 0xFF;
+            int b3 = buf.get(offset + 3) & 0xFF;
+            if (b0 != 0xFF || (b1 & 0xE0) != 0xE0) {
+                return null;
+            }
+            int versionBits = (b1 >> 3) & 3;
+            int layerBits = (b1 >> 1) & 3;
+            int bitrateIndex = b2 >> 4;
+            int rateIndex = (b2 >> 2) & 3;
+            if (versionBits == 1 || layerBits == 0 || bitrateIndex == 0 || bitrateIndex == 15 || rateIndex == 3) {
+                return null;
+            }
+            Mp3Frame frame = new Mp3Frame();
+            frame.mpegVersion = versionBits == 3 ? 1 : (versionBits == 2 ? 2 : 25);
+            frame.layer = 4 - layerBits;
+            frame.crc = (b1 & 1) == 0;
+            int padding = (b2 >> 1) & 1;
+            frame.channels = (b3 >> 6) == 3 ? 1 : 2;
+            frame.sampleRate = MP3_SAMPLE_RATES[rateIndex] / (frame.mpegVersion == 1 ? 1 : (frame.mpegVersion == 2 ? 2 : 4));
+
+            int table = frame.mpegVersion == 1 ? frame.layer - 1 : (frame.layer == 1 ? 3 : 4);
+            int bitrate = MP3_BITRATES[table][bitrateIndex] * 1000;
+            if (frame.layer == 1) {
+                frame.samples = 384;
+                frame.length = (12 * bitrate / frame.sampleRate + padding) * 4;
+            } else if (frame.layer == 2 || frame.mpegVersion == 1) {
+                frame.samples = 1152;
+                frame.length = 144 * bitrate / frame.sampleRate + padding;
+            } else {
+                frame.samples = 576;
+                frame.length = 72 * bitrate / frame.sampleRate + padding;
+            }
+            return frame.length > 4 ? frame : null;
+        }
+
+        private int sideInfoOffset(int frameOffset) {
+            return frameOffset + 4 + (crc ? 2 : 0);
+        }
+
+        private int sideInfoLength() {
+            if (mpegVersion == 1) {
+                return channels == 1 ? 17 : 32;
+            }
+            return channels == 1 ? 9 : 17;
+        }
+
+        private boolean isInfoFrame(MappedByteBuffer buf, int frameOffset) {
+            int tag = sideInfoOffset(frameOffset) + sideInfoLength();
+            if (layer != 3 || tag + 4 > frameOffset + length) {
+                return false;
+            }
+            return matches(buf, tag, "Xing") || matches(buf, tag, "Info");
+        }
+
+        /**
+         * 各 granule/声道 global_gain 的最大值
+         */
+        private int maxGlobalGain(MappedByteBuffer buf, int frameOffset) {
+            int base = sideInfoOffset(frameOffset);
+            int max = 0;
+            if (mpegVersion == 1) {
+                int header = 9 + (channels == 1 ? 5 : 3) + 4 * channels;
+                for (int gr = 0; gr < 2; gr++) {
+                    for (int ch = 0; ch < channels; ch++) {
+                        max = Math.max(max, readBits(buf, base, header + (gr * channels + ch) * 59 + 21, 8));
+                    }
+                }
+            } else {
+                int header = 8 + (channels == 1 ? 1 : 2);
+                for (int ch = 0; ch < channels; ch++) {
+                    max = Math.max(max, readBits(buf, base, header + ch * 63 + 21, 8));
+                }
+            }
+            return max;
+        }
+
+        private static int readBits(MappedByteBuffer buf, int byteOffset, int bitOffset, int count) {
+            int value = 0;
+            for (int i = 0; i < count; i++) {
+                int bit = bitOffset + i;
+                int b = buf.get(byteOffset + bit / 8) & 0xFF;
+                value = (value << 1) | ((b >> (7 - bit % 8)) & 1);
+            }
+            return value;
+        }
+    }
+
+    // ==================== OGG ====================
+
+    private static Optional<AudioInfo> probeOgg(MappedByteBuffer buf) {
+        int size = buf.limit();
+        if (size < 28) {
+            return Optional.empty();
+        }
+        int segments = buf.get(26) & 0xFF;
+        int packet = 27 + segments;
+        if (packet + 19 > size) {
+            return Optional.empty();
+        }
+        int serial = buf.getInt(14);
+
+        String format;
+        int channels;
+        int sampleRate;
+        long granuleRate;
+        long preSkip = 0;
+        if (buf.get(packet) == 0x01 && matches(buf, packet + 1, "vorbis")) {
+            format = "ogg/vorbis";
+            channels = buf.get(packet + 11) & 0xFF;
+            sampleRate = buf.getInt(packet + 12);
+            granuleRate = sampleRate;
+        } else if (matches(buf, packet, "OpusHead")) {
+            format = "ogg/opus";
+            channels = buf.get(packet + 9) & 0xFF;
+            preSkip = buf.getShort(packet + 10) & 0xFFFF;
+            sampleRate = buf.getInt(packet + 12);
+            // Opus 的 granule position 固定以 48kHz 计
+            granuleRate = 48000;
+        } else {
+            return Optional.empty();
+        }
+
+        long lastGranule = -1;
+        int searchFrom = Math.max(0, size - 65536);
+        for (int pos = size - 27; pos >= searchFrom; pos--) {
+            if (buf.getInt(pos) == 0x5367674f && buf.getInt(pos + 14) == serial) {
+                lastGranule = buf.getLong(pos + 6);
+                break;
+            }
+        }
+        if (lastGranule <= 0 || granuleRate <= 0) {
+            return Optional.of(new AudioInfo(format, 0, sampleRate, channels, null, null));
+        }
+        long durationMs = Math.max(0, lastGranule - preSkip) * 1000 / granuleRate;
+        return Optional.of(new AudioInfo(format, durationMs, sampleRate, channels, null, null));
+    }
+
+    private static boolean matches(MappedByteBuffer buf, int offset, String ascii) {
+        if (offset + ascii.length() > buf.limit()) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            if (buf.get(offset + i) != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 音频基本信息
+     */
+    @Getter
+    public static final class AudioInfo {
+        private final String format;
+        private final long durationMs;
+        private final Integer sampleRate;
+        private final Integer channels;
+        private final Integer bitsPerSample;
+        /**
+         * 降采样峰值波形，取值 [0, 1]；未生成时为 null
+         */
+        private final List<Double> peaks;
+
+        public AudioInfo(String format, long durationMs, Integer sampleRate, Integer channels, Integer bitsPerSample,
+                         List<Double> peaks) {
+            this.format = format;
+            this.durationMs = durationMs;
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+            this.bitsPerSample = bitsPerSample;
+            this.peaks = peaks;
+        }
+
+        /**
+         * 写入 extraMetaJson 的字段
+         */
+        public Map<String, Object> toMeta() {
+            Map<String, Object> meta = new LinkedHashMap<>();
+            meta.put("format", format);
+            meta.put("sampleRate", sampleRate);
+            meta.put("channels", channels);
+            if (bitsPerSample != null) {
+                meta.put("bitsPerSample", bitsPerSample);
+            }
+            if (peaks != null) {
+                List<Double> rounded = new ArrayList<>(peaks.size());
+                for (Double peak : peaks) {
+                    rounded.add(Math.round(peak * 1000) / 1000.0);
+                }
+                Map<String, Object> waveform = new LinkedHashMap<>();
+                waveform.put("buckets", peaks.size());
+                waveform.put("peaks", rounded);
+                meta.put("waveform", waveform);
+            }
+            return meta;
+        }
+    }
+}
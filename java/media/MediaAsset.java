@@ -3,6 +3,7 @@ package org.icao4.eqasbackend2.entity;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import org.icao4.eqasbackend2.impl.media.MediaTranscriptIndexListener;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
@@ -14,7 +15,10 @@ import java.time.LocalDateTime;
  * 该实体类代表了系统中的各种媒体资产，例如音频、图像、视频和文档。
  */
 @Entity
-@Table(name = "media_assets")
+@EntityListeners(MediaTranscriptIndexListener.class)
+@Table(name = "media_assets", indexes = {
+        @Index(name = "uk_content_sha256_type", columnList = "content_sha256, media_type", unique = true)
+})
 @Data
 @EqualsAndHashCode(callSuper = false)
 public class MediaAsset {
@@ -41,6 +45,13 @@ public class MediaAsset {
     @Column(nullable = false, length = 500)
     private String uri;
 
+    /**
+     * 文件内容的 SHA-256 摘要（十六进制）。
+     * 用于上传去重，相同内容、相同类型只保存一条记录；带调用方元数据的上传和历史数据为 null。
+     */
+    @Column(name = "content_sha256", length = 64)
+    private String contentSha256;
+
     /**
      * 媒体持续时长，单位为毫秒。
      * 对于音频和视频文件，该字段存储其播放时长。
@@ -1,11 +1,17 @@
 package org.icao4.eqasbackend2.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.icao4.eqasbackend2.common.ApiResponse;
 import org.icao4.eqasbackend2.dto.request.MediaAssetUploadRequest;
 import org.icao4.eqasbackend2.dto.response.MediaAssetResponse;
 import org.icao4.eqasbackend2.entity.MediaAsset;
+import org.icao4.eqasbackend2.impl.media.MediaContentService;
+import org.icao4.eqasbackend2.impl.media.MediaMetadataExtractor;
+import org.icao4.eqasbackend2.impl.media.MediaStorageService;
+import org.icao4.eqasbackend2.impl.media.MediaTranscriptIndex;
 import org.icao4.eqasbackend2.service.MediaAssetService;
 import org.icao4.eqasbackend2.service.ControllerStatsService;
 import org.icao4.eqasbackend2.dto.response.ControllerStatsResponse;
@@ -22,7 +28,9 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -39,6 +47,10 @@ public class MediaAssetController {
 
     private final MediaAssetService mediaAssetService;
     private final ControllerStatsService controllerStatsService;
+    private final MediaStorageService mediaStorageService;
+    private final MediaContentService mediaContentService;
+    private final MediaMetadataExtractor mediaMetadataExtractor;
+    private final MediaTranscriptIndex mediaTranscriptIndex;
 
     /**
      * 上传媒体文件
@@ -54,10 +66,25 @@ public class MediaAssetController {
         
         log.info("API - 上传媒体文件: type={}, filename={}", type, file.getOriginalFilename());
         
+        if (file.isEmpty()) {
+            return ResponseEntity.ok(ApiResponse.error(400, "上传文件不能为空"));
+        }
+        MediaAsset.MediaType mediaType = resolveMediaType(type, file.getContentType());
+        if (mediaType == null) {
+            log.warn("无效的媒体类型: {}", type);
+            return ResponseEntity.ok(ApiResponse.error(400, "无效的媒体类型: " + type));
+        }
+        
         try {
-            // TODO: 实现文件上传逻辑
-            log.warn("上传媒体文件接口未实现: 暂无对应的Service方法");
-            return ResponseEntity.ok(ApiResponse.error(501, "上传功能暂未实现"));
+            Map<String, Object> extraMeta = new HashMap<>();
+            if (title != null) {
+                extraMeta.put("title", title);
+            }
+            if (description != null) {
+                extraMeta.put("description", description);
+            }
+            MediaStorageService.StoredMedia stored = mediaStorageService.store(file, mediaType, extraMeta);
+            return ResponseEntity.ok(ApiResponse.success(convertToResponse(stored.getAsset())));
         } catch (Exception e) {
             log.error("上传媒体文件失败: {}", e.getMessage(), e);
             return ResponseEntity.ok(ApiResponse.error(500, "上传媒体文件失败: " + e.getMessage()));
@@ -85,6 +112,19 @@ public class MediaAssetController {
         }
     }
 
+    /**
+     * 获取媒体内容（支持 Range 分段、ETag 协商缓存）
+     */
+    @GetMapping("/{id}/content")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public void getMediaContent(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (!mediaContentService.serve(id, request, response)) {
+            log.warn("媒体内容不存在: id={}", id);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "媒体资源不存在");
+        }
+    }
+
     /**
      * 删除媒体资源
      */
@@ -95,6 +135,8 @@ public class MediaAssetController {
         log.info("API - 删除媒体资源: {}", id);
         try {
             mediaAssetService.deleteMediaAsset(id);
+            mediaContentService.evict(id);
+            mediaTranscriptIndex.remove(id);
             return ResponseEntity.ok(ApiResponse.success("删除媒体资源成功"));
         } catch (Exception e) {
             log.error("删除媒体资源失败: id={}, error={}", id, e.getMessage(), e);
@@ -158,25 +200,51 @@ public class MediaAssetController {
     }
 
     /**
-     * 搜索媒体资源
+     * 搜索媒体资源（转录文本全文检索，引号包裹的部分按短语匹配，按相关度排序）
      */
     @GetMapping("/search")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
-    @Cacheable(key = "'search:' + #keyword")
-    public ResponseEntity<ApiResponse<List<MediaAssetResponse>>> searchMedia(@RequestParam String keyword) {
-        log.info("API - 搜索媒体资源: {}", keyword);
+    public ResponseEntity<ApiResponse<Page<Map<String, Object>>>> searchMedia(
+            @RequestParam String keyword,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        log.info("API - 搜索媒体资源: keyword={}, page={}, size={}", keyword, page, size);
         try {
-            Page<MediaAsset> pageResult = mediaAssetService.searchMediaAssetsByTranscript(keyword, Pageable.unpaged());
-            List<MediaAsset> mediaList = pageResult.getContent();
-            
-            // TODO: 转换为MediaAssetResponse列表
-            return ResponseEntity.ok(ApiResponse.success("搜索媒体资源成功"));
+            Pageable pageable = PageRequest.of(Math.max(0, page), Math.min(Math.max(1, size), 100));
+            if (!mediaTranscriptIndex.isReady()) {
+                Page<Map<String, Object>> fallback = mediaAssetService.searchMediaAssetsByTranscript(keyword, pageable)
+                        .map(media -> toSearchResult(media, null));
+                return ResponseEntity.ok(ApiResponse.success(fallback));
+            }
+            Page<Map<String, Object>> result = mediaTranscriptIndex.search(keyword, pageable)
+                    .map(hit -> toSearchResult(hit.getAsset(), hit.getScore()));
+            return ResponseEntity.ok(ApiResponse.success(result));
         } catch (Exception e) {
             log.error("搜索媒体资源失败: keyword={}, error={}", keyword, e.getMessage(), e);
             return ResponseEntity.ok(ApiResponse.error(500, "搜索媒体资源失败"));
         }
     }
 
+    /**
+     * 获取转录文本索引统计
+     */
+    @GetMapping("/search/stats")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getSearchIndexStats() {
+        log.info("API - 获取转录文本索引统计");
+        return ResponseEntity.ok(ApiResponse.success(mediaTranscriptIndex.getStats()));
+    }
+
+    /**
+     * 获取音频元数据提取队列状态
+     */
+    @GetMapping("/metadata/status")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getMetadataStatus() {
+        log.info("API - 获取音频元数据提取状态");
+        return ResponseEntity.ok(ApiResponse.success(mediaMetadataExtractor.getStatus()));
+    }
+
     /**
      * 获取媒体资源管理统计信息
      */
@@ -193,4 +261,58 @@ public class MediaAssetController {
             return ResponseEntity.ok(ApiResponse.error(500, "获取媒体统计信息失败: " + e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    // ==================== 私有辅助方法 ====================
+
+    private Map<String, Object> toSearchResult(MediaAsset media, Double score) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", media.getId());
+        result.put("mediaType", media.getMediaType() != null ? media.getMediaType().name() : null);
+        result.put("url", media.getUri());
+        result.put("durationMs", media.getDurationMs());
+        result.put("transcript", media.getTranscript());
+        result.put("score", score);
+        return result;
+    }
+
+    /**
+     * 解析上传的媒体类型；auto 时按文件的 Content-Type 推断，无法识别时返回 null
+     */
+    private MediaAsset.MediaType resolveMediaType(String type, String contentType) {
+        String value = type == null ? "" : type.trim().toLowerCase();
+        if ("auto".equals(value)) {
+            String mime = contentType == null ? "" : contentType.toLowerCase();
+            if (mime.startsWith("audio/")) {
+                return MediaAsset.MediaType.audio;
+            }
+            if (mime.startsWith("image/")) {
+                return MediaAsset.MediaType.image;
+            }
+            if (mime.startsWith("video/")) {
+                return MediaAsset.MediaType.video;
+            }
+            return MediaAsset.MediaType.doc;
+        }
+        for (MediaAsset.MediaType mediaType : MediaAsset.MediaType.values()) {
+            if (mediaType.name().equals(value)) {
+                return mediaType;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 将MediaAsset实体转换为MediaAssetResponse
+     */
+    private MediaAssetResponse convertToResponse(MediaAsset mediaAsset) {
+        return MediaAssetResponse.builder()
+                .id(mediaAsset.getId())
+                .mediaType(mediaAsset.getMediaType())
+                .uri(mediaAsset.getUri())
+                .durationMs(mediaAsset.getDurationMs())
+                .transcript(mediaAsset.getTranscript())
+                .extraMetaJson(mediaAsset.getExtraMetaJson())
+                .createdAt(mediaAsset.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,256 @@
+package org.icao4.eqasbackend2.impl.media;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.entity.MediaAsset;
+import org.icao4.eqasbackend2.service.MediaAssetService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 媒体内容输出
+ * 支持 Range（单区间）、If-None-Match / If-Range 与 ETag。
+ * 容器支持 sendfile（Tomcat NIO）时交给容器做零拷贝发送；
+ * 否则用 FileChannel.transferTo 写到响应输出流，这条回退路径由 JDK 经临时缓冲分块拷贝，不是零拷贝，但不会整文件读入内存。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MediaContentService {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final MediaAssetService mediaAssetService;
+    private final MediaStorageService mediaStorageService;
+
+    @Value("${app.media.content.max-age-seconds:86400}")
+    private long maxAgeSeconds;
+
+    /**
+     * 媒体ID -> 文件描述，避免每个分段请求都查库和 stat 文件
+     */
+    private final Map<Long, ContentDescriptor> descriptors = new ConcurrentHashMap<>();
+
+    // ==================== 输出 ====================
+
+    /**
+     * 输出媒体内容
+     *
+     * @return false 表示媒体不存在或文件缺失（调用方返回 404）
+     */
+    public boolean serve(Long mediaId, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<ContentDescriptor> found = describe(mediaId);
+        if (found.isEmpty()) {
+            return false;
+        }
+        ContentDescriptor content = found.get();
+
+        response.setHeader(HttpHeaders.ETAG, content.etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=" + maxAgeSeconds);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, content.lastModified);
+
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), content.etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+
+        long start = 0;
+        long end = content.length - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        boolean partial = rangeHeader != null && (ifRange == null || ifRangeMatches(request, ifRange, content));
+        if (partial) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            if (ranges.size() != 1) {
+                // 多区间请求按整文件返回（RFC 9110 允许忽略 Range）
+                partial = false;
+            } else {
+                HttpRange range = ranges.get(0);
+                long rangeStart = range.getRangeStart(content.length);
+                long rangeEnd = range.getRangeEnd(content.length);
+                if (content.length == 0 || rangeStart >= content.length || rangeStart > rangeEnd) {
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + content.length);
+                    return true;
+                }
+                start = rangeStart;
+                end = rangeEnd;
+            }
+        }
+
+        long count = content.length == 0 ? 0 : end - start + 1;
+        response.setContentType(content.contentType);
+        response.setContentLengthLong(count);
+        if (partial) {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + content.length);
+        } else {
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+        if ("HEAD".equalsIgnoreCase(request.getMethod()) || count == 0) {
+            return true;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // 由容器在响应提交后直接从文件发送到 socket
+            request.setAttribute(SENDFILE_FILENAME, content.path.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return true;
+        }
+        transfer(content.path, start, count, response);
+        return true;
+    }
+
+    /**
+     * 预先加载文件描述，首个请求不再查库和 stat 文件
+     *
+     * @return 媒体存在且文件可读时返回 true
+     */
+    public boolean warm(Long mediaId) {
+        try {
+            return describe(mediaId).isPresent();
+        } catch (IOException e) {
+            log.warn("预热媒体内容失败: id={}, error={}", mediaId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 媒体资源删除或替换后调用
+     */
+    public void evict(Long mediaId) {
+        descriptors.remove(mediaId);
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private Optional<ContentDescriptor> describe(Long mediaId) throws IOException {
+        ContentDescriptor cached = descriptors.get(mediaId);
+        if (cached != null) {
+            if (Files.isRegularFile(cached.path)) {
+                return Optional.of(cached);
+            }
+            descriptors.remove(mediaId, cached);
+        }
+
+        Optional<MediaAsset> asset = mediaAssetService.getMediaAssetById(mediaId);
+        Optional<Path> path = asset.flatMap(mediaStorageService::resolve);
+        if (path.isEmpty() || !Files.isRegularFile(path.get())) {
+            return Optional.empty();
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path.get(), BasicFileAttributes.class);
+        String sha256 = asset.get().getContentSha256();
+        String etag = sha256 != null
+                ? "\"" + sha256 + "\""
+                : "W/\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "\"";
+        String contentType = MediaTypeFactory.getMediaType(new FileSystemResource(path.get()))
+                .orElse(MediaType.APPLICATION_OCTET_STREAM)
+                .toString();
+
+        ContentDescriptor descriptor = new ContentDescriptor(path.get(), attributes.size(),
+                attributes.lastModifiedTime().toMillis(), etag, contentType);
+        descriptors.put(mediaId, descriptor);
+        return Optional.of(descriptor);
+    }
+
+    /**
+     * FileChannel.transferTo 写出指定区间；目标是输出流包装的通道，JDK 会经临时缓冲分块拷贝
+     */
+    private void transfer(Path path, long start, long count, HttpServletResponse response) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = file.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+            response.flushBuffer();
+        }
+    }
+
+    /**
+     * If-Range 校验（RFC 9110 13.1.5）：实体标签用强比较，任一方为弱标签都不匹配；日期须与 Last-Modified 相同
+     */
+    private static boolean ifRangeMatches(HttpServletRequest request, String ifRange, ContentDescriptor content) {
+        String value = ifRange.trim();
+        if (value.startsWith("W/") || value.startsWith("\"")) {
+            return !content.etag.startsWith("W/") && value.equals(content.etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == content.lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String bare = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if ("*".equals(value)) {
+                return true;
+            }
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals(bare)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class ContentDescriptor {
+        private final Path path;
+        private final long length;
+        private final long lastModified;
+        private final String etag;
+        private final String contentType;
+
+        private ContentDescriptor(Path path, long length, long lastModified, String etag, String contentType) {
+            this.path = path;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.contentType = contentType;
+        }
+    }
+}
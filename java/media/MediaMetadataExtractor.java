@@ -0,0 +1,256 @@
+package org.icao4.eqasbackend2.impl.media;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.entity.MediaAsset;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 音频元数据提取任务
+ * 媒体ID进入工作队列，由可配置数量的工作线程解析文件头，回填 durationMs，
+ * 并把采样率、声道数和降采样峰值波形写入 extraMetaJson。
+ * 存量数据按 ID 游标分批补齐，每轮只取一批，不做全表扫描。
+ * 结果在数据库端合并进 extraMetaJson，不会覆盖提取期间其他请求写入的字段。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MediaMetadataExtractor {
+
+    /**
+     * 写入 extraMetaJson 的版本标记；提取逻辑变化时递增，存量数据会被重新处理
+     */
+    public static final int METADATA_VERSION = 1;
+
+    private static final String PENDING_SQL = "SELECT id FROM media_assets "
+            + "WHERE media_type = 'audio' AND id > ? "
+            + "AND (extra_meta_json IS NULL OR JSON_EXTRACT(extra_meta_json, '$.metadataVersion') IS NULL "
+            + "OR JSON_EXTRACT(extra_meta_json, '$.metadataVersion') < ?) "
+            + "ORDER BY id LIMIT ?";
+
+    private static final String LOAD_SQL = "SELECT uri FROM media_assets WHERE id = ?";
+
+    /**
+     * 提取成功：合并探测结果并清除上次的错误标记
+     */
+    private static final String SUCCESS_SQL = "UPDATE media_assets SET duration_ms = ?, extra_meta_json = "
+            + "JSON_REMOVE(JSON_MERGE_PATCH(COALESCE(extra_meta_json, JSON_OBJECT()), ?), '$.metadataError') WHERE id = ?";
+
+    /**
+     * 提取失败：打上错误和版本标记，补齐不再重复处理
+     */
+    private static final String FAILURE_SQL = "UPDATE media_assets SET extra_meta_json = "
+            + "JSON_SET(COALESCE(extra_meta_json, JSON_OBJECT()), '$.metadataError', ?, '$.metadataVersion', ?) WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final MediaStorageService mediaStorageService;
+
+    @Value("${app.media.metadata.parallelism:2}")
+    private int parallelism;
+
+    @Value("${app.media.metadata.waveform-buckets:200}")
+    private int waveformBuckets;
+
+    @Value("${app.media.metadata.backfill-batch-size:200}")
+    private int backfillBatchSize;
+
+    @Value("${app.media.metadata.backfill-interval-seconds:60}")
+    private long backfillIntervalSeconds;
+
+    private final BlockingQueue<Long> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * 已入队未处理的ID，防止新上传和补齐重复入队
+     */
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong backfillCursor = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private ExecutorService workers;
+    private ScheduledExecutorService scheduler;
+
+    // ==================== 生命周期 ====================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        int threads = Math.max(1, parallelism);
+        AtomicInteger counter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "media-metadata-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            workers.submit(this::workLoop);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "media-metadata-backfill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::backfill, 0, backfillIntervalSeconds, TimeUnit.SECONDS);
+        log.info("音频元数据提取已启动: parallelism={}, backfillBatchSize={}", threads, backfillBatchSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    // ==================== 入队 ====================
+
+    /**
+     * 新媒体入库后调用
+     */
+    public void enqueue(Long mediaId) {
+        if (mediaId != null && queued.add(mediaId)) {
+            queue.offer(mediaId);
+        }
+    }
+
+    /**
+     * 在调用线程上立即提取（发布试卷前预热用）；已是当前版本的跳过
+     *
+     * @return 提取成功或无需提取时返回 true
+     */
+    public boolean extractNow(Long mediaId) {
+        try {
+            Integer current = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM media_assets WHERE id = ? AND media_type = 'audio' "
+                            + "AND JSON_EXTRACT(extra_meta_json, '$.metadataVersion') >= ?",
+                    Integer.class, mediaId, METADATA_VERSION);
+            if (current != null && current > 0) {
+                return true;
+            }
+            extract(mediaId);
+            processed.incrementAndGet();
+            return true;
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.warn("音频元数据提取失败: id={}, error={}", mediaId, e.getMessage());
+            markFailedQuietly(mediaId, e);
+            return false;
+        }
+    }
+
+    /**
+     * 队列与处理统计
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("queued", queue.size());
+        status.put("processed", processed.get());
+        status.put("failed", failed.get());
+        status.put("backfillCursor", backfillCursor.get());
+        return status;
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 按 ID 游标取下一批待处理的存量数据；队列积压时跳过本轮
+     */
+    private void backfill() {
+        try {
+            if (queue.size() >= backfillBatchSize) {
+                return;
+            }
+            List<Long> ids = jdbcTemplate.queryForList(PENDING_SQL, Long.class,
+                    backfillCursor.get(), METADATA_VERSION, backfillBatchSize);
+            ids.forEach(this::enqueue);
+            if (ids.size() < backfillBatchSize) {
+                // 已扫到末尾，下一轮从头检查（处理失败的记录已打标，不会重复进入）
+                backfillCursor.set(0);
+            } else {
+                backfillCursor.set(ids.get(ids.size() - 1));
+            }
+            if (!ids.isEmpty()) {
+                log.info("音频元数据补齐入队: count={}, cursor={}", ids.size(), backfillCursor.get());
+            }
+        } catch (Exception e) {
+            log.warn("音频元数据补齐查询失败: {}", e.getMessage());
+        }
+    }
+
+    private void workLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Long id;
+            try {
+                id = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                extract(id);
+                processed.incrementAndGet();
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                log.warn("音频元数据提取失败: id={}, error={}", id, e.getMessage());
+                markFailedQuietly(id, e);
+            } finally {
+                queued.remove(id);
+            }
+        }
+    }
+
+    private void extract(Long id) throws Exception {
+        List<String> uris = jdbcTemplate.queryForList(LOAD_SQL, String.class, id);
+        if (uris.isEmpty()) {
+            return;
+        }
+        MediaAsset asset = new MediaAsset();
+        asset.setUri(uris.get(0));
+        Optional<Path> path = mediaStorageService.resolve(asset);
+        if (path.isEmpty() || !Files.isRegularFile(path.get())) {
+            markFailed(id, "文件不存在");
+            return;
+        }
+        Optional<AudioHeaderProbe.AudioInfo> info = AudioHeaderProbe.probe(path.get(), waveformBuckets);
+        if (info.isEmpty()) {
+            markFailed(id, "无法识别的音频格式");
+            return;
+        }
+
+        Map<String, Object> meta = new LinkedHashMap<>(info.get().toMeta());
+        meta.put("metadataVersion", METADATA_VERSION);
+        int durationMs = (int) Math.min(Integer.MAX_VALUE, info.get().getDurationMs());
+        jdbcTemplate.update(SUCCESS_SQL, durationMs, objectMapper.writeValueAsString(meta), id);
+    }
+
+    private void markFailed(Long id, String error) {
+        jdbcTemplate.update(FAILURE_SQL, error, METADATA_VERSION, id);
+    }
+
+    /**
+     * 提取过程抛出异常时打标；打标本身失败则留待下一轮补齐重试
+     */
+    private void markFailedQuietly(Long id, Exception cause) {
+        try {
+            markFailed(id, "提取失败: " + (cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName()));
+        } catch (Exception e) {
+            log.warn("音频元数据失败标记写入失败: id={}, error={}", id, e.getMessage());
+        }
+    }
+}
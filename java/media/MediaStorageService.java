@@ -0,0 +1,638 @@
+package org.icao4.eqasbackend2.impl.media;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.entity.MediaAsset;
+import org.icao4.eqasbackend2.service.MediaAssetService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 媒体文件存储
+ * 上传内容经 NIO 通道分块写入临时文件，同时计算 SHA-256；
+ * 文件按哈希存放（内容寻址），相同内容只保存一份文件。
+ * 没有调用方元数据的上传按 (内容, 媒体类型) 复用同一条 MediaAsset 记录；
+ * 带标题、描述等元数据的上传总是新建记录（共用文件，content_sha256 留空），调用方的元数据不会丢失。
+ * 不再被任何记录引用的文件（写库失败、记录删除）由定期清理删除，新写入或刚被复用的文件有保留期。
+ * 各模块控制器的上传接口统一走这里。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MediaStorageService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int LOOKUP_CHUNK_SIZE = 500;
+
+    private static final String FIND_BY_HASH_SQL =
+            "SELECT id FROM media_assets WHERE content_sha256 = ? AND media_type = ? LIMIT 1";
+
+    private static final String TEMP_DIR = ".tmp";
+
+    /**
+     * 内容寻址文件名（{哈希}.{扩展名}），清理只处理这类文件，目录中的其他文件不动
+     */
+    private static final Pattern STORED_NAME = Pattern.compile("[0-9a-f]{64}(\\.[a-z0-9]{1,10})?");
+
+    private static final String INSERT_SQL = "INSERT INTO media_assets "
+            + "(media_type, uri, content_sha256, duration_ms, extra_meta_json, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final MediaAssetService mediaAssetService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<MediaMetadataExtractor> metadataExtractor;
+
+    /**
+     * 存储根目录
+     */
+    @Value("${app.media.storage-root:uploads}")
+    private String storageRoot;
+
+    /**
+     * 对外访问路径前缀，uri = 前缀 + 相对存储路径
+     */
+    @Value("${app.media.uri-prefix:/uploads/}")
+    private String uriPrefix;
+
+    /**
+     * 未被引用文件的清理间隔，0 表示不清理
+     */
+    @Value("${app.media.orphan-sweep-interval-minutes:60}")
+    private long orphanSweepIntervalMinutes;
+
+    /**
+     * 文件最后写入或复用后至少保留的时间，覆盖上传从落盘到写库的窗口
+     */
+    @Value("${app.media.orphan-grace-minutes:60}")
+    private long orphanGraceMinutes;
+
+    private ScheduledExecutorService sweeper;
+
+    // ==================== 生命周期 ====================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (orphanSweepIntervalMinutes <= 0) {
+            log.info("媒体孤儿文件清理已关闭");
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "media-orphan-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweepQuietly, orphanSweepIntervalMinutes, orphanSweepIntervalMinutes,
+                TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    // ==================== 上传 ====================
+
+    /**
+     * 保存上传文件；没有调用方元数据且相同类型的内容已存在时直接返回已有记录
+     *
+     * @param file      上传文件
+     * @param mediaType 媒体类型
+     * @param extraMeta 调用方附加的元数据，写入 extraMetaJson，可为 null；非空时总是新建记录
+     */
+    public StoredMedia store(MultipartFile file, MediaAsset.MediaType mediaType, Map<String, Object> extraMeta)
+            throws IOException {
+        Path temp = newTempFile();
+        try {
+            Written written;
+            try (InputStream in = file.getInputStream()) {
+                written = streamToFile(in, temp);
+            }
+
+            Optional<MediaAsset> existing = isShared(extraMeta)
+                    ? findByHash(written.sha256, mediaType)
+                    : Optional.empty();
+            if (existing.isPresent()) {
+                log.info("上传内容已存在, 复用媒体资源: id={}, sha256={}", existing.get().getId(), written.sha256);
+                return new StoredMedia(existing.get(), file.getOriginalFilename(), written.size, true);
+            }
+            PreparedMedia prepared = place(temp, written, file.getOriginalFilename(), file.getContentType(),
+                    mediaType, extraMeta);
+            return saveOne(prepared);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // ==================== 批量上传（分阶段） ====================
+
+    /**
+     * 阶段一（请求线程）：把上传文件转存到存储目录下的临时文件，请求结束后仍可读取
+     */
+    public Path spool(MultipartFile file) throws IOException {
+        Path temp = newTempFile();
+        try {
+            file.transferTo(temp);
+            return temp;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * 阶段二（工作线程）：对临时文件计算摘要、移动到内容寻址路径并解析元数据，不写库
+     * 无论成功与否，临时文件都会被删除
+     */
+    public PreparedMedia prepare(Path spooled, String originalName, String contentType,
+                                 MediaAsset.MediaType mediaType, Map<String, Object> extraMeta) throws IOException {
+        try {
+            return place(spooled, hashFile(spooled), originalName, contentType, mediaType, extraMeta);
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+    }
+
+    /**
+     * 阶段三：一次 IN 查询找出已存在的内容，其余按 JDBC 批量插入
+     * 返回结果与输入顺序一致；批量插入冲突时退回逐条保存
+     */
+    public List<StoredMedia> saveAll(List<PreparedMedia> items) {
+        List<StoredMedia> results = new ArrayList<>(Collections.nCopies(items.size(), null));
+        if (items.isEmpty()) {
+            return results;
+        }
+
+        Set<String> hashes = items.stream()
+                .map(item -> item.asset.getContentSha256())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, Long> existingIds = findIdsByHashes(hashes);
+
+        // 同一批次内相同内容、相同类型只插入一次；带调用方元数据的记录各自插入
+        Map<String, List<Integer>> pendingByHash = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            MediaAsset asset = items.get(i).asset;
+            String key = asset.getContentSha256() != null ? dedupKey(asset) : "#" + i;
+            if (!existingIds.containsKey(key)) {
+                pendingByHash.computeIfAbsent(key, h -> new ArrayList<>()).add(i);
+            }
+        }
+
+        List<MediaAsset> toInsert = new ArrayList<>();
+        for (List<Integer> indexes : pendingByHash.values()) {
+            toInsert.add(items.get(indexes.get(0)).asset);
+        }
+        try {
+            // 整批在一个事务里，冲突时全部回滚后再逐条保存，不会留下半批记录
+            transactionTemplate.executeWithoutResult(status -> insertBatch(toInsert));
+            toInsert.forEach(this::scheduleMetadata);
+            for (List<Integer> indexes : pendingByHash.values()) {
+                MediaAsset inserted = items.get(indexes.get(0)).asset;
+                for (int k = 0; k < indexes.size(); k++) {
+                    PreparedMedia item = items.get(indexes.get(k));
+                    results.set(indexes.get(k), new StoredMedia(inserted, item.originalName, item.size, k > 0));
+                }
+            }
+        } catch (DataIntegrityViolationException e) {
+            log.warn("批量插入媒体资源冲突, 改为逐条保存: count={}, error={}", toInsert.size(), e.getMessage());
+            for (List<Integer> indexes : pendingByHash.values()) {
+                for (Integer index : indexes) {
+                    results.set(index, saveOne(items.get(index)));
+                }
+            }
+        }
+
+        if (!existingIds.isEmpty()) {
+            Map<Long, MediaAsset> existing = new HashMap<>();
+            for (Long id : new HashSet<>(existingIds.values())) {
+                mediaAssetService.getMediaAssetById(id).ifPresent(asset -> existing.put(id, asset));
+            }
+            for (int i = 0; i < items.size(); i++) {
+                PreparedMedia item = items.get(i);
+                Long id = item.asset.getContentSha256() != null ? existingIds.get(dedupKey(item.asset)) : null;
+                if (id != null && existing.containsKey(id)) {
+                    results.set(i, new StoredMedia(existing.get(id), item.originalName, item.size, true));
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 根据 uri 解析存储文件路径；uri 不在存储目录下时返回 empty
+     */
+    public Optional<Path> resolve(MediaAsset asset) {
+        String uri = asset.getUri();
+        if (uri == null || !uri.startsWith(uriPrefix)) {
+            return Optional.empty();
+        }
+        Path root = rootPath();
+        Path path = root.resolve(uri.substring(uriPrefix.length())).normalize();
+        return path.startsWith(root) ? Optional.of(path) : Optional.empty();
+    }
+
+    // ==================== 孤儿文件清理 ====================
+
+    /**
+     * 删除存储目录下不再被任何记录引用、且超过保留期的内容寻址文件（含残留的临时文件）
+     *
+     * @return 删除的文件数
+     */
+    public int sweepOrphans() throws IOException {
+        Path root = rootPath();
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(orphanGraceMinutes);
+        List<Path> candidates;
+        try (Stream<Path> files = Files.walk(root)) {
+            candidates = files.filter(Files::isRegularFile)
+                    .filter(path -> path.startsWith(root.resolve(TEMP_DIR))
+                            || STORED_NAME.matcher(path.getFileName().toString()).matches())
+                    .filter(path -> lastModified(path) < cutoff)
+                    .collect(Collectors.toList());
+        }
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        // 先列文件再取引用：列出之后新写库的记录一定能在引用集合中看到
+        Set<String> referenced = new HashSet<>();
+        jdbcTemplate.query("SELECT uri FROM media_assets WHERE uri LIKE ?",
+                rs -> {
+                    referenced.add(rs.getString("uri"));
+                },
+                uriPrefix + "%");
+
+        Path tempDir = root.resolve(TEMP_DIR);
+        int deleted = 0;
+        for (Path path : candidates) {
+            boolean orphan = path.startsWith(tempDir)
+                    || !referenced.contains(uriPrefix + root.relativize(path).toString().replace('\\', '/'));
+            // 删除前再看一次修改时间：刚被复用的文件会被 place 刷新时间
+            if (orphan && lastModified(path) < cutoff && Files.deleteIfExists(path)) {
+                deleted++;
+            }
+        }
+        if (deleted > 0) {
+            log.info("已删除未被引用的媒体文件: count={}", deleted);
+        }
+        return deleted;
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweepOrphans();
+        } catch (Exception e) {
+            log.warn("清理未被引用的媒体文件失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 分块读取输入流写入文件，同时更新摘要，不在内存中保存整个文件
+     */
+    private Written streamToFile(InputStream in, Path target) throws IOException {
+        MessageDigest digest = sha256Digest();
+        long size = 0;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (ReadableByteChannel source = Channels.newChannel(in);
+             FileChannel sink = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    size += sink.write(buffer);
+                }
+                buffer.clear();
+            }
+            sink.force(false);
+        }
+        return new Written(HexFormat.of().formatHex(digest.digest()), size);
+    }
+
+    /**
+     * 顺序读取已落盘文件计算摘要
+     */
+    private Written hashFile(Path file) throws IOException {
+        MessageDigest digest = sha256Digest();
+        long size = 0;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int read;
+            while ((read = channel.read(buffer)) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                size += read;
+                buffer.clear();
+            }
+        }
+        return new Written(HexFormat.of().formatHex(digest.digest()), size);
+    }
+
+    /**
+     * 把已计算摘要的临时文件移动到内容寻址路径，并构建待保存的 MediaAsset
+     */
+    private PreparedMedia place(Path temp, Written written, String originalName, String contentType,
+                                MediaAsset.MediaType mediaType, Map<String, Object> extraMeta) throws IOException {
+        String relative = relativePath(mediaType, written.sha256, extension(originalName));
+        Path target = rootPath().resolve(relative);
+        Files.createDirectories(target.getParent());
+        if (!reuse(target)) {
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | AtomicMoveNotSupportedException e) {
+                // 文件已由并发上传写入（内容相同），或文件系统不支持原子移动
+                if (!Files.exists(target)) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+
+        MediaAsset asset = new MediaAsset();
+        asset.setMediaType(mediaType);
+        asset.setUri(uriPrefix + relative);
+        // 带调用方元数据的记录不参与去重，哈希只记在 extraMetaJson 中
+        asset.setContentSha256(isShared(extraMeta) ? written.sha256 : null);
+        Map<String, Object> meta = new LinkedHashMap<>();
+        if (extraMeta != null) {
+            meta.putAll(extraMeta);
+        }
+        meta.put("originalName", originalName);
+        meta.put("contentType", contentType);
+        meta.put("size", written.size);
+        meta.put("sha256", written.sha256);
+        if (mediaType == MediaAsset.MediaType.audio) {
+            probeAudio(target, asset, meta);
+        }
+        asset.setExtraMetaJson(objectMapper.writeValueAsString(meta));
+        return new PreparedMedia(asset, originalName, written.size);
+    }
+
+    private StoredMedia saveOne(PreparedMedia prepared) {
+        try {
+            MediaAsset saved = mediaAssetService.createMediaAsset(prepared.asset);
+            scheduleMetadata(saved);
+            return new StoredMedia(saved, prepared.originalName, prepared.size, false);
+        } catch (DataIntegrityViolationException e) {
+            // 并发上传相同内容，唯一索引冲突，取先写入的记录
+            if (prepared.asset.getContentSha256() == null) {
+                throw e;
+            }
+            MediaAsset winner = findByHash(prepared.asset.getContentSha256(), prepared.asset.getMediaType())
+                    .orElseThrow(() -> e);
+            return new StoredMedia(winner, prepared.originalName, prepared.size, true);
+        }
+    }
+
+    /**
+     * 批量插入并回填自增主键
+     */
+    private void insertBatch(List<MediaAsset> assets) {
+        if (assets.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (MediaAsset asset : assets) {
+                    ps.setString(1, asset.getMediaType().name());
+                    ps.setString(2, asset.getUri());
+                    ps.setString(3, asset.getContentSha256());
+                    ps.setObject(4, asset.getDurationMs());
+                    ps.setString(5, asset.getExtraMetaJson());
+                    ps.setTimestamp(6, Timestamp.valueOf(now));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next() && i < assets.size()) {
+                        assets.get(i).setId(keys.getLong(1));
+                        assets.get(i).setCreatedAt(now);
+                        i++;
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 新音频入库后交给元数据提取队列生成波形等信息
+     */
+    private void scheduleMetadata(MediaAsset asset) {
+        if (asset.getMediaType() == MediaAsset.MediaType.audio) {
+            metadataExtractor.ifAvailable(extractor -> extractor.enqueue(asset.getId()));
+        }
+    }
+
+    /**
+     * 按哈希查询已有记录，返回 媒体类型:哈希 -> ID
+     */
+    private Map<String, Long> findIdsByHashes(Collection<String> hashes) {
+        Map<String, Long> result = new HashMap<>();
+        List<String> list = new ArrayList<>(hashes);
+        for (int from = 0; from < list.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<String> chunk = list.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, list.size()));
+            jdbcTemplate.query(
+                    "SELECT id, media_type, content_sha256 FROM media_assets WHERE content_sha256 IN ("
+                            + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")",
+                    rs -> {
+                        result.putIfAbsent(rs.getString("media_type") + ":" + rs.getString("content_sha256"),
+                                rs.getLong("id"));
+                    },
+                    chunk.toArray());
+        }
+        return result;
+    }
+
+    private static String dedupKey(MediaAsset asset) {
+        return asset.getMediaType().name() + ":" + asset.getContentSha256();
+    }
+
+    /**
+     * 没有调用方元数据的上传才复用已有记录
+     */
+    private static boolean isShared(Map<String, Object> extraMeta) {
+        return extraMeta == null || extraMeta.isEmpty();
+    }
+
+    /**
+     * 目标文件已存在时刷新修改时间（避免被清理），返回 false 表示需要写入
+     */
+    private static boolean reuse(Path target) throws IOException {
+        if (!Files.exists(target)) {
+            return false;
+        }
+        try {
+            Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private Path newTempFile() throws IOException {
+        Path tempDir = Files.createDirectories(rootPath().resolve(TEMP_DIR));
+        return Files.createTempFile(tempDir, "upload-", ".part");
+    }
+
+    private void probeAudio(Path file, MediaAsset asset, Map<String, Object> meta) {
+        try {
+            AudioHeaderProbe.probe(file).ifPresent(info -> {
+                asset.setDurationMs((int) Math.min(Integer.MAX_VALUE, info.getDurationMs()));
+                meta.putAll(info.toMeta());
+            });
+        } catch (IOException e) {
+            log.warn("解析音频文件头失败: file={}, error={}", file, e.getMessage());
+        }
+    }
+
+    private Optional<MediaAsset> findByHash(String sha256, MediaAsset.MediaType mediaType) {
+        List<Long> ids = jdbcTemplate.queryForList(FIND_BY_HASH_SQL, Long.class, sha256, mediaType.name());
+        return ids.isEmpty() ? Optional.empty() : mediaAssetService.getMediaAssetById(ids.get(0));
+    }
+
+    /**
+     * {类型}/{哈希前2位}/{哈希3-4位}/{哈希}.{扩展名}，避免单个目录文件过多
+     */
+    private static String relativePath(MediaAsset.MediaType mediaType, String sha256, String extension) {
+        return mediaType.name() + "/" + sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/"
+                + sha256 + (extension.isEmpty() ? "" : "." + extension);
+    }
+
+    private static String extension(String filename) {
+        if (filename == null) {
+            return "";
+        }
+        int dot = filename.lastIndexOf('.');
+        if (dot < 0 || dot == filename.length() - 1) {
+            return "";
+        }
+        String ext = filename.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return ext.matches("[a-z0-9]{1,10}") ? ext : "";
+    }
+
+    private Path rootPath() {
+        return Paths.get(storageRoot).toAbsolutePath().normalize();
+    }
+
+    private static MessageDigest sha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    private static final class Written {
+        private final String sha256;
+        private final long size;
+
+        private Written(String sha256, long size) {
+            this.sha256 = sha256;
+            this.size = size;
+        }
+    }
+
+    /**
+     * 已落盘、待写库的媒体
+     */
+    public static final class PreparedMedia {
+        private final MediaAsset asset;
+        private final String originalName;
+        private final long size;
+
+        private PreparedMedia(MediaAsset asset, String originalName, long size) {
+            this.asset = asset;
+            this.originalName = originalName;
+            this.size = size;
+        }
+    }
+
+    /**
+     * 存储结果
+     */
+    @Getter
+    public static final class StoredMedia {
+        private final MediaAsset asset;
+        private final String originalName;
+        private final long size;
+        /**
+         * 是否复用了已有的相同内容
+         */
+        private final boolean deduplicated;
+
+        private StoredMedia(MediaAsset asset, String originalName, long size, boolean deduplicated) {
+            this.asset = asset;
+            this.originalName = originalName;
+            this.size = size;
+            this.deduplicated = deduplicated;
+        }
+
+        /**
+         * 上传接口的通用返回字段
+         */
+        public Map<String, Object> toResultMap() {
+            Map<String, Object> result = new HashMap<>();
+            result.put("id", asset.getId());
+            result.put("filename", originalName);
+            result.put("size", size);
+            result.put("url", asset.getUri());
+            result.put("mediaType", asset.getMediaType() != null ? asset.getMediaType().name() : null);
+            result.put("sha256", asset.getContentSha256());
+            result.put("durationMs", asset.getDurationMs());
+            result.put("deduplicated", deduplicated);
+            result.put("uploadTime", LocalDateTime.now());
+            return result;
+        }
+    }
+}
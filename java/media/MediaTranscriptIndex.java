@@ -0,0 +1,706 @@
+package org.icao4.eqasbackend2.impl.media;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.cache.CacheInvalidationBus;
+import org.icao4.eqasbackend2.entity.MediaAsset;
+import org.icao4.eqasbackend2.repository.MediaAssetRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 媒体转录文本全文索引
+ * 位置倒排索引：每个词元的倒排表按文档序号递增保存词频和位置（位置差值变长编码），
+ * 支持短语查询（引号包裹）和 BM25 排序，只保留前 offset + size 个结果，只回表当前页。
+ * 删除采用墓碑标记，墓碑比例超过阈值时压缩倒排表；不保存原文，内存只与词元数量相关。
+ * 经 JPA 保存、删除媒体时由 {@link MediaTranscriptIndexListener} 同步，并经缓存失效总线通知其他节点按ID回表；
+ * 重建期间的变更记下来，换入新索引前重放。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MediaTranscriptIndex {
+
+    private static final String LOAD_SQL = "SELECT id, transcript FROM media_assets WHERE transcript IS NOT NULL";
+
+    private static final String LOAD_ONE_SQL = "SELECT transcript FROM media_assets WHERE id = ?";
+
+    /**
+     * 总线上的区域名，事件键为媒体ID，为 null 表示全量重建
+     */
+    private static final String BUS_REGION = "mediaTranscriptIndex";
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /**
+     * 墓碑占比超过该值时压缩
+     */
+    private static final double COMPACT_RATIO = 0.2;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MediaAssetRepository mediaAssetRepository;
+    private final ObjectProvider<CacheInvalidationBus> invalidationBus;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 单个文档最多索引的词元数，超长转录截断
+     */
+    @Value("${app.media.transcript.max-tokens-per-doc:50000}")
+    private int maxTokensPerDoc;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 串行化全量构建（启动构建与广播触发的重建）
+     */
+    private final Object rebuildMonitor = new Object();
+
+    private Segment segment = new Segment();
+
+    /**
+     * 重建扫描期间的变更（媒体ID -> 新词元，删除为空列表），重建未进行时为 null
+     */
+    private Map<Long, List<String>> changedDuringRebuild;
+
+    private volatile boolean ready = false;
+
+    // ==================== 索引构建与维护 ====================
+
+    @PostConstruct
+    public void init() {
+        CacheInvalidationBus bus = invalidationBus.getIfAvailable();
+        if (bus != null) {
+            bus.subscribe(nodeId, this::onRemoteChange);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (rebuildMonitor) {
+            doRebuild();
+        }
+    }
+
+    private void doRebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new LinkedHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Segment fresh = new Segment();
+        try {
+            jdbcTemplate.query(LOAD_SQL, rs -> {
+                fresh.add(rs.getLong("id"), tokenize(rs.getString("transcript"), maxTokensPerDoc));
+            });
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            // 扫描可能读到变更前的数据，按变更顺序重放到新索引
+            changedDuringRebuild.forEach((mediaId, tokens) -> {
+                fresh.remove(mediaId);
+                fresh.add(mediaId, tokens);
+            });
+            changedDuringRebuild = null;
+            segment = fresh;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("转录文本索引构建完成: docs={}, terms={}, 耗时={}ms",
+                fresh.liveDocs, fresh.dictionary.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 新增或更新媒体的转录索引；转录为空时等同于删除
+     */
+    public void index(MediaAsset asset) {
+        if (asset == null || asset.getId() == null) {
+            return;
+        }
+        replace(asset.getId(), tokenize(asset.getTranscript(), maxTokensPerDoc));
+        publish(String.valueOf(asset.getId()));
+    }
+
+    public void remove(Long mediaId) {
+        if (mediaId == null) {
+            return;
+        }
+        replace(mediaId, Collections.emptyList());
+        publish(String.valueOf(mediaId));
+    }
+
+    // ==================== 查询 ====================
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 全文检索
+     * 查询中引号包裹的部分为短语，其余按词切分；所有词和短语都必须命中，按 BM25 得分降序。
+     */
+    public Page<ScoredMedia> search(String query, Pageable pageable) {
+        List<List<String>> clauses = parseQuery(query);
+        if (clauses.isEmpty()) {
+            return new PageImpl<>(new ArrayList<>(), pageable, 0);
+        }
+
+        int limit = (int) Math.min(Integer.MAX_VALUE, pageable.getOffset() + pageable.getPageSize());
+        List<long[]> top;
+        int total;
+        lock.readLock().lock();
+        try {
+            Segment.Result result = segment.search(clauses, limit);
+            top = result.top;
+            total = result.total;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int from = (int) Math.min(pageable.getOffset(), top.size());
+        List<long[]> page = top.subList(from, top.size());
+        if (page.isEmpty()) {
+            return new PageImpl<>(new ArrayList<>(), pageable, total);
+        }
+        // 只回表当前页，一次查询
+        List<Long> ids = page.stream().map(entry -> entry[0]).collect(Collectors.toList());
+        Map<Long, MediaAsset> byId = mediaAssetRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(MediaAsset::getId, Function.identity()));
+        List<ScoredMedia> content = new ArrayList<>(page.size());
+        for (long[] entry : page) {
+            MediaAsset asset = byId.get(entry[0]);
+            if (asset != null) {
+                content.add(new ScoredMedia(asset, Double.longBitsToDouble(entry[1])));
+            }
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * 索引规模统计
+     */
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("documents", segment.liveDocs);
+            stats.put("deletedDocuments", segment.deletedDocs);
+            stats.put("terms", segment.dictionary.size());
+            stats.put("estimatedBytes", segment.estimatedBytes());
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 替换媒体的词元（空列表表示删除）
+     */
+    private void replace(Long mediaId, List<String> tokens) {
+        lock.writeLock().lock();
+        try {
+            segment.remove(mediaId);
+            segment.add(mediaId, tokens);
+            recordDuringRebuild(mediaId, tokens);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void publish(String key) {
+        CacheInvalidationBus bus = invalidationBus.getIfAvailable();
+        if (bus != null) {
+            bus.publish(nodeId, BUS_REGION, key);
+        }
+    }
+
+    /**
+     * 其他节点保存或删除了媒体：只按ID回表刷新本节点，不再广播
+     */
+    private void onRemoteChange(CacheInvalidationBus.Event event) {
+        if (!BUS_REGION.equals(event.getRegion())) {
+            return;
+        }
+        try {
+            if (event.getKey() == null) {
+                rebuild();
+                return;
+            }
+            // 尚未开始构建时忽略，启动构建会读到最新数据
+            if (!ready && !isRebuilding()) {
+                return;
+            }
+            Long mediaId = Long.parseLong(event.getKey());
+            List<String> rows = jdbcTemplate.queryForList(LOAD_ONE_SQL, String.class, mediaId);
+            replace(mediaId, rows.isEmpty() ? Collections.emptyList() : tokenize(rows.get(0), maxTokensPerDoc));
+        } catch (RuntimeException e) {
+            log.warn("按广播刷新转录文本索引失败: key={}, error={}", event.getKey(), e.getMessage());
+        }
+    }
+
+    private boolean isRebuilding() {
+        lock.readLock().lock();
+        try {
+            return changedDuringRebuild != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 调用方需持有写锁
+     */
+    private void recordDuringRebuild(Long mediaId, List<String> tokens) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.remove(mediaId);
+            changedDuringRebuild.put(mediaId, tokens);
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (segment.deletedDocs > 64 && segment.deletedDocs > COMPACT_RATIO * (segment.liveDocs + segment.deletedDocs)) {
+            long start = System.currentTimeMillis();
+            segment = segment.compact();
+            log.info("转录文本索引压缩完成: docs={}, terms={}, 耗时={}ms",
+                    segment.liveDocs, segment.dictionary.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 解析查询：引号内为短语，引号外每个词是一个单词短语
+     */
+    static List<List<String>> parseQuery(String query) {
+        List<List<String>> clauses = new ArrayList<>();
+        if (query == null) {
+            return clauses;
+        }
+        String[] parts = query.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            List<String> tokens = tokenize(parts[i], Integer.MAX_VALUE);
+            if (tokens.isEmpty()) {
+                continue;
+            }
+            if (i % 2 == 1) {
+                clauses.add(tokens);
+            } else {
+                for (String token : tokens) {
+                    clauses.add(Collections.singletonList(token));
+                }
+            }
+        }
+        return clauses;
+    }
+
+    /**
+     * 英文和数字按词切分并转小写，中文按单字切分（连续汉字的位置相邻，可做短语匹配）
+     */
+    static List<String> tokenize(String text, int maxTokens) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length() && tokens.size() < maxTokens; ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (Character.UnicodeScript.of(cp) == Character.UnicodeScript.HAN) {
+                flush(word, tokens);
+                tokens.add(new String(Character.toChars(cp)));
+            } else if (Character.isLetterOrDigit(cp) || (cp == '\'' && word.length() > 0)) {
+                word.appendCodePoint(Character.toLowerCase(cp));
+            } else {
+                flush(word, tokens);
+            }
+        }
+        flush(word, tokens);
+        return tokens.size() > maxTokens ? tokens.subList(0, maxTokens) : tokens;
+    }
+
+    private static void flush(StringBuilder word, List<String> tokens) {
+        if (word.length() > 0) {
+            int end = word.length();
+            while (end > 0 && word.charAt(end - 1) == '\'') {
+                end--;
+            }
+            if (end > 0) {
+                tokens.add(word.substring(0, end));
+            }
+            word.setLength(0);
+        }
+    }
+
+    /**
+     * 检索结果
+     */
+    @Getter
+    public static final class ScoredMedia {
+        private final MediaAsset asset;
+        private final double score;
+
+        private ScoredMedia(MediaAsset asset, double score) {
+            this.asset = asset;
+            this.score = score;
+        }
+    }
+
+    /**
+     * 索引段：文档按追加顺序编号，倒排表天然按文档序号有序
+     */
+    private static final class Segment {
+        private final Map<String, PostingList> dictionary = new HashMap<>();
+        private final Map<Long, Integer> ordinalOf = new HashMap<>();
+        private long[] mediaIds = new long[256];
+        private int[] lengths = new int[256];
+        private final BitSet deleted = new BitSet();
+        private int nextOrdinal;
+        private int liveDocs;
+        private int deletedDocs;
+        private long liveLength;
+
+        private void add(long mediaId, List<String> tokens) {
+            if (tokens.isEmpty()) {
+                return;
+            }
+            int ordinal = nextOrdinal++;
+            if (ordinal == mediaIds.length) {
+                mediaIds = Arrays.copyOf(mediaIds, ordinal * 2);
+                lengths = Arrays.copyOf(lengths, ordinal * 2);
+            }
+            mediaIds[ordinal] = mediaId;
+            lengths[ordinal] = tokens.size();
+            ordinalOf.put(mediaId, ordinal);
+            liveDocs++;
+            liveLength += tokens.size();
+
+            Map<String, List<Integer>> positions = new LinkedHashMap<>();
+            for (int pos = 0; pos < tokens.size(); pos++) {
+                positions.computeIfAbsent(tokens.get(pos), t -> new ArrayList<>()).add(pos);
+            }
+            for (Map.Entry<String, List<Integer>> entry : positions.entrySet()) {
+                dictionary.computeIfAbsent(entry.getKey(), t -> new PostingList()).append(ordinal, entry.getValue());
+            }
+        }
+
+        private void remove(long mediaId) {
+            Integer ordinal = ordinalOf.remove(mediaId);
+            if (ordinal == null) {
+                return;
+            }
+            deleted.set(ordinal);
+            liveDocs--;
+            deletedDocs++;
+            liveLength -= lengths[ordinal];
+        }
+
+        /**
+         * 去掉墓碑文档，重新编号
+         */
+        private Segment compact() {
+            Segment fresh = new Segment();
+            int[] remap = new int[nextOrdinal];
+            for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+                if (deleted.get(ordinal)) {
+                    remap[ordinal] = -1;
+                    continue;
+                }
+                int target = fresh.nextOrdinal++;
+                if (target == fresh.mediaIds.length) {
+                    fresh.mediaIds = Arrays.copyOf(fresh.mediaIds, target * 2);
+                    fresh.lengths = Arrays.copyOf(fresh.lengths, target * 2);
+                }
+                fresh.mediaIds[target] = mediaIds[ordinal];
+                fresh.lengths[target] = lengths[ordinal];
+                fresh.ordinalOf.put(mediaIds[ordinal], target);
+                remap[ordinal] = target;
+            }
+            fresh.liveDocs = liveDocs;
+            fresh.liveLength = liveLength;
+            for (Map.Entry<String, PostingList> entry : dictionary.entrySet()) {
+                PostingList compacted = entry.getValue().compact(remap);
+                if (compacted.size > 0) {
+                    fresh.dictionary.put(entry.getKey(), compacted);
+                }
+            }
+            return fresh;
+        }
+
+        private long estimatedBytes() {
+            long bytes = (long) mediaIds.length * 12 + ordinalOf.size() * 48L;
+            for (Map.Entry<String, PostingList> entry : dictionary.entrySet()) {
+                bytes += 48 + entry.getKey().length() * 2L + entry.getValue().estimatedBytes();
+            }
+            return bytes;
+        }
+
+        /**
+         * 逐文档求交并打分，小顶堆只保留前 limit 个，不保存其余命中。
+         * 短语的文档频率取其中最短倒排表的长度（上界），扫描前即可算出 IDF。
+         */
+        private Result search(List<List<String>> clauses, int limit) {
+            List<Clause> compiled = new ArrayList<>();
+            for (List<String> terms : clauses) {
+                PostingList[] lists = new PostingList[terms.size()];
+                for (int i = 0; i < terms.size(); i++) {
+                    lists[i] = dictionary.get(terms.get(i));
+                    if (lists[i] == null) {
+                        return new Result(new ArrayList<>(), 0);
+                    }
+                }
+                compiled.add(new Clause(lists));
+            }
+            // 最短的倒排表驱动求交
+            compiled.sort(Comparator.comparingInt(Clause::minSize));
+            PostingList driver = compiled.get(0).shortest();
+
+            double avgLength = liveDocs == 0 ? 1 : (double) liveLength / liveDocs;
+            double[] idf = new double[compiled.size()];
+            for (int c = 0; c < compiled.size(); c++) {
+                int df = compiled.get(c).minSize();
+                idf[c] = Math.log(1 + (liveDocs - df + 0.5) / (df + 0.5));
+            }
+
+            PriorityQueue<long[]> heap = new PriorityQueue<>(Comparator.comparingDouble(e -> Double.longBitsToDouble(e[1])));
+            int[] freqs = new int[compiled.size()];
+            int total = 0;
+            for (int i = 0; i < driver.size; i++) {
+                int doc = driver.docs[i];
+                if (deleted.get(doc)) {
+                    continue;
+                }
+                boolean all = true;
+                for (int c = 0; c < compiled.size() && all; c++) {
+                    freqs[c] = compiled.get(c).frequency(doc);
+                    all = freqs[c] > 0;
+                }
+                if (!all) {
+                    continue;
+                }
+                total++;
+                double norm = K1 * (1 - B + B * lengths[doc] / avgLength);
+                double score = 0;
+                for (int c = 0; c < freqs.length; c++) {
+                    score += idf[c] * freqs[c] * (K1 + 1) / (freqs[c] + norm);
+                }
+                if (heap.size() < limit) {
+                    heap.offer(new long[]{mediaIds[doc], Double.doubleToLongBits(score)});
+                } else if (limit > 0 && score > Double.longBitsToDouble(heap.peek()[1])) {
+                    heap.poll();
+                    heap.offer(new long[]{mediaIds[doc], Double.doubleToLongBits(score)});
+                }
+            }
+            List<long[]> top = new ArrayList<>(heap);
+            top.sort((a, b) -> Double.compare(Double.longBitsToDouble(b[1]), Double.longBitsToDouble(a[1])));
+            return new Result(top, total);
+        }
+
+        private static final class Result {
+            /**
+             * [媒体ID, 得分的 double 位模式]，得分降序
+             */
+            private final List<long[]> top;
+            private final int total;
+
+            private Result(List<long[]> top, int total) {
+                this.top = top;
+                this.total = total;
+            }
+        }
+    }
+
+    /**
+     * 查询子句：单词或短语
+     */
+    private static final class Clause {
+        private final PostingList[] lists;
+        /**
+         * 每个倒排表的游标，配合递增的文档序号做跳跃查找
+         */
+        private final int[] cursors;
+
+        private Clause(PostingList[] lists) {
+            this.lists = lists;
+            this.cursors = new int[lists.length];
+        }
+
+        private int minSize() {
+            int min = Integer.MAX_VALUE;
+            for (PostingList list : lists) {
+                min = Math.min(min, list.size);
+            }
+            return min;
+        }
+
+        private PostingList shortest() {
+            PostingList shortest = lists[0];
+            for (PostingList list : lists) {
+                if (list.size < shortest.size) {
+                    shortest = list;
+                }
+            }
+            return shortest;
+        }
+
+        /**
+         * 该文档中子句出现的次数；短语要求各词位置依次相邻
+         */
+        private int frequency(int doc) {
+            int[] entries = new int[lists.length];
+            for (int i = 0; i < lists.length; i++) {
+                cursors[i] = lists[i].advance(cursors[i], doc);
+                if (cursors[i] >= lists[i].size || lists[i].docs[cursors[i]] != doc) {
+                    return 0;
+                }
+                entries[i] = cursors[i];
+            }
+            if (lists.length == 1) {
+                return lists[0].freqs[entries[0]];
+            }
+            int[] first = lists[0].positions(entries[0]);
+            int count = 0;
+            for (int start : first) {
+                boolean matched = true;
+                for (int i = 1; i < lists.length && matched; i++) {
+                    matched = Arrays.binarySearch(lists[i].positions(entries[i]), start + i) >= 0;
+                }
+                if (matched) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * 单个词元的倒排表
+     * docs/freqs 为并行数组；位置按文档连续存放在 positionBytes 中，每个位置是与前一位置的差值（变长编码）
+     */
+    private static final class PostingList {
+        private int[] docs = new int[4];
+        private int[] freqs = new int[4];
+        private int[] positionOffsets = new int[4];
+        private byte[] positionBytes = new byte[16];
+        private int size;
+        private int byteSize;
+
+        private void append(int doc, List<Integer> positions) {
+            if (size == docs.length) {
+                int capacity = size * 2;
+                docs = Arrays.copyOf(docs, capacity);
+                freqs = Arrays.copyOf(freqs, capacity);
+                positionOffsets = Arrays.copyOf(positionOffsets, capacity);
+            }
+            docs[size] = doc;
+            freqs[size] = positions.size();
+            positionOffsets[size] = byteSize;
+            int previous = 0;
+            for (int position : positions) {
+                writeVarInt(position - previous);
+                previous = position;
+            }
+            size++;
+        }
+
+        private int[] positions(int entry) {
+            int[] result = new int[freqs[entry]];
+            int offset = positionOffsets[entry];
+            int previous = 0;
+            for (int i = 0; i < result.length; i++) {
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = positionBytes[offset++];
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                previous += value;
+                result[i] = previous;
+            }
+            return result;
+        }
+
+        /**
+         * 从 from 开始找到第一个 docs[i] >= doc 的下标（指数 + 二分查找）
+         */
+        private int advance(int from, int doc) {
+            if (from >= size || docs[from] >= doc) {
+                return from;
+            }
+            int step = 1;
+            int low = from;
+            int high = from + 1;
+            while (high < size && docs[high] < doc) {
+                low = high;
+                step <<= 1;
+                high = from + step;
+            }
+            high = Math.min(high, size);
+            int index = Arrays.binarySearch(docs, low, high, doc);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        private PostingList compact(int[] remap) {
+            PostingList fresh = new PostingList();
+            for (int i = 0; i < size; i++) {
+                int target = remap[docs[i]];
+                if (target < 0) {
+                    continue;
+                }
+                int[] positions = positions(i);
+                List<Integer> list = new ArrayList<>(positions.length);
+                for (int p : positions) {
+                    list.add(p);
+                }
+                fresh.append(target, list);
+            }
+            return fresh;
+        }
+
+        private long estimatedBytes() {
+            return (long) docs.length * 12 + positionBytes.length + 64;
+        }
+
+        private void writeVarInt(int value) {
+            while (true) {
+                if (byteSize + 5 > positionBytes.length) {
+                    positionBytes = Arrays.copyOf(positionBytes, positionBytes.length * 2);
+                }
+                if ((value & ~0x7F) == 0) {
+                    positionBytes[byteSize++] = (byte) value;
+                    return;
+                }
+                positionBytes[byteSize++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.icao4.eqasbackend2.impl.media;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.icao4.eqasbackend2.entity.MediaAsset;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * MediaAsset 的 JPA 监听器：经 JPA 保存或删除媒体后同步转录索引
+ * 在事务中时等提交后再更新，回滚的修改不会进入索引。
+ * 索引依赖仓库，仓库依赖 EntityManagerFactory，这里延迟获取以免循环依赖。
+ */
+@Component
+public class MediaTranscriptIndexListener {
+
+    private final ObjectProvider<MediaTranscriptIndex> indexProvider;
+
+    public MediaTranscriptIndexListener(ObjectProvider<MediaTranscriptIndex> indexProvider) {
+        this.indexProvider = indexProvider;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSaved(MediaAsset asset) {
+        afterCommit(() -> indexProvider.ifAvailable(index -> index.index(asset)));
+    }
+
+    @PostRemove
+    public void onRemoved(MediaAsset asset) {
+        Long id = asset.getId();
+        afterCommit(() -> indexProvider.ifAvailable(index -> index.remove(id)));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package org.icao4.eqasbackend2.impl.media;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.entity.MediaAsset;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 批量媒体上传任务
+ * 请求线程只把文件转存到临时目录并返回任务ID；摘要、落盘、元数据解析在有界线程池上并行执行，
+ * 全部就绪后按批写库。进度和按 index 排序的结果通过任务ID轮询获取。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MediaUploadJobService {
+
+    private final MediaStorageService mediaStorageService;
+
+    /**
+     * 并行处理的文件数
+     */
+    @Value("${app.media.batch.parallelism:4}")
+    private int parallelism;
+
+    /**
+     * 每批插入的记录数
+     */
+    @Value("${app.media.batch.insert-size:100}")
+    private int insertSize;
+
+    /**
+     * 已结束任务的保留时间
+     */
+    @Value("${app.media.batch.retention-minutes:60}")
+    private long retentionMinutes;
+
+    private final Map<String, UploadJob> jobs = new ConcurrentHashMap<>();
+
+    private volatile ExecutorService workers;
+
+    // ==================== 提交与查询 ====================
+
+    /**
+     * 提交批量上传任务
+     *
+     * @param files             上传文件
+     * @param mediaType         媒体类型
+     * @param contentTypePrefix 允许的 Content-Type 前缀（如 "audio/"），不匹配的文件直接标记失败
+     * @param extraFields       第 i 个文件结果中附加的字段（如 questionId），可为 null
+     * @return 任务ID
+     */
+    public String submit(List<MultipartFile> files, MediaAsset.MediaType mediaType, String contentTypePrefix,
+                         List<Map<String, Object>> extraFields) {
+        purgeExpired();
+        UploadJob job = new UploadJob(UUID.randomUUID().toString(), files.size());
+        List<Path> spooled = new ArrayList<>(Collections.nCopies(files.size(), null));
+
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile file = files.get(i);
+            Map<String, Object> base = new HashMap<>();
+            base.put("index", i);
+            base.put("filename", file.getOriginalFilename());
+            if (extraFields != null && i < extraFields.size() && extraFields.get(i) != null) {
+                base.putAll(extraFields.get(i));
+            }
+            job.bases.set(i, base);
+
+            String contentType = file.getContentType();
+            if (contentType == null || !contentType.startsWith(contentTypePrefix)) {
+                job.fail(i, "不支持的文件类型");
+                continue;
+            }
+            try {
+                spooled.set(i, mediaStorageService.spool(file));
+            } catch (Exception e) {
+                job.fail(i, e.getMessage());
+            }
+        }
+
+        jobs.put(job.id, job);
+        ExecutorService pool = workers();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            Path path = spooled.get(i);
+            if (path == null) {
+                continue;
+            }
+            int index = i;
+            MultipartFile file = files.get(i);
+            String originalName = file.getOriginalFilename();
+            String contentType = file.getContentType();
+            futures.add(CompletableFuture.runAsync(() -> {
+                job.status.compareAndSet(JobStatus.PENDING, JobStatus.RUNNING);
+                try {
+                    job.prepared.set(index, mediaStorageService.prepare(path, originalName, contentType, mediaType, null));
+                    job.preparedCount.incrementAndGet();
+                } catch (Exception e) {
+                    log.warn("批量上传文件处理失败: job={}, index={}, error={}", job.id, index, e.getMessage());
+                    job.fail(index, e.getMessage());
+                    deleteQuietly(path);
+                }
+            }, pool));
+        }
+
+        job.done = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenRunAsync(() -> persist(job), pool)
+                .exceptionally(e -> {
+                    log.error("批量上传任务失败: job={}, error={}", job.id, e.getMessage(), e);
+                    job.finish(JobStatus.FAILED);
+                    return null;
+                });
+        log.info("批量上传任务已提交: job={}, files={}", job.id, files.size());
+        return job.id;
+    }
+
+    /**
+     * 查询任务进度；任务不存在或已过期时返回 empty
+     */
+    public Optional<Map<String, Object>> getJob(String jobId) {
+        UploadJob job = jobs.get(jobId);
+        return job == null ? Optional.empty() : Optional.of(job.toMap());
+    }
+
+    /**
+     * 任务结束时完成、值为按 index 排序的结果（供同步接口异步等待，不阻塞调用线程）
+     */
+    public CompletableFuture<List<Map<String, Object>>> whenDone(String jobId) {
+        UploadJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new IllegalArgumentException("上传任务不存在: " + jobId);
+        }
+        return job.done.thenApply(ignored -> job.orderedResults());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (workers != null) {
+            workers.shutdown();
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 按批写库，并按 index 填写结果
+     */
+    private void persist(UploadJob job) {
+        List<Integer> indexes = new ArrayList<>();
+        List<MediaStorageService.PreparedMedia> batch = new ArrayList<>();
+        for (int i = 0; i < job.total; i++) {
+            MediaStorageService.PreparedMedia item = job.prepared.get(i);
+            if (item == null) {
+                continue;
+            }
+            indexes.add(i);
+            batch.add(item);
+            if (batch.size() >= insertSize) {
+                saveBatch(job, indexes, batch);
+                indexes = new ArrayList<>();
+                batch = new ArrayList<>();
+            }
+        }
+        saveBatch(job, indexes, batch);
+        for (int i = 0; i < job.total; i++) {
+            job.prepared.set(i, null);
+        }
+        job.finish(JobStatus.COMPLETED);
+        log.info("批量上传任务完成: job={}, succeeded={}, failed={}", job.id, job.succeeded.get(), job.failed.get());
+    }
+
+    private void saveBatch(UploadJob job, List<Integer> indexes, List<MediaStorageService.PreparedMedia> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            List<MediaStorageService.StoredMedia> stored = mediaStorageService.saveAll(batch);
+            for (int k = 0; k < indexes.size(); k++) {
+                if (stored.get(k) == null) {
+                    job.fail(indexes.get(k), "保存媒体资源失败");
+                } else {
+                    job.succeed(indexes.get(k), stored.get(k));
+                }
+            }
+        } catch (Exception e) {
+            log.error("批量保存媒体资源失败: job={}, count={}, error={}", job.id, batch.size(), e.getMessage(), e);
+            for (Integer index : indexes) {
+                job.fail(index, e.getMessage());
+            }
+        }
+    }
+
+    private ExecutorService workers() {
+        if (workers == null) {
+            synchronized (this) {
+                if (workers == null) {
+                    AtomicInteger counter = new AtomicInteger();
+                    workers = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+                        Thread thread = new Thread(r, "media-upload-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return workers;
+    }
+
+    private void purgeExpired() {
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(threshold));
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除临时文件失败: {}", path);
+        }
+    }
+
+    enum JobStatus {
+        PENDING, RUNNING, COMPLETED, FAILED
+    }
+
+    private static final class UploadJob {
+        private final String id;
+        private final int total;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final List<Map<String, Object>> bases;
+        private final AtomicReferenceArray<MediaStorageService.PreparedMedia> prepared;
+        private final AtomicReferenceArray<Map<String, Object>> results;
+        private final AtomicInteger preparedCount = new AtomicInteger();
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicReference<JobStatus> status = new AtomicReference<>(JobStatus.PENDING);
+        private volatile LocalDateTime finishedAt;
+        private volatile CompletableFuture<Void> done = CompletableFuture.completedFuture(null);
+
+        private UploadJob(String id, int total) {
+            this.id = id;
+            this.total = total;
+            this.bases = new ArrayList<>(Collections.nCopies(total, null));
+            this.prepared = new AtomicReferenceArray<>(total);
+            this.results = new AtomicReferenceArray<>(total);
+        }
+
+        /**
+         * 进入终态；先写结束时间，读到终态的线程一定能看到它
+         */
+        private void finish(JobStatus terminal) {
+            finishedAt = LocalDateTime.now();
+            status.set(terminal);
+        }
+
+        private void succeed(int index, MediaStorageService.StoredMedia stored) {
+            Map<String, Object> result = stored.toResultMap();
+            result.putAll(bases.get(index));
+            result.put("success", true);
+            results.set(index, result);
+            succeeded.incrementAndGet();
+        }
+
+        private void fail(int index, String error) {
+            Map<String, Object> result = new HashMap<>(bases.get(index));
+            result.put("error", error);
+            result.put("success", false);
+            results.set(index, result);
+            failed.incrementAndGet();
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("jobId", id);
+            map.put("status", status.get().name());
+            map.put("total", total);
+            map.put("prepared", preparedCount.get());
+            map.put("succeeded", succeeded.get());
+            map.put("failed", failed.get());
+            map.put("processed", succeeded.get() + failed.get());
+            map.put("createdAt", createdAt);
+            map.put("finishedAt", finishedAt);
+            map.put("results", orderedResults());
+            return map;
+        }
+
+        private List<Map<String, Object>> orderedResults() {
+            List<Map<String, Object>> ordered = new ArrayList<>();
+            for (int i = 0; i < total; i++) {
+                Map<String, Object> result = results.get(i);
+                if (result != null) {
+                    ordered.add(result);
+                }
+            }
+            return ordered;
+        }
+    }
+}
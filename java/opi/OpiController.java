@@ -3,6 +3,8 @@ package org.icao4.eqasbackend2.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.icao4.eqasbackend2.common.ApiResponse;
+import org.icao4.eqasbackend2.entity.MediaAsset;
+import org.icao4.eqasbackend2.impl.media.MediaStorageService;
 import org.icao4.eqasbackend2.entity.opi.OpiQuestion;
 import org.icao4.eqasbackend2.entity.opi.OpiResponse;
 import org.icao4.eqasbackend2.entity.opi.OpiTopic;
@@ -40,6 +42,7 @@ public class OpiController {
     private final OpiTopicService opiTopicService;
     private final OpiQuestionService opiQuestionService;
     private final OpiResponseService opiResponseService;
+    private final MediaStorageService mediaStorageService;
     
     // ==================== 话题相关接口 ====================
     
@@ -1135,14 +1138,10 @@ public class OpiController {
             @RequestParam(required = false) Long questionId,
             @RequestParam(required = false) String quality) {
         try {
-            // TODO: 实现音频文件上传逻辑
-            Map<String, Object> result = Map.of(
-                    "filename", file.getOriginalFilename(),
-                    "size", file.getSize(),
-                    "url", "/uploads/audio/" + file.getOriginalFilename(),
-                    "questionId", questionId != null ? questionId : 0L,
-                    "quality", quality != null ? quality : "medium"
-            );
+            MediaStorageService.StoredMedia stored = mediaStorageService.store(file, MediaAsset.MediaType.audio, null);
+            Map<String, Object> result = stored.toResultMap();
+            result.put("questionId", questionId != null ? questionId : 0L);
+            result.put("quality", quality != null ? quality : "medium");
             return ResponseEntity.ok(ApiResponse.success(result));
         } catch (Exception e) {
             log.error("上传口语题目音频失败: {}", e.getMessage(), e);
@@ -18,6 +18,9 @@ import java.time.LocalDateTime;
 @Table(name = "opi_responses", 
        uniqueConstraints = {
            @UniqueConstraint(name = "uk_attempt_q", columnNames = {"question_id"})
+       },
+       indexes = {
+           @Index(name = "idx_opi_responses_answered_at", columnList = "answered_at")
        })
 @Data
 @NoArgsConstructor
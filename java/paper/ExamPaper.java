@@ -38,8 +38,29 @@ public class ExamPaper {
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
     
+    // 发布状态，历史数据为空时按草稿处理
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20)
+    private PaperStatus status = PaperStatus.DRAFT;
+    
+    // 每次发布递增，与下发快照的版本一致
+    @Column(name = "published_version")
+    private Integer publishedVersion;
+    
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+    
     // 关联的考试模块
     @JsonIgnore
     @OneToMany(mappedBy = "examPaper", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<ExamModule> examModules;
+    
+    /**
+     * 试卷发布状态
+     */
+    public enum PaperStatus {
+        DRAFT,        // 草稿
+        PUBLISHED,    // 已发布
+        UNPUBLISHED   // 已下架
+    }
 }
\ No newline at end of file
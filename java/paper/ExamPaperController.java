@@ -1,11 +1,16 @@
 package org.icao4.eqasbackend2.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.icao4.eqasbackend2.common.ApiResponse;
 import org.icao4.eqasbackend2.entity.exam.ExamPaper;
+import org.icao4.eqasbackend2.impl.paper.ExamPaperPopularityEngine;
+import org.icao4.eqasbackend2.impl.paper.ExamPaperPublishService;
+import org.icao4.eqasbackend2.impl.paper.ExamPaperSnapshotService;
 import org.icao4.eqasbackend2.service.exam.ExamPaperService;
 import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.CacheEvict;
@@ -19,6 +24,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +43,8 @@ import java.util.Optional;
 public class ExamPaperController {
 
     private final ExamPaperService examPaperService;
+    private final ExamPaperSnapshotService examPaperSnapshotService;
+    private final ExamPaperPopularityEngine examPaperPopularityEngine;
 
     // ==================== 基础CRUD操作 ====================
 
@@ -226,6 +234,7 @@ public class ExamPaperController {
             }
 
             examPaperService.deleteById(id);
+            examPaperSnapshotService.evict(id);
             log.info("成功删除考试试卷: id={}", id);
             return ResponseEntity.ok(ApiResponse.success(null));
         } catch (Exception e) {
@@ -297,10 +306,13 @@ public class ExamPaperController {
     public ResponseEntity<ApiResponse<ExamPaper>> publishExamPaper(@PathVariable @NotNull Long id) {
         try {
             ExamPaper examPaper = examPaperService.publishExamPaper(id);
-            log.info("成功发布考试试卷: id={}, code={}", id, examPaper.getCode());
+            log.info("成功发布考试试卷: id={}, code={}, version={}", id, examPaper.getCode(), examPaper.getPublishedVersion());
             return ResponseEntity.ok(ApiResponse.success(examPaper));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.ok(ApiResponse.error(404, e.getMessage()));
+        } catch (ExamPaperPublishService.PaperValidationException e) {
+            log.warn("考试试卷发布校验未通过: id={}, errors={}", id, e.getErrors());
+            return ResponseEntity.ok(ApiResponse.error(400, e.getMessage()));
         } catch (Exception e) {
             log.error("发布考试试卷失败: id={}, error={}", id, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -328,6 +340,31 @@ public class ExamPaperController {
         }
     }
 
+    // ==================== 考试下发 ====================
+
+    /**
+     * 获取试卷下发快照（全部模块内容，支持 ETag 协商缓存和 gzip）
+     */
+    @GetMapping("/{id}/delivery")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN') or hasRole('SUPER_ADMIN')")
+    public void getDeliverySnapshot(@PathVariable @NotNull Long id, HttpServletRequest request,
+                                    HttpServletResponse response) throws IOException {
+        try {
+            examPaperSnapshotService.serve(id, request, response);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, e.getMessage());
+        }
+    }
+
+    /**
+     * 获取已构建的下发快照概况
+     */
+    @GetMapping("/delivery/status")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getDeliveryStatus() {
+        return ResponseEntity.ok(ApiResponse.success(examPaperSnapshotService.getStatus()));
+    }
+
     // ==================== 统计和报告 ====================
 
     /**
@@ -369,13 +406,19 @@ public class ExamPaperController {
 
     /**
      * 获取最受欢迎的试卷
+     *
+     * @param window 统计窗口 24h / 7d / 30d，不传时按 7 天
      */
     @GetMapping("/popular")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN') or hasRole('SUPER_ADMIN')")
     public ResponseEntity<ApiResponse<List<ExamPaper>>> getPopularExamPapers(
-            @RequestParam(defaultValue = "10") int limit) {
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) String window) {
         try {
-            List<ExamPaper> examPapers = examPaperService.getMostPopularExamPapers(limit);
+            List<ExamPaper> examPapers = window != null && examPaperPopularityEngine.isReady()
+                    ? examPaperPopularityEngine.getPapers(examPaperPopularityEngine.topPaperIds(
+                            ExamPaperPopularityEngine.Window.parse(window), Math.min(limit, 100)))
+                    : examPaperService.getMostPopularExamPapers(limit);
             return ResponseEntity.ok(ApiResponse.success(examPapers));
         } catch (Exception e) {
             log.error("获取热门试卷失败: {}", e.getMessage(), e);
@@ -402,6 +445,15 @@ public class ExamPaperController {
         }
     }
 
+    /**
+     * 获取试卷在各统计窗口内的作答次数
+     */
+    @GetMapping("/{id}/popularity")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN') or hasRole('SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getExamPaperPopularity(@PathVariable Long id) {
+        return ResponseEntity.ok(ApiResponse.success(examPaperPopularityEngine.getCounts(id)));
+    }
+
     // ==================== 数据传输对象 ====================
 
     /**
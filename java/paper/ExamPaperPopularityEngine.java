@@ -0,0 +1,453 @@
+package org.icao4.eqasbackend2.impl.paper;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.cache.CacheInvalidationBus;
+import org.icao4.eqasbackend2.entity.exam.ExamPaper;
+import org.icao4.eqasbackend2.repository.exam.ExamPaperRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 试卷热度统计
+ * 每份试卷按小时记录作答次数（环形数组，保留 30 天），并维护 24 小时 / 7 天 / 30 天三个滑动窗口的累计值。
+ * 每个窗口有一个按次数排序的有序索引，新增记录时 O(log n) 调整，取前 K 名只需顺序遍历 K 个元素。
+ * 启动时用一条聚合查询回填最近 30 天，此后随考试记录的创建和删除增量更新，热门和推荐接口不再查询考试记录表。
+ * 作答增减和试卷缓存移除通过 {@link CacheInvalidationBus} 广播，其他节点同样计入、移除。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExamPaperPopularityEngine {
+
+    private static final int HOURS = 30 * 24;
+
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final String SEED_SQL = "SELECT exam_paper_id, user_id, "
+            + "DATE_FORMAT(create_at, '%Y-%m-%d %H:00:00') AS hour_start, COUNT(*) AS attempts "
+            + "FROM exam_record WHERE create_at >= ? GROUP BY exam_paper_id, user_id, hour_start";
+
+    /**
+     * 总线上的区域名；事件键为 f:{试卷ID}（移除试卷缓存）或 a:{试卷ID}:{用户ID}:{epoch 小时}:{增减}（作答）
+     */
+    private static final String BUS_REGION = "examPaperPopularity";
+    private static final String FORGET_EVENT = "f:";
+    private static final String ATTEMPT_EVENT = "a:";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ExamPaperRepository examPaperRepository;
+    private final ObjectProvider<CacheInvalidationBus> invalidationBus;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, PaperCounter> counters = new HashMap<>();
+
+    private final Map<Window, TreeSet<PaperCounter>> rankings = new EnumMap<>(Window.class);
+
+    /**
+     * 用户ID -> (试卷ID -> 最近作答的小时)，用于推荐时排除已作答的试卷
+     */
+    private final Map<Long, Map<Long, Long>> recentByUser = new HashMap<>();
+
+    /**
+     * 试卷实体缓存，试卷修改或删除时移除
+     */
+    private final Map<Long, ExamPaper> papers = new ConcurrentHashMap<>();
+
+    /**
+     * 已滚动到的小时（epoch 小时）；roll() 在加锁前读取，需保证可见性
+     */
+    private volatile long currentHour;
+
+    private volatile boolean ready = false;
+
+    /**
+     * 统计窗口
+     */
+    public enum Window {
+        HOURS_24(24),
+        DAYS_7(7 * 24),
+        DAYS_30(30 * 24);
+
+        private final int hours;
+
+        Window(int hours) {
+            this.hours = hours;
+        }
+
+        /**
+         * 解析 "24h" / "7d" / "30d"，无法识别时返回 7 天
+         */
+        public static Window parse(String value) {
+            if ("24h".equalsIgnoreCase(value) || "1d".equalsIgnoreCase(value)) {
+                return HOURS_24;
+            }
+            if ("30d".equalsIgnoreCase(value)) {
+                return DAYS_30;
+            }
+            return DAYS_7;
+        }
+    }
+
+    // ==================== 构建与更新 ====================
+
+    @PostConstruct
+    public void init() {
+        CacheInvalidationBus bus = invalidationBus.getIfAvailable();
+        if (bus != null) {
+            bus.subscribe(nodeId, this::onRemoteChange);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        long nowHour = epochHour(LocalDateTime.now());
+        LocalDateTime since = LocalDateTime.now().minusHours(HOURS - 1).withMinute(0).withSecond(0).withNano(0);
+        Map<Long, PaperCounter> fresh = new HashMap<>();
+        Map<Long, Map<Long, Long>> freshUsers = new HashMap<>();
+        jdbcTemplate.query(SEED_SQL, rs -> {
+            long paperId = rs.getLong("exam_paper_id");
+            long hour = epochHour(LocalDateTime.parse(rs.getString("hour_start"), HOUR_FORMAT));
+            int attempts = rs.getInt("attempts");
+            if (nowHour - hour >= HOURS || hour > nowHour) {
+                return;
+            }
+            fresh.computeIfAbsent(paperId, PaperCounter::new).add(hour, nowHour, attempts);
+            long userId = rs.getLong("user_id");
+            if (!rs.wasNull()) {
+                freshUsers.computeIfAbsent(userId, u -> new HashMap<>()).merge(paperId, hour, Math::max);
+            }
+        }, since);
+
+        lock.writeLock().lock();
+        try {
+            counters.clear();
+            counters.putAll(fresh);
+            recentByUser.clear();
+            recentByUser.putAll(freshUsers);
+            currentHour = nowHour;
+            rebuildRankings();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("试卷热度统计构建完成: papers={}, users={}, 耗时={}ms",
+                fresh.size(), freshUsers.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 记录一次作答；在事务中调用时等提交后再计入，并通知其他节点
+     */
+    public void recordAttempt(Long paperId, Long userId, LocalDateTime time) {
+        if (paperId != null) {
+            afterCommit(() -> applyAndPublish(paperId, userId, time, 1));
+        }
+    }
+
+    /**
+     * 撤销一次作答（考试记录被删除）；在事务中调用时等提交后再扣除，并通知其他节点。
+     * 用户的已作答标记保留到过期，推荐时宁可多排除一份试卷。
+     */
+    public void removeAttempt(Long paperId, LocalDateTime time) {
+        if (paperId != null) {
+            afterCommit(() -> applyAndPublish(paperId, null, time, -1));
+        }
+    }
+
+    /**
+     * 试卷修改或删除后移除实体缓存，并通知其他节点（下架后其他节点不再返回该试卷）
+     */
+    public void forgetPaper(Long paperId) {
+        if (paperId != null) {
+            papers.remove(paperId);
+            publish(FORGET_EVENT + paperId);
+        }
+    }
+
+    // ==================== 查询 ====================
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 指定窗口内作答次数最多的前 K 份试卷ID
+     */
+    public List<Long> topPaperIds(Window window, int k) {
+        List<Long> ids = new ArrayList<>(Math.max(0, k));
+        if (k <= 0) {
+            return ids;
+        }
+        roll();
+        lock.readLock().lock();
+        try {
+            for (PaperCounter counter : rankings.get(window)) {
+                if (ids.size() >= k || counter.sums[window.ordinal()] <= 0) {
+                    break;
+                }
+                ids.add(counter.paperId);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 推荐：近 7 天热门中该用户近 30 天未作答的试卷，不足时用 30 天热门补齐
+     */
+    public List<Long> recommendedPaperIds(Long userId, int k) {
+        List<Long> ids = new ArrayList<>(Math.max(0, k));
+        if (k <= 0) {
+            return ids;
+        }
+        roll();
+        lock.readLock().lock();
+        try {
+            Set<Long> attempted = userId == null ? Collections.emptySet()
+                    : recentByUser.getOrDefault(userId, Collections.emptyMap()).keySet();
+            for (Window window : new Window[]{Window.DAYS_7, Window.DAYS_30}) {
+                for (PaperCounter counter : rankings.get(window)) {
+                    if (ids.size() >= k || counter.sums[window.ordinal()] <= 0) {
+                        break;
+                    }
+                    if (!attempted.contains(counter.paperId) && !ids.contains(counter.paperId)) {
+                        ids.add(counter.paperId);
+                    }
+                }
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按给定顺序取试卷实体（缓存未命中的一次批量查询），跳过已删除和已下架的试卷
+     */
+    public List<ExamPaper> getPapers(List<Long> ids) {
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            if (!papers.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            examPaperRepository.findAllById(missing).forEach(paper -> papers.put(paper.getId(), paper));
+        }
+        List<ExamPaper> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ExamPaper paper = papers.get(id);
+            if (paper != null && paper.getStatus() != ExamPaper.PaperStatus.UNPUBLISHED) {
+                result.add(paper);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 各窗口的作答次数
+     */
+    public Map<String, Object> getCounts(Long paperId) {
+        roll();
+        lock.readLock().lock();
+        try {
+            PaperCounter counter = counters.get(paperId);
+            Map<String, Object> counts = new LinkedHashMap<>();
+            for (Window window : Window.values()) {
+                counts.put(window.name(), counter == null ? 0 : counter.sums[window.ordinal()]);
+            }
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void applyAndPublish(Long paperId, Long userId, LocalDateTime time, int attempts) {
+        long hour = epochHour(time == null ? LocalDateTime.now() : time);
+        apply(paperId, userId, hour, attempts);
+        publish(ATTEMPT_EVENT + paperId + ":" + (userId != null ? userId : "") + ":" + hour + ":" + attempts);
+    }
+
+    private void publish(String key) {
+        CacheInvalidationBus bus = invalidationBus.getIfAvailable();
+        if (bus != null) {
+            bus.publish(nodeId, BUS_REGION, key);
+        }
+    }
+
+    /**
+     * 其他节点的作答增减或试卷变更：只更新本节点，不再广播
+     */
+    private void onRemoteChange(CacheInvalidationBus.Event event) {
+        String key = event.getKey();
+        if (!BUS_REGION.equals(event.getRegion()) || key == null) {
+            return;
+        }
+        try {
+            if (key.startsWith(FORGET_EVENT)) {
+                papers.remove(Long.parseLong(key.substring(FORGET_EVENT.length())));
+            } else if (key.startsWith(ATTEMPT_EVENT)) {
+                String[] parts = key.substring(ATTEMPT_EVENT.length()).split(":", -1);
+                apply(Long.parseLong(parts[0]), parts[1].isEmpty() ? null : Long.parseLong(parts[1]),
+                        Long.parseLong(parts[2]), Integer.parseInt(parts[3]));
+            }
+        } catch (RuntimeException e) {
+            log.warn("处理试卷热度广播失败: key={}, error={}", key, e.getMessage());
+        }
+    }
+
+    private void apply(Long paperId, Long userId, long hour, int attempts) {
+        roll();
+        lock.writeLock().lock();
+        try {
+            if (currentHour - hour >= HOURS || hour > currentHour) {
+                return;
+            }
+            PaperCounter counter = counters.get(paperId);
+            if (attempts < 0 && (counter == null || counter.buckets[(int) (hour % HOURS)] <= 0)) {
+                // 该小时没有可扣除的计数，忽略以免出现负数
+                return;
+            }
+            if (counter == null) {
+                counter = new PaperCounter(paperId);
+                counters.put(paperId, counter);
+            }
+            for (TreeSet<PaperCounter> ranking : rankings.values()) {
+                ranking.remove(counter);
+            }
+            counter.add(hour, currentHour, attempts);
+            for (TreeSet<PaperCounter> ranking : rankings.values()) {
+                ranking.add(counter);
+            }
+            if (userId != null) {
+                recentByUser.computeIfAbsent(userId, u -> new HashMap<>()).merge(paperId, hour, Math::max);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 跨小时后把移出各窗口的桶从累计值中扣除，并重排索引（每小时最多一次）
+     */
+    private void roll() {
+        long nowHour = epochHour(LocalDateTime.now());
+        if (nowHour <= currentHour) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (nowHour <= currentHour) {
+                return;
+            }
+            if (nowHour - currentHour >= HOURS) {
+                // 超过 30 天没有滚动，所有桶都已过期
+                counters.clear();
+            } else {
+                for (long hour = currentHour + 1; hour <= nowHour; hour++) {
+                    for (PaperCounter counter : counters.values()) {
+                        counter.expire(hour);
+                    }
+                }
+            }
+            currentHour = nowHour;
+            counters.values().removeIf(counter -> counter.sums[Window.DAYS_30.ordinal()] <= 0);
+            for (Map<Long, Long> attempts : recentByUser.values()) {
+                attempts.values().removeIf(hour -> nowHour - hour >= HOURS);
+            }
+            recentByUser.values().removeIf(Map::isEmpty);
+            rebuildRankings();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void rebuildRankings() {
+        for (Window window : Window.values()) {
+            TreeSet<PaperCounter> ranking = new TreeSet<>(comparator(window));
+            ranking.addAll(counters.values());
+            rankings.put(window, ranking);
+        }
+    }
+
+    /**
+     * 次数降序，次数相同按试卷ID升序（保证有序集合中元素唯一）
+     */
+    private static Comparator<PaperCounter> comparator(Window window) {
+        int index = window.ordinal();
+        return (a, b) -> {
+            int compare = Long.compare(b.sums[index], a.sums[index]);
+            return compare != 0 ? compare : Long.compare(a.paperId, b.paperId);
+        };
+    }
+
+    private static long epochHour(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toEpochSecond() / 3600;
+    }
+
+    /**
+     * 单份试卷的小时桶和窗口累计值
+     */
+    private static final class PaperCounter {
+        private final long paperId;
+        private final int[] buckets = new int[HOURS];
+        private final long[] sums = new long[Window.values().length];
+
+        private PaperCounter(Long paperId) {
+            this.paperId = paperId;
+        }
+
+        private void add(long hour, long nowHour, int attempts) {
+            buckets[(int) (hour % HOURS)] += attempts;
+            for (Window window : Window.values()) {
+                if (nowHour - hour < window.hours) {
+                    sums[window.ordinal()] += attempts;
+                }
+            }
+        }
+
+        /**
+         * 时钟进入 hour：扣除刚离开各窗口的桶，并清空将被复用的桶
+         */
+        private void expire(long hour) {
+            for (Window window : Window.values()) {
+                long leaving = hour - window.hours;
+                sums[window.ordinal()] -= buckets[(int) (leaving % HOURS)];
+            }
+            buckets[(int) (hour % HOURS)] = 0;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.icao4.eqasbackend2.impl.paper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.entity.exam.ExamPaper;
+import org.icao4.eqasbackend2.impl.media.MediaContentService;
+import org.icao4.eqasbackend2.impl.media.MediaMetadataExtractor;
+import org.icao4.eqasbackend2.repository.exam.ExamPaperRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 试卷发布流程
+ * 发布：编译快照 -> 校验模块内容、选择题答案和引用媒体 -> 补齐音频元数据、预热媒体文件描述
+ * -> 写入发布状态和版本 -> 替换线上快照。任何一步失败都不影响线上版本，考生看到的始终是完整的某个版本。
+ * 启动后在后台为所有已发布试卷构建快照，首个考生不承担冷启动开销。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExamPaperPublishService {
+
+    private static final int MAX_ERRORS = 50;
+
+    private static final String INVALID_MCQ_SQL = "SELECT q.id FROM mcq_questions q "
+            + "JOIN exam_modules m ON m.id = q.module_id "
+            + "LEFT JOIN mcq_choices c ON c.question_id = q.id "
+            + "WHERE m.exam_paper_id = ? AND m.is_activate = 1 "
+            + "GROUP BY q.id HAVING COUNT(c.id) < 2 OR COALESCE(SUM(c.is_correct), 0) <> 1 "
+            + "ORDER BY q.id";
+
+    private static final String AUDIO_ASSETS_SQL = "SELECT id FROM media_assets WHERE media_type = 'audio' AND id IN (";
+
+    private final ExamPaperRepository examPaperRepository;
+    private final ExamPaperSnapshotService examPaperSnapshotService;
+    private final ExamPaperPopularityEngine examPaperPopularityEngine;
+    private final MediaMetadataExtractor mediaMetadataExtractor;
+    private final MediaContentService mediaContentService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 同一试卷的发布/下架串行执行
+     */
+    private final Map<Long, Object> paperLocks = new ConcurrentHashMap<>();
+
+    // ==================== 发布与下架 ====================
+
+    /**
+     * 发布试卷
+     *
+     * @throws IllegalArgumentException 试卷不存在
+     * @throws PaperValidationException 校验未通过（线上版本保持不变）
+     */
+    public ExamPaper publish(Long paperId) {
+        synchronized (paperLocks.computeIfAbsent(paperId, id -> new Object())) {
+            long start = System.currentTimeMillis();
+            ExamPaper paper = examPaperRepository.findById(paperId)
+                    .orElseThrow(() -> new IllegalArgumentException("考试试卷不存在: " + paperId));
+            int version = (paper.getPublishedVersion() == null ? 0 : paper.getPublishedVersion()) + 1;
+
+            ExamPaperSnapshotService.PaperSnapshot snapshot = examPaperSnapshotService.compile(paperId, version);
+            ExamPaperSnapshotService.Manifest manifest = snapshot.getManifest();
+            List<String> errors = validate(paperId, manifest);
+            if (!errors.isEmpty()) {
+                throw new PaperValidationException(errors);
+            }
+
+            // 补齐音频元数据后重新编译，让快照带上时长
+            if (warmMetadata(manifest.getAssetIds()) > 0) {
+                snapshot = examPaperSnapshotService.compile(paperId, version);
+            }
+
+            ExamPaper published = transactionTemplate.execute(status -> {
+                ExamPaper current = examPaperRepository.findById(paperId)
+                        .orElseThrow(() -> new IllegalArgumentException("考试试卷不存在: " + paperId));
+                current.setStatus(ExamPaper.PaperStatus.PUBLISHED);
+                current.setPublishedVersion(version);
+                current.setPublishedAt(LocalDateTime.now());
+                return examPaperRepository.save(current);
+            });
+            examPaperSnapshotService.install(snapshot);
+            examPaperPopularityEngine.forgetPaper(paperId);
+
+            log.info("试卷发布完成: paperId={}, version={}, modules={}, totalScore={}, assets={}, 耗时={}ms",
+                    paperId, version, manifest.getModuleOrder().size(), manifest.getTotalScore(),
+                    manifest.getAssetIds().size(), System.currentTimeMillis() - start);
+            return published;
+        }
+    }
+
+    /**
+     * 下架试卷，线上快照随即失效
+     */
+    public ExamPaper unpublish(Long paperId) {
+        synchronized (paperLocks.computeIfAbsent(paperId, id -> new Object())) {
+            ExamPaper unpublished = transactionTemplate.execute(status -> {
+                ExamPaper current = examPaperRepository.findById(paperId)
+                        .orElseThrow(() -> new IllegalArgumentException("考试试卷不存在: " + paperId));
+                current.setStatus(ExamPaper.PaperStatus.UNPUBLISHED);
+                return examPaperRepository.save(current);
+            });
+            examPaperSnapshotService.evict(paperId);
+            examPaperPopularityEngine.forgetPaper(paperId);
+            log.info("试卷已下架: paperId={}", paperId);
+            return unpublished;
+        }
+    }
+
+    /**
+     * 启动后为已发布试卷构建快照并预热媒体
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpPublished() {
+        Thread thread = new Thread(() -> {
+            List<Long> paperIds = jdbcTemplate.queryForList(
+                    "SELECT id FROM exam_paper WHERE status = 'PUBLISHED' ORDER BY id", Long.class);
+            for (Long paperId : paperIds) {
+                try {
+                    ExamPaperSnapshotService.PaperSnapshot snapshot = examPaperSnapshotService.getSnapshot(paperId);
+                    snapshot.getManifest().getAssetIds().forEach(mediaContentService::warm);
+                } catch (Exception e) {
+                    log.warn("预热已发布试卷失败: paperId={}, error={}", paperId, e.getMessage());
+                }
+            }
+            log.info("已发布试卷预热完成: count={}", paperIds.size());
+        }, "exam-paper-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private List<String> validate(Long paperId, ExamPaperSnapshotService.Manifest manifest) {
+        List<String> errors = new ArrayList<>();
+        if (manifest.getModuleOrder().isEmpty()) {
+            errors.add("试卷没有启用的模块");
+        }
+        for (Long moduleId : manifest.getModuleOrder()) {
+            if (manifest.getItemCounts().getOrDefault(moduleId, 0) == 0) {
+                errors.add("模块 " + moduleId + "（" + manifest.getModuleTypes().get(moduleId) + "）没有题目内容");
+            }
+        }
+        for (Long questionId : jdbcTemplate.queryForList(INVALID_MCQ_SQL, Long.class, paperId)) {
+            errors.add("选择题 " + questionId + " 需要至少两个选项且只有一个正确答案");
+        }
+        if (!manifest.getMissingAssetIds().isEmpty()) {
+            errors.add("引用的媒体不存在: " + manifest.getMissingAssetIds());
+        }
+        for (Long assetId : manifest.getAssetIds()) {
+            // 同时预热文件描述，首个分段请求不再查库
+            if (!mediaContentService.warm(assetId)) {
+                errors.add("媒体文件缺失: " + assetId);
+            }
+        }
+        return errors.size() > MAX_ERRORS ? new ArrayList<>(errors.subList(0, MAX_ERRORS)) : errors;
+    }
+
+    /**
+     * 对缺少当前版本元数据的音频立即提取
+     *
+     * @return 实际提取的数量
+     */
+    private int warmMetadata(Set<Long> assetIds) {
+        if (assetIds.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = new ArrayList<>(assetIds);
+        List<Long> pending = jdbcTemplate.queryForList(AUDIO_ASSETS_SQL
+                        + String.join(",", Collections.nCopies(ids.size(), "?"))
+                        + ") AND (extra_meta_json IS NULL OR JSON_EXTRACT(extra_meta_json, '$.metadataVersion') IS NULL "
+                        + "OR JSON_EXTRACT(extra_meta_json, '$.metadataVersion') < " + MediaMetadataExtractor.METADATA_VERSION + ")",
+                Long.class, ids.toArray());
+        int extracted = 0;
+        for (Long id : pending) {
+            if (mediaMetadataExtractor.extractNow(id)) {
+                extracted++;
+            }
+        }
+        return extracted;
+    }
+
+    /**
+     * 发布校验未通过
+     */
+    public static class PaperValidationException extends IllegalStateException {
+        private final List<String> errors;
+
+        public PaperValidationException(List<String> errors) {
+            super("试卷校验未通过: " + String.join("; ", errors));
+            this.errors = errors;
+        }
+
+        public List<String> getErrors() {
+            return errors;
+        }
+    }
+}
@@ -3,17 +3,22 @@ package org.icao4.eqasbackend2.impl.exam;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.icao4.eqasbackend2.entity.exam.ExamPaper;
+import org.icao4.eqasbackend2.impl.paper.ExamPaperPopularityEngine;
+import org.icao4.eqasbackend2.impl.paper.ExamPaperPublishService;
+import org.icao4.eqasbackend2.impl.score.ExamStatisticsEngine;
 import org.icao4.eqasbackend2.repository.exam.ExamPaperRepository;
 import org.icao4.eqasbackend2.service.exam.ExamPaperService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.stream.Collectors;
@@ -28,6 +33,9 @@ import java.util.stream.Collectors;
 public class ExamPaperServiceImpl implements ExamPaperService {
     
     private final ExamPaperRepository examPaperRepository;
+    private final ExamPaperPublishService examPaperPublishService;
+    private final ExamPaperPopularityEngine examPaperPopularityEngine;
+    private final ExamStatisticsEngine examStatisticsEngine;
     
     // ==================== 基础CRUD操作 ====================
     
@@ -43,7 +51,9 @@ public class ExamPaperServiceImpl implements ExamPaperService {
         log.debug("保存考试试卷: id={}, code={}, name={}", 
                  examPaper.getId(), examPaper.getCode(), examPaper.getName());
         
-        return examPaperRepository.save(examPaper);
+        ExamPaper saved = examPaperRepository.save(examPaper);
+        examPaperPopularityEngine.forgetPaper(saved.getId());
+        return saved;
     }
     
     @Override
@@ -75,6 +85,7 @@ public class ExamPaperServiceImpl implements ExamPaperService {
         
         log.debug("删除考试试卷: id={}", id);
         examPaperRepository.deleteById(id);
+        examPaperPopularityEngine.forgetPaper(id);
     }
     
     @Override
@@ -85,6 +96,7 @@ public class ExamPaperServiceImpl implements ExamPaperService {
         
         log.debug("删除考试试卷: id={}", examPaper.getId());
         examPaperRepository.delete(examPaper);
+        examPaperPopularityEngine.forgetPaper(examPaper.getId());
     }
     
     @Override
@@ -461,8 +473,14 @@ public class ExamPaperServiceImpl implements ExamPaperService {
             return List.of();
         }
         
-        // 这里可以根据考试记录数量来排序
-        // 目前返回最近创建的试卷作为占位符
+        // 按近 7 天作答次数排序；统计未就绪或暂无作答时退回最近创建的试卷
+        if (examPaperPopularityEngine.isReady()) {
+            List<ExamPaper> papers = examPaperPopularityEngine.getPapers(
+                    examPaperPopularityEngine.topPaperIds(ExamPaperPopularityEngine.Window.DAYS_7, limit));
+            if (!papers.isEmpty()) {
+                return papers;
+            }
+        }
         return getRecentlyCreatedExamPapers(limit);
     }
     
@@ -473,8 +491,14 @@ public class ExamPaperServiceImpl implements ExamPaperService {
             return List.of();
         }
         
-        // 这里可以实现推荐算法
-        // 目前返回最近创建的试卷作为占位符
+        // 热门试卷中该用户近期未作答的；统计未就绪或暂无作答时退回最近创建的试卷
+        if (examPaperPopularityEngine.isReady()) {
+            List<ExamPaper> papers = examPaperPopularityEngine.getPapers(
+                    examPaperPopularityEngine.recommendedPaperIds(userId, limit));
+            if (!papers.isEmpty()) {
+                return papers;
+            }
+        }
         return getRecentlyCreatedExamPapers(limit);
     }
     
@@ -486,8 +510,15 @@ public class ExamPaperServiceImpl implements ExamPaperService {
             return null;
         }
         
-        // 这里可以实现具体的统计逻辑
-        return new Object(); // 占位符
+        // 自试卷创建当月起至今
+        ExamPaper paper = paperOpt.get();
+        LocalDateTime start = paper.getCreatedAt() != null
+                ? paper.getCreatedAt().toLocalDate().withDayOfMonth(1).atStartOfDay()
+                : LocalDateTime.now().minusMonths(12).toLocalDate().withDayOfMonth(1).atStartOfDay();
+        Map<String, Object> statistics = examStatisticsEngine.buildReport(id, start, LocalDateTime.now());
+        statistics.put("code", paper.getCode());
+        statistics.put("name", paper.getName());
+        return statistics;
     }
     
     @Override
@@ -498,31 +529,16 @@ public class ExamPaperServiceImpl implements ExamPaperService {
     }
     
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public ExamPaper publishExamPaper(Long id) {
-        Optional<ExamPaper> paperOpt = findById(id);
-        if (paperOpt.isEmpty()) {
-            throw new IllegalArgumentException("考试试卷不存在: " + id);
-        }
-        
-        ExamPaper examPaper = paperOpt.get();
-        // 这里可以添加发布逻辑，比如设置状态字段
-        log.debug("发布考试试卷: id={}, code={}", id, examPaper.getCode());
-        
-        return save(examPaper);
+        // 发布流程内部自行管理事务，编译和预热期间不占用数据库连接
+        return examPaperPublishService.publish(id);
     }
     
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public ExamPaper unpublishExamPaper(Long id) {
-        Optional<ExamPaper> paperOpt = findById(id);
-        if (paperOpt.isEmpty()) {
-            throw new IllegalArgumentException("考试试卷不存在: " + id);
-        }
-        
-        ExamPaper examPaper = paperOpt.get();
-        // 这里可以添加下架逻辑，比如设置状态字段
-        log.debug("下架考试试卷: id={}, code={}", id, examPaper.getCode());
-        
-        return save(examPaper);
+        return examPaperPublishService.unpublish(id);
     }
     
     @Override
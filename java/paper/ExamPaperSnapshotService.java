@@ -0,0 +1,649 @@
+package org.icao4.eqasbackend2.impl.paper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 试卷下发快照
+ * 把一份试卷所有启用模块的题目内容（选择题及选项、复述、听力简答、口语面试、模拟通话）
+ * 在一个只读事务内按表批量查询，组装后序列化为 JSON 并预先 gzip，作为不可变快照放在内存中。
+ * 快照由发布流程编译并原子替换，之后的内容修改需重新发布才会下发；只有已发布的试卷可以下发。
+ * 重启后按需构建，同一试卷的并发请求只触发一次构建。
+ * 多节点部署时发布只替换本节点的快照，因此每次下发前按主键核对试卷状态和已发布版本，
+ * 已下架或版本不同（其他节点重新发布）时丢弃本地快照。
+ * 快照只含考生需要的字段，不含正确答案、参考文本、对话原文等评分信息。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExamPaperSnapshotService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 试卷ID -> 快照（构建中为未完成的 future，并发请求等待同一次构建）
+     */
+    private final Map<Long, CompletableFuture<PaperSnapshot>> snapshots = new ConcurrentHashMap<>();
+
+    private final AtomicLong builds = new AtomicLong();
+
+    /**
+     * 两次核对已发布版本的最小间隔，0 表示每次请求都核对
+     */
+    @Value("${app.paper.snapshot.verify-interval-ms:0}")
+    private long verifyIntervalMs;
+
+    // ==================== 获取与维护 ====================
+
+    /**
+     * 获取快照，不存在时按当前已发布版本构建
+     *
+     * @throws IllegalArgumentException 试卷不存在或未发布
+     */
+    public PaperSnapshot getSnapshot(Long paperId) {
+        CompletableFuture<PaperSnapshot> future = snapshots.get(paperId);
+        if (future != null && future.isDone() && !future.isCompletedExceptionally() && !isCurrent(future.join())) {
+            snapshots.remove(paperId, future);
+            future = null;
+        }
+        if (future == null) {
+            CompletableFuture<PaperSnapshot> created = new CompletableFuture<>();
+            future = snapshots.putIfAbsent(paperId, created);
+            if (future == null) {
+                future = created;
+                complete(paperId, created);
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 编译快照但不替换线上版本（发布流程先编译、校验、预热，最后再 {@link #install}）
+     *
+     * @param version 快照版本号
+     */
+    public PaperSnapshot compile(Long paperId, int version) {
+        PaperSnapshot snapshot = build(paperId, version);
+        if (snapshot == null) {
+            throw new IllegalArgumentException("考试试卷不存在: " + paperId);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 替换线上快照；替换之前的请求拿到的是完整的旧版本
+     */
+    public void install(PaperSnapshot snapshot) {
+        snapshots.put(snapshot.paperId, CompletableFuture.completedFuture(snapshot));
+    }
+
+    /**
+     * 当前线上快照，没有时返回 empty（不触发构建）
+     */
+    public Optional<PaperSnapshot> getInstalled(Long paperId) {
+        CompletableFuture<PaperSnapshot> future = snapshots.get(paperId);
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return Optional.empty();
+        }
+        return Optional.of(future.join());
+    }
+
+    /**
+     * 移除快照（下架或删除时调用）
+     */
+    public void evict(Long paperId) {
+        snapshots.remove(paperId);
+    }
+
+    /**
+     * 输出快照，支持 If-None-Match 和 gzip
+     */
+    public void serve(Long paperId, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        PaperSnapshot snapshot = getSnapshot(paperId);
+        response.setHeader(HttpHeaders.ETAG, snapshot.etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(snapshot.etag) || "*".equals(ifNoneMatch.trim()))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        byte[] body = gzip ? snapshot.gzipped : snapshot.json;
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLength(body.length);
+        if (!"HEAD".equalsIgnoreCase(request.getMethod())) {
+            response.getOutputStream().write(body);
+        }
+    }
+
+    /**
+     * 快照概况
+     */
+    public Map<String, Object> getStatus() {
+        List<Map<String, Object>> items = new ArrayList<>();
+        snapshots.forEach((paperId, future) -> {
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                items.add(future.join().toSummary());
+            }
+        });
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("snapshots", items);
+        status.put("builds", builds.get());
+        return status;
+    }
+
+    // ==================== 构建 ====================
+
+    private void complete(Long paperId, CompletableFuture<PaperSnapshot> future) {
+        try {
+            future.complete(buildPublished(paperId));
+        } catch (RuntimeException e) {
+            // 失败的构建不保留，下次请求重试
+            snapshots.remove(paperId, future);
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 按数据库中的已发布版本构建
+     */
+    private PaperSnapshot buildPublished(Long paperId) {
+        List<Map<String, Object>> rows = loadPublishState(paperId);
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("考试试卷不存在: " + paperId);
+        }
+        if (!"PUBLISHED".equals(rows.get(0).get("status"))) {
+            throw new IllegalArgumentException("考试试卷未发布: " + paperId);
+        }
+        Object version = rows.get(0).get("published_version");
+        PaperSnapshot snapshot = build(paperId, version == null ? 1 : ((Number) version).intValue());
+        if (snapshot == null) {
+            throw new IllegalArgumentException("考试试卷不存在: " + paperId);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 本地快照是否仍是线上版本；不是时由调用方丢弃并按数据库重新构建（或报未发布）
+     */
+    private boolean isCurrent(PaperSnapshot snapshot) {
+        long now = System.currentTimeMillis();
+        if (verifyIntervalMs > 0 && now - snapshot.verifiedAt < verifyIntervalMs) {
+            return true;
+        }
+        List<Map<String, Object>> rows = loadPublishState(snapshot.paperId);
+        if (rows.isEmpty() || !"PUBLISHED".equals(rows.get(0).get("status"))) {
+            log.info("试卷已下架或删除, 丢弃本地快照: paperId={}, version={}", snapshot.paperId, snapshot.version);
+            return false;
+        }
+        Object version = rows.get(0).get("published_version");
+        if ((version == null ? 1 : ((Number) version).intValue()) != snapshot.version) {
+            log.info("试卷已重新发布, 丢弃本地快照: paperId={}, local={}, published={}",
+                    snapshot.paperId, snapshot.version, version);
+            return false;
+        }
+        snapshot.verifiedAt = now;
+        return true;
+    }
+
+    private List<Map<String, Object>> loadPublishState(Long paperId) {
+        return jdbcTemplate.queryForList("SELECT status, published_version FROM exam_paper WHERE id = ?", paperId);
+    }
+
+    private PaperSnapshot build(Long paperId, int version) {
+        long start = System.currentTimeMillis();
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        Manifest manifest = new Manifest();
+        Map<String, Object> content = template.execute(status -> load(paperId, manifest));
+        if (content == null) {
+            return null;
+        }
+        content.put("version", version);
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(content);
+            PaperSnapshot snapshot = new PaperSnapshot(paperId, version, json, gzip(json),
+                    "\"" + paperId + "-" + version + "-" + sha256(json).substring(0, 16) + "\"", manifest,
+                    LocalDateTime.now());
+            builds.incrementAndGet();
+            log.info("试卷快照构建完成: paperId={}, version={}, modules={}, bytes={}, gzip={}, 耗时={}ms", paperId,
+                    version, manifest.moduleOrder.size(), json.length, snapshot.gzipped.length,
+                    System.currentTimeMillis() - start);
+            return snapshot;
+        } catch (IOException e) {
+            throw new IllegalStateException("试卷快照序列化失败: " + paperId, e);
+        }
+    }
+
+    /**
+     * 每类内容一条查询（按模块ID批量），不做逐条懒加载
+     */
+    private Map<String, Object> load(Long paperId, Manifest manifest) {
+        List<Map<String, Object>> papers = jdbcTemplate.queryForList(
+                "SELECT id, code, name, total_duration_min, description FROM exam_paper WHERE id = ?", paperId);
+        if (papers.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> paperRow = papers.get(0);
+        Map<String, Object> paper = new LinkedHashMap<>();
+        put(paper, "id", paperRow.get("id"));
+        put(paper, "code", paperRow.get("code"));
+        put(paper, "name", paperRow.get("name"));
+        put(paper, "totalDurationMin", paperRow.get("total_duration_min"));
+        put(paper, "description", paperRow.get("description"));
+
+        List<Map<String, Object>> moduleRows = jdbcTemplate.queryForList(
+                "SELECT id, module_type, display_order, config_json, score FROM exam_modules "
+                        + "WHERE exam_paper_id = ? AND is_activate = 1 ORDER BY display_order, id", paperId);
+        Map<String, List<Long>> idsByType = new HashMap<>();
+        List<Map<String, Object>> modules = new ArrayList<>();
+        Map<Long, Map<String, Object>> moduleById = new HashMap<>();
+        for (Map<String, Object> row : moduleRows) {
+            Long moduleId = toLong(row.get("id"));
+            String type = String.valueOf(row.get("module_type"));
+            idsByType.computeIfAbsent(type, t -> new ArrayList<>()).add(moduleId);
+            Map<String, Object> module = new LinkedHashMap<>();
+            put(module, "id", moduleId);
+            put(module, "moduleType", type);
+            put(module, "displayOrder", row.get("display_order"));
+            put(module, "score", row.get("score"));
+            put(module, "config", parseJson(row.get("config_json")));
+            module.put("items", new ArrayList<>());
+            modules.add(module);
+            moduleById.put(moduleId, module);
+            manifest.moduleOrder.add(moduleId);
+            manifest.moduleTypes.put(moduleId, type);
+            if (row.get("score") != null) {
+                manifest.totalScore += ((Number) row.get("score")).longValue();
+            }
+        }
+
+        Set<Long> audioIds = new HashSet<>();
+        loadMcq(idsByType.get("LISTENING_MCQ"), moduleById, audioIds);
+        loadRetell(idsByType.get("STORY_RETELL"), moduleById, audioIds);
+        loadLsa(idsByType.get("LISTENING_SA"), moduleById, audioIds);
+        loadOpi(idsByType.get("OPI"), moduleById, audioIds);
+        loadAtc(idsByType.get("ATC_SIM"), moduleById);
+
+        Map<String, Object> media = loadMedia(audioIds);
+        for (Map.Entry<Long, Map<String, Object>> entry : moduleById.entrySet()) {
+            manifest.itemCounts.put(entry.getKey(), ((List<?>) entry.getValue().get("items")).size());
+        }
+        for (Long audioId : audioIds) {
+            if (media.containsKey(String.valueOf(audioId))) {
+                manifest.assetIds.add(audioId);
+            } else {
+                manifest.missingAssetIds.add(audioId);
+            }
+        }
+
+        paper.put("moduleOrder", manifest.moduleOrder);
+        paper.put("totalScore", manifest.totalScore);
+        paper.put("modules", modules);
+        paper.put("media", media);
+        return paper;
+    }
+
+    private void loadMcq(List<Long> moduleIds, Map<Long, Map<String, Object>> moduleById, Set<Long> audioIds) {
+        if (moduleIds == null) {
+            return;
+        }
+        String in = placeholders(moduleIds.size());
+        Map<Long, List<Map<String, Object>>> choices = groupBy(jdbcTemplate.queryForList(
+                "SELECT c.question_id, c.label, c.content FROM mcq_choices c "
+                        + "JOIN mcq_questions q ON q.id = c.question_id WHERE q.module_id IN (" + in + ") "
+                        + "ORDER BY c.question_id, c.label", moduleIds.toArray()), "question_id", row -> {
+            Map<String, Object> choice = new LinkedHashMap<>();
+            put(choice, "label", row.get("label"));
+            put(choice, "content", row.get("content"));
+            return choice;
+        });
+        for (Map<String, Object> row : jdbcTemplate.queryForList(
+                "SELECT id, module_id, audio_id, text_stem, play_once, answer_seconds FROM mcq_questions "
+                        + "WHERE module_id IN (" + in + ") ORDER BY module_id, id", moduleIds.toArray())) {
+            Long id = toLong(row.get("id"));
+            Map<String, Object> item = new LinkedHashMap<>();
+            put(item, "id", id);
+            put(item, "audioId", addAudio(audioIds, row.get("audio_id")));
+            put(item, "textStem", row.get("text_stem"));
+            put(item, "playOnce", row.get("play_once"));
+            put(item, "answerSeconds", row.get("answer_seconds"));
+            item.put("choices", choices.getOrDefault(id, Collections.emptyList()));
+            items(moduleById, row).add(item);
+        }
+    }
+
+    private void loadRetell(List<Long> moduleIds, Map<Long, Map<String, Object>> moduleById, Set<Long> audioIds) {
+        if (moduleIds == null) {
+            return;
+        }
+        for (Map<String, Object> row : jdbcTemplate.queryForList(
+                "SELECT id, module_id, title, audio_asset_id, audio_duration_sec, answer_seconds FROM retell_items "
+                        + "WHERE module_id IN (" + placeholders(moduleIds.size()) + ") ORDER BY module_id, id",
+                moduleIds.toArray())) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            put(item, "id", row.get("id"));
+            put(item, "title", row.get("title"));
+            put(item, "audioId", addAudio(audioIds, row.get("audio_asset_id")));
+            put(item, "audioDurationSec", row.get("audio_duration_sec"));
+            put(item, "answerSeconds", row.get("answer_seconds"));
+            items(moduleById, row).add(item);
+        }
+    }
+
+    private void loadLsa(List<Long> moduleIds, Map<Long, Map<String, Object>> moduleById, Set<Long> audioIds) {
+        if (moduleIds == null) {
+            return;
+        }
+        String in = placeholders(moduleIds.size());
+        Map<Long, List<Map<String, Object>>> questions = groupBy(jdbcTemplate.queryForList(
+                "SELECT q.id, q.dialog_id, q.question_type, q.question_text, q.option_a, q.option_b, q.option_c, "
+                        + "q.option_d, q.points, q.display_order FROM lsa_questions q "
+                        + "JOIN lsa_dialogs d ON d.id = q.dialog_id "
+                        + "WHERE d.module_id IN (" + in + ") AND d.is_active = 1 AND q.is_active = 1 "
+                        + "ORDER BY q.dialog_id, q.display_order, q.id", moduleIds.toArray()), "dialog_id", row -> {
+            Map<String, Object> question = new LinkedHashMap<>();
+            put(question, "id", row.get("id"));
+            put(question, "questionType", row.get("question_type"));
+            put(question, "questionText", row.get("question_text"));
+            put(question, "optionA", row.get("option_a"));
+            put(question, "optionB", row.get("option_b"));
+            put(question, "optionC", row.get("option_c"));
+            put(question, "optionD", row.get("option_d"));
+            put(question, "points", row.get("points"));
+            return question;
+        });
+        for (Map<String, Object> row : jdbcTemplate.queryForList(
+                "SELECT id, module_id, title, description, audio_id, audio_duration_seconds, time_limit_seconds "
+                        + "FROM lsa_dialogs WHERE module_id IN (" + in + ") AND is_active = 1 "
+                        + "ORDER BY module_id, display_order, id", moduleIds.toArray())) {
+            Long id = toLong(row.get("id"));
+            Map<String, Object> item = new LinkedHashMap<>();
+            put(item, "id", id);
+            put(item, "title", row.get("title"));
+            put(item, "description", row.get("description"));
+            put(item, "audioId", addAudio(audioIds, row.get("audio_id")));
+            put(item, "audioDurationSeconds", row.get("audio_duration_seconds"));
+            put(item, "timeLimitSeconds", row.get("time_limit_seconds"));
+            item.put("questions", questions.getOrDefault(id, Collections.emptyList()));
+            items(moduleById, row).add(item);
+        }
+    }
+
+    private void loadOpi(List<Long> moduleIds, Map<Long, Map<String, Object>> moduleById, Set<Long> audioIds) {
+        if (moduleIds == null) {
+            return;
+        }
+        String in = placeholders(moduleIds.size());
+        Map<Long, List<Map<String, Object>>> questions = groupBy(jdbcTemplate.queryForList(
+                "SELECT q.id, q.topic_id, q.q_order, q.prompt_audio_id, q.answer_seconds, q.prompt_text "
+                        + "FROM opi_questions q JOIN opi_topics t ON t.id = q.topic_id "
+                        + "WHERE t.module_id IN (" + in + ") ORDER BY q.topic_id, q.q_order", moduleIds.toArray()),
+                "topic_id", row -> {
+                    Map<String, Object> question = new LinkedHashMap<>();
+                    put(question, "id", row.get("id"));
+                    put(question, "order", row.get("q_order"));
+                    put(question, "promptAudioId", addAudio(audioIds, row.get("prompt_audio_id")));
+                    put(question, "answerSeconds", row.get("answer_seconds"));
+                    put(question, "promptText", row.get("prompt_text"));
+                    return question;
+                });
+        for (Map<String, Object> row : jdbcTemplate.queryForList(
+                "SELECT id, module_id, t_order, title, description FROM opi_topics "
+                        + "WHERE module_id IN (" + in + ") ORDER BY module_id, t_order", moduleIds.toArray())) {
+            Long id = toLong(row.get("id"));
+            Map<String, Object> item = new LinkedHashMap<>();
+            put(item, "id", id);
+            put(item, "order", row.get("t_order"));
+            put(item, "title", row.get("title"));
+            put(item, "description", row.get("description"));
+            item.put("questions", questions.getOrDefault(id, Collections.emptyList()));
+            items(moduleById, row).add(item);
+        }
+    }
+
+    private void loadAtc(List<Long> moduleIds, Map<Long, Map<String, Object>> moduleById) {
+        if (moduleIds == null) {
+            return;
+        }
+        String in = placeholders(moduleIds.size());
+        Map<Long, List<Map<String, Object>>> turns = groupBy(jdbcTemplate.queryForList(
+                "SELECT t.id, t.scenario_id, t.turn_number, t.speaker_type, t.audio_file_path, t.audio_duration, "
+                        + "t.is_required FROM atc_turns t JOIN atc_scenarios s ON s.id = t.scenario_id "
+                        + "WHERE s.module_id IN (" + in + ") AND s.is_active = 1 AND t.is_active = 1 "
+                        + "ORDER BY t.scenario_id, t.turn_number", moduleIds.toArray()), "scenario_id", row -> {
+            Map<String, Object> turn = new LinkedHashMap<>();
+            put(turn, "id", row.get("id"));
+            put(turn, "turnNumber", row.get("turn_number"));
+            put(turn, "speakerType", row.get("speaker_type"));
+            put(turn, "audioFilePath", row.get("audio_file_path"));
+            put(turn, "audioDuration", row.get("audio_duration"));
+            put(turn, "isRequired", row.get("is_required"));
+            return turn;
+        });
+        for (Map<String, Object> row : jdbcTemplate.queryForList(
+                "SELECT s.id, s.module_id, s.title, s.description, s.scenario_type, s.difficulty_level, "
+                        + "s.estimated_duration, a.icao, a.name AS airport_name FROM atc_scenarios s "
+                        + "LEFT JOIN airports a ON a.id = s.airport_id "
+                        + "WHERE s.module_id IN (" + in + ") AND s.is_active = 1 ORDER BY s.module_id, s.id",
+                moduleIds.toArray())) {
+            Long id = toLong(row.get("id"));
+            Map<String, Object> item = new LinkedHashMap<>();
+            put(item, "id", id);
+            put(item, "title", row.get("title"));
+            put(item, "description", row.get("description"));
+            put(item, "scenarioType", row.get("scenario_type"));
+            put(item, "difficultyLevel", row.get("difficulty_level"));
+            put(item, "estimatedDuration", row.get("estimated_duration"));
+            put(item, "airportIcao", row.get("icao"));
+            put(item, "airportName", row.get("airport_name"));
+            item.put("turns", turns.getOrDefault(id, Collections.emptyList()));
+            items(moduleById, row).add(item);
+        }
+    }
+
+    /**
+     * 快照内引用的音频，按ID去重后放在顶层
+     */
+    private Map<String, Object> loadMedia(Set<Long> audioIds) {
+        Map<String, Object> media = new LinkedHashMap<>();
+        if (audioIds.isEmpty()) {
+            return media;
+        }
+        List<Long> ids = new ArrayList<>(audioIds);
+        Collections.sort(ids);
+        for (Map<String, Object> row : jdbcTemplate.queryForList(
+                "SELECT id, uri, duration_ms FROM media_assets WHERE id IN (" + placeholders(ids.size()) + ")",
+                ids.toArray())) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            put(item, "url", row.get("uri"));
+            put(item, "contentUrl", "/media/" + row.get("id") + "/content");
+            put(item, "durationMs", row.get("duration_ms"));
+            media.put(String.valueOf(row.get("id")), item);
+        }
+        return media;
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> items(Map<Long, Map<String, Object>> moduleById, Map<String, Object> row) {
+        return (List<Map<String, Object>>) moduleById.get(toLong(row.get("module_id"))).get("items");
+    }
+
+    private static Map<Long, List<Map<String, Object>>> groupBy(List<Map<String, Object>> rows, String column,
+                                                               Function<Map<String, Object>, Map<String, Object>> mapper) {
+        Map<Long, List<Map<String, Object>>> grouped = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            grouped.computeIfAbsent(toLong(row.get(column)), k -> new ArrayList<>()).add(mapper.apply(row));
+        }
+        return grouped;
+    }
+
+    private static Long addAudio(Set<Long> audioIds, Object value) {
+        Long id = toLong(value);
+        if (id != null) {
+            audioIds.add(id);
+        }
+        return id;
+    }
+
+    private Object parseJson(Object value) {
+        if (value == null || value.toString().isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(value.toString());
+        } catch (IOException e) {
+            log.warn("模块配置不是合法 JSON, 按原文下发: {}", e.getMessage());
+            return value.toString();
+        }
+    }
+
+    /**
+     * 只写入非空字段，减小快照体积
+     */
+    private static void put(Map<String, Object> map, String key, Object value) {
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+
+    private static String placeholders(int n) {
+        return String.join(",", Collections.nCopies(n, "?"));
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 编译期统计，供发布校验和预热使用（不下发）
+     */
+    @Getter
+    public static final class Manifest {
+        /**
+         * 按显示顺序排列的启用模块ID
+         */
+        private final List<Long> moduleOrder = new ArrayList<>();
+        private final Map<Long, String> moduleTypes = new HashMap<>();
+        private final Map<Long, Integer> itemCounts = new HashMap<>();
+        private long totalScore;
+        /**
+         * 引用且存在的媒体ID
+         */
+        private final Set<Long> assetIds = new TreeSet<>();
+        /**
+         * 引用但 media_assets 中不存在的媒体ID
+         */
+        private final Set<Long> missingAssetIds = new TreeSet<>();
+    }
+
+    /**
+     * 不可变的试卷快照
+     */
+    @Getter
+    public static final class PaperSnapshot {
+        private final Long paperId;
+        private final int version;
+        private final byte[] json;
+        private final byte[] gzipped;
+        private final String etag;
+        private final Manifest manifest;
+        private final LocalDateTime builtAt;
+
+        /**
+         * 最近一次核对为线上版本的时间
+         */
+        private volatile long verifiedAt;
+
+        private PaperSnapshot(Long paperId, int version, byte[] json, byte[] gzipped, String etag, Manifest manifest,
+                              LocalDateTime builtAt) {
+            this.paperId = paperId;
+            this.version = version;
+            this.json = json;
+            this.gzipped = gzipped;
+            this.etag = etag;
+            this.manifest = manifest;
+            this.builtAt = builtAt;
+            this.verifiedAt = System.currentTimeMillis();
+        }
+
+        public Map<String, Object> toSummary() {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("paperId", paperId);
+            summary.put("version", version);
+            summary.put("etag", etag);
+            summary.put("modules", manifest.moduleOrder.size());
+            summary.put("totalScore", manifest.totalScore);
+            summary.put("assets", manifest.assetIds.size());
+            summary.put("bytes", json.length);
+            summary.put("gzipBytes", gzipped.length);
+            summary.put("builtAt", builtAt);
+            return summary;
+        }
+    }
+}
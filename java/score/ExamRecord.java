@@ -12,7 +12,10 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "exam_record")
+@Table(name = "exam_record", indexes = {
+        @Index(name = "idx_exam_record_create_at", columnList = "create_at"),
+        @Index(name = "idx_exam_record_paper_create_at", columnList = "exam_paper_id, create_at")
+})
 public class ExamRecord {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -3,6 +3,8 @@ package org.icao4.eqasbackend2.impl.exam;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.icao4.eqasbackend2.entity.exam.ExamRecord;
+import org.icao4.eqasbackend2.impl.paper.ExamPaperPopularityEngine;
+import org.icao4.eqasbackend2.impl.score.ExamStatisticsEngine;
 import org.icao4.eqasbackend2.repository.exam.ExamRecordRepository;
 import org.icao4.eqasbackend2.service.exam.ExamRecordService;
 import org.springframework.data.domain.Page;
@@ -26,6 +28,8 @@ import java.util.stream.Collectors;
 public class ExamRecordServiceImpl implements ExamRecordService {
     
     private final ExamRecordRepository examRecordRepository;
+    private final ExamPaperPopularityEngine examPaperPopularityEngine;
+    private final ExamStatisticsEngine examStatisticsEngine;
     
     // ==================== 基础CRUD操作 ====================
     
@@ -41,7 +45,12 @@ public class ExamRecordServiceImpl implements ExamRecordService {
         log.debug("保存考试记录: id={}, examPaperId={}, userId={}", 
                  examRecord.getId(), examRecord.getExamPaperId(), examRecord.getUserId());
         
-        return examRecordRepository.save(examRecord);
+        boolean created = examRecord.getId() == null;
+        ExamRecord saved = examRecordRepository.save(examRecord);
+        if (created) {
+            recordAttempt(saved);
+        }
+        return saved;
     }
     
     @Override
@@ -72,7 +81,7 @@ public class ExamRecordServiceImpl implements ExamRecordService {
         }
         
         log.debug("删除考试记录: id={}", id);
-        examRecordRepository.deleteById(id);
+        examRecordRepository.findById(id).ifPresent(this::delete);
     }
     
     @Override
@@ -83,6 +92,7 @@ public class ExamRecordServiceImpl implements ExamRecordService {
         
         log.debug("删除考试记录: id={}", examRecord.getId());
         examRecordRepository.delete(examRecord);
+        examPaperPopularityEngine.removeAttempt(examRecord.getExamPaperId(), examRecord.getCreateAt());
     }
     
     @Override
@@ -374,7 +384,7 @@ public class ExamRecordServiceImpl implements ExamRecordService {
                 .filter(this::validateExamRecord)
                 .collect(Collectors.toList());
         
-        return examRecordRepository.saveAll(validRecords);
+        return persistAll(validRecords);
     }
     
     @Override
@@ -389,7 +399,7 @@ public class ExamRecordServiceImpl implements ExamRecordService {
                 .filter(this::validateExamRecord)
                 .collect(Collectors.toList());
         
-        return examRecordRepository.saveAll(validRecords);
+        return persistAll(validRecords);
     }
     
     @Override
@@ -399,7 +409,9 @@ public class ExamRecordServiceImpl implements ExamRecordService {
         }
         
         log.debug("批量删除考试记录: count={}", ids.size());
-        examRecordRepository.deleteAllById(ids);
+        List<ExamRecord> records = examRecordRepository.findAllById(ids);
+        examRecordRepository.deleteAll(records);
+        records.forEach(record -> examPaperPopularityEngine.removeAttempt(record.getExamPaperId(), record.getCreateAt()));
     }
     
     @Override
@@ -470,9 +482,7 @@ public class ExamRecordServiceImpl implements ExamRecordService {
             return null;
         }
         
-        // 这里可以实现具体的统计报告逻辑
-        // 返回包含各种统计数据的对象
-        return new Object(); // 占位符
+        return examStatisticsEngine.buildReport(null, startDate, endDate);
     }
     
     @Override
@@ -504,4 +514,22 @@ public class ExamRecordServiceImpl implements ExamRecordService {
         
         return batchCreateExamRecords(importRecords);
     }
+    
+    // ==================== 私有辅助方法 ====================
+    
+    /**
+     * 批量保存，新建的记录计入试卷热度
+     */
+    private List<ExamRecord> persistAll(List<ExamRecord> records) {
+        List<ExamRecord> created = records.stream()
+                .filter(record -> record.getId() == null)
+                .collect(Collectors.toList());
+        List<ExamRecord> saved = examRecordRepository.saveAll(records);
+        created.forEach(this::recordAttempt);
+        return saved;
+    }
+    
+    private void recordAttempt(ExamRecord record) {
+        examPaperPopularityEngine.recordAttempt(record.getExamPaperId(), record.getUserId(), record.getCreateAt());
+    }
 }
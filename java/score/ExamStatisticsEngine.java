@@ -0,0 +1,441 @@
+package org.icao4.eqasbackend2.impl.score;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 考试统计报告
+ * 时间范围按自然月切分成若干段，每段用几条分组查询一次扫描完考试记录和各模块回答表，
+ * 得到可合并的部分结果（按日按小时的作答数、各试卷作答数、各模块得分直方图、选择题逐题正确数），
+ * 以“试卷 + 时间段”为键缓存在 examStatistics 区域。已结束的月份反复使用，统计截止到最近的 5 分钟整点，
+ * 因此包含当前时刻的段每 5 分钟重新查询一次。
+ * 生成报告只需合并各段结果，12 个月的报告冷启动时各段并行查询。
+ */
+@Slf4j
+@Component
+public class ExamStatisticsEngine {
+
+    public static final String CACHE_NAME = "examStatistics";
+
+    private static final int HISTOGRAM_BINS = 10;
+
+    private static final long OPEN_SEGMENT_MINUTES = 5;
+
+    private static final String RECORD_HOURS_SQL = "SELECT DATE(create_at) AS d, HOUR(create_at) AS h, "
+            + "COUNT(*) AS attempts, SUM(CASE WHEN is_finished = 1 THEN 1 ELSE 0 END) AS finished "
+            + "FROM exam_record WHERE create_at >= ? AND create_at < ?";
+
+    private static final String RECORD_PAPERS_SQL = "SELECT exam_paper_id, COUNT(*) AS attempts, "
+            + "SUM(CASE WHEN is_finished = 1 THEN 1 ELSE 0 END) AS finished "
+            + "FROM exam_record WHERE create_at >= ? AND create_at < ? GROUP BY exam_paper_id";
+
+    private static final String MCQ_SQL = "SELECT m.id AS module_id, m.exam_paper_id, m.module_type, r.question_id, "
+            + "COUNT(*) AS responses, SUM(CASE WHEN r.is_correct = 1 THEN 1 ELSE 0 END) AS correct "
+            + "FROM mcq_responses r JOIN mcq_questions q ON q.id = r.question_id "
+            + "JOIN exam_modules m ON m.id = q.module_id "
+            + "WHERE r.answered_at >= ? AND r.answered_at < ?";
+
+    private static final String OPI_SCORES_SQL = "SELECT m.id AS module_id, m.exam_paper_id, m.module_type, "
+            + "ROUND(r.score * 10) AS tenths, COUNT(*) AS responses, SUM(r.score) AS score_sum "
+            + "FROM opi_responses r JOIN opi_questions q ON q.id = r.question_id "
+            + "JOIN opi_topics t ON t.id = q.topic_id JOIN exam_modules m ON m.id = t.module_id "
+            + "WHERE r.answered_at >= ? AND r.answered_at < ? AND r.score IS NOT NULL";
+
+    private static final String RETELL_SCORES_SQL = "SELECT m.id AS module_id, m.exam_paper_id, m.module_type, "
+            + "ROUND(r.score * 10) AS tenths, COUNT(*) AS responses, SUM(r.score) AS score_sum "
+            + "FROM retell_responses r JOIN retell_items i ON i.id = r.item_id "
+            + "JOIN exam_modules m ON m.id = i.module_id "
+            + "WHERE r.answered_at >= ? AND r.answered_at < ? AND r.score IS NOT NULL";
+
+    private static final String SCORE_GROUP_BY = " GROUP BY m.id, m.exam_paper_id, m.module_type, tenths";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CacheManager cacheManager;
+    private final ExecutorService executor;
+
+    public ExamStatisticsEngine(JdbcTemplate jdbcTemplate, CacheManager cacheManager,
+                                @Value("${app.exam-statistics.parallelism:4}") int parallelism) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cacheManager = cacheManager;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "exam-statistics-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ==================== 报告 ====================
+
+    /**
+     * 生成统计报告
+     *
+     * @param paperId 为空时统计全部试卷
+     * @param start   开始时间（含）
+     * @param end     结束时间（不含）
+     */
+    public Map<String, Object> buildReport(Long paperId, LocalDateTime start, LocalDateTime end) {
+        if (start == null || end == null || !start.isBefore(end)) {
+            throw new IllegalArgumentException("统计时间范围无效");
+        }
+        long begin = System.currentTimeMillis();
+        LocalDateTime horizon = horizon(LocalDateTime.now());
+        List<LocalDateTime[]> segments = split(start, end.isAfter(horizon) ? horizon : end);
+
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        AtomicInteger computed = new AtomicInteger();
+        List<CompletableFuture<Partial>> futures = new ArrayList<>(segments.size());
+        for (LocalDateTime[] segment : segments) {
+            String key = (paperId == null ? "all" : paperId.toString()) + ":" + segment[0] + "~" + segment[1];
+            Partial cached = cache == null ? null : cache.get(key, Partial.class);
+            if (cached != null) {
+                futures.add(CompletableFuture.completedFuture(cached));
+                continue;
+            }
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                Partial partial = compute(paperId, segment[0], segment[1]);
+                computed.incrementAndGet();
+                if (cache != null) {
+                    cache.put(key, partial);
+                }
+                return partial;
+            }, executor));
+        }
+
+        Partial total = new Partial();
+        for (CompletableFuture<Partial> future : futures) {
+            total.merge(future.join());
+        }
+
+        Map<String, Object> report = render(total, paperId == null);
+        report.put("paperId", paperId);
+        report.put("startDate", start);
+        report.put("endDate", end);
+        report.put("segments", segments.size());
+        report.put("computedSegments", computed.get());
+        report.put("elapsedMs", System.currentTimeMillis() - begin);
+        log.info("生成考试统计报告: paperId={}, range={}~{}, segments={}, computed={}, 耗时={}ms",
+                paperId, start, end, segments.size(), computed.get(), System.currentTimeMillis() - begin);
+        return report;
+    }
+
+    // ==================== 分段查询 ====================
+
+    /**
+     * 一个时间段的部分结果，可按段累加
+     */
+    private Partial compute(Long paperId, LocalDateTime start, LocalDateTime end) {
+        Partial partial = new Partial();
+        Timestamp from = Timestamp.valueOf(start);
+        Timestamp to = Timestamp.valueOf(end);
+        Object[] args = paperId == null ? new Object[]{from, to} : new Object[]{from, to, paperId};
+
+        jdbcTemplate.query(RECORD_HOURS_SQL + (paperId == null ? "" : " AND exam_paper_id = ?")
+                + " GROUP BY d, h", rs -> {
+            String date = rs.getDate("d").toLocalDate().toString();
+            long[] cells = partial.hours.computeIfAbsent(date, d -> new long[48]);
+            int hour = rs.getInt("h");
+            cells[hour] += rs.getLong("attempts");
+            cells[24 + hour] += rs.getLong("finished");
+        }, args);
+
+        if (paperId == null) {
+            jdbcTemplate.query(RECORD_PAPERS_SQL, rs -> {
+                partial.papers.put(rs.getLong("exam_paper_id"),
+                        new long[]{rs.getLong("attempts"), rs.getLong("finished")});
+            }, from, to);
+        }
+
+        String paperFilter = paperId == null ? "" : " AND m.exam_paper_id = ?";
+        jdbcTemplate.query(MCQ_SQL + paperFilter + " GROUP BY m.id, m.exam_paper_id, m.module_type, r.question_id",
+                rs -> {
+                    ModulePartial module = partial.module(rs.getLong("module_id"), rs.getLong("exam_paper_id"),
+                            rs.getString("module_type"));
+                    module.questions.put(rs.getLong("question_id"),
+                            new long[]{rs.getLong("responses"), rs.getLong("correct")});
+                }, args);
+
+        for (String sql : new String[]{OPI_SCORES_SQL, RETELL_SCORES_SQL}) {
+            jdbcTemplate.query(sql + paperFilter + SCORE_GROUP_BY, rs -> {
+                ModulePartial module = partial.module(rs.getLong("module_id"), rs.getLong("exam_paper_id"),
+                        rs.getString("module_type"));
+                module.scores.merge(rs.getLong("tenths"), rs.getLong("responses"), Long::sum);
+                BigDecimal sum = rs.getBigDecimal("score_sum");
+                module.scoreSum += sum == null ? 0 : sum.doubleValue();
+            }, args);
+        }
+        return partial;
+    }
+
+    /**
+     * 按自然月切分
+     */
+    private static List<LocalDateTime[]> split(LocalDateTime start, LocalDateTime end) {
+        List<LocalDateTime[]> segments = new ArrayList<>();
+        LocalDateTime cursor = start;
+        while (cursor.isBefore(end)) {
+            LocalDateTime nextMonth = YearMonth.from(cursor).plusMonths(1).atDay(1).atStartOfDay();
+            LocalDateTime segmentEnd = nextMonth.isBefore(end) ? nextMonth : end;
+            segments.add(new LocalDateTime[]{cursor, segmentEnd});
+            cursor = segmentEnd;
+        }
+        return segments;
+    }
+
+    /**
+     * 统计截止到最近的 5 分钟整点，延伸到当前时刻的段每 5 分钟换一个缓存键
+     */
+    private static LocalDateTime horizon(LocalDateTime now) {
+        return now.withSecond(0).withNano(0).minusMinutes(now.getMinute() % OPEN_SEGMENT_MINUTES);
+    }
+
+    // ==================== 汇总输出 ====================
+
+    private static Map<String, Object> render(Partial total, boolean includePapers) {
+        long attempts = 0;
+        long finished = 0;
+        long[][] heatmap = new long[7][24];
+        List<Map<String, Object>> daily = new ArrayList<>();
+        Map<String, long[]> monthly = new TreeMap<>();
+        for (Map.Entry<String, long[]> entry : total.hours.entrySet()) {
+            LocalDate date = LocalDate.parse(entry.getKey());
+            long[] cells = entry.getValue();
+            long dayAttempts = 0;
+            long dayFinished = 0;
+            for (int hour = 0; hour < 24; hour++) {
+                heatmap[date.getDayOfWeek().getValue() - 1][hour] += cells[hour];
+                dayAttempts += cells[hour];
+                dayFinished += cells[24 + hour];
+            }
+            attempts += dayAttempts;
+            finished += dayFinished;
+            daily.add(counts("date", entry.getKey(), dayAttempts, dayFinished));
+            long[] month = monthly.computeIfAbsent(YearMonth.from(date).toString(), m -> new long[2]);
+            month[0] += dayAttempts;
+            month[1] += dayFinished;
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("attempts", attempts);
+        report.put("finished", finished);
+        report.put("completionRate", ratio(finished, attempts));
+        report.put("heatmap", heatmap);
+        report.put("peak", peak(heatmap));
+        report.put("daily", daily);
+        report.put("monthly", monthly.entrySet().stream()
+                .map(entry -> counts("month", entry.getKey(), entry.getValue()[0], entry.getValue()[1]))
+                .collect(Collectors.toList()));
+        if (includePapers) {
+            report.put("papers", total.papers.entrySet().stream()
+                    .sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+                    .map(entry -> counts("examPaperId", entry.getKey(), entry.getValue()[0], entry.getValue()[1]))
+                    .collect(Collectors.toList()));
+        }
+        report.put("modules", total.modules.values().stream()
+                .map(ExamStatisticsEngine::renderModule)
+                .collect(Collectors.toList()));
+        return report;
+    }
+
+    private static Map<String, Object> renderModule(ModulePartial module) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("moduleId", module.moduleId);
+        result.put("examPaperId", module.examPaperId);
+        result.put("moduleType", module.moduleType);
+        if (!module.questions.isEmpty()) {
+            long responses = 0;
+            long correct = 0;
+            long[] accuracyBins = new long[HISTOGRAM_BINS];
+            for (long[] question : module.questions.values()) {
+                responses += question[0];
+                correct += question[1];
+                int bin = question[0] == 0 ? 0 : (int) (question[1] * HISTOGRAM_BINS / question[0]);
+                accuracyBins[Math.min(bin, HISTOGRAM_BINS - 1)]++;
+            }
+            result.put("responses", responses);
+            result.put("correct", correct);
+            result.put("accuracy", ratio(correct, responses));
+            result.put("questions", module.questions.size());
+            // 各题正确率的分布，0-10%、10-20% ... 90-100%
+            result.put("questionAccuracyHistogram", accuracyBins);
+        }
+        if (!module.scores.isEmpty()) {
+            long responses = module.scores.values().stream().mapToLong(Long::longValue).sum();
+            long min = module.scores.firstKey();
+            long max = module.scores.lastKey();
+            result.put("scoredResponses", responses);
+            result.put("mean", BigDecimal.valueOf(module.scoreSum / responses).setScale(2, RoundingMode.HALF_UP));
+            result.put("min", tenths(min));
+            result.put("max", tenths(max));
+            result.put("p25", tenths(percentile(module.scores, responses, 0.25)));
+            result.put("median", tenths(percentile(module.scores, responses, 0.5)));
+            result.put("p75", tenths(percentile(module.scores, responses, 0.75)));
+            result.put("histogram", histogram(module.scores, min, max));
+        }
+        return result;
+    }
+
+    private static List<Map<String, Object>> histogram(TreeMap<Long, Long> scores, long min, long max) {
+        long width = Math.max(1, (max - min + HISTOGRAM_BINS) / HISTOGRAM_BINS);
+        int bins = (int) Math.min(HISTOGRAM_BINS, (max - min) / width + 1);
+        long[] counts = new long[bins];
+        for (Map.Entry<Long, Long> entry : scores.entrySet()) {
+            counts[(int) Math.min(bins - 1, (entry.getKey() - min) / width)] += entry.getValue();
+        }
+        List<Map<String, Object>> result = new ArrayList<>(bins);
+        for (int i = 0; i < bins; i++) {
+            Map<String, Object> bin = new LinkedHashMap<>();
+            bin.put("from", tenths(min + i * width));
+            bin.put("to", tenths(i == bins - 1 ? max : min + (i + 1) * width));
+            bin.put("count", counts[i]);
+            result.add(bin);
+        }
+        return result;
+    }
+
+    private static long percentile(TreeMap<Long, Long> scores, long total, double quantile) {
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (Map.Entry<Long, Long> entry : scores.entrySet()) {
+            seen += entry.getValue();
+            if (seen >= rank) {
+                return entry.getKey();
+            }
+        }
+        return scores.lastKey();
+    }
+
+    private static Map<String, Object> peak(long[][] heatmap) {
+        int bestDay = 0;
+        int bestHour = 0;
+        for (int day = 0; day < 7; day++) {
+            for (int hour = 0; hour < 24; hour++) {
+                if (heatmap[day][hour] > heatmap[bestDay][bestHour]) {
+                    bestDay = day;
+                    bestHour = hour;
+                }
+            }
+        }
+        Map<String, Object> peak = new LinkedHashMap<>();
+        peak.put("dayOfWeek", DayOfWeek.of(bestDay + 1));
+        peak.put("hour", bestHour);
+        peak.put("attempts", heatmap[bestDay][bestHour]);
+        return peak;
+    }
+
+    private static Map<String, Object> counts(String keyName, Object key, long attempts, long finished) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put(keyName, key);
+        row.put("attempts", attempts);
+        row.put("finished", finished);
+        row.put("completionRate", ratio(finished, attempts));
+        return row;
+    }
+
+    private static BigDecimal ratio(long part, long total) {
+        return total == 0 ? BigDecimal.ZERO
+                : BigDecimal.valueOf(part).divide(BigDecimal.valueOf(total), 4, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal tenths(long value) {
+        return BigDecimal.valueOf(value, 1);
+    }
+
+    // ==================== 部分结果 ====================
+
+    /**
+     * 一个时间段的可合并统计
+     */
+    @Getter
+    public static class Partial {
+        /**
+         * 日期 -> [0..23] 各小时作答数，[24..47] 各小时完成数
+         */
+        private final Map<String, long[]> hours = new TreeMap<>();
+
+        /**
+         * 试卷ID -> [作答数, 完成数]
+         */
+        private final Map<Long, long[]> papers = new HashMap<>();
+
+        private final Map<Long, ModulePartial> modules = new TreeMap<>();
+
+        private ModulePartial module(long moduleId, long examPaperId, String moduleType) {
+            return modules.computeIfAbsent(moduleId, id -> new ModulePartial(id, examPaperId, moduleType));
+        }
+
+        /**
+         * 合并另一段（不修改对方，缓存中的结果保持不变）
+         */
+        private void merge(Partial other) {
+            other.hours.forEach((date, cells) -> add(hours.computeIfAbsent(date, d -> new long[48]), cells));
+            other.papers.forEach((paper, counts) -> add(papers.computeIfAbsent(paper, p -> new long[2]), counts));
+            other.modules.forEach((id, module) -> {
+                ModulePartial target = module(id, module.examPaperId, module.moduleType);
+                module.questions.forEach((question, counts) ->
+                        add(target.questions.computeIfAbsent(question, q -> new long[2]), counts));
+                module.scores.forEach((score, count) -> target.scores.merge(score, count, Long::sum));
+                target.scoreSum += module.scoreSum;
+            });
+        }
+
+        private static void add(long[] target, long[] source) {
+            for (int i = 0; i < source.length; i++) {
+                target[i] += source[i];
+            }
+        }
+    }
+
+    /**
+     * 单个模块的可合并统计
+     */
+    @Getter
+    public static class ModulePartial {
+        private final long moduleId;
+        private final long examPaperId;
+        private final String moduleType;
+
+        /**
+         * 选择题：题目ID -> [回答数, 正确数]
+         */
+        private final Map<Long, long[]> questions = new TreeMap<>();
+
+        /**
+         * 评分题：得分（0.1 分为单位）-> 回答数
+         */
+        private final TreeMap<Long, Long> scores = new TreeMap<>();
+
+        private double scoreSum;
+
+        private ModulePartial(long moduleId, long examPaperId, String moduleType) {
+            this.moduleId = moduleId;
+            this.examPaperId = examPaperId;
+            this.moduleType = moduleType;
+        }
+    }
+}
@@ -19,7 +19,9 @@ import java.time.LocalDateTime;
  * 对应数据库表：retell_responses
  */
 @Entity
-@Table(name = "retell_responses")
+@Table(name = "retell_responses", indexes = {
+        @Index(name = "idx_retell_responses_answered_at", columnList = "answered_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
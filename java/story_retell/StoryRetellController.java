@@ -3,6 +3,8 @@ package org.icao4.eqasbackend2.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.icao4.eqasbackend2.common.ApiResponse;
+import org.icao4.eqasbackend2.entity.MediaAsset;
+import org.icao4.eqasbackend2.impl.media.MediaStorageService;
 import org.icao4.eqasbackend2.entity.story_retell.RetellItem;
 import org.icao4.eqasbackend2.entity.story_retell.RetellResponse;
 import org.icao4.eqasbackend2.service.story_retell.RetellItemService;
@@ -37,6 +39,7 @@ public class StoryRetellController {
     
     private final RetellItemService retellItemService;
     private final RetellResponseService retellResponseService;
+    private final MediaStorageService mediaStorageService;
     
     // ==================== 复述题目相关接口 ====================
     
@@ -944,14 +947,10 @@ public class StoryRetellController {
             @RequestParam(required = false) Long questionId,
             @RequestParam(required = false) String quality) {
         try {
-            // TODO: 实现音频文件上传逻辑
-            Map<String, Object> result = Map.of(
-                    "filename", file.getOriginalFilename(),
-                    "size", file.getSize(),
-                    "url", "/uploads/audio/" + file.getOriginalFilename(),
-                    "questionId", questionId != null ? questionId : 0L,
-                    "quality", quality != null ? quality : "medium"
-            );
+            MediaStorageService.StoredMedia stored = mediaStorageService.store(file, MediaAsset.MediaType.audio, null);
+            Map<String, Object> result = stored.toResultMap();
+            result.put("questionId", questionId != null ? questionId : 0L);
+            result.put("quality", quality != null ? quality : "medium");
             return ResponseEntity.ok(ApiResponse.success(result));
         } catch (Exception e) {
             log.error("上传复述题目音频失败: {}", e.getMessage(), e);
@@ -0,0 +1,438 @@
+package org.icao4.eqasbackend2.impl.term;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.dto.request.AvTermBatchRequest;
+import org.icao4.eqasbackend2.entity.term.AvTerm;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.BiFunction;
+
+/**
+ * 术语批量操作引擎
+ * 按可配置的分块大小处理术语ID，每块在一个事务中用集合化的 SQL 和 JDBC 批量更新完成，
+ * 替代逐条 existsById / findById / save 的往返。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AvTermBatchOperationService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AvTermSearchIndex avTermSearchIndex;
+    private final AvTermRandomSampler avTermRandomSampler;
+
+    /**
+     * 每个事务处理的术语数量
+     */
+    @Value("${app.term.batch.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * 批量操作结果，successIds / failedIds 保持请求中的顺序
+     */
+    @Getter
+    public static class BatchResult {
+        private final List<Long> successIds = new ArrayList<>();
+        private final List<Long> failedIds = new ArrayList<>();
+        /**
+         * 受影响的术语（删除以外的成功项），用于刷新内存索引
+         */
+        private final Set<Long> touchedIds = new LinkedHashSet<>();
+        private final Set<Long> deletedIds = new LinkedHashSet<>();
+        /**
+         * 被删除或调整了频次排名的术语所属的主题（按主题分页的结果随之变化）
+         */
+        private final Set<Long> affectedTopicIds = new LinkedHashSet<>();
+    }
+
+    /**
+     * 执行批量操作
+     */
+    public BatchResult execute(AvTermBatchRequest request) {
+        BatchResult result = executeChunked(request.getTermIds(), request.getOperationType(),
+                (chunk, completed) -> executeChunk(request, chunk, completed));
+
+        avTermSearchIndex.removeAll(result.deletedIds);
+        avTermSearchIndex.refresh(result.touchedIds);
+        avTermRandomSampler.removeAll(result.deletedIds);
+        avTermRandomSampler.refresh(result.touchedIds);
+        return result;
+    }
+
+    /**
+     * 批量将术语添加到单个主题
+     * 每块两次查询（已存在术语、已存在映射）+ 一次清除主归属 + 一次批量插入；
+     * 术语不存在或映射已存在时记为失败。
+     */
+    public BatchResult addToTopic(List<Long> termIds, Long topicId, boolean isPrimary) {
+        return executeChunked(termIds, "addToTopic", (chunk, completed) -> {
+            BatchResult chunkResult = new BatchResult();
+            Set<Long> existingTerms = findExistingTermIds(chunk);
+            Set<Long> mapped = findMappedTermIds(new LinkedHashSet<>(existingTerms), topicId);
+
+            List<Long> toInsert = new ArrayList<>();
+            for (Long termId : chunk) {
+                // mapped.add 同时处理了请求中的重复ID
+                if (existingTerms.contains(termId) && mapped.add(termId)) {
+                    toInsert.add(termId);
+                    chunkResult.successIds.add(termId);
+                } else {
+                    chunkResult.failedIds.add(termId);
+                }
+            }
+
+            if (!toInsert.isEmpty()) {
+                if (isPrimary) {
+                    jdbcTemplate.update("UPDATE av_term_topic_map SET is_primary = FALSE WHERE is_primary = TRUE AND term_id IN ("
+                            + placeholders(toInsert.size()) + ")", toInsert.toArray());
+                }
+                List<Object[]> rows = new ArrayList<>(toInsert.size());
+                for (Long termId : toInsert) {
+                    rows.add(new Object[]{termId, topicId, isPrimary});
+                }
+                jdbcTemplate.batchUpdate("INSERT INTO av_term_topic_map (term_id, topic_id, is_primary) VALUES (?, ?, ?)",
+                        rows);
+            }
+            return chunkResult;
+        });
+    }
+
+    /**
+     * 批量将术语从单个主题移除
+     * 每块一次查询已存在映射 + 一次删除；映射不存在时记为失败。
+     */
+    public BatchResult removeFromTopic(List<Long> termIds, Long topicId) {
+        return executeChunked(termIds, "removeFromTopic", (chunk, completed) -> {
+            BatchResult chunkResult = new BatchResult();
+            Set<Long> mapped = findMappedTermIds(new LinkedHashSet<>(chunk), topicId);
+            if (!mapped.isEmpty()) {
+                List<Object> args = new ArrayList<>(mapped.size() + 1);
+                args.add(topicId);
+                args.addAll(mapped);
+                jdbcTemplate.update("DELETE FROM av_term_topic_map WHERE topic_id = ? AND term_id IN ("
+                        + placeholders(mapped.size()) + ")", args.toArray());
+            }
+            for (Long termId : chunk) {
+                if (mapped.remove(termId)) {
+                    chunkResult.successIds.add(termId);
+                } else {
+                    chunkResult.failedIds.add(termId);
+                }
+            }
+            return chunkResult;
+        });
+    }
+
+    // ==================== 分块处理 ====================
+
+    /**
+     * 分块执行，每块一个事务；整块失败时该块全部记为失败
+     * chunkHandler 的第二个参数为已提交分块的汇总结果
+     */
+    private BatchResult executeChunked(List<Long> termIds, String operation,
+                                       BiFunction<List<Long>, BatchResult, BatchResult> chunkHandler) {
+        long start = System.currentTimeMillis();
+        BatchResult result = new BatchResult();
+        List<Long> ids = termIds != null ? termIds : Collections.emptyList();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+            try {
+                merge(result, transactionTemplate.execute(status -> chunkHandler.apply(chunk, result)));
+            } catch (Exception e) {
+                log.error("批量操作分块失败: operation={}, offset={}, size={}, error={}",
+                        operation, from, chunk.size(), e.getMessage());
+                result.failedIds.addAll(chunk);
+            }
+        }
+        log.info("批量操作完成: operation={}, total={}, success={}, failed={}, 耗时={}ms",
+                operation, ids.size(), result.successIds.size(), result.failedIds.size(),
+                System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * 处理一个分块，返回该分块的结果（在事务内执行，失败时整块回滚）
+     *
+     * @param overall 已完成分块的汇总结果，用于计算频次排名的起始偏移
+     */
+    private BatchResult executeChunk(AvTermBatchRequest request, List<Long> chunk, BatchResult overall) {
+        BatchResult chunkResult = new BatchResult();
+        String operationType = request.getOperationType();
+        if (operationType == null) {
+            chunkResult.failedIds.addAll(chunk);
+            return chunkResult;
+        }
+
+        switch (operationType) {
+            case "delete":
+                bulkDelete(chunk, chunkResult);
+                break;
+            case "updateCefrLevel":
+                AvTerm.CefrLevel level = request.getTargetCefrLevel();
+                bulkUpdateColumn(chunk, "cefr_level", level != null ? level.name() : null, chunkResult);
+                break;
+            case "updateSource":
+                String source = request.getTargetSource();
+                bulkUpdateColumn(chunk, "source", source != null && !source.trim().isEmpty() ? source : null,
+                        chunkResult);
+                break;
+            case "addToTopics":
+                bulkAddToTopics(chunk, request.getTargetTopicIds(), request.getIsPrimary(), chunkResult);
+                break;
+            case "removeFromTopics":
+                bulkRemoveFromTopics(chunk, request.getTargetTopicIds(), chunkResult);
+                break;
+            case "updateFreqRank":
+                bulkUpdateFreqRank(chunk, request.getStartFreqRank(), request.getFreqRankStep(),
+                        overall.successIds.size(), chunkResult);
+                break;
+            default:
+                log.warn("未知的批量操作类型: {}", operationType);
+                chunkResult.failedIds.addAll(chunk);
+                break;
+        }
+        return chunkResult;
+    }
+
+    private void bulkDelete(List<Long> chunk, BatchResult result) {
+        Set<Long> existing = findExistingTermIds(chunk);
+        List<Long> toDelete = new ArrayList<>(existing);
+        if (!toDelete.isEmpty()) {
+            String in = placeholders(toDelete.size());
+            Object[] args = toDelete.toArray();
+            result.affectedTopicIds.addAll(findTopicIds(toDelete));
+            jdbcTemplate.update("DELETE FROM av_term_topic_map WHERE term_id IN (" + in + ")", args);
+            jdbcTemplate.update("DELETE FROM av_terms WHERE id IN (" + in + ")", args);
+        }
+        // 重复ID只有第一次删除成功
+        for (Long id : chunk) {
+            if (existing.remove(id)) {
+                result.successIds.add(id);
+                result.deletedIds.add(id);
+            } else {
+                result.failedIds.add(id);
+            }
+        }
+    }
+
+    private void bulkUpdateColumn(List<Long> chunk, String column, Object value, BatchResult result) {
+        if (value == null) {
+            result.failedIds.addAll(chunk);
+            return;
+        }
+        Set<Long> existing = findExistingTermIds(chunk);
+        if (!existing.isEmpty()) {
+            List<Object> args = new ArrayList<>(existing.size() + 1);
+            args.add(value);
+            args.addAll(existing);
+            jdbcTemplate.update("UPDATE av_terms SET " + column + " = ? WHERE id IN ("
+                    + placeholders(existing.size()) + ")", args.toArray());
+        }
+        classify(chunk, existing, result);
+    }
+
+    /**
+     * 频次排名按成功顺序递增：startFreqRank + 已成功数量 * freqRankStep
+     */
+    private void bulkUpdateFreqRank(List<Long> chunk, Integer startFreqRank, Integer freqRankStep,
+                                    int previousSuccess, BatchResult result) {
+        if (startFreqRank == null || freqRankStep == null) {
+            result.failedIds.addAll(chunk);
+            return;
+        }
+        Set<Long> existing = findExistingTermIds(chunk);
+        List<Object[]> updates = new ArrayList<>();
+        int success = previousSuccess;
+        for (Long id : chunk) {
+            int rank = startFreqRank + success * freqRankStep;
+            if (rank >= 1 && existing.contains(id)) {
+                updates.add(new Object[]{rank, id});
+                result.successIds.add(id);
+                result.touchedIds.add(id);
+                success++;
+            } else {
+                result.failedIds.add(id);
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE av_terms SET freq_rank = ? WHERE id = ?", updates);
+            List<Long> updatedIds = new ArrayList<>(updates.size());
+            for (Object[] row : updates) {
+                updatedIds.add((Long) row[1]);
+            }
+            result.affectedTopicIds.addAll(findTopicIds(updatedIds));
+        }
+    }
+
+    /**
+     * 批量添加主题映射
+     * 与逐条处理一致：已存在的映射跳过；主题不存在时该术语记为失败（其余主题仍然添加）；
+     * isPrimary 时先清除术语原有主归属，新增映射中的最后一个作为主归属。
+     */
+    private void bulkAddToTopics(List<Long> chunk, List<Long> topicIds, Boolean isPrimary, BatchResult result) {
+        if (topicIds == null || topicIds.isEmpty()) {
+            result.failedIds.addAll(chunk);
+            return;
+        }
+        boolean primary = Boolean.TRUE.equals(isPrimary);
+        Set<Long> existingTerms = findExistingTermIds(chunk);
+        Set<Long> existingTopics = findExistingIds("av_terms_topics", topicIds);
+        boolean allTopicsExist = existingTopics.size() == new HashSet<>(topicIds).size();
+
+        Set<String> existingMappings = new HashSet<>();
+        if (!existingTerms.isEmpty() && !existingTopics.isEmpty()) {
+            List<Object> args = new ArrayList<>(existingTerms);
+            args.addAll(existingTopics);
+            jdbcTemplate.query("SELECT term_id, topic_id FROM av_term_topic_map WHERE term_id IN ("
+                            + placeholders(existingTerms.size()) + ") AND topic_id IN ("
+                            + placeholders(existingTopics.size()) + ")",
+                    rs -> {
+                        existingMappings.add(rs.getLong("term_id") + ":" + rs.getLong("topic_id"));
+                    },
+                    args.toArray());
+        }
+
+        List<Object[]> inserts = new ArrayList<>();
+        Set<Long> primaryCleared = new LinkedHashSet<>();
+        for (Long termId : existingTerms) {
+            List<Long> newTopics = new ArrayList<>();
+            for (Long topicId : new LinkedHashSet<>(topicIds)) {
+                if (existingTopics.contains(topicId) && existingMappings.add(termId + ":" + topicId)) {
+                    newTopics.add(topicId);
+                }
+            }
+            for (int i = 0; i < newTopics.size(); i++) {
+                boolean rowPrimary = primary && i == newTopics.size() - 1;
+                inserts.add(new Object[]{termId, newTopics.get(i), rowPrimary});
+            }
+            if (primary && !newTopics.isEmpty()) {
+                primaryCleared.add(termId);
+            }
+        }
+
+        if (!primaryCleared.isEmpty()) {
+            jdbcTemplate.update("UPDATE av_term_topic_map SET is_primary = FALSE WHERE is_primary = TRUE AND term_id IN ("
+                    + placeholders(primaryCleared.size()) + ")", primaryCleared.toArray());
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO av_term_topic_map (term_id, topic_id, is_primary) VALUES (?, ?, ?)",
+                    inserts);
+        }
+
+        for (Long id : chunk) {
+            if (existingTerms.contains(id) && allTopicsExist) {
+                result.successIds.add(id);
+            } else {
+                result.failedIds.add(id);
+            }
+        }
+    }
+
+    private void bulkRemoveFromTopics(List<Long> chunk, List<Long> topicIds, BatchResult result) {
+        if (topicIds == null || topicIds.isEmpty()) {
+            result.failedIds.addAll(chunk);
+            return;
+        }
+        Set<Long> distinctTerms = new LinkedHashSet<>(chunk);
+        Set<Long> distinctTopics = new LinkedHashSet<>(topicIds);
+        List<Object> args = new ArrayList<>(distinctTerms);
+        args.addAll(distinctTopics);
+        jdbcTemplate.update("DELETE FROM av_term_topic_map WHERE term_id IN (" + placeholders(distinctTerms.size())
+                + ") AND topic_id IN (" + placeholders(distinctTopics.size()) + ")", args.toArray());
+        // 映射不存在视为已移除
+        result.successIds.addAll(chunk);
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private void classify(List<Long> chunk, Set<Long> existing, BatchResult result) {
+        for (Long id : chunk) {
+            if (existing.contains(id)) {
+                result.successIds.add(id);
+                result.touchedIds.add(id);
+            } else {
+                result.failedIds.add(id);
+            }
+        }
+    }
+
+    private Set<Long> findExistingTermIds(List<Long> ids) {
+        return findExistingIds("av_terms", ids);
+    }
+
+    private Set<Long> findExistingIds(String table, Collection<Long> ids) {
+        Set<Long> distinct = new LinkedHashSet<>();
+        for (Long id : ids) {
+            if (id != null) {
+                distinct.add(id);
+            }
+        }
+        Set<Long> existing = new LinkedHashSet<>();
+        if (distinct.isEmpty()) {
+            return existing;
+        }
+        jdbcTemplate.query("SELECT id FROM " + table + " WHERE id IN (" + placeholders(distinct.size()) + ")",
+                rs -> {
+                    existing.add(rs.getLong(1));
+                },
+                distinct.toArray());
+        return existing;
+    }
+
+    /**
+     * 术语所属的全部主题ID
+     */
+    private Set<Long> findTopicIds(List<Long> termIds) {
+        Set<Long> topicIds = new LinkedHashSet<>();
+        jdbcTemplate.query("SELECT DISTINCT topic_id FROM av_term_topic_map WHERE term_id IN ("
+                        + placeholders(termIds.size()) + ")",
+                rs -> {
+                    topicIds.add(rs.getLong(1));
+                },
+                termIds.toArray());
+        return topicIds;
+    }
+
+    /**
+     * 查询已映射到指定主题的术语ID
+     */
+    private Set<Long> findMappedTermIds(Set<Long> termIds, Long topicId) {
+        Set<Long> mapped = new HashSet<>();
+        termIds.remove(null);
+        if (termIds.isEmpty()) {
+            return mapped;
+        }
+        List<Object> args = new ArrayList<>(termIds.size() + 1);
+        args.add(topicId);
+        args.addAll(termIds);
+        jdbcTemplate.query("SELECT term_id FROM av_term_topic_map WHERE topic_id = ? AND term_id IN ("
+                        + placeholders(termIds.size()) + ")",
+                rs -> {
+                    mapped.add(rs.getLong(1));
+                },
+                args.toArray());
+        return mapped;
+    }
+
+    private void merge(BatchResult target, BatchResult chunkResult) {
+        if (chunkResult == null) {
+            return;
+        }
+        target.successIds.addAll(chunkResult.successIds);
+        target.failedIds.addAll(chunkResult.failedIds);
+        target.touchedIds.addAll(chunkResult.touchedIds);
+        target.deletedIds.addAll(chunkResult.deletedIds);
+        target.affectedTopicIds.addAll(chunkResult.affectedTopicIds);
+    }
+
+    static String placeholders(int n) {
+        return String.join(",", Collections.nCopies(n, "?"));
+    }
+}
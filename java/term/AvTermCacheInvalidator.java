@@ -0,0 +1,251 @@
+package org.icao4.eqasbackend2.impl.term;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.cache.CacheDependencyExtractor;
+import org.icao4.eqasbackend2.cache.DependencyTrackingCache;
+import org.icao4.eqasbackend2.dto.response.AvTermResponse;
+import org.icao4.eqasbackend2.dto.response.AvTermSimpleResponse;
+import org.icao4.eqasbackend2.dto.response.AvTermTopicMapResponse;
+import org.icao4.eqasbackend2.entity.term.AvTerm;
+import org.icao4.eqasbackend2.entity.term.AvTermsTopic;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * avTerms 缓存的依赖提取与精确失效
+ * 缓存条目记录其包含的术语ID和主题ID，变更时只失效受影响的条目：
+ * <ul>
+ *     <li>包含该术语/主题的条目（按标签）</li>
+ *     <li>结果集可能新增该术语的查询条目（按键前缀：headword_、cefr_、freq_、topic_、advanced_）</li>
+ * </ul>
+ * 多节点部署时按标签、前缀的失效由 {@link DependencyTrackingCache} 广播，
+ * 按条件的失效（频次范围、主题分页）在其他节点按所属前缀整体失效。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AvTermCacheInvalidator implements CacheDependencyExtractor {
+
+    public static final String CACHE_NAME = "avTerms";
+
+    private static final String TERM_TAG = "term:";
+    private static final String TOPIC_TAG = "topic:";
+
+    private final CacheManager cacheManager;
+
+    // ==================== 依赖提取 ====================
+
+    @Override
+    public String cacheName() {
+        return CACHE_NAME;
+    }
+
+    @Override
+    public Set<String> extract(Object key, Object value) {
+        Set<String> tags = new HashSet<>();
+        collect(value, tags);
+        return tags;
+    }
+
+    private void collect(Object value, Set<String> tags) {
+        if (value instanceof ResponseEntity) {
+            collect(((ResponseEntity<?>) value).getBody(), tags);
+        } else if (value instanceof Page) {
+            collect(((Page<?>) value).getContent(), tags);
+        } else if (value instanceof Collection) {
+            for (Object item : (Collection<?>) value) {
+                collect(item, tags);
+            }
+        } else if (value instanceof AvTermSimpleResponse) {
+            tags.add(TERM_TAG + ((AvTermSimpleResponse) value).getId());
+        } else if (value instanceof AvTermResponse) {
+            AvTermResponse response = (AvTermResponse) value;
+            tags.add(TERM_TAG + response.getId());
+            collect(response.getTopics(), tags);
+        } else if (value instanceof AvTermTopicMapResponse) {
+            AvTermTopicMapResponse response = (AvTermTopicMapResponse) value;
+            tags.add(TERM_TAG + response.getTermId());
+            tags.add(TOPIC_TAG + response.getTopicId());
+        } else if (value instanceof AvTermsTopic) {
+            tags.add(TOPIC_TAG + ((AvTermsTopic) value).getId());
+        }
+    }
+
+    // ==================== 失效规则 ====================
+
+    /**
+     * 获取术语中影响缓存键的字段快照，更新前调用
+     */
+    public TermKeys snapshot(AvTerm term) {
+        return snapshot(term, Collections.emptyList());
+    }
+
+    /**
+     * 连同术语所属主题一起快照，删除术语或修改频次排名前调用（映射随术语删除、按主题分页按频次排序）
+     */
+    public TermKeys snapshot(AvTerm term, Collection<Long> topicIds) {
+        return term == null ? null
+                : new TermKeys(term.getId(), term.getHeadword(), term.getCefrLevel(), term.getFreqRank(), topicIds);
+    }
+
+    /**
+     * 单个术语创建、更新或删除后调用
+     *
+     * @param before 变更前快照，创建时为 null
+     * @param after  变更后的术语，删除时为 null
+     */
+    public void onTermChanged(TermKeys before, AvTerm after) {
+        TermKeys current = snapshot(after);
+        withCache(cache -> {
+            // 删除或频次排名变化时，所属主题的分页（totalElements、偏移、顺序）都可能变化
+            if (before != null && (current == null || !Objects.equals(before.freqRank, current.freqRank))) {
+                for (Long topicId : before.topicIds) {
+                    cache.evictByKeyPrefix("topic_" + topicId + "_");
+                }
+            }
+            for (TermKeys keys : Arrays.asList(before, current)) {
+                if (keys == null) {
+                    continue;
+                }
+                cache.evictByTag(TERM_TAG + keys.id);
+                if (keys.headword != null) {
+                    cache.evict("headword_" + keys.headword);
+                }
+                if (keys.cefrLevel != null) {
+                    cache.evictByKeyPrefix("cefr_" + keys.cefrLevel.name() + "_");
+                }
+                if (keys.freqRank != null) {
+                    evictFreqRangesContaining(cache, keys.freqRank);
+                }
+            }
+            cache.evictByKeyPrefix("advanced_");
+        });
+    }
+
+    /**
+     * 集合化批量更新后调用（无法得知每个术语的旧值，按维度前缀失效）
+     * 所有标签和前缀合并为一次失效，共享层只清一次、只广播一个事件
+     */
+    public void onTermsChanged(Collection<Long> termIds) {
+        onTermsChanged(termIds, Collections.emptyList());
+    }
+
+    /**
+     * 同上，另失效 topicIds 的按主题分页（批量删除、批量调整频次排名时为受影响术语所属的主题）
+     */
+    public void onTermsChanged(Collection<Long> termIds, Collection<Long> topicIds) {
+        List<String> prefixes = topicPagePrefixes(topicIds);
+        prefixes.addAll(Arrays.asList("cefr_", "freq_", "advanced_"));
+        withCache(cache -> cache.evictAll(termTags(termIds), prefixes, Collections.emptyList()));
+    }
+
+    /**
+     * 术语与主题的映射变更后调用，合并为一次失效
+     */
+    public void onMappingsChanged(Collection<Long> termIds, Collection<Long> topicIds) {
+        List<String> prefixes = topicPagePrefixes(topicIds);
+        prefixes.add("advanced_");
+        // 包含该术语的条目（topicCount 变化）以及该术语的映射列表
+        List<String> mappingKeys = termIds.stream().map(termId -> "topics_" + termId).collect(Collectors.toList());
+        withCache(cache -> cache.evictAll(termTags(termIds), prefixes, mappingKeys));
+    }
+
+    /**
+     * 主题本身（AvTermsTopic）增删改后调用
+     */
+    public void onTopicChanged(Long topicId) {
+        withCache(cache -> {
+            cache.evictByTag(TOPIC_TAG + topicId);
+            cache.evict("topic_" + topicId);
+            cache.evictByKeyPrefix("topic_" + topicId + "_");
+            // 主题分页列表 topics_{page}_{size}_{sort}_{direction}
+            cache.evictIf("topics_", key -> String.valueOf(key).startsWith("topics_")
+                    && String.valueOf(key).indexOf('_', "topics_".length()) > 0);
+        });
+    }
+
+    /**
+     * 各键前缀的命中、未命中、失效统计
+     */
+    public Map<String, Map<String, Object>> getMetrics() {
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        if (cache instanceof DependencyTrackingCache) {
+            return ((DependencyTrackingCache) cache).getMetrics();
+        }
+        return Collections.emptyMap();
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * freq_{minRank}_{maxRank}_{page}_{size}：只失效范围包含该排名的条目
+     */
+    private void evictFreqRangesContaining(DependencyTrackingCache cache, int freqRank) {
+        cache.evictIf("freq_", key -> {
+            String text = String.valueOf(key);
+            if (!text.startsWith("freq_")) {
+                return false;
+            }
+            String[] parts = text.split("_");
+            try {
+                return parts.length < 3
+                        || (Integer.parseInt(parts[1]) <= freqRank && freqRank <= Integer.parseInt(parts[2]));
+            } catch (NumberFormatException e) {
+                return true;
+            }
+        });
+    }
+
+    /**
+     * 按主题分页 topic_{topicId}_{primaryOnly}_{page}_{size} 的键前缀
+     */
+    private static List<String> topicPagePrefixes(Collection<Long> topicIds) {
+        List<String> prefixes = new ArrayList<>(topicIds.size() + 3);
+        for (Long topicId : topicIds) {
+            prefixes.add("topic_" + topicId + "_");
+        }
+        return prefixes;
+    }
+
+    private static List<String> termTags(Collection<Long> termIds) {
+        return termIds.stream().map(termId -> TERM_TAG + termId).collect(Collectors.toList());
+    }
+
+    private void withCache(Consumer<DependencyTrackingCache> action) {
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        if (cache instanceof DependencyTrackingCache) {
+            action.accept((DependencyTrackingCache) cache);
+        } else if (cache != null) {
+            // 未启用依赖跟踪时退化为全部清空
+            cache.clear();
+        }
+    }
+
+    /**
+     * 影响缓存键的术语字段
+     */
+    public static final class TermKeys {
+        private final Long id;
+        private final String headword;
+        private final AvTerm.CefrLevel cefrLevel;
+        private final Integer freqRank;
+        private final List<Long> topicIds;
+
+        private TermKeys(Long id, String headword, AvTerm.CefrLevel cefrLevel, Integer freqRank,
+                         Collection<Long> topicIds) {
+            this.id = id;
+            this.headword = headword;
+            this.cefrLevel = cefrLevel;
+            this.freqRank = freqRank;
+            this.topicIds = new ArrayList<>(topicIds);
+        }
+    }
+}
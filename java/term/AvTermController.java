@@ -10,6 +10,12 @@ import org.icao4.eqasbackend2.dto.response.AvTermTopicMapResponse;
 import org.icao4.eqasbackend2.entity.term.AvTerm;
 import org.icao4.eqasbackend2.entity.term.AvTermTopicMap;
 import org.icao4.eqasbackend2.entity.term.AvTermsTopic;
+import org.icao4.eqasbackend2.impl.term.AvTermBatchOperationService;
+import org.icao4.eqasbackend2.impl.term.AvTermCacheInvalidator;
+import org.icao4.eqasbackend2.impl.term.AvTermExportService;
+import org.icao4.eqasbackend2.impl.term.AvTermRandomSampler;
+import org.icao4.eqasbackend2.impl.term.AvTermSearchIndex;
+import org.icao4.eqasbackend2.impl.term.AvTermStatisticsService;
 import org.icao4.eqasbackend2.repository.term.AvTermsTopicRepository;
 import org.icao4.eqasbackend2.service.term.AvTermService;
 import org.icao4.eqasbackend2.service.term.AvTermTopicMapService;
@@ -20,9 +26,12 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -41,6 +50,12 @@ public class AvTermController {
     private final AvTermTopicMapService avTermTopicMapService;
     private final AvTermsTopicService avTermsTopicService;
     private final AvTermsTopicRepository avTermsTopicRepository;
+    private final AvTermSearchIndex avTermSearchIndex;
+    private final AvTermExportService avTermExportService;
+    private final AvTermBatchOperationService avTermBatchOperationService;
+    private final AvTermStatisticsService avTermStatisticsService;
+    private final AvTermCacheInvalidator avTermCacheInvalidator;
+    private final AvTermRandomSampler avTermRandomSampler;
 
     // ==================== 基础CRUD操作 ====================
 
@@ -48,7 +63,7 @@ public class AvTermController {
      * 创建航空术语
      */
     @PostMapping
-    @CacheEvict(value = {"avTerms", "avTermStats"}, allEntries = true)
+    @CacheEvict(value = "avTermStats", allEntries = true)
     public ResponseEntity<AvTermResponse> createAvTerm(@Valid @RequestBody AvTermCreateRequest request) {
         log.info("创建航空术语: {}", request.getHeadword());
         
@@ -70,6 +85,10 @@ public class AvTermController {
                 .build();
         
         AvTerm savedTerm = avTermService.save(avTerm);
+        avTermSearchIndex.index(savedTerm);
+        avTermRandomSampler.index(savedTerm);
+        avTermStatisticsService.onCreated(savedTerm);
+        avTermCacheInvalidator.onTermChanged(null, savedTerm);
         return ResponseEntity.ok(convertToResponse(savedTerm, false));
     }
 
@@ -120,7 +139,10 @@ public class AvTermController {
         Sort.Direction sortDirection = "asc".equalsIgnoreCase(sortDir) ? Sort.Direction.ASC : Sort.Direction.DESC;
         Pageable pageable = PageRequest.of(page, size, Sort.by(sortDirection, sortField));
         
-        Page<AvTerm> avTermPage = avTermService.findByQuery(request, pageable);
+        // 含文本条件时走内存倒排索引，避免 TEXT 字段上的 LIKE 扫描
+        Page<AvTerm> avTermPage = avTermSearchIndex.canServe(request, pageable.getSort())
+                ? avTermSearchIndex.search(request, pageable)
+                : avTermService.findByQuery(request, pageable);
         Page<AvTermSimpleResponse> responsePage = avTermPage.map(this::convertToSimpleResponse);
         
         return ResponseEntity.ok(responsePage);
@@ -161,7 +183,7 @@ public class AvTermController {
      * 更新航空术语
      */
     @PutMapping("/{id}")
-    @CacheEvict(value = {"avTerms", "avTermStats"}, allEntries = true)
+    @CacheEvict(value = "avTermStats", allEntries = true)
     public ResponseEntity<AvTermResponse> updateAvTerm(
             @PathVariable Long id,
             @Valid @RequestBody AvTermUpdateRequest request) {
@@ -173,9 +195,18 @@ public class AvTermController {
         }
         
         AvTerm avTerm = avTermOpt.get();
+        AvTermStatisticsService.TermFacts before = avTermStatisticsService.snapshot(avTerm);
+        // 频次排名变化会改变所属主题分页的顺序，此时才需要查询主题
+        boolean freqRankChanged = request.getFreqRank() != null && !request.getFreqRank().equals(avTerm.getFreqRank());
+        AvTermCacheInvalidator.TermKeys beforeKeys = avTermCacheInvalidator.snapshot(avTerm,
+                freqRankChanged ? topicIdsOf(id) : List.of());
         updateAvTermFromRequest(avTerm, request);
         
         AvTerm updatedTerm = avTermService.save(avTerm);
+        avTermSearchIndex.index(updatedTerm);
+        avTermRandomSampler.index(updatedTerm);
+        avTermStatisticsService.onUpdated(before, updatedTerm);
+        avTermCacheInvalidator.onTermChanged(beforeKeys, updatedTerm);
         return ResponseEntity.ok(convertToResponse(updatedTerm, false));
     }
 
@@ -183,19 +214,27 @@ public class AvTermController {
      * 删除航空术语
      */
     @DeleteMapping("/{id}")
-    @CacheEvict(value = {"avTerms", "avTermStats"}, allEntries = true)
+    @CacheEvict(value = "avTermStats", allEntries = true)
     public ResponseEntity<Void> deleteAvTerm(@PathVariable Long id) {
         log.info("删除航空术语: ID={}", id);
         
-        if (!avTermService.existsById(id)) {
+        Optional<AvTerm> avTermOpt = avTermService.findById(id);
+        if (avTermOpt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
         
+        // 映射删除前记下所属主题，这些主题的分页随之失效
+        AvTermCacheInvalidator.TermKeys beforeKeys = avTermCacheInvalidator.snapshot(avTermOpt.get(), topicIdsOf(id));
+        
         // 先删除相关的主题映射
         avTermTopicMapService.deleteByTermId(id);
         
         // 删除术语
         avTermService.deleteById(id);
+        avTermSearchIndex.remove(id);
+        avTermRandomSampler.remove(id);
+        avTermStatisticsService.onDeleted(avTermOpt.get());
+        avTermCacheInvalidator.onTermChanged(beforeKeys, null);
         
         return ResponseEntity.noContent().build();
     }
@@ -282,7 +321,7 @@ public class AvTermController {
      * 复制术语
      */
     @PostMapping("/{id}/copy")
-    @CacheEvict(value = {"avTerms", "avTermStats"}, allEntries = true)
+    @CacheEvict(value = "avTermStats", allEntries = true)
     public ResponseEntity<AvTermResponse> copyAvTerm(@PathVariable Long id) {
         log.info("复制术语: ID={}", id);
         
@@ -310,6 +349,10 @@ public class AvTermController {
                 .build();
         
         AvTerm savedTerm = avTermService.save(copiedTerm);
+        avTermSearchIndex.index(savedTerm);
+        avTermRandomSampler.index(savedTerm);
+        avTermStatisticsService.onCreated(savedTerm);
+        avTermCacheInvalidator.onTermChanged(null, savedTerm);
         return ResponseEntity.ok(convertToResponse(savedTerm, false));
     }
 
@@ -319,7 +362,7 @@ public class AvTermController {
      * 为术语添加主题映射
      */
     @PostMapping("/{termId}/topics")
-    @CacheEvict(value = {"avTerms", "avTermStats"}, allEntries = true)
+    @CacheEvict(value = "avTermStats", allEntries = true)
     public ResponseEntity<AvTermTopicMapResponse> addTopicMapping(
             @PathVariable Long termId,
             @Valid @RequestBody AvTermTopicMapRequest request) {
@@ -353,6 +396,8 @@ public class AvTermController {
                 .build();
         
         AvTermTopicMap savedMapping = avTermTopicMapService.save(topicMap);
+        avTermStatisticsService.markDirty();
+        avTermCacheInvalidator.onMappingsChanged(List.of(termId), List.of(request.getTopicId()));
         return ResponseEntity.ok(convertToTopicMapResponse(savedMapping));
     }
 
@@ -380,7 +425,7 @@ public class AvTermController {
      * 更新术语的主题映射
      */
     @PutMapping("/{termId}/topics/{topicId}")
-    @CacheEvict(value = {"avTerms", "avTermStats"}, allEntries = true)
+    @CacheEvict(value = "avTermStats", allEntries = true)
     public ResponseEntity<AvTermTopicMapResponse> updateTopicMapping(
             @PathVariable Long termId,
             @PathVariable Long topicId,
@@ -402,6 +447,8 @@ public class AvTermController {
         
         mapping.setIsPrimary(request.getIsPrimary());
         AvTermTopicMap updatedMapping = avTermTopicMapService.save(mapping);
+        avTermStatisticsService.markDirty();
+        avTermCacheInvalidator.onMappingsChanged(List.of(termId), List.of(topicId));
         
         return ResponseEntity.ok(convertToTopicMapResponse(updatedMapping));
     }
@@ -410,7 +457,7 @@ public class AvTermController {
      * 删除术语的主题映射
      */
     @DeleteMapping("/{termId}/topics/{topicId}")
-    @CacheEvict(value = {"avTerms", "avTermStats"}, allEntries = true)
+    @CacheEvict(value = "avTermStats", allEntries = true)
     public ResponseEntity<Void> removeTopicMapping(
             @PathVariable Long termId,
             @PathVariable Long topicId) {
@@ -422,6 +469,8 @@ public class AvTermController {
         }
         
         avTermTopicMapService.deleteByTermIdAndTopicId(termId, topicId);
+        avTermStatisticsService.markDirty();
+        avTermCacheInvalidator.onMappingsChanged(List.of(termId), List.of(topicId));
         return ResponseEntity.noContent().build();
     }
 
@@ -431,13 +480,14 @@ public class AvTermController {
      * 新建主题
      */
     @PostMapping("/topics")
-    @CacheEvict(value = {"avTerms", "avTermStats"}, allEntries = true)
+    @CacheEvict(value = "avTermStats", allEntries = true)
     public ResponseEntity<AvTermsTopic> createTopic(@Valid @RequestBody AvTermsTopic request) {
         log.info("创建主题: code={}, zh={}, en={}", request.getCode(), request.getNameZh(), request.getNameEn());
         if (request.getId() != null && avTermsTopicService.existsById(request.getId())) {
             return ResponseEntity.badRequest().build();
         }
         Optional<AvTermsTopic> saved = avTermsTopicService.save(request);
+        saved.ifPresent(t -> avTermCacheInvalidator.onTopicChanged(t.getId()));
         return saved
                 .map(t -> ResponseEntity.status(201).body(t))
                 .orElseGet(() -> ResponseEntity.badRequest().build());
@@ -475,7 +525,7 @@ public class AvTermController {
      * 更新主题
      */
     @PutMapping("/topics/{id}")
-    @CacheEvict(value = {"avTerms", "avTermStats"}, allEntries = true)
+    @CacheEvict(value = "avTermStats", allEntries = true)
     public ResponseEntity<AvTermsTopic> updateTopic(@PathVariable Long id, @Valid @RequestBody AvTermsTopic request) {
         log.info("更新主题: id={}, code={}, zh={}, en={}", id, request.getCode(), request.getNameZh(), request.getNameEn());
         Optional<AvTermsTopic> existingOpt = avTermsTopicService.findById(id);
@@ -491,6 +541,7 @@ public class AvTermController {
         existing.setDescription(request.getDescription());
 
         Optional<AvTermsTopic> saved = avTermsTopicService.save(existing);
+        saved.ifPresent(t -> avTermCacheInvalidator.onTopicChanged(id));
         return saved
                 .map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.badRequest().build());
@@ -500,7 +551,7 @@ public class AvTermController {
      * 删除主题
      */
     @DeleteMapping("/topics/{id}")
-    @CacheEvict(value = {"avTerms", "avTermStats"}, allEntries = true)
+    @CacheEvict(value = "avTermStats", allEntries = true)
     public ResponseEntity<Void> deleteTopic(@PathVariable Long id) {
         log.info("删除主题: id={}", id);
         Optional<AvTermsTopic> existingOpt = avTermsTopicService.findById(id);
@@ -513,6 +564,8 @@ public class AvTermController {
             log.warn("删除主题失败，存在关联映射或外键约束: id={}", id, ex);
             return ResponseEntity.status(409).build();
         }
+        avTermStatisticsService.markDirty();
+        avTermCacheInvalidator.onTopicChanged(id);
         return ResponseEntity.noContent().build();
     }
 
@@ -544,7 +597,7 @@ public class AvTermController {
      * 设置术语的主归属主题
      */
     @PutMapping("/{termId}/primary-topic/{topicId}")
-    @CacheEvict(value = {"avTerms", "avTermStats"}, allEntries = true)
+    @CacheEvict(value = "avTermStats", allEntries = true)
     public ResponseEntity<AvTermTopicMapResponse> setPrimaryTopic(
             @PathVariable Long termId,
             @PathVariable Long topicId) {
@@ -576,6 +629,8 @@ public class AvTermController {
         }
         
         AvTermTopicMap savedMapping = avTermTopicMapService.save(mapping);
+        avTermStatisticsService.markDirty();
+        avTermCacheInvalidator.onMappingsChanged(List.of(termId), List.of(topicId));
         return ResponseEntity.ok(convertToTopicMapResponse(savedMapping));
     }
 
@@ -583,7 +638,7 @@ public class AvTermController {
      * 批量添加术语到主题
      */
     @PostMapping("/batch-add-to-topic")
-    @CacheEvict(value = {"avTerms", "avTermStats"}, allEntries = true)
+    @CacheEvict(value = "avTermStats", allEntries = true)
     public ResponseEntity<Map<String, Object>> batchAddToTopic(
             @RequestParam List<Long> termIds,
             @RequestParam Long topicId,
@@ -595,44 +650,15 @@ public class AvTermController {
             return ResponseEntity.notFound().build();
         }
         
-        Map<String, Object> result = new HashMap<>();
-        List<Long> successIds = new ArrayList<>();
-        List<Long> failedIds = new ArrayList<>();
-        
-        for (Long termId : termIds) {
-            try {
-                // 检查术语是否存在
-                if (!avTermService.existsById(termId)) {
-                    failedIds.add(termId);
-                    continue;
-                }
-                
-                // 检查映射是否已存在
-                if (avTermTopicMapService.existsByTermIdAndTopicId(termId, topicId)) {
-                    failedIds.add(termId);
-                    continue;
-                }
-                
-                // 如果是主归属，先取消其他主归属
-                if (isPrimary) {
-                    avTermTopicMapService.clearPrimaryMappingForTerm(termId);
-                }
-                
-                AvTermTopicMap topicMap = AvTermTopicMap.builder()
-                        .termId(termId)
-                        .topicId(topicId)
-                        .isPrimary(isPrimary != null ? isPrimary : false)
-                        .build();
-                
-                avTermTopicMapService.save(topicMap);
-                successIds.add(termId);
-                
-            } catch (Exception e) {
-                log.error("批量添加术语到主题失败: termId={}, error={}", termId, e.getMessage());
-                failedIds.add(termId);
-            }
-        }
+        // 两次查询判重 + 一次清除主归属 + 批量插入
+        AvTermBatchOperationService.BatchResult batchResult =
+                avTermBatchOperationService.addToTopic(termIds, topicId, Boolean.TRUE.equals(isPrimary));
+        avTermStatisticsService.markDirty();
+        avTermCacheInvalidator.onMappingsChanged(batchResult.getSuccessIds(), List.of(topicId));
+        List<Long> successIds = batchResult.getSuccessIds();
+        List<Long> failedIds = batchResult.getFailedIds();
         
+        Map<String, Object> result = new HashMap<>();
         result.put("successCount", successIds.size());
         result.put("failedCount", failedIds.size());
         result.put("successIds", successIds);
@@ -647,31 +673,20 @@ public class AvTermController {
      * 批量从主题移除术语
      */
     @DeleteMapping("/batch-remove-from-topic")
-    @CacheEvict(value = {"avTerms", "avTermStats"}, allEntries = true)
+    @CacheEvict(value = "avTermStats", allEntries = true)
     public ResponseEntity<Map<String, Object>> batchRemoveFromTopic(
             @RequestParam List<Long> termIds,
             @RequestParam Long topicId) {
         log.info("批量从主题移除术语: termIds={}, topicId={}", termIds, topicId);
         
-        Map<String, Object> result = new HashMap<>();
-        List<Long> successIds = new ArrayList<>();
-        List<Long> failedIds = new ArrayList<>();
-        
-        for (Long termId : termIds) {
-            try {
-                Optional<AvTermTopicMap> mappingOpt = avTermTopicMapService.findByTermIdAndTopicId(termId, topicId);
-                if (mappingOpt.isPresent()) {
-                    avTermTopicMapService.deleteByTermIdAndTopicId(termId, topicId);
-                    successIds.add(termId);
-                } else {
-                    failedIds.add(termId);
-                }
-            } catch (Exception e) {
-                log.error("批量从主题移除术语失败: termId={}, error={}", termId, e.getMessage());
-                failedIds.add(termId);
-            }
-        }
+        AvTermBatchOperationService.BatchResult batchResult =
+                avTermBatchOperationService.removeFromTopic(termIds, topicId);
+        avTermStatisticsService.markDirty();
+        avTermCacheInvalidator.onMappingsChanged(batchResult.getSuccessIds(), List.of(topicId));
+        List<Long> successIds = batchResult.getSuccessIds();
+        List<Long> failedIds = batchResult.getFailedIds();
         
+        Map<String, Object> result = new HashMap<>();
         result.put("successCount", successIds.size());
         result.put("failedCount", failedIds.size());
         result.put("successIds", successIds);
@@ -698,7 +713,9 @@ public class AvTermController {
         Sort.Direction sortDirection = "asc".equalsIgnoreCase(direction) ? Sort.Direction.ASC : Sort.Direction.DESC;
         Pageable pageable = PageRequest.of(page, size, Sort.by(sortDirection, sort));
         
-        Page<AvTerm> avTermPage = avTermService.advancedSearch(request, pageable);
+        Page<AvTerm> avTermPage = avTermSearchIndex.canServe(request, pageable.getSort())
+                ? avTermSearchIndex.search(request, pageable)
+                : avTermService.advancedSearch(request, pageable);
         Page<AvTermResponse> responsePage = avTermPage.map(term -> convertToResponse(term, request.getIncludeTopics()));
         
         return ResponseEntity.ok(responsePage);
@@ -706,60 +723,14 @@ public class AvTermController {
 
     /**
      * 获取术语统计信息
+     * 数据来自内存计数器，不再逐项查询数据库
      */
     @GetMapping("/statistics")
     public ResponseEntity<Map<String, Object>> getStatistics() {
         log.info("获取术语统计信息");
         
-        Map<String, Object> stats = new HashMap<>();
-        
-        // 基础统计
-        long totalTerms = avTermService.count();
-        stats.put("totalTerms", totalTerms);
-        
-        // 按CEFR等级统计
-        Map<String, Long> cefrStats = new HashMap<>();
-        for (AvTerm.CefrLevel level : AvTerm.CefrLevel.values()) {
-            long count = avTermService.countByCefrLevel(level);
-            cefrStats.put(level.name(), count);
-        }
-        stats.put("cefrLevelStats", cefrStats);
-        
-        // 按词性统计
-        Map<String, Long> posStats = avTermService.getStatsByPos();
-        stats.put("posStats", posStats);
-        
-        // 按来源统计
-        Map<String, Long> sourceStats = avTermService.getStatsBySource();
-        stats.put("sourceStats", sourceStats);
-        
-        // 数据完整性统计
-        Map<String, Long> completenessStats = new HashMap<>();
-        completenessStats.put("withDefinitionEn", avTermService.countWithDefinitionEn());
-        completenessStats.put("withDefinitionZh", avTermService.countWithDefinitionZh());
-        completenessStats.put("withExampleEn", avTermService.countWithExampleEn());
-        completenessStats.put("withExampleZh", avTermService.countWithExampleZh());
-        completenessStats.put("withIpa", avTermService.countWithIpa());
-        completenessStats.put("withAudio", avTermService.countWithAudio());
-        completenessStats.put("withFreqRank", avTermService.countWithFreqRank());
-        completenessStats.put("withCefrLevel", avTermService.countWithCefrLevel());
-        stats.put("completenessStats", completenessStats);
-        
-        // 频次排名统计
-        Map<String, Long> freqRankStats = new HashMap<>();
-        freqRankStats.put("highFrequency", avTermService.countByFreqRankRange(1, 1000));
-        freqRankStats.put("mediumFrequency", avTermService.countByFreqRankRange(1001, 5000));
-        freqRankStats.put("lowFrequency", avTermService.countByFreqRankRange(5001, Integer.MAX_VALUE));
-        stats.put("freqRankStats", freqRankStats);
-        
-        // 主题映射统计
-        Map<String, Long> topicStats = new HashMap<>();
-        topicStats.put("totalMappings", avTermTopicMapService.count());
-        topicStats.put("primaryMappings", avTermTopicMapService.countByIsPrimary(true));
-        topicStats.put("secondaryMappings", avTermTopicMapService.countByIsPrimary(false));
-        topicStats.put("termsWithTopics", avTermService.countWithTopics());
-        topicStats.put("termsWithoutTopics", totalTerms - avTermService.countWithTopics());
-        stats.put("topicStats", topicStats);
+        // 由统计引擎从内存计数器返回，计数器随增删改增量维护并定期全量校正
+        Map<String, Object> stats = avTermStatisticsService.getStatistics();
         
         return ResponseEntity.ok(stats);
     }
@@ -801,56 +772,23 @@ public class AvTermController {
      * 批量操作术语
      */
     @PostMapping("/batch-operation")
-    @CacheEvict(value = {"avTerms", "avTermStats"}, allEntries = true)
+    @CacheEvict(value = "avTermStats", allEntries = true)
     public ResponseEntity<Map<String, Object>> batchOperation(@Valid @RequestBody AvTermBatchRequest request) {
         log.info("批量操作术语: operationType={}, termIds={}", request.getOperationType(), request.getTermIds());
         
-        Map<String, Object> result = new HashMap<>();
-        List<Long> successIds = new ArrayList<>();
-        List<Long> failedIds = new ArrayList<>();
-        
-        for (Long termId : request.getTermIds()) {
-            try {
-                boolean success = false;
-                
-                switch (request.getOperationType()) {
-                    case "delete":
-                        success = performBatchDelete(termId);
-                        break;
-                    case "updateCefrLevel":
-                        success = performBatchUpdateCefrLevel(termId, request.getTargetCefrLevel());
-                        break;
-                    case "updateSource":
-                        success = performBatchUpdateSource(termId, request.getTargetSource());
-                        break;
-                    case "addToTopics":
-                        success = performBatchAddToTopics(termId, request.getTargetTopicIds(), request.getIsPrimary());
-                        break;
-                    case "removeFromTopics":
-                        success = performBatchRemoveFromTopics(termId, request.getTargetTopicIds());
-                        break;
-                    case "updateFreqRank":
-                        int newFreqRank = request.getStartFreqRank() + (successIds.size() * request.getFreqRankStep());
-                        success = performBatchUpdateFreqRank(termId, newFreqRank);
-                        break;
-                    default:
-                        log.warn("未知的批量操作类型: {}", request.getOperationType());
-                        break;
-                }
-                
-                if (success) {
-                    successIds.add(termId);
-                } else {
-                    failedIds.add(termId);
-                }
-                
-            } catch (Exception e) {
-                log.error("批量操作失败: termId={}, operationType={}, error={}", 
-                         termId, request.getOperationType(), e.getMessage());
-                failedIds.add(termId);
-            }
+        // 分块、集合化执行，每块一个事务
+        AvTermBatchOperationService.BatchResult batchResult = avTermBatchOperationService.execute(request);
+        avTermStatisticsService.markDirty();
+        if ("addToTopics".equals(request.getOperationType()) || "removeFromTopics".equals(request.getOperationType())) {
+            avTermCacheInvalidator.onMappingsChanged(batchResult.getSuccessIds(),
+                    request.getTargetTopicIds() != null ? request.getTargetTopicIds() : List.of());
+        } else {
+            avTermCacheInvalidator.onTermsChanged(batchResult.getSuccessIds(), batchResult.getAffectedTopicIds());
         }
+        List<Long> successIds = batchResult.getSuccessIds();
+        List<Long> failedIds = batchResult.getFailedIds();
         
+        Map<String, Object> result = new HashMap<>();
         result.put("operationType", request.getOperationType());
         result.put("totalCount", request.getTermIds().size());
         result.put("successCount", successIds.size());
@@ -861,6 +799,14 @@ public class AvTermController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * 获取 avTerms 缓存按键前缀的命中/未命中/失效统计
+     */
+    @GetMapping("/cache/metrics")
+    public ResponseEntity<Map<String, Map<String, Object>>> getCacheMetrics() {
+        return ResponseEntity.ok(avTermCacheInvalidator.getMetrics());
+    }
+
     /**
      * 获取最大频次排名
      */
@@ -879,31 +825,48 @@ public class AvTermController {
 
     /**
      * 导出术语数据
+     * 响应仍为 JSON 数组，但经游标逐行写出，不再把全部术语加载为实体
      */
     @PostMapping("/export")
-    public ResponseEntity<List<AvTermResponse>> exportTerms(@Valid @RequestBody AvTermQueryRequest request) {
+    public ResponseEntity<StreamingResponseBody> exportTerms(@Valid @RequestBody AvTermQueryRequest request) {
         log.info("导出术语数据: {}", request);
-        
-        List<AvTerm> terms = avTermService.findAllByQuery(request);
-        List<AvTermResponse> responses = terms.stream()
-                .map(term -> convertToResponse(term, request.getIncludeTopics()))
-                .collect(Collectors.toList());
-        
-        return ResponseEntity.ok(responses);
+
+        return streamExport(request, null, Boolean.TRUE.equals(request.getIncludeTopics()),
+                AvTermExportService.ExportFormat.JSON);
+    }
+
+    /**
+     * 流式导出术语数据（JSON Lines / CSV）
+     * 服务端游标逐行读取并直接写入响应流，适用于全量导出
+     */
+    @PostMapping("/export/stream")
+    public ResponseEntity<StreamingResponseBody> exportTermsStream(
+            @RequestBody(required = false) AvTermQueryRequest request,
+            @RequestParam(defaultValue = "jsonl") String format) {
+        log.info("流式导出术语数据: format={}, request={}", format, request);
+
+        AvTermExportService.ExportFormat exportFormat = AvTermExportService.ExportFormat.parse(format);
+        if (exportFormat == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        boolean includeTopics = request != null && Boolean.TRUE.equals(request.getIncludeTopics());
+        return streamExport(request, null, includeTopics, exportFormat);
     }
 
     /**
      * 随机获取术语
+     * 每次请求独立抽样（不缓存），ID 在内存分桶中抽取后一次回表
      */
     @GetMapping("/random")
-    @Cacheable(value = "avTerms", key = "'random_' + #count + '_' + #cefrLevel + '_' + #hasAudio")
     public ResponseEntity<List<AvTermSimpleResponse>> getRandomTerms(
             @RequestParam(defaultValue = "10") int count,
             @RequestParam(required = false) AvTerm.CefrLevel cefrLevel,
             @RequestParam(required = false) Boolean hasAudio) {
         log.info("随机获取术语: count={}, cefrLevel={}, hasAudio={}", count, cefrLevel, hasAudio);
         
-        List<AvTerm> randomTerms = avTermService.findRandomTerms(count, cefrLevel, hasAudio);
+        List<AvTerm> randomTerms = avTermRandomSampler.isReady()
+                ? avTermRandomSampler.sample(count, cefrLevel, hasAudio)
+                : avTermService.findRandomTerms(count, cefrLevel, hasAudio);
         List<AvTermSimpleResponse> responses = randomTerms.stream()
                 .map(this::convertToSimpleResponse)
                 .collect(Collectors.toList());
@@ -911,134 +874,17 @@ public class AvTermController {
         return ResponseEntity.ok(responses);
     }
 
-    // ==================== 批量操作辅助方法 ====================
-
-    private boolean performBatchDelete(Long termId) {
-        if (!avTermService.existsById(termId)) {
-            return false;
-        }
-        
-        // 删除相关的主题映射
-        avTermTopicMapService.deleteByTermId(termId);
-        
-        // 删除术语
-        avTermService.deleteById(termId);
-        return true;
-    }
-
-    private boolean performBatchUpdateCefrLevel(Long termId, AvTerm.CefrLevel cefrLevel) {
-        if (cefrLevel == null) {
-            return false;
-        }
-        
-        Optional<AvTerm> termOpt = avTermService.findById(termId);
-        if (termOpt.isEmpty()) {
-            return false;
-        }
-        
-        AvTerm term = termOpt.get();
-        term.setCefrLevel(cefrLevel);
-        avTermService.save(term);
-        return true;
-    }
-
-    private boolean performBatchUpdateSource(Long termId, String source) {
-        if (source == null || source.trim().isEmpty()) {
-            return false;
-        }
-        
-        Optional<AvTerm> termOpt = avTermService.findById(termId);
-        if (termOpt.isEmpty()) {
-            return false;
-        }
-        
-        AvTerm term = termOpt.get();
-        term.setSource(source);
-        avTermService.save(term);
-        return true;
-    }
-
-    private boolean performBatchAddToTopics(Long termId, List<Long> topicIds, Boolean isPrimary) {
-        if (topicIds == null || topicIds.isEmpty()) {
-            return false;
-        }
-        
-        if (!avTermService.existsById(termId)) {
-            return false;
-        }
-        
-        boolean allSuccess = true;
-        for (Long topicId : topicIds) {
-            try {
-                if (!avTermsTopicService.existsById(topicId)) {
-                    allSuccess = false;
-                    continue;
-                }
-                
-                if (avTermTopicMapService.existsByTermIdAndTopicId(termId, topicId)) {
-                    continue; // 映射已存在，跳过
-                }
-                
-                // 如果是主归属，先取消其他主归属
-                if (isPrimary != null && isPrimary) {
-                    avTermTopicMapService.clearPrimaryMappingForTerm(termId);
-                }
-                
-                AvTermTopicMap topicMap = AvTermTopicMap.builder()
-                        .termId(termId)
-                        .topicId(topicId)
-                        .isPrimary(isPrimary != null ? isPrimary : false)
-                        .build();
-                
-                avTermTopicMapService.save(topicMap);
-                
-            } catch (Exception e) {
-                log.error("批量添加到主题失败: termId={}, topicId={}, error={}", termId, topicId, e.getMessage());
-                allSuccess = false;
-            }
-        }
-        
-        return allSuccess;
-    }
-
-    private boolean performBatchRemoveFromTopics(Long termId, List<Long> topicIds) {
-        if (topicIds == null || topicIds.isEmpty()) {
-            return false;
-        }
-        
-        boolean allSuccess = true;
-        for (Long topicId : topicIds) {
-            try {
-                if (avTermTopicMapService.existsByTermIdAndTopicId(termId, topicId)) {
-                    avTermTopicMapService.deleteByTermIdAndTopicId(termId, topicId);
-                }
-            } catch (Exception e) {
-                log.error("批量从主题移除失败: termId={}, topicId={}, error={}", termId, topicId, e.getMessage());
-                allSuccess = false;
-            }
-        }
-        
-        return allSuccess;
-    }
+    // ==================== 私有辅助方法 ====================
 
-    private boolean performBatchUpdateFreqRank(Long termId, Integer freqRank) {
-        if (freqRank == null || freqRank < 1) {
-            return false;
-        }
-        
-        Optional<AvTerm> termOpt = avTermService.findById(termId);
-        if (termOpt.isEmpty()) {
-            return false;
-        }
-        
-        AvTerm term = termOpt.get();
-        term.setFreqRank(freqRank);
-        avTermService.save(term);
-        return true;
+    /**
+     * 术语所属的主题ID
+     */
+    private List<Long> topicIdsOf(Long termId) {
+        return avTermTopicMapService.findByTermId(termId).stream()
+                .map(AvTermTopicMap::getTopicId)
+                .collect(Collectors.toList());
     }
 
-    // ==================== 私有辅助方法 ====================
-
     /**
      * 将AvTerm实体转换为AvTermResponse
      */
@@ -1327,32 +1173,39 @@ public class AvTermController {
      * 导出术语数据
      */
     @GetMapping("/export")
-    public ResponseEntity<List<AvTermResponse>> exportTermsData(
+    public ResponseEntity<?> exportTermsData(
             @RequestParam(required = false) String format,
             @RequestParam(required = false) List<Long> ids,
             @RequestParam(required = false) Boolean includeTopics) {
         
-        AvTermQueryRequest queryRequest = new AvTermQueryRequest();
-        if (includeTopics != null) {
-            queryRequest.setIncludeTopics(includeTopics);
+        // 所有格式（默认 json）都走流式导出
+        AvTermExportService.ExportFormat exportFormat = AvTermExportService.ExportFormat.parse(format);
+        if (exportFormat == null) {
+            return ResponseEntity.badRequest().build();
         }
-        
-        List<AvTerm> terms;
-        if (ids != null && !ids.isEmpty()) {
-            terms = ids.stream()
-                    .map(avTermService::findById)
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .collect(Collectors.toList());
-        } else {
-            terms = avTermService.findAllByQuery(queryRequest);
+        return streamExport(null, ids, Boolean.TRUE.equals(includeTopics), exportFormat);
+    }
+
+    /**
+     * 构造流式导出响应
+     * JSON 元素沿用 convertToResponse 的形状，主题映射由导出服务批量填充；
+     * 导出无法翻译成 SQL 的查询条件直接返回 400，不静默忽略
+     */
+    private ResponseEntity<StreamingResponseBody> streamExport(AvTermQueryRequest request, List<Long> ids,
+                                                               boolean includeTopics,
+                                                               AvTermExportService.ExportFormat format) {
+        String unsupported = avTermExportService.unsupportedFilter(request);
+        if (unsupported != null) {
+            log.warn("导出不支持查询条件: {}", unsupported);
+            return ResponseEntity.badRequest().build();
         }
-        
-        List<AvTermResponse> responses = terms.stream()
-                .map(term -> convertToResponse(term, queryRequest.getIncludeTopics()))
-                .collect(Collectors.toList());
-        
-        return ResponseEntity.ok(responses);
+        StreamingResponseBody body = out -> avTermExportService.export(request, ids, includeTopics, format,
+                term -> convertToResponse(term, false), out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"av_terms." + format.getExtension() + "\"")
+                .contentType(MediaType.parseMediaType(format.getContentType() + ";charset=UTF-8"))
+                .body(body);
     }
 
     /**
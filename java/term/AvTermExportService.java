@@ -0,0 +1,479 @@
+package org.icao4.eqasbackend2.impl.term;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.dto.request.AvTermQueryRequest;
+import org.icao4.eqasbackend2.dto.response.AvTermResponse;
+import org.icao4.eqasbackend2.dto.response.AvTermTopicMapResponse;
+import org.icao4.eqasbackend2.entity.term.AvTerm;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 术语流式导出服务
+ * 通过服务端游标逐行读取 av_terms，主题映射（含主题名称）按批次一次查询，
+ * 以 JSON 数组、JSON Lines 或 CSV 直接写入响应输出流，内存占用与表大小无关。
+ * JSON 格式逐条输出 AvTermResponse，与原列表接口的元素形状一致。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AvTermExportService {
+
+    private static final String TERM_COLUMNS =
+            "id, headword, lemma, pos, ipa, definition_en, definition_zh, example_en, example_zh, " +
+            "cefr_level, freq_rank, source, audio_asset_id, extra_json, created_at";
+
+    private static final String[] CSV_HEADER = {
+            "id", "headword", "lemma", "pos", "ipa", "definitionEn", "definitionZh", "exampleEn", "exampleZh",
+            "cefrLevel", "freqRank", "source", "audioAssetId", "createdAt", "topicIds", "primaryTopicId"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 游标每次抓取的行数
+     * MySQL 连接串没有开启 useCursorFetch=true 时驱动会忽略该值并把结果集整个读入内存，
+     * 此时改用 Integer.MIN_VALUE 让驱动逐行流式读取
+     */
+    @Value("${app.term.export.fetch-size:1000}")
+    private int fetchSize;
+
+    /**
+     * 每批查询主题映射的术语数量
+     */
+    @Value("${app.term.export.topic-batch-size:500}")
+    private int topicBatchSize;
+
+    /**
+     * 导出格式
+     */
+    public enum ExportFormat {
+        JSON("application/json", "json"),
+        JSONL("application/x-ndjson", "jsonl"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        ExportFormat(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * 解析导出格式参数（json / jsonl / csv），未指定时为 json，无法识别时返回 null
+         */
+        public static ExportFormat parse(String format) {
+            if (format == null || format.trim().isEmpty()) {
+                return JSON;
+            }
+            switch (format.trim().toLowerCase()) {
+                case "json":
+                    return JSON;
+                case "jsonl":
+                case "ndjson":
+                    return JSONL;
+                case "csv":
+                    return CSV;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * 查询对象上第一个有值但导出不能翻译成 SQL 的条件，没有时返回 null（调用方应返回 400）
+     */
+    public String unsupportedFilter(AvTermQueryRequest request) {
+        return request == null ? null : AvTermSearchIndex.unsupportedFilter(request);
+    }
+
+    /**
+     * 按查询条件导出术语
+     *
+     * @param request       查询条件（headword、definition、pos、cefrLevel、source），其他条件须先经 unsupportedFilter 拒绝
+     * @param ids           指定导出的术语ID，非空时忽略查询条件
+     * @param includeTopics 是否包含主题映射
+     * @param format        导出格式
+     * @param converter     JSON 格式下把术语转换为响应对象（不含主题，主题由这里批量填充）
+     * @param out           响应输出流
+     * @return 导出的行数
+     */
+    public long export(AvTermQueryRequest request, List<Long> ids, boolean includeTopics, ExportFormat format,
+                       Function<AvTerm, AvTermResponse> converter, OutputStream out) throws IOException {
+        String unsupported = (ids == null || ids.isEmpty()) ? unsupportedFilter(request) : null;
+        if (unsupported != null) {
+            throw new IllegalArgumentException("导出不支持查询条件: " + unsupported);
+        }
+        List<Object> params = new ArrayList<>();
+        String sql = buildSql(request, ids, params);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        RowSink sink = format == ExportFormat.CSV ? new CsvSink(writer)
+                : format == ExportFormat.JSON ? new JsonArraySink(writer, converter) : new JsonLinesSink(writer, converter);
+        sink.begin();
+
+        List<AvTerm> batch = new ArrayList<>(topicBatchSize);
+        long[] count = {0};
+
+        long start = System.currentTimeMillis();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(resolveFetchSize(con));
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            return ps;
+        }, rs -> {
+            batch.add(readRow(rs));
+            if (batch.size() >= topicBatchSize) {
+                count[0] += flush(batch, includeTopics, sink);
+            }
+        });
+        count[0] += flush(batch, includeTopics, sink);
+
+        sink.end();
+        writer.flush();
+        log.info("术语流式导出完成: format={}, rows={}, 耗时={}ms", format, count[0], System.currentTimeMillis() - start);
+        return count[0];
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private String buildSql(AvTermQueryRequest request, List<Long> ids, List<Object> params) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(TERM_COLUMNS).append(" FROM av_terms WHERE 1=1");
+        if (ids != null && !ids.isEmpty()) {
+            sql.append(" AND id IN (").append(placeholders(ids.size())).append(")");
+            params.addAll(ids);
+        } else if (request != null) {
+            if (hasText(request.getHeadword())) {
+                sql.append(" AND (headword LIKE ? OR lemma LIKE ?)");
+                String like = "%" + request.getHeadword().trim() + "%";
+                params.add(like);
+                params.add(like);
+            }
+            if (hasText(request.getDefinition())) {
+                sql.append(" AND (definition_en LIKE ? OR definition_zh LIKE ?)");
+                String like = "%" + request.getDefinition().trim() + "%";
+                params.add(like);
+                params.add(like);
+            }
+            if (hasText(request.getPos())) {
+                sql.append(" AND pos = ?");
+                params.add(request.getPos().trim());
+            }
+            if (request.getCefrLevel() != null) {
+                sql.append(" AND cefr_level = ?");
+                params.add(request.getCefrLevel().name());
+            }
+            if (hasText(request.getSource())) {
+                sql.append(" AND source = ?");
+                params.add(request.getSource().trim());
+            }
+        }
+        sql.append(" ORDER BY id");
+        return sql.toString();
+    }
+
+    /**
+     * MySQL Connector/J 只有开启 useCursorFetch 时才使用服务端游标，否则用 Integer.MIN_VALUE 逐行流式读取
+     */
+    private int resolveFetchSize(Connection con) throws SQLException {
+        String url = con.getMetaData().getURL();
+        if (url != null && url.startsWith("jdbc:mysql:")
+                && !url.toLowerCase(Locale.ROOT).contains("usecursorfetch=true")) {
+            return Integer.MIN_VALUE;
+        }
+        return fetchSize;
+    }
+
+    private AvTerm readRow(ResultSet rs) throws SQLException {
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        return AvTerm.builder()
+                .id(rs.getLong("id"))
+                .headword(rs.getString("headword"))
+                .lemma(rs.getString("lemma"))
+                .pos(rs.getString("pos"))
+                .ipa(rs.getString("ipa"))
+                .definitionEn(rs.getString("definition_en"))
+                .definitionZh(rs.getString("definition_zh"))
+                .exampleEn(rs.getString("example_en"))
+                .exampleZh(rs.getString("example_zh"))
+                .cefrLevel(readCefrLevel(rs.getString("cefr_level")))
+                .freqRank((Integer) rs.getObject("freq_rank", Integer.class))
+                .source(rs.getString("source"))
+                .audioAssetId((Long) rs.getObject("audio_asset_id", Long.class))
+                .extraJson(readJson(rs.getString("extra_json")))
+                .createdAt(createdAt != null ? createdAt.toLocalDateTime() : null)
+                .build();
+    }
+
+    private static AvTerm.CefrLevel readCefrLevel(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return AvTerm.CefrLevel.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * extra_json 解析为对象（CSV 不包含该列）；无法解析时记录警告并留空
+     */
+    private Map<String, Object> readJson(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {
+            });
+        } catch (IOException e) {
+            log.warn("术语 extra_json 无法解析，导出时留空: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 为一批术语查询主题映射并写出，返回写出的行数
+     */
+    private int flush(List<AvTerm> batch, boolean includeTopics, RowSink sink) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Map<Long, List<AvTermTopicMapResponse>> topicsByTerm = includeTopics
+                ? loadTopics(batch)
+                : Collections.emptyMap();
+        try {
+            for (AvTerm term : batch) {
+                sink.write(term, includeTopics
+                        ? topicsByTerm.getOrDefault(term.getId(), new ArrayList<>())
+                        : null);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("写出导出数据失败", e);
+        }
+        int size = batch.size();
+        batch.clear();
+        return size;
+    }
+
+    /**
+     * 一次查询取出一批术语的主题映射和主题信息，字段与单条接口的 AvTermTopicMapResponse 相同
+     */
+    private Map<Long, List<AvTermTopicMapResponse>> loadTopics(List<AvTerm> batch) {
+        Map<Long, String> headwords = new HashMap<>();
+        batch.forEach(term -> headwords.put(term.getId(), term.getHeadword()));
+        Map<Long, List<AvTermTopicMapResponse>> result = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT m.id, m.term_id, m.topic_id, m.is_primary, t.name_zh, t.description "
+                        + "FROM av_term_topic_map m LEFT JOIN av_terms_topics t ON t.id = m.topic_id "
+                        + "WHERE m.term_id IN (" + placeholders(batch.size()) + ") ORDER BY m.id",
+                rs -> {
+                    long termId = rs.getLong("term_id");
+                    boolean primary = rs.getBoolean("is_primary");
+                    AvTermTopicMapResponse topic = AvTermTopicMapResponse.builder()
+                            .id(rs.getLong("id"))
+                            .termId(termId)
+                            .topicId(rs.getLong("topic_id"))
+                            .isPrimary(primary)
+                            .build();
+                    topic.setTermHeadword(headwords.get(termId));
+                    topic.setTopicName(rs.getString("name_zh"));
+                    topic.setTopicDescription(rs.getString("description"));
+                    topic.setMappingTypeDescription(primary ? "主归属" : "次归属");
+                    topic.setIsValidMapping(topic.getTermHeadword() != null && topic.getTopicName() != null);
+                    result.computeIfAbsent(termId, k -> new ArrayList<>()).add(topic);
+                },
+                headwords.keySet().toArray());
+        return result;
+    }
+
+    private static String placeholders(int n) {
+        return String.join(",", Collections.nCopies(n, "?"));
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+
+    // ==================== 输出格式 ====================
+
+    private interface RowSink {
+        void begin() throws IOException;
+
+        /**
+         * @param topics 未要求主题时为 null
+         */
+        void write(AvTerm term, List<AvTermTopicMapResponse> topics) throws IOException;
+
+        void end() throws IOException;
+    }
+
+    private static AvTermResponse toResponse(Function<AvTerm, AvTermResponse> converter, AvTerm term,
+                                             List<AvTermTopicMapResponse> topics) {
+        AvTermResponse response = converter.apply(term);
+        if (topics != null) {
+            response.setTopics(topics);
+        }
+        return response;
+    }
+
+    /**
+     * JSON 数组：元素为 AvTermResponse，与原列表接口的响应形状一致，逐个元素写出
+     */
+    private final class JsonArraySink implements RowSink {
+        private final JsonGenerator generator;
+        private final Function<AvTerm, AvTermResponse> converter;
+
+        private JsonArraySink(Writer writer, Function<AvTerm, AvTermResponse> converter) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(writer);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.converter = converter;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            generator.writeStartArray();
+        }
+
+        @Override
+        public void write(AvTerm term, List<AvTermTopicMapResponse> topics) throws IOException {
+            objectMapper.writeValue(generator, toResponse(converter, term, topics));
+        }
+
+        @Override
+        public void end() throws IOException {
+            generator.writeEndArray();
+            generator.close();
+        }
+    }
+
+    /**
+     * JSON Lines：每行一个 AvTermResponse
+     */
+    private final class JsonLinesSink implements RowSink {
+        private final Writer writer;
+        private final JsonGenerator generator;
+        private final Function<AvTerm, AvTermResponse> converter;
+
+        private JsonLinesSink(Writer writer, Function<AvTerm, AvTermResponse> converter) throws IOException {
+            this.writer = writer;
+            this.generator = objectMapper.getFactory().createGenerator(writer);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // 行与行之间只用换行分隔，不要默认的根值空格分隔符
+            this.generator.setRootValueSeparator(null);
+            this.converter = converter;
+        }
+
+        @Override
+        public void begin() {
+        }
+
+        @Override
+        public void write(AvTerm term, List<AvTermTopicMapResponse> topics) throws IOException {
+            objectMapper.writeValue(generator, toResponse(converter, term, topics));
+            generator.flush();
+            writer.write('\n');
+        }
+
+        @Override
+        public void end() throws IOException {
+            generator.close();
+        }
+    }
+
+    /**
+     * CSV：RFC 4180 转义，带 UTF-8 BOM 以便 Excel 正确识别中文
+     */
+    private static final class CsvSink implements RowSink {
+        private final Writer writer;
+
+        private CsvSink(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            writer.write('\uFEFF');
+            writeLine(Arrays.asList((Object[]) CSV_HEADER));
+        }
+
+        @Override
+        public void write(AvTerm term, List<AvTermTopicMapResponse> topics) throws IOException {
+            List<Object> values = new ArrayList<>(Arrays.asList(
+                    term.getId(), term.getHeadword(), term.getLemma(), term.getPos(), term.getIpa(),
+                    term.getDefinitionEn(), term.getDefinitionZh(), term.getExampleEn(), term.getExampleZh(),
+                    term.getCefrLevel() != null ? term.getCefrLevel().name() : null, term.getFreqRank(),
+                    term.getSource(), term.getAudioAssetId(),
+                    term.getCreatedAt() != null ? term.getCreatedAt().toString() : null));
+            StringJoiner topicIds = new StringJoiner(";");
+            Object primaryTopicId = null;
+            if (topics != null) {
+                for (AvTermTopicMapResponse topic : topics) {
+                    topicIds.add(String.valueOf(topic.getTopicId()));
+                    if (Boolean.TRUE.equals(topic.getIsPrimary())) {
+                        primaryTopicId = topic.getTopicId();
+                    }
+                }
+            }
+            values.add(topicIds.toString());
+            values.add(primaryTopicId);
+            writeLine(values);
+        }
+
+        @Override
+        public void end() {
+        }
+
+        private void writeLine(List<Object> values) throws IOException {
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(escape(values.get(i)));
+            }
+            writer.write("\r\n");
+        }
+
+        private static String escape(Object value) {
+            if (value == null) {
+                return "";
+            }
+            String text = value.toString();
+            if (value instanceof CharSequence && !text.isEmpty() && "=+-@\t\r".indexOf(text.charAt(0)) >= 0) {
+                // 以公式字符开头的文本加单引号，防止 Excel 打开时当作公式执行
+                text = "'" + text;
+            }
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                return text;
+            }
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+    }
+}
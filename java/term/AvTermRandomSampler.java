@@ -0,0 +1,349 @@
+package org.icao4.eqasbackend2.impl.term;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.entity.term.AvTerm;
+import org.icao4.eqasbackend2.repository.term.AvTermRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 术语随机抽样引擎
+ * 按 (cefrLevel, hasAudio) 分桶保存术语ID（原始 long[]），
+ * 用稀疏 Fisher-Yates 在 O(count) 内做无放回均匀抽样，只在回表时按ID一次 IN 查询。
+ * ID -> 桶、ID -> 桶内下标用 {@link LongIntHashMap}，不装箱；重建扫描期间的变更记下来，换入新桶前重放。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AvTermRandomSampler {
+
+    private static final String LOAD_SQL = "SELECT id, cefr_level, audio_asset_id FROM av_terms";
+
+    private static final int REFRESH_CHUNK_SIZE = 500;
+
+    /**
+     * CEFR 等级数 + 1 个“未设置等级”的桶
+     */
+    private static final int CEFR_SLOTS = AvTerm.CefrLevel.values().length + 1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AvTermRepository avTermRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 下标 = cefrSlot * 2 + (hasAudio ? 1 : 0)
+     */
+    private final IdBucket[] buckets = newBuckets();
+
+    /**
+     * 术语ID -> 所在桶下标，用于更新和删除
+     */
+    private LongIntHashMap bucketOf = new LongIntHashMap(16);
+
+    /**
+     * 重建扫描期间的变更（术语ID -> 新桶下标，删除为 null），重建未进行时为 null
+     */
+    private Map<Long, Integer> changedDuringRebuild;
+
+    private volatile boolean ready = false;
+
+    // ==================== 构建与维护 ====================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new LinkedHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        IdBucket[] fresh = newBuckets();
+        LongIntHashMap freshBucketOf = new LongIntHashMap(1024);
+        try {
+            jdbcTemplate.query(LOAD_SQL, rs -> {
+                place(fresh, freshBucketOf, rs.getLong("id"),
+                        slotOf(parseCefr(rs.getString("cefr_level")), rs.getObject("audio_asset_id") != null));
+            });
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            // 扫描可能读到变更前的数据，按变更顺序重放到新桶
+            changedDuringRebuild.forEach((termId, slot) -> {
+                if (slot != null) {
+                    place(fresh, freshBucketOf, termId, slot);
+                } else {
+                    displace(fresh, freshBucketOf, termId);
+                }
+            });
+            changedDuringRebuild = null;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = fresh[i];
+            }
+            bucketOf = freshBucketOf;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("术语随机抽样桶构建完成: terms={}, 耗时={}ms", freshBucketOf.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 新增或更新术语
+     */
+    public void index(AvTerm term) {
+        if (term == null || term.getId() == null) {
+            return;
+        }
+        put(term.getId(), slotOf(term.getCefrLevel(), term.getAudioAssetId() != null));
+    }
+
+    /**
+     * 移除术语
+     */
+    public void remove(Long termId) {
+        if (termId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            displace(buckets, bucketOf, termId);
+            recordDuringRebuild(termId, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 批量移除术语
+     */
+    public void removeAll(Collection<Long> termIds) {
+        if (termIds != null) {
+            termIds.forEach(this::remove);
+        }
+    }
+
+    /**
+     * 按ID从数据库重新读取分桶字段，用于批量 SQL 更新之后
+     */
+    public void refresh(Collection<Long> termIds) {
+        if (termIds == null || termIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(termIds);
+        for (int from = 0; from < ids.size(); from += REFRESH_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + REFRESH_CHUNK_SIZE, ids.size()));
+            jdbcTemplate.query(LOAD_SQL + " WHERE id IN (" + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")",
+                    rs -> {
+                        put(rs.getLong("id"),
+                                slotOf(parseCefr(rs.getString("cefr_level")), rs.getObject("audio_asset_id") != null));
+                    },
+                    chunk.toArray());
+        }
+    }
+
+    // ==================== 抽样 ====================
+
+    /**
+     * 索引是否已就绪
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 无放回均匀抽样
+     *
+     * @param count     抽样数量
+     * @param cefrLevel CEFR 等级，null 表示不限
+     * @param hasAudio  是否有音频，null 表示不限
+     * @return 抽中的术语（已回表，顺序即抽样顺序）
+     */
+    public List<AvTerm> sample(int count, AvTerm.CefrLevel cefrLevel, Boolean hasAudio) {
+        long[] ids = sampleIds(count, cefrLevel, hasAudio);
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        List<Long> idList = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            idList.add(id);
+        }
+        Map<Long, AvTerm> byId = avTermRepository.findAllById(idList).stream()
+                .collect(Collectors.toMap(AvTerm::getId, Function.identity()));
+        List<AvTerm> result = new ArrayList<>(ids.length);
+        for (Long id : idList) {
+            AvTerm term = byId.get(id);
+            if (term != null) {
+                result.add(term);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 只抽取ID
+     * 把匹配的桶视为一个虚拟拼接数组，对其做稀疏 Fisher-Yates：只记录被交换过的位置，
+     * 时间和空间都是 O(count)，与桶大小无关。
+     */
+    public long[] sampleIds(int count, AvTerm.CefrLevel cefrLevel, Boolean hasAudio) {
+        if (count <= 0) {
+            return new long[0];
+        }
+        lock.readLock().lock();
+        try {
+            List<IdBucket> selected = new ArrayList<>();
+            for (int slot = 0; slot < buckets.length; slot++) {
+                if (matches(slot, cefrLevel, hasAudio) && buckets[slot].size > 0) {
+                    selected.add(buckets[slot]);
+                }
+            }
+            int total = 0;
+            int[] offsets = new int[selected.size()];
+            for (int i = 0; i < selected.size(); i++) {
+                offsets[i] = total;
+                total += selected.get(i).size;
+            }
+
+            int n = Math.min(count, total);
+            long[] result = new long[n];
+            Map<Integer, Integer> swapped = new HashMap<>(n * 2);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < n; i++) {
+                int j = i + random.nextInt(total - i);
+                int picked = swapped.getOrDefault(j, j);
+                swapped.put(j, swapped.getOrDefault(i, i));
+                result[i] = idAt(selected, offsets, picked);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private void put(long termId, int slot) {
+        lock.writeLock().lock();
+        try {
+            place(buckets, bucketOf, termId, slot);
+            recordDuringRebuild(termId, slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 调用方需持有写锁
+     */
+    private void recordDuringRebuild(long termId, Integer slot) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.remove(termId);
+            changedDuringRebuild.put(termId, slot);
+        }
+    }
+
+    /**
+     * 把术语放入指定桶，已在其他桶时先移出
+     */
+    private static void place(IdBucket[] target, LongIntHashMap targetBucketOf, long termId, int slot) {
+        int previous = targetBucketOf.put(termId, slot);
+        if (previous == slot) {
+            return;
+        }
+        if (previous >= 0) {
+            target[previous].remove(termId);
+        }
+        target[slot].add(termId);
+    }
+
+    private static void displace(IdBucket[] target, LongIntHashMap targetBucketOf, long termId) {
+        int slot = targetBucketOf.remove(termId);
+        if (slot >= 0) {
+            target[slot].remove(termId);
+        }
+    }
+
+    private long idAt(List<IdBucket> selected, int[] offsets, int index) {
+        int pos = Arrays.binarySearch(offsets, index);
+        if (pos < 0) {
+            pos = -pos - 2;
+        }
+        // selected 只包含非空桶，offsets 严格递增
+        return selected.get(pos).ids[index - offsets[pos]];
+    }
+
+    private static boolean matches(int slot, AvTerm.CefrLevel cefrLevel, Boolean hasAudio) {
+        if (cefrLevel != null && slot / 2 != cefrLevel.ordinal()) {
+            return false;
+        }
+        return hasAudio == null || (slot % 2 == 1) == hasAudio;
+    }
+
+    private static int slotOf(AvTerm.CefrLevel cefrLevel, boolean hasAudio) {
+        int cefrSlot = cefrLevel != null ? cefrLevel.ordinal() : CEFR_SLOTS - 1;
+        return cefrSlot * 2 + (hasAudio ? 1 : 0);
+    }
+
+    private static AvTerm.CefrLevel parseCefr(String value) {
+        return value != null ? AvTerm.CefrLevel.valueOf(value) : null;
+    }
+
+    private static IdBucket[] newBuckets() {
+        IdBucket[] result = new IdBucket[CEFR_SLOTS * 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new IdBucket();
+        }
+        return result;
+    }
+
+    /**
+     * 可增长的 long 数组，删除时与末尾交换，配合 ID -> 下标映射做到 O(1)
+     */
+    private static final class IdBucket {
+        private long[] ids = new long[64];
+        private int size;
+        private final LongIntHashMap positions = new LongIntHashMap(64);
+
+        private void add(long id) {
+            if (positions.get(id) >= 0) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            positions.put(id, size);
+            ids[size++] = id;
+        }
+
+        private void remove(long id) {
+            int pos = positions.remove(id);
+            if (pos < 0) {
+                return;
+            }
+            long last = ids[--size];
+            if (pos != size) {
+                ids[pos] = last;
+                positions.put(last, pos);
+            }
+        }
+    }
+}
@@ -0,0 +1,765 @@
+package org.icao4.eqasbackend2.impl.term;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.cache.CacheInvalidationBus;
+import org.icao4.eqasbackend2.dto.request.AvTermQueryRequest;
+import org.icao4.eqasbackend2.entity.term.AvTerm;
+import org.icao4.eqasbackend2.repository.term.AvTermRepository;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 航空术语内存倒排索引
+ * 词条条件匹配 headword、lemma，释义条件匹配 definitionEn、definitionZh，语义与 LIKE '%文本%' 一致（不区分大小写）：
+ * 按小写后的字符三元组取候选，再在索引文档上做子串校验；少于三个字符的查询直接在索引文档上逐条校验。
+ * 只接管文本、pos、cefrLevel、source 条件和已知排序字段，其他条件、排序或含 LIKE 通配符的查询交回数据库。
+ * 由术语的增删改接口增量维护，并经缓存失效总线通知其他节点按ID回表，用于替代文本字段上的 LIKE 扫描。
+ * exampleEn 不属于任何查询条件，不建索引。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AvTermSearchIndex {
+
+    /**
+     * 词条字段组前缀（headword、lemma）
+     */
+    private static final String FIELD_HEADWORD = "h:";
+
+    /**
+     * 释义字段组前缀（definitionEn、definitionZh）
+     */
+    private static final String FIELD_DEFINITION = "d:";
+
+    private static final int GRAM = 3;
+
+    /**
+     * 同一字段组内多个字段之间的分隔符，查询文本不含该字符，子串不会跨字段匹配
+     */
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    private static final String LOAD_SQL =
+            "SELECT id, headword, lemma, pos, definition_en, definition_zh, " +
+            "cefr_level, freq_rank, source, created_at FROM av_terms";
+
+    private static final int REFRESH_CHUNK_SIZE = 500;
+
+    /**
+     * 总线上的区域名，事件键为逗号分隔的术语ID，为 null 表示全量重建
+     */
+    private static final String BUS_REGION = "avTermSearchIndex";
+
+    /**
+     * 每个事件携带的术语ID数，24 个 19 位ID加分隔符不超过总线键长 512
+     */
+    private static final int BUS_IDS_PER_EVENT = 24;
+
+    /**
+     * 索引能处理的查询条件，includeTopics 等不影响结果集的属性也列在这里
+     */
+    private static final Set<String> SUPPORTED_PROPERTIES = new HashSet<>(Arrays.asList(
+            "class", "headword", "definition", "pos", "cefrLevel", "source", "includeTopics",
+            "page", "size", "sort", "direction"));
+
+    /**
+     * 索引能处理的排序字段
+     */
+    private static final Set<String> SUPPORTED_SORTS = new HashSet<>(Arrays.asList(
+            "id", "headword", "definitionZh", "freqRank", "cefrLevel", "pos", "source", "createdAt"));
+
+    /**
+     * 查询对象上索引不支持的属性
+     */
+    private static final List<PropertyDescriptor> OTHER_PROPERTIES =
+            Arrays.stream(BeanUtils.getPropertyDescriptors(AvTermQueryRequest.class))
+                    .filter(pd -> pd.getReadMethod() != null && !SUPPORTED_PROPERTIES.contains(pd.getName()))
+                    .collect(Collectors.toList());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AvTermRepository avTermRepository;
+    private final ObjectProvider<CacheInvalidationBus> invalidationBus;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 串行化全量构建（启动构建与广播触发的重建）
+     */
+    private final Object rebuildMonitor = new Object();
+
+    /**
+     * 带字段前缀的三元组 -> 术语ID集合
+     */
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+
+    /**
+     * 术语ID -> 索引文档（用于校验、过滤、排序和增量删除）
+     */
+    private final Map<Long, IndexedTerm> documents = new HashMap<>();
+
+    /**
+     * 全量构建扫描期间的变更（术语ID -> 新文档，删除为 null），未在构建时为 null
+     */
+    private Map<Long, IndexedTerm> changedDuringRebuild;
+
+    private volatile boolean ready = false;
+
+    // ==================== 索引构建与维护 ====================
+
+    @PostConstruct
+    public void init() {
+        CacheInvalidationBus bus = invalidationBus.getIfAvailable();
+        if (bus != null) {
+            bus.subscribe(nodeId, this::onRemoteChange);
+        }
+    }
+
+    /**
+     * 应用启动后全量构建索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (rebuildMonitor) {
+            doRebuild();
+        }
+    }
+
+    private void doRebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new LinkedHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Map<String, Set<Long>> newPostings = new HashMap<>();
+        Map<Long, IndexedTerm> newDocuments = new HashMap<>();
+        try {
+            jdbcTemplate.query(LOAD_SQL, rs -> {
+                addDocument(newPostings, newDocuments, readDocument(rs));
+            });
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            postings.putAll(newPostings);
+            documents.clear();
+            documents.putAll(newDocuments);
+            // 扫描可能读到变更前的数据，按变更顺序重放
+            changedDuringRebuild.forEach((termId, doc) -> {
+                removeDocument(termId);
+                if (doc != null) {
+                    addDocument(postings, documents, doc);
+                }
+            });
+            changedDuringRebuild = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("术语倒排索引构建完成: terms={}, grams={}, 耗时={}ms",
+                newDocuments.size(), newPostings.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 新增或更新术语索引
+     */
+    public void index(AvTerm term) {
+        if (term == null || term.getId() == null) {
+            return;
+        }
+        indexLocally(term);
+        publish(String.valueOf(term.getId()));
+    }
+
+    /**
+     * 批量新增或更新术语索引
+     */
+    public void indexAll(Collection<AvTerm> terms) {
+        if (terms == null) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(terms.size());
+        for (AvTerm term : terms) {
+            if (term != null && term.getId() != null) {
+                indexLocally(term);
+                ids.add(term.getId());
+            }
+        }
+        publishIds(ids);
+    }
+
+    /**
+     * 按ID从数据库重新加载并索引术语，用于批量 SQL 更新之后；数据库中已不存在的ID从索引中移除
+     */
+    public void refresh(Collection<Long> termIds) {
+        if (termIds == null || termIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(termIds);
+        reload(ids);
+        publishIds(ids);
+    }
+
+    /**
+     * 从索引中移除术语
+     */
+    public void remove(Long termId) {
+        if (termId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            replaceDocument(termId, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        publish(String.valueOf(termId));
+    }
+
+    /**
+     * 批量从索引中移除术语
+     */
+    public void removeAll(Collection<Long> termIds) {
+        if (termIds == null || termIds.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Long termId : termIds) {
+                replaceDocument(termId, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        publishIds(termIds);
+    }
+
+    private void indexLocally(AvTerm term) {
+        IndexedTerm doc = buildDocument(term.getId(), term.getHeadword(), term.getLemma(), term.getPos(),
+                term.getDefinitionEn(), term.getDefinitionZh(),
+                term.getCefrLevel(), term.getFreqRank(), term.getSource(), term.getCreatedAt());
+
+        lock.writeLock().lock();
+        try {
+            replaceDocument(term.getId(), doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void reload(List<Long> ids) {
+        for (int from = 0; from < ids.size(); from += REFRESH_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + REFRESH_CHUNK_SIZE, ids.size()));
+            Map<Long, IndexedTerm> docs = new LinkedHashMap<>();
+            jdbcTemplate.query(LOAD_SQL + " WHERE id IN (" + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")",
+                    rs -> {
+                        IndexedTerm doc = readDocument(rs);
+                        docs.put(doc.id, doc);
+                    },
+                    chunk.toArray());
+
+            lock.writeLock().lock();
+            try {
+                for (Long termId : chunk) {
+                    replaceDocument(termId, docs.get(termId));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * 按每个事件 {@link #BUS_IDS_PER_EVENT} 个ID分组广播
+     */
+    private void publishIds(Collection<Long> termIds) {
+        List<String> batch = new ArrayList<>(BUS_IDS_PER_EVENT);
+        for (Long termId : termIds) {
+            if (termId == null) {
+                continue;
+            }
+            batch.add(String.valueOf(termId));
+            if (batch.size() == BUS_IDS_PER_EVENT) {
+                publish(String.join(",", batch));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            publish(String.join(",", batch));
+        }
+    }
+
+    private void publish(String key) {
+        CacheInvalidationBus bus = invalidationBus.getIfAvailable();
+        if (bus != null) {
+            bus.publish(nodeId, BUS_REGION, key);
+        }
+    }
+
+    /**
+     * 其他节点修改了术语：只按ID回表刷新本节点，不再广播
+     */
+    private void onRemoteChange(CacheInvalidationBus.Event event) {
+        if (!BUS_REGION.equals(event.getRegion())) {
+            return;
+        }
+        try {
+            if (event.getKey() == null) {
+                rebuild();
+                return;
+            }
+            // 尚未开始构建时忽略，启动构建会读到最新数据
+            if (!ready && !isRebuilding()) {
+                return;
+            }
+            List<Long> ids = new ArrayList<>();
+            for (String id : event.getKey().split(",")) {
+                ids.add(Long.parseLong(id));
+            }
+            reload(ids);
+        } catch (RuntimeException e) {
+            log.warn("按广播刷新术语倒排索引失败: key={}, error={}", event.getKey(), e.getMessage());
+        }
+    }
+
+    private boolean isRebuilding() {
+        lock.readLock().lock();
+        try {
+            return changedDuringRebuild != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== 查询 ====================
+
+    /**
+     * 索引是否可以回答该查询
+     * 索引已就绪、查询包含词条或释义文本条件，且其余条件和排序字段都由索引支持时返回 true
+     */
+    public boolean canServe(AvTermQueryRequest request, Sort sort) {
+        if (!ready || request == null
+                || !(hasText(request.getHeadword()) || hasText(request.getDefinition()))) {
+            return false;
+        }
+        if (hasWildcard(request.getHeadword()) || hasWildcard(request.getDefinition())) {
+            return false;
+        }
+        for (Sort.Order order : sort) {
+            if (!SUPPORTED_SORTS.contains(order.getProperty())) {
+                log.debug("术语索引不支持排序字段 {}，改查数据库", order.getProperty());
+                return false;
+            }
+        }
+        String unsupported = unsupportedFilter(request);
+        if (unsupported != null) {
+            log.debug("术语索引不支持查询条件 {}，改查数据库", unsupported);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 按查询条件分页搜索术语
+     * 文本条件经三元组取候选后做子串校验，pos/cefrLevel/source 在索引文档上过滤，最后按ID一次性回表；
+     * 调用前需先用 {@link #canServe} 判断
+     */
+    public Page<AvTerm> search(AvTermQueryRequest request, Pageable pageable) {
+        String headword = normalize(request.getHeadword());
+        String definition = normalize(request.getDefinition());
+        List<IndexedTerm> matched;
+
+        lock.readLock().lock();
+        try {
+            Set<Long> candidates = null;
+            if (headword != null) {
+                candidates = candidates(candidates, FIELD_HEADWORD, headword);
+            }
+            if (definition != null) {
+                candidates = candidates(candidates, FIELD_DEFINITION, definition);
+            }
+            if (candidates == null) {
+                candidates = documents.keySet();
+            }
+
+            matched = new ArrayList<>(Math.min(candidates.size(), 1024));
+            for (Long id : candidates) {
+                IndexedTerm doc = documents.get(id);
+                if (doc != null && doc.matches(headword, definition) && doc.matchesFilters(request)) {
+                    matched.add(doc);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        matched.sort(comparatorFor(pageable.getSort()));
+
+        int total = matched.size();
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(hydrate(matched), pageable, total);
+        }
+        int from = (int) Math.min(pageable.getOffset(), total);
+        int to = Math.min(from + pageable.getPageSize(), total);
+        return new PageImpl<>(hydrate(matched.subList(from, to)), pageable, total);
+    }
+
+    /**
+     * 索引是否已就绪
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 已索引的术语数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 查询文本的所有三元组都出现的术语（仍需子串校验）；少于三个字符时不缩小候选范围
+     */
+    private Set<Long> candidates(Set<Long> current, String field, String text) {
+        List<String> grams = grams(text);
+        if (grams.isEmpty()) {
+            return current;
+        }
+        List<Set<Long>> lists = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            Set<Long> ids = postings.get(field + gram);
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        Set<Long> result = current;
+        for (Set<Long> ids : lists) {
+            result = intersect(result, ids);
+            if (result.isEmpty()) {
+                return result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 求交集，总是遍历较小的集合
+     */
+    private Set<Long> intersect(Set<Long> current, Set<Long> other) {
+        if (current == null) {
+            return other;
+        }
+        Set<Long> small = current.size() <= other.size() ? current : other;
+        Set<Long> large = small == current ? other : current;
+        Set<Long> result = new HashSet<>();
+        for (Long id : small) {
+            if (large.contains(id)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 替换索引文档（doc 为 null 表示删除，需持有写锁），全量构建期间同时记录变更；
+     * 文本字段未变时（如批量调整等级、来源）只替换文档，不重算三元组
+     */
+    private void replaceDocument(Long termId, IndexedTerm doc) {
+        IndexedTerm old = documents.get(termId);
+        if (old != null && doc != null && old.sameText(doc)) {
+            documents.put(termId, doc);
+        } else {
+            removeDocument(termId);
+            if (doc != null) {
+                addDocument(postings, documents, doc);
+            }
+        }
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.remove(termId);
+            changedDuringRebuild.put(termId, doc);
+        }
+    }
+
+    private IndexedTerm readDocument(ResultSet rs) throws SQLException {
+        String cefr = rs.getString("cefr_level");
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        return buildDocument(
+                rs.getLong("id"),
+                rs.getString("headword"),
+                rs.getString("lemma"),
+                rs.getString("pos"),
+                rs.getString("definition_en"),
+                rs.getString("definition_zh"),
+                cefr != null ? AvTerm.CefrLevel.valueOf(cefr) : null,
+                (Integer) rs.getObject("freq_rank"),
+                rs.getString("source"),
+                createdAt != null ? createdAt.toLocalDateTime() : null);
+    }
+
+    private IndexedTerm buildDocument(Long id, String headword, String lemma, String pos,
+                                      String definitionEn, String definitionZh,
+                                      AvTerm.CefrLevel cefrLevel, Integer freqRank, String source,
+                                      LocalDateTime createdAt) {
+        return new IndexedTerm(id, headword, definitionZh, pos, cefrLevel, freqRank, source, createdAt,
+                join(headword, lemma), join(definitionEn, definitionZh));
+    }
+
+    private void addDocument(Map<String, Set<Long>> targetPostings, Map<Long, IndexedTerm> targetDocuments,
+                             IndexedTerm doc) {
+        targetDocuments.put(doc.id, doc);
+        for (String gram : doc.grams()) {
+            targetPostings.computeIfAbsent(gram, k -> new HashSet<>()).add(doc.id);
+        }
+    }
+
+    private void removeDocument(Long termId) {
+        IndexedTerm old = documents.remove(termId);
+        if (old == null) {
+            return;
+        }
+        for (String gram : old.grams()) {
+            Set<Long> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(termId);
+                if (ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private List<AvTerm> hydrate(List<IndexedTerm> page) {
+        if (page.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> ids = page.stream().map(doc -> doc.id).collect(Collectors.toList());
+        Map<Long, AvTerm> byId = avTermRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(AvTerm::getId, Function.identity()));
+        List<AvTerm> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            AvTerm term = byId.get(id);
+            if (term != null) {
+                result.add(term);
+            }
+        }
+        return result;
+    }
+
+    private Comparator<IndexedTerm> comparatorFor(Sort sort) {
+        Comparator<IndexedTerm> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<IndexedTerm> next = fieldComparator(order.getProperty());
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        Comparator<IndexedTerm> byId = Comparator.comparing(doc -> doc.id);
+        return comparator == null ? byId : comparator.thenComparing(byId);
+    }
+
+    private Comparator<IndexedTerm> fieldComparator(String property) {
+        switch (property) {
+            case "headword":
+                return Comparator.comparing(doc -> doc.headword, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+            case "definitionZh":
+                return Comparator.comparing(doc -> doc.definitionZh, Comparator.nullsLast(Comparator.naturalOrder()));
+            case "freqRank":
+                return Comparator.comparing(doc -> doc.freqRank, Comparator.nullsLast(Comparator.naturalOrder()));
+            case "cefrLevel":
+                return Comparator.comparing(doc -> doc.cefrLevel, Comparator.nullsLast(Comparator.naturalOrder()));
+            case "pos":
+                return Comparator.comparing(doc -> doc.pos, Comparator.nullsLast(Comparator.naturalOrder()));
+            case "source":
+                return Comparator.comparing(doc -> doc.source, Comparator.nullsLast(Comparator.naturalOrder()));
+            case "createdAt":
+                return Comparator.comparing(doc -> doc.createdAt, Comparator.nullsLast(Comparator.naturalOrder()));
+            case "id":
+                return Comparator.comparing(doc -> doc.id);
+            default:
+                throw new IllegalArgumentException("术语索引不支持排序字段: " + property);
+        }
+    }
+
+    /**
+     * 查询对象上第一个有值但索引不支持的属性名，没有时返回 null
+     */
+    static String unsupportedFilter(AvTermQueryRequest request) {
+        for (PropertyDescriptor pd : OTHER_PROPERTIES) {
+            Object value;
+            try {
+                value = pd.getReadMethod().invoke(request);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                return pd.getName();
+            }
+            if (value == null || value instanceof String && ((String) value).trim().isEmpty()
+                    || value instanceof Collection && ((Collection<?>) value).isEmpty()) {
+                continue;
+            }
+            return pd.getName();
+        }
+        return null;
+    }
+
+    /**
+     * 小写后按码点切分三元组（去重）
+     */
+    static List<String> grams(String text) {
+        if (text == null) {
+            return new ArrayList<>();
+        }
+        int[] cps = text.codePoints().toArray();
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= cps.length; i++) {
+            boolean crossesField = false;
+            for (int j = i; j < i + GRAM; j++) {
+                if (cps[j] == FIELD_SEPARATOR) {
+                    crossesField = true;
+                    break;
+                }
+            }
+            if (!crossesField) {
+                grams.add(new String(cps, i, GRAM));
+            }
+        }
+        return new ArrayList<>(grams);
+    }
+
+    /**
+     * 把同一字段组的多个字段小写后用分隔符拼接
+     */
+    private static String join(String first, String second) {
+        String a = first != null ? first.toLowerCase(Locale.ROOT) : "";
+        String b = second != null ? second.toLowerCase(Locale.ROOT) : "";
+        return a + FIELD_SEPARATOR + b;
+    }
+
+    /**
+     * 查询文本去空白并小写，空文本返回 null
+     */
+    private static String normalize(String text) {
+        return hasText(text) ? text.trim().toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static boolean hasWildcard(String text) {
+        return text != null && (text.indexOf('%') >= 0 || text.indexOf('_') >= 0);
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+
+    /**
+     * 索引文档：保留子串校验、过滤和排序需要的字段
+     */
+    private static final class IndexedTerm {
+        private final Long id;
+        private final String headword;
+        private final String definitionZh;
+        private final String pos;
+        private final AvTerm.CefrLevel cefrLevel;
+        private final Integer freqRank;
+        private final String source;
+        private final LocalDateTime createdAt;
+
+        /**
+         * 小写后的 headword、lemma
+         */
+        private final String headwordText;
+
+        /**
+         * 小写后的 definitionEn、definitionZh
+         */
+        private final String definitionText;
+
+        private IndexedTerm(Long id, String headword, String definitionZh, String pos, AvTerm.CefrLevel cefrLevel,
+                            Integer freqRank, String source, LocalDateTime createdAt,
+                            String headwordText, String definitionText) {
+            this.id = id;
+            this.headword = headword;
+            this.definitionZh = definitionZh;
+            this.pos = pos;
+            this.cefrLevel = cefrLevel;
+            this.freqRank = freqRank;
+            this.source = source;
+            this.createdAt = createdAt;
+            this.headwordText = headwordText;
+            this.definitionText = definitionText;
+        }
+
+        private List<String> grams() {
+            List<String> grams = new ArrayList<>();
+            for (String gram : AvTermSearchIndex.grams(headwordText)) {
+                grams.add(FIELD_HEADWORD + gram);
+            }
+            for (String gram : AvTermSearchIndex.grams(definitionText)) {
+                grams.add(FIELD_DEFINITION + gram);
+            }
+            return grams;
+        }
+
+        private boolean sameText(IndexedTerm other) {
+            return headwordText.equals(other.headwordText) && definitionText.equals(other.definitionText);
+        }
+
+        private boolean matches(String headword, String definition) {
+            return (headword == null || headwordText.contains(headword))
+                    && (definition == null || definitionText.contains(definition));
+        }
+
+        private boolean matchesFilters(AvTermQueryRequest request) {
+            if (request.getCefrLevel() != null && request.getCefrLevel() != cefrLevel) {
+                return false;
+            }
+            if (hasText(request.getPos()) && (pos == null || !pos.equalsIgnoreCase(request.getPos().trim()))) {
+                return false;
+            }
+            if (hasText(request.getSource()) && (source == null || !source.equalsIgnoreCase(request.getSource().trim()))) {
+                return false;
+            }
+            return true;
+        }
+    }
+}
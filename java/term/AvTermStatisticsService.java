@@ -0,0 +1,404 @@
+package org.icao4.eqasbackend2.impl.term;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.entity.term.AvTerm;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 术语统计引擎
+ * 一次分组扫描 av_terms（加一次 av_term_topic_map 聚合）算出 /terms/statistics 的全部数字，
+ * 之后由术语的增删改接口增量调整计数器，接口直接读内存；
+ * 批量操作和主题映射变更触发后台全量重算，另有定时全量重算用于纠正漂移。
+ * 全量重算期间的增量会被记录下来，在新计数器替换旧计数器前重放，不会因替换而丢失。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AvTermStatisticsService {
+
+    private static final int HIGH_FREQUENCY_MAX = 1000;
+    private static final int MEDIUM_FREQUENCY_MAX = 5000;
+
+    private static final String TERM_AGGREGATE_SQL =
+            "SELECT cefr_level, pos, source, COUNT(*) AS total, " +
+            nonBlank("definition_en") + " AS with_definition_en, " +
+            nonBlank("definition_zh") + " AS with_definition_zh, " +
+            nonBlank("example_en") + " AS with_example_en, " +
+            nonBlank("example_zh") + " AS with_example_zh, " +
+            nonBlank("ipa") + " AS with_ipa, " +
+            "SUM(CASE WHEN audio_asset_id IS NOT NULL THEN 1 ELSE 0 END) AS with_audio, " +
+            "SUM(CASE WHEN freq_rank IS NOT NULL THEN 1 ELSE 0 END) AS with_freq_rank, " +
+            "SUM(CASE WHEN freq_rank BETWEEN 1 AND " + HIGH_FREQUENCY_MAX + " THEN 1 ELSE 0 END) AS high_freq, " +
+            "SUM(CASE WHEN freq_rank BETWEEN " + (HIGH_FREQUENCY_MAX + 1) + " AND " + MEDIUM_FREQUENCY_MAX +
+            " THEN 1 ELSE 0 END) AS medium_freq, " +
+            "SUM(CASE WHEN freq_rank > " + MEDIUM_FREQUENCY_MAX + " THEN 1 ELSE 0 END) AS low_freq " +
+            "FROM av_terms GROUP BY cefr_level, pos, source";
+
+    private static final String TOPIC_AGGREGATE_SQL =
+            "SELECT COUNT(*) AS total, " +
+            "SUM(CASE WHEN is_primary = TRUE THEN 1 ELSE 0 END) AS primary_count, " +
+            "COUNT(DISTINCT term_id) AS terms_with_topics " +
+            "FROM av_term_topic_map";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 定时全量重算间隔（分钟），小于等于 0 时只在启动和标记重算时计算
+     */
+    @Value("${app.term.stats.recompute-interval-minutes:10}")
+    private long recomputeIntervalMinutes;
+
+    private final AtomicBoolean recomputeScheduled = new AtomicBoolean(false);
+
+    private ScheduledExecutorService executor;
+
+    private Counters counters;
+
+    /**
+     * 全量重算进行中收到的增量（按到达顺序），未在重算时为 null；由 this 保护
+     */
+    private List<Delta> pendingDeltas;
+
+    /**
+     * 保证同一时间只有一次全量重算（后台和首次读取可能同时触发）
+     */
+    private final Object recomputeLock = new Object();
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "av-term-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (recomputeIntervalMinutes > 0) {
+            executor.scheduleWithFixedDelay(this::recomputeQuietly, 0, recomputeIntervalMinutes, TimeUnit.MINUTES);
+        } else {
+            log.warn("术语统计定时重算已关闭: recompute-interval-minutes={}", recomputeIntervalMinutes);
+            executor.execute(this::recomputeQuietly);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ==================== 读取 ====================
+
+    /**
+     * 获取统计结果（与原 /terms/statistics 的结构一致）
+     * 计数器尚未初始化时同步执行一次全量计算
+     */
+    public Map<String, Object> getStatistics() {
+        Counters current;
+        synchronized (this) {
+            current = counters;
+        }
+        if (current == null) {
+            recompute();
+        }
+        synchronized (this) {
+            return counters.toMap();
+        }
+    }
+
+    // ==================== 增量维护 ====================
+
+    /**
+     * 术语创建后调用
+     */
+    public void onCreated(AvTerm term) {
+        apply(TermFacts.of(term), 1);
+    }
+
+    /**
+     * 术语更新后调用
+     *
+     * @param before 更新前的快照，通过 {@link #snapshot(AvTerm)} 获取
+     */
+    public void onUpdated(TermFacts before, AvTerm after) {
+        synchronized (this) {
+            apply(before, -1);
+            apply(TermFacts.of(after), 1);
+        }
+    }
+
+    /**
+     * 术语删除后调用；其主题映射一并删除，映射统计交由后台重算
+     */
+    public void onDeleted(AvTerm term) {
+        apply(TermFacts.of(term), -1);
+        markDirty();
+    }
+
+    /**
+     * 获取术语当前的统计维度快照，用于更新前后的差量计算
+     */
+    public TermFacts snapshot(AvTerm term) {
+        return TermFacts.of(term);
+    }
+
+    /**
+     * 标记统计需要重算（批量操作、主题映射变更等无法精确增量的场景）
+     * 多次标记会合并为一次后台重算
+     */
+    public void markDirty() {
+        if (recomputeScheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                recomputeScheduled.set(false);
+                recomputeQuietly();
+            });
+        }
+    }
+
+    // ==================== 全量计算 ====================
+
+    /**
+     * 全量重算：一次 av_terms 分组扫描 + 一次映射表聚合
+     * 扫描开始前开始记录增量，替换时重放到新计数器上。
+     * 提交早于扫描、增量晚于记录开始的修改可能被计两次，由下一次重算纠正。
+     */
+    public void recompute() {
+        synchronized (recomputeLock) {
+            synchronized (this) {
+                pendingDeltas = new ArrayList<>();
+            }
+            try {
+                Counters fresh = load();
+                synchronized (this) {
+                    for (Delta pending : pendingDeltas) {
+                        fresh.apply(pending.facts, pending.delta);
+                    }
+                    counters = fresh;
+                }
+            } finally {
+                synchronized (this) {
+                    pendingDeltas = null;
+                }
+            }
+        }
+    }
+
+    private Counters load() {
+        long start = System.currentTimeMillis();
+        Counters fresh = new Counters();
+
+        jdbcTemplate.query(TERM_AGGREGATE_SQL, rs -> {
+            long total = rs.getLong("total");
+            fresh.totalTerms += total;
+            String cefr = rs.getString("cefr_level");
+            if (cefr != null) {
+                fresh.cefrLevelStats.merge(cefr, total, Long::sum);
+                fresh.withCefrLevel += total;
+            }
+            fresh.posStats.merge(bucketKey(rs.getString("pos")), total, Long::sum);
+            fresh.sourceStats.merge(bucketKey(rs.getString("source")), total, Long::sum);
+            fresh.withDefinitionEn += rs.getLong("with_definition_en");
+            fresh.withDefinitionZh += rs.getLong("with_definition_zh");
+            fresh.withExampleEn += rs.getLong("with_example_en");
+            fresh.withExampleZh += rs.getLong("with_example_zh");
+            fresh.withIpa += rs.getLong("with_ipa");
+            fresh.withAudio += rs.getLong("with_audio");
+            fresh.withFreqRank += rs.getLong("with_freq_rank");
+            fresh.highFrequency += rs.getLong("high_freq");
+            fresh.mediumFrequency += rs.getLong("medium_freq");
+            fresh.lowFrequency += rs.getLong("low_freq");
+        });
+
+        jdbcTemplate.query(TOPIC_AGGREGATE_SQL, rs -> {
+            fresh.totalMappings = rs.getLong("total");
+            fresh.primaryMappings = rs.getLong("primary_count");
+            fresh.termsWithTopics = rs.getLong("terms_with_topics");
+        });
+
+        log.debug("术语统计全量重算完成: totalTerms={}, 耗时={}ms",
+                fresh.totalTerms, System.currentTimeMillis() - start);
+        return fresh;
+    }
+
+    private void recomputeQuietly() {
+        try {
+            recompute();
+        } catch (Exception e) {
+            log.warn("术语统计重算失败: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void apply(TermFacts facts, int delta) {
+        if (pendingDeltas != null) {
+            pendingDeltas.add(new Delta(facts, delta));
+        }
+        if (counters != null) {
+            // 尚未完成首次全量计算时只记录，由全量结果加上重放覆盖
+            counters.apply(facts, delta);
+        }
+    }
+
+    private static String bucketKey(String value) {
+        return value == null || value.trim().isEmpty() ? "未知" : value;
+    }
+
+    private static String nonBlank(String column) {
+        return "SUM(CASE WHEN " + column + " IS NOT NULL AND TRIM(" + column + ") <> '' THEN 1 ELSE 0 END)";
+    }
+
+    // ==================== 内部类型 ====================
+
+    /**
+     * 单个术语在各统计维度上的取值
+     */
+    public static final class TermFacts {
+        private final AvTerm.CefrLevel cefrLevel;
+        private final String pos;
+        private final String source;
+        private final Integer freqRank;
+        private final boolean hasDefinitionEn;
+        private final boolean hasDefinitionZh;
+        private final boolean hasExampleEn;
+        private final boolean hasExampleZh;
+        private final boolean hasIpa;
+        private final boolean hasAudio;
+
+        private TermFacts(AvTerm term) {
+            this.cefrLevel = term.getCefrLevel();
+            this.pos = term.getPos();
+            this.source = term.getSource();
+            this.freqRank = term.getFreqRank();
+            this.hasDefinitionEn = term.hasDefinitionEn();
+            this.hasDefinitionZh = term.hasDefinitionZh();
+            this.hasExampleEn = term.hasExampleEn();
+            this.hasExampleZh = term.hasExampleZh();
+            this.hasIpa = term.hasIpa();
+            this.hasAudio = term.hasAudioAsset();
+        }
+
+        static TermFacts of(AvTerm term) {
+            return new TermFacts(term);
+        }
+    }
+
+    /**
+     * 重算期间记录的一次增量
+     */
+    private static final class Delta {
+        private final TermFacts facts;
+        private final int delta;
+
+        private Delta(TermFacts facts, int delta) {
+            this.facts = facts;
+            this.delta = delta;
+        }
+    }
+
+    /**
+     * 统计计数器
+     */
+    private static final class Counters {
+        private long totalTerms;
+        private final Map<String, Long> cefrLevelStats = new HashMap<>();
+        private final Map<String, Long> posStats = new HashMap<>();
+        private final Map<String, Long> sourceStats = new HashMap<>();
+        private long withDefinitionEn;
+        private long withDefinitionZh;
+        private long withExampleEn;
+        private long withExampleZh;
+        private long withIpa;
+        private long withAudio;
+        private long withFreqRank;
+        private long withCefrLevel;
+        private long highFrequency;
+        private long mediumFrequency;
+        private long lowFrequency;
+        private long totalMappings;
+        private long primaryMappings;
+        private long termsWithTopics;
+
+        private void apply(TermFacts facts, int delta) {
+            totalTerms += delta;
+            if (facts.cefrLevel != null) {
+                cefrLevelStats.merge(facts.cefrLevel.name(), (long) delta, Long::sum);
+                withCefrLevel += delta;
+            }
+            posStats.merge(bucketKey(facts.pos), (long) delta, Long::sum);
+            sourceStats.merge(bucketKey(facts.source), (long) delta, Long::sum);
+            withDefinitionEn += facts.hasDefinitionEn ? delta : 0;
+            withDefinitionZh += facts.hasDefinitionZh ? delta : 0;
+            withExampleEn += facts.hasExampleEn ? delta : 0;
+            withExampleZh += facts.hasExampleZh ? delta : 0;
+            withIpa += facts.hasIpa ? delta : 0;
+            withAudio += facts.hasAudio ? delta : 0;
+            if (facts.freqRank != null) {
+                withFreqRank += delta;
+                int rank = facts.freqRank;
+                if (rank >= 1 && rank <= HIGH_FREQUENCY_MAX) {
+                    highFrequency += delta;
+                } else if (rank > HIGH_FREQUENCY_MAX && rank <= MEDIUM_FREQUENCY_MAX) {
+                    mediumFrequency += delta;
+                } else if (rank > MEDIUM_FREQUENCY_MAX) {
+                    lowFrequency += delta;
+                }
+            }
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("totalTerms", totalTerms);
+
+            Map<String, Long> cefr = new HashMap<>();
+            for (AvTerm.CefrLevel level : AvTerm.CefrLevel.values()) {
+                cefr.put(level.name(), cefrLevelStats.getOrDefault(level.name(), 0L));
+            }
+            stats.put("cefrLevelStats", cefr);
+            stats.put("posStats", nonZero(posStats));
+            stats.put("sourceStats", nonZero(sourceStats));
+
+            Map<String, Long> completeness = new HashMap<>();
+            completeness.put("withDefinitionEn", withDefinitionEn);
+            completeness.put("withDefinitionZh", withDefinitionZh);
+            completeness.put("withExampleEn", withExampleEn);
+            completeness.put("withExampleZh", withExampleZh);
+            completeness.put("withIpa", withIpa);
+            completeness.put("withAudio", withAudio);
+            completeness.put("withFreqRank", withFreqRank);
+            completeness.put("withCefrLevel", withCefrLevel);
+            stats.put("completenessStats", completeness);
+
+            Map<String, Long> freq = new HashMap<>();
+            freq.put("highFrequency", highFrequency);
+            freq.put("mediumFrequency", mediumFrequency);
+            freq.put("lowFrequency", lowFrequency);
+            stats.put("freqRankStats", freq);
+
+            Map<String, Long> topic = new HashMap<>();
+            topic.put("totalMappings", totalMappings);
+            topic.put("primaryMappings", primaryMappings);
+            topic.put("secondaryMappings", totalMappings - primaryMappings);
+            topic.put("termsWithTopics", termsWithTopics);
+            topic.put("termsWithoutTopics", totalTerms - termsWithTopics);
+            stats.put("topicStats", topic);
+            return stats;
+        }
+
+        private static Map<String, Long> nonZero(Map<String, Long> source) {
+            Map<String, Long> result = new HashMap<>();
+            source.forEach((key, value) -> {
+                if (value != null && value > 0) {
+                    result.put(key, value);
+                }
+            });
+            return result;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.icao4.eqasbackend2.impl.term;
+
+import org.icao4.eqasbackend2.cache.CacheInvalidationBus;
+import org.icao4.eqasbackend2.dto.request.AvTermBatchRequest;
+import org.icao4.eqasbackend2.entity.term.AvTerm;
+import org.icao4.eqasbackend2.repository.term.AvTermRepository;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * 术语批量操作吞吐压测（手动运行，不随应用启动）
+ * 在空库上生成术语和主题，依次执行 updateCefrLevel、updateSource、updateFreqRank、addToTopics、removeFromTopics、delete，
+ * 每种操作覆盖全部术语，另混入 1% 不存在的ID。耗时包含分块事务和随后的内存索引刷新，验证：
+ * 1. 成功 / 失败ID与逐条处理的语义一致，数据库结果正确，倒排索引和抽样桶同步；
+ * 2. 每种操作的吞吐不低于 10000 行/秒。
+ * 默认用 H2 内存库（MySQL 模式），也可传入本地 MySQL 的空库；需要对应驱动在 classpath 上。
+ * <p>
+ * 运行：java ... AvTermBatchOperationBench [jdbcUrl=jdbc:h2:mem:terms;MODE=MySQL;DB_CLOSE_DELAY=-1] [用户=sa] [密码=]
+ * [术语数=20000] [分块大小=1000]
+ */
+public class AvTermBatchOperationBench {
+
+    private static final int TARGET_ROWS_PER_SECOND = 10000;
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private static final List<Long> TOPIC_IDS = Arrays.asList(1L, 2L);
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS av_terms (id BIGINT PRIMARY KEY, headword VARCHAR(200) NOT NULL, "
+                    + "lemma VARCHAR(200) NULL, pos VARCHAR(50) NULL, definition_en TEXT NULL, definition_zh TEXT NULL, "
+                    + "cefr_level VARCHAR(10) NULL, freq_rank INT NULL, source VARCHAR(100) NULL, "
+                    + "audio_asset_id BIGINT NULL, created_at TIMESTAMP NULL)",
+            "CREATE TABLE IF NOT EXISTS av_terms_topics (id BIGINT PRIMARY KEY, code VARCHAR(100) NOT NULL, "
+                    + "name_zh VARCHAR(200) NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS av_term_topic_map (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "term_id BIGINT NOT NULL, topic_id BIGINT NOT NULL, is_primary BOOLEAN NOT NULL, "
+                    + "INDEX idx_term_map_term (term_id), INDEX idx_term_map_topic (topic_id, term_id))"
+    };
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "jdbc:h2:mem:terms;MODE=MySQL;DB_CLOSE_DELAY=-1";
+        String user = args.length > 1 ? args[1] : "sa";
+        String password = args.length > 2 ? args[2] : "";
+        int terms = args.length > 3 ? Integer.parseInt(args[3]) : 20000;
+        int chunkSize = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, user, password);
+        JdbcTemplate db = new JdbcTemplate(dataSource);
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        for (String sql : SCHEMA) {
+            db.execute(sql);
+        }
+        if (count(db, "SELECT COUNT(*) FROM av_terms") > 0) {
+            System.out.println("av_terms 不为空，请使用空库");
+            System.exit(1);
+        }
+        seed(db, terms);
+
+        AvTermRepository repository = (AvTermRepository) Proxy.newProxyInstance(
+                AvTermRepository.class.getClassLoader(), new Class<?>[]{AvTermRepository.class},
+                (proxy, method, methodArgs) -> {
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        AvTermSearchIndex searchIndex = new AvTermSearchIndex(db, repository,
+                new StaticListableBeanFactory().getBeanProvider(CacheInvalidationBus.class));
+        AvTermRandomSampler sampler = new AvTermRandomSampler(db, repository);
+        searchIndex.rebuild();
+        sampler.rebuild();
+        AvTermBatchOperationService service = new AvTermBatchOperationService(db, tx, searchIndex, sampler);
+        set(service, "chunkSize", chunkSize);
+
+        // 1% 不存在的ID
+        List<Long> ids = new ArrayList<>(terms + terms / 100);
+        for (long id = 1; id <= terms; id++) {
+            ids.add(id);
+        }
+        int missing = terms / 100;
+        for (long id = terms + 1; id <= terms + missing; id++) {
+            ids.add(id);
+        }
+        System.out.printf("[seed] terms=%d missing=%d chunkSize=%d%n", terms, missing, chunkSize);
+
+        boolean ok = true;
+
+        AvTermBatchRequest cefr = request("updateCefrLevel", ids);
+        cefr.setTargetCefrLevel(AvTerm.CefrLevel.B2);
+        ok &= run("updateCefrLevel", service, cefr, terms, missing,
+                () -> count(db, "SELECT COUNT(*) FROM av_terms WHERE cefr_level = 'B2'") == terms
+                        && sampler.sampleIds(terms * 2, AvTerm.CefrLevel.B2, null).length == terms);
+
+        AvTermBatchRequest source = request("updateSource", ids);
+        source.setTargetSource("bench");
+        ok &= run("updateSource", service, source, terms, missing,
+                () -> count(db, "SELECT COUNT(*) FROM av_terms WHERE source = 'bench'") == terms);
+
+        AvTermBatchRequest freqRank = request("updateFreqRank", ids);
+        freqRank.setStartFreqRank(1);
+        freqRank.setFreqRankStep(2);
+        ok &= run("updateFreqRank", service, freqRank, terms, missing,
+                () -> count(db, "SELECT COUNT(*) FROM av_terms WHERE freq_rank = 2 * id - 1") == terms);
+
+        AvTermBatchRequest add = request("addToTopics", ids);
+        add.setTargetTopicIds(TOPIC_IDS);
+        add.setIsPrimary(true);
+        ok &= run("addToTopics", service, add, terms, missing,
+                () -> count(db, "SELECT COUNT(*) FROM av_term_topic_map") == terms * 2L
+                        && count(db, "SELECT COUNT(*) FROM av_term_topic_map WHERE is_primary = TRUE "
+                        + "AND topic_id = 2") == terms);
+
+        AvTermBatchRequest remove = request("removeFromTopics", ids);
+        remove.setTargetTopicIds(Collections.singletonList(1L));
+        // 映射不存在视为已移除，不存在的术语也记为成功
+        ok &= run("removeFromTopics", service, remove, terms + missing, 0,
+                () -> count(db, "SELECT COUNT(*) FROM av_term_topic_map") == terms);
+
+        ok &= run("delete", service, request("delete", ids), terms, missing,
+                () -> count(db, "SELECT COUNT(*) FROM av_terms") == 0
+                        && count(db, "SELECT COUNT(*) FROM av_term_topic_map") == 0
+                        && searchIndex.size() == 0 && sampler.sampleIds(1, null, null).length == 0);
+
+        System.out.println(ok ? "ALL PASSED" : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+
+    // ==================== 场景 ====================
+
+    private static boolean run(String operation, AvTermBatchOperationService service, AvTermBatchRequest request,
+                               int expectedSuccess, int expectedFailed, Check check) {
+        long start = System.nanoTime();
+        AvTermBatchOperationService.BatchResult result = service.execute(request);
+        long nanos = System.nanoTime() - start;
+        long rowsPerSecond = request.getTermIds().size() * 1_000_000_000L / Math.max(1, nanos);
+        boolean correct = result.getSuccessIds().size() == expectedSuccess
+                && result.getFailedIds().size() == expectedFailed && check.passed();
+        boolean ok = correct && rowsPerSecond >= TARGET_ROWS_PER_SECOND;
+        System.out.printf("[%s] rows=%d success=%d failed=%d ms=%d rowsPerSec=%d target=%d correct=%s -> %s%n",
+                operation, request.getTermIds().size(), result.getSuccessIds().size(), result.getFailedIds().size(),
+                nanos / 1_000_000, rowsPerSecond, TARGET_ROWS_PER_SECOND, correct, ok ? "OK" : "FAIL");
+        return ok;
+    }
+
+    // ==================== 辅助 ====================
+
+    private interface Check {
+        boolean passed();
+    }
+
+    private static void seed(JdbcTemplate db, int terms) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> rows = new ArrayList<>(terms);
+        for (long id = 1; id <= terms; id++) {
+            rows.add(new Object[]{id, "term " + id, "term", "noun", "definition of term " + id, "术语" + id + "的释义",
+                    AvTerm.CefrLevel.values()[(int) (id % 6)].name(), (int) id, "seed", id % 3 == 0 ? id : null, now});
+        }
+        for (int from = 0; from < rows.size(); from += INSERT_BATCH_SIZE) {
+            db.batchUpdate("INSERT INTO av_terms (id, headword, lemma, pos, definition_en, definition_zh, cefr_level, "
+                            + "freq_rank, source, audio_asset_id, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    rows.subList(from, Math.min(from + INSERT_BATCH_SIZE, rows.size())));
+        }
+        List<Object[]> topics = new ArrayList<>();
+        for (Long topicId : TOPIC_IDS) {
+            topics.add(new Object[]{topicId, "BENCH-" + topicId, "压测主题" + topicId});
+        }
+        db.batchUpdate("INSERT INTO av_terms_topics (id, code, name_zh) VALUES (?, ?, ?)", topics);
+    }
+
+    private static AvTermBatchRequest request(String operationType, List<Long> ids) {
+        AvTermBatchRequest request = new AvTermBatchRequest();
+        request.setOperationType(operationType);
+        request.setTermIds(ids);
+        return request;
+    }
+
+    private static long count(JdbcTemplate db, String sql) {
+        Long count = db.queryForObject(sql, Long.class);
+        return count != null ? count : 0;
+    }
+
+    private static void set(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -6,6 +6,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.icao4.eqasbackend2.entity.vocab.AvVocab;
 import org.icao4.eqasbackend2.entity.vocab.AvVocabTopic;
 import org.icao4.eqasbackend2.entity.vocab.AvVocabTopicMap;
+import org.icao4.eqasbackend2.impl.vocab.AvVocabTopicClosureService;
+import org.icao4.eqasbackend2.impl.vocab.AvVocabTopicTree;
 import org.icao4.eqasbackend2.service.vocab.AvVocabService;
 import org.icao4.eqasbackend2.service.vocab.AvVocabTopicService;
 import org.icao4.eqasbackend2.service.vocab.AvVocabTopicMapService;
@@ -36,6 +38,8 @@ public class AvVocabController {
     private final AvVocabService avVocabService;
     private final AvVocabTopicService avVocabTopicService;
     private final AvVocabTopicMapService avVocabTopicMapService;
+    private final AvVocabTopicTree avVocabTopicTree;
+    private final AvVocabTopicClosureService avVocabTopicClosureService;
 
     // ==================== 词汇（AvVocab）CRUD操作 ====================
 
@@ -319,6 +323,8 @@ public class AvVocabController {
         try {
             topic.setCreatedAt(LocalDateTime.now());
             AvVocabTopic savedTopic = avVocabTopicService.createTopic(topic);
+            avVocabTopicTree.onCreated(savedTopic);
+            avVocabTopicClosureService.onCreated(savedTopic);
             return ResponseEntity.status(HttpStatus.CREATED).body(savedTopic);
         } catch (DataIntegrityViolationException e) {
             log.error("创建词汇主题失败，数据完整性约束违反: {}", e.getMessage());
@@ -378,6 +384,8 @@ public class AvVocabController {
             
             topic.setId(id);
             AvVocabTopic updatedTopic = avVocabTopicService.updateTopic(topic);
+            avVocabTopicTree.onUpdated(updatedTopic);
+            avVocabTopicClosureService.onUpdated(updatedTopic);
             return ResponseEntity.ok(updatedTopic);
         } catch (DataIntegrityViolationException e) {
             log.error("更新词汇主题失败，数据完整性约束违反: {}", e.getMessage());
@@ -406,6 +414,8 @@ public class AvVocabController {
             
             // 删除主题
             avVocabTopicService.deleteTopic(id);
+            avVocabTopicTree.onDeleted(id);
+            avVocabTopicClosureService.onDeleted(id);
             
             return ResponseEntity.noContent().build();
         } catch (DataIntegrityViolationException e) {
@@ -436,11 +446,12 @@ public class AvVocabController {
      * 根据父主题ID获取子主题
      */
     @GetMapping("/topics/by-parent/{parentId}")
-    @Cacheable(value = "avVocabTopics", key = "'children_' + #parentId")
     public ResponseEntity<List<AvVocabTopic>> getTopicsByParentId(@PathVariable Long parentId) {
         log.info("根据父主题ID获取子主题: {}", parentId);
         
-        List<AvVocabTopic> topics = avVocabTopicService.getTopicsByParentId(parentId);
+        List<AvVocabTopic> topics = avVocabTopicTree.isReady()
+                ? avVocabTopicTree.getChildren(parentId)
+                : avVocabTopicService.getTopicsByParentId(parentId);
         return ResponseEntity.ok(topics);
     }
 
@@ -448,11 +459,12 @@ public class AvVocabController {
      * 获取根主题列表
      */
     @GetMapping("/topics/roots")
-    @Cacheable(value = "avVocabTopics", key = "'roots'")
     public ResponseEntity<List<AvVocabTopic>> getRootTopics() {
         log.info("获取根主题列表");
         
-        List<AvVocabTopic> topics = avVocabTopicService.getRootTopics();
+        List<AvVocabTopic> topics = avVocabTopicTree.isReady()
+                ? avVocabTopicTree.getRoots()
+                : avVocabTopicService.getRootTopics();
         return ResponseEntity.ok(topics);
     }
 
@@ -460,14 +472,56 @@ public class AvVocabController {
      * 获取主题层级结构
      */
     @GetMapping("/topics/hierarchy")
-    @Cacheable(value = "avVocabTopics", key = "'hierarchy'")
     public ResponseEntity<List<Map<String, Object>>> getTopicHierarchy() {
         log.info("获取主题层级结构");
         
-        List<Map<String, Object>> hierarchy = avVocabTopicService.getTopicHierarchy();
+        List<Map<String, Object>> hierarchy = avVocabTopicTree.isReady()
+                ? avVocabTopicTree.getHierarchy()
+                : avVocabTopicService.getTopicHierarchy();
         return ResponseEntity.ok(hierarchy);
     }
 
+    /**
+     * 获取主题的祖先路径（从根到直接父级）及后代数量
+     */
+    @GetMapping("/topics/{id}/ancestors")
+    public ResponseEntity<Map<String, Object>> getTopicAncestors(@PathVariable Long id) {
+        log.info("获取主题祖先路径: ID={}", id);
+        
+        if (!avVocabTopicTree.isReady() || !avVocabTopicTree.contains(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", id);
+        result.put("depth", avVocabTopicTree.getDepth(id));
+        result.put("descendantCount", avVocabTopicTree.getDescendantCount(id));
+        result.put("ancestors", avVocabTopicTree.getAncestors(id));
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 分页获取主题子树（含自身及全部后代主题）下的词汇
+     */
+    @GetMapping("/topics/{id}/subtree-vocabs")
+    public ResponseEntity<Page<AvVocab>> getSubtreeVocabs(
+            @PathVariable Long id,
+            @RequestParam(required = false) Integer maxDepth,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(defaultValue = "asc") String direction) {
+        log.info("获取主题子树词汇: topicId={}, maxDepth={}, page={}, size={}", id, maxDepth, page, size);
+        
+        if (!avVocabTopicService.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        Sort.Direction sortDirection = "asc".equalsIgnoreCase(direction) ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Pageable pageable = PageRequest.of(page, size, Sort.by(sortDirection, sort));
+        
+        Page<AvVocab> vocabPage = avVocabTopicClosureService.findVocabsInSubtree(id, maxDepth, pageable);
+        return ResponseEntity.ok(vocabPage);
+    }
+
     /**
      * 搜索主题
      */
@@ -495,6 +549,8 @@ public class AvVocabController {
         try {
             topics.forEach(topic -> topic.setCreatedAt(LocalDateTime.now()));
             List<AvVocabTopic> savedTopics = avVocabTopicService.createTopicsBatch(topics);
+            savedTopics.forEach(avVocabTopicTree::onCreated);
+            savedTopics.forEach(avVocabTopicClosureService::onCreated);
             return ResponseEntity.status(HttpStatus.CREATED).body(savedTopics);
         } catch (Exception e) {
             log.error("批量创建主题失败: {}", e.getMessage());
@@ -516,6 +572,8 @@ public class AvVocabController {
             
             // 批量删除主题
             avVocabTopicService.deleteTopicsBatch(ids);
+            ids.forEach(avVocabTopicTree::onDeleted);
+            ids.forEach(avVocabTopicClosureService::onDeleted);
             
             return ResponseEntity.noContent().build();
         } catch (Exception e) {
@@ -0,0 +1,55 @@
+package org.icao4.eqasbackend2.entity.vocab;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+
+/**
+ * 词汇主题闭包表实体类
+ * 对应数据库表：av_vocab_topic_closure
+ * 每个主题与其自身及所有后代各存一行，子树查询只需按 ancestor_id 做一次索引连接
+ */
+@Entity
+@Table(name = "av_vocab_topic_closure", indexes = {
+        @Index(name = "idx_descendant", columnList = "descendant_id, depth")
+})
+@IdClass(AvVocabTopicClosure.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvVocabTopicClosure {
+
+    /**
+     * 祖先主题ID
+     */
+    @Id
+    @Column(name = "ancestor_id", nullable = false)
+    private Long ancestorId;
+
+    /**
+     * 后代主题ID（包含祖先自身）
+     */
+    @Id
+    @Column(name = "descendant_id", nullable = false)
+    private Long descendantId;
+
+    /**
+     * 层级距离，自身为0
+     */
+    @Column(name = "depth", nullable = false)
+    private Integer depth;
+
+    /**
+     * 联合主键
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long ancestorId;
+        private Long descendantId;
+    }
+}
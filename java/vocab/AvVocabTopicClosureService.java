@@ -0,0 +1,243 @@
+package org.icao4.eqasbackend2.impl.vocab;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.entity.vocab.AvVocab;
+import org.icao4.eqasbackend2.entity.vocab.AvVocabTopic;
+import org.icao4.eqasbackend2.repository.vocab.AvVocabRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 词汇主题闭包表维护与子树查询
+ * av_vocab_topic_closure 保存 (祖先, 后代, 距离)，主题增删改时用集合化 SQL 增量维护，
+ * “主题子树下的全部词汇”只需 closure ⋈ av_vocab_topic_map 一次索引连接，无需递归遍历。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AvVocabTopicClosureService {
+
+    private static final String CLOSURE = "av_vocab_topic_closure";
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    /**
+     * 允许排序的字段 -> 列名
+     */
+    private static final Map<String, String> SORT_COLUMNS = new HashMap<>();
+
+    static {
+        SORT_COLUMNS.put("id", "v.id");
+        SORT_COLUMNS.put("headword", "v.headword");
+        SORT_COLUMNS.put("cefrLevel", "v.cefr_level");
+        SORT_COLUMNS.put("freqRank", "v.freq_rank");
+        SORT_COLUMNS.put("createdAt", "v.created_at");
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AvVocabRepository avVocabRepository;
+
+    // ==================== 全量构建 ====================
+
+    /**
+     * 按 av_vocab_topics 的 parent_id 全量重建闭包表（启动时，或增量维护发现不一致时）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Map<Long, Long> parentOf = new HashMap<>();
+        jdbcTemplate.query("SELECT id, parent_id FROM av_vocab_topics",
+                rs -> {
+                    parentOf.put(rs.getLong("id"), rs.getObject("parent_id", Long.class));
+                });
+
+        List<Object[]> rows = new ArrayList<>();
+        for (Long id : parentOf.keySet()) {
+            rows.add(new Object[]{id, id, 0});
+            Set<Long> visited = new HashSet<>();
+            visited.add(id);
+            int depth = 1;
+            for (Long p = parentOf.get(id); p != null && parentOf.containsKey(p); p = parentOf.get(p), depth++) {
+                if (!visited.add(p)) {
+                    log.warn("主题父级存在环，已截断: topicId={}, parentId={}", id, p);
+                    break;
+                }
+                rows.add(new Object[]{p, id, depth});
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM " + CLOSURE);
+            for (int from = 0; from < rows.size(); from += INSERT_BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(
+                        "INSERT INTO " + CLOSURE + " (ancestor_id, descendant_id, depth) VALUES (?, ?, ?)",
+                        rows.subList(from, Math.min(from + INSERT_BATCH_SIZE, rows.size())));
+            }
+        });
+        log.info("词汇主题闭包表重建完成: topics={}, rows={}, 耗时={}ms",
+                parentOf.size(), rows.size(), System.currentTimeMillis() - start);
+    }
+
+    // ==================== 增量维护 ====================
+
+    /**
+     * 主题创建后调用：写入自身行，并复制父级的全部祖先行
+     */
+    public void onCreated(AvVocabTopic topic) {
+        if (topic == null || topic.getId() == null) {
+            return;
+        }
+        Boolean consistent = transactionTemplate.execute(status -> {
+            jdbcTemplate.update("INSERT INTO " + CLOSURE + " (ancestor_id, descendant_id, depth) VALUES (?, ?, 0)",
+                    topic.getId(), topic.getId());
+            if (topic.getParentId() == null) {
+                return true;
+            }
+            int inserted = jdbcTemplate.update(
+                    "INSERT INTO " + CLOSURE + " (ancestor_id, descendant_id, depth) "
+                            + "SELECT ancestor_id, ?, depth + 1 FROM " + CLOSURE + " WHERE descendant_id = ?",
+                    topic.getId(), topic.getParentId());
+            return inserted > 0;
+        });
+        if (!Boolean.TRUE.equals(consistent)) {
+            log.warn("父主题不在闭包表中，全量重建: topicId={}, parentId={}", topic.getId(), topic.getParentId());
+            rebuild();
+        }
+    }
+
+    /**
+     * 主题更新后调用：父级变化时把整棵子树从旧祖先下摘除，再挂到新父级的祖先下
+     */
+    public void onUpdated(AvVocabTopic topic) {
+        if (topic == null || topic.getId() == null) {
+            return;
+        }
+        Long topicId = topic.getId();
+        Long newParentId = topic.getParentId();
+        List<Long> currentParent = jdbcTemplate.queryForList(
+                "SELECT ancestor_id FROM " + CLOSURE + " WHERE descendant_id = ? AND depth = 1", Long.class, topicId);
+        Long oldParentId = currentParent.isEmpty() ? null : currentParent.get(0);
+        if (Objects.equals(oldParentId, newParentId)) {
+            return;
+        }
+
+        Boolean moved = transactionTemplate.execute(status -> {
+            if (newParentId != null) {
+                Integer cyclic = jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM " + CLOSURE + " WHERE ancestor_id = ? AND descendant_id = ?",
+                        Integer.class, topicId, newParentId);
+                if (cyclic != null && cyclic > 0) {
+                    return false;
+                }
+            }
+            // 删除 子树内节点 与 子树外祖先 之间的行
+            jdbcTemplate.update(
+                    "DELETE c FROM " + CLOSURE + " c "
+                            + "JOIN " + CLOSURE + " sub ON sub.descendant_id = c.descendant_id AND sub.ancestor_id = ? "
+                            + "LEFT JOIN " + CLOSURE + " inner_sub ON inner_sub.ancestor_id = ? AND inner_sub.descendant_id = c.ancestor_id "
+                            + "WHERE inner_sub.ancestor_id IS NULL",
+                    topicId, topicId);
+            if (newParentId != null) {
+                int inserted = jdbcTemplate.update(
+                        "INSERT INTO " + CLOSURE + " (ancestor_id, descendant_id, depth) "
+                                + "SELECT sup.ancestor_id, sub.descendant_id, sup.depth + sub.depth + 1 "
+                                + "FROM " + CLOSURE + " sup JOIN " + CLOSURE + " sub "
+                                + "WHERE sup.descendant_id = ? AND sub.ancestor_id = ?",
+                        newParentId, topicId);
+                return inserted > 0;
+            }
+            return true;
+        });
+        if (!Boolean.TRUE.equals(moved)) {
+            log.warn("主题移动无法增量处理（新父级不存在或形成环），全量重建: topicId={}, parentId={}",
+                    topicId, newParentId);
+            rebuild();
+        }
+    }
+
+    /**
+     * 主题删除后调用：子主题随父级级联删除，整棵子树的行一并移除
+     */
+    public void onDeleted(Long topicId) {
+        if (topicId == null) {
+            return;
+        }
+        jdbcTemplate.update(
+                "DELETE c FROM " + CLOSURE + " c "
+                        + "JOIN " + CLOSURE + " sub ON sub.descendant_id = c.descendant_id "
+                        + "WHERE sub.ancestor_id = ?",
+                topicId);
+    }
+
+    // ==================== 子树查询 ====================
+
+    /**
+     * 分页查询主题子树（含自身）下的全部词汇，词汇映射到子树内多个主题时只出现一次
+     *
+     * @param topicId  子树根主题ID
+     * @param maxDepth 最大层级距离，null 表示不限
+     * @param pageable 分页与排序（排序字段限 id、headword、cefrLevel、freqRank、createdAt）
+     */
+    public Page<AvVocab> findVocabsInSubtree(Long topicId, Integer maxDepth, Pageable pageable) {
+        List<Object> args = new ArrayList<>();
+        args.add(topicId);
+        String subtree = "SELECT m.vocab_id FROM " + CLOSURE + " c "
+                + "JOIN av_vocab_topic_map m ON m.topic_id = c.descendant_id "
+                + "WHERE c.ancestor_id = ?";
+        if (maxDepth != null) {
+            subtree += " AND c.depth <= ?";
+            args.add(maxDepth);
+        }
+
+        Long total = jdbcTemplate.queryForObject(
+                "SELECT COUNT(DISTINCT m.vocab_id) FROM (" + subtree + ") m", Long.class, args.toArray());
+        if (total == null || total == 0 || pageable.getOffset() >= total) {
+            return new PageImpl<>(new ArrayList<>(), pageable, total != null ? total : 0);
+        }
+
+        List<Object> pageArgs = new ArrayList<>(args);
+        pageArgs.add(pageable.getPageSize());
+        pageArgs.add(pageable.getOffset());
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT v.id FROM av_vocabs v WHERE v.id IN (" + subtree + ") "
+                        + "ORDER BY " + orderBy(pageable.getSort()) + " LIMIT ? OFFSET ?",
+                Long.class, pageArgs.toArray());
+
+        Map<Long, AvVocab> byId = avVocabRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(AvVocab::getId, Function.identity()));
+        List<AvVocab> content = ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private static String orderBy(Sort sort) {
+        StringBuilder sb = new StringBuilder();
+        for (Sort.Order order : sort) {
+            String column = SORT_COLUMNS.get(order.getProperty());
+            if (column == null || "v.id".equals(column)) {
+                continue;
+            }
+            sb.append(column).append(order.isAscending() ? " ASC" : " DESC").append(", ");
+        }
+        Sort.Order idOrder = sort.getOrderFor("id");
+        sb.append("v.id").append(idOrder != null && idOrder.isDescending() ? " DESC" : " ASC");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,594 @@
+package org.icao4.eqasbackend2.impl.vocab;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.icao4.eqasbackend2.cache.CacheInvalidationBus;
+import org.icao4.eqasbackend2.entity.vocab.AvVocabTopic;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 词汇主题树内存索引
+ * 一次 SELECT 读取全部 av_vocab_topics 构建，每个节点预存子节点、祖先路径和后代数量，
+ * 父/子/祖先/后代数量查询均为 O(1)；主题增删改时就地修补，不整体重建。
+ * 变更通过 {@link CacheInvalidationBus} 广播，其他节点按主题ID重新读取该行并修补；
+ * 全量构建扫描期间的变更记录下来，替换前按顺序重放。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AvVocabTopicTree {
+
+    private static final String LOAD_SQL =
+            "SELECT id, parent_id, code, name_zh, name_en, description, display_order, created_at FROM av_vocab_topics";
+
+    /**
+     * 总线上的区域名，事件键为主题ID，为 null 表示全量重建
+     */
+    private static final String BUS_REGION = "avVocabTopicTree";
+
+    private static final Comparator<Node> DISPLAY_ORDER = Comparator
+            .comparing((Node n) -> n.topic.getDisplayOrder() != null ? n.topic.getDisplayOrder() : 0)
+            .thenComparing(n -> n.topic.getId());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectProvider<CacheInvalidationBus> invalidationBus;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 同一时间只进行一次全量构建
+     */
+    private final Object rebuildMonitor = new Object();
+
+    private final Map<Long, Node> nodes = new HashMap<>();
+
+    /**
+     * 根节点，按 displayOrder, id 排序
+     */
+    private final List<Node> roots = new ArrayList<>();
+
+    /**
+     * 全量构建扫描期间的变更（主题ID -> 新数据，删除为 null），未在构建时为 null
+     */
+    private Map<Long, AvVocabTopic> changedDuringRebuild;
+
+    private volatile boolean ready = false;
+
+    // ==================== 构建 ====================
+
+    @PostConstruct
+    public void init() {
+        CacheInvalidationBus bus = invalidationBus.getIfAvailable();
+        if (bus != null) {
+            bus.subscribe(nodeId, this::onRemoteChange);
+        }
+    }
+
+    /**
+     * 全量构建（启动时，或增量修补发现数据不一致时）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (rebuildMonitor) {
+            doRebuild();
+        }
+    }
+
+    private void doRebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new LinkedHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<AvVocabTopic> topics;
+        try {
+            topics = jdbcTemplate.query(LOAD_SQL, (rs, rowNum) -> readTopic(rs));
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        int unresolved = 0;
+        lock.writeLock().lock();
+        try {
+            nodes.clear();
+            roots.clear();
+            for (AvVocabTopic topic : topics) {
+                nodes.put(topic.getId(), new Node(topic));
+            }
+            for (Node node : nodes.values()) {
+                Node parent = node.topic.getParentId() != null ? nodes.get(node.topic.getParentId()) : null;
+                if (parent != null) {
+                    parent.children.add(node);
+                } else {
+                    roots.add(node);
+                }
+            }
+            roots.sort(DISPLAY_ORDER);
+            for (Node root : roots) {
+                computeSubtree(root, new long[0]);
+            }
+            // 扫描可能读到变更前的数据，按变更顺序重放
+            for (Map.Entry<Long, AvVocabTopic> change : changedDuringRebuild.entrySet()) {
+                if (change.getValue() == null) {
+                    removeTopic(change.getKey());
+                } else if (!insertOrPatch(change.getValue())) {
+                    unresolved++;
+                }
+            }
+            changedDuringRebuild = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (unresolved > 0) {
+            log.warn("主题树构建期间的变更有 {} 条无法重放（父级已删除或形成环）", unresolved);
+        }
+        log.info("词汇主题树构建完成: topics={}, roots={}, 耗时={}ms",
+                topics.size(), roots.size(), System.currentTimeMillis() - start);
+    }
+
+    // ==================== 增量维护 ====================
+
+    /**
+     * 主题创建后调用（事务提交后），并通知其他节点
+     */
+    public void onCreated(AvVocabTopic topic) {
+        if (topic == null || topic.getId() == null) {
+            return;
+        }
+        applyUpsert(topic);
+        publish(String.valueOf(topic.getId()));
+    }
+
+    /**
+     * 主题更新后调用；父级变化时整棵子树随之移动
+     */
+    public void onUpdated(AvVocabTopic topic) {
+        if (topic == null || topic.getId() == null) {
+            return;
+        }
+        applyUpsert(topic);
+        publish(String.valueOf(topic.getId()));
+    }
+
+    /**
+     * 主题删除后调用；子主题随父级级联删除，整棵子树一并移除
+     */
+    public void onDeleted(Long topicId) {
+        if (topicId == null) {
+            return;
+        }
+        applyDelete(topicId);
+        publish(String.valueOf(topicId));
+    }
+
+    // ==================== 查询 ====================
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 根主题列表
+     */
+    public List<AvVocabTopic> getRoots() {
+        lock.readLock().lock();
+        try {
+            return topicsOf(roots);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 子主题列表；父主题不存在时返回空列表
+     */
+    public List<AvVocabTopic> getChildren(Long parentId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(parentId);
+            return node != null ? topicsOf(node.children) : new ArrayList<>();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 父主题
+     */
+    public Optional<AvVocabTopic> getParent(Long topicId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(topicId);
+            return node != null && node.parent != null ? Optional.of(node.parent.topic) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 祖先主题，从根到直接父级
+     */
+    public List<AvVocabTopic> getAncestors(Long topicId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(topicId);
+            List<AvVocabTopic> result = new ArrayList<>();
+            if (node != null) {
+                for (long ancestorId : node.path) {
+                    result.add(nodes.get(ancestorId).topic);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 祖先主题ID，从根到直接父级
+     */
+    public long[] getAncestorIds(Long topicId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(topicId);
+            return node != null ? node.path.clone() : new long[0];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 后代主题数量（不含自身），主题不存在时返回 -1
+     */
+    public int getDescendantCount(Long topicId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(topicId);
+            return node != null ? node.descendantCount : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 层级深度（根为 0），主题不存在时返回 -1
+     */
+    public int getDepth(Long topicId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(topicId);
+            return node != null ? node.path.length : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(Long topicId) {
+        lock.readLock().lock();
+        try {
+            return nodes.containsKey(topicId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 完整层级结构
+     */
+    public List<Map<String, Object>> getHierarchy() {
+        lock.readLock().lock();
+        try {
+            List<Map<String, Object>> result = new ArrayList<>(roots.size());
+            for (Node root : roots) {
+                result.add(toHierarchyMap(root));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private void applyUpsert(AvVocabTopic topic) {
+        boolean needRebuild;
+        lock.writeLock().lock();
+        try {
+            recordChange(topic.getId(), detach(topic));
+            // 构建进行中时由重放处理，不再排队重建
+            needRebuild = !insertOrPatch(topic) && changedDuringRebuild == null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (needRebuild) {
+            log.warn("主题树增量修补失败（父级不存在或形成环），全量重建: topicId={}", topic.getId());
+            rebuild();
+        }
+    }
+
+    private void applyDelete(Long topicId) {
+        lock.writeLock().lock();
+        try {
+            recordChange(topicId, null);
+            removeTopic(topicId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 全量构建期间记录变更，替换前重放（需持有写锁）
+     */
+    private void recordChange(Long topicId, AvVocabTopic topic) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.remove(topicId);
+            changedDuringRebuild.put(topicId, topic);
+        }
+    }
+
+    private void publish(String key) {
+        CacheInvalidationBus bus = invalidationBus.getIfAvailable();
+        if (bus != null) {
+            bus.publish(nodeId, BUS_REGION, key);
+        }
+    }
+
+    /**
+     * 其他节点修改了主题：按ID重新读取该行并修补本节点，不再广播
+     */
+    private void onRemoteChange(CacheInvalidationBus.Event event) {
+        if (!BUS_REGION.equals(event.getRegion())) {
+            return;
+        }
+        try {
+            if (event.getKey() == null) {
+                rebuild();
+                return;
+            }
+            // 尚未开始构建时忽略，启动构建会读到最新数据
+            if (!ready && !isRebuilding()) {
+                return;
+            }
+            Long topicId = Long.parseLong(event.getKey());
+            List<AvVocabTopic> rows = jdbcTemplate.query(LOAD_SQL + " WHERE id = ?",
+                    (rs, rowNum) -> readTopic(rs), topicId);
+            if (rows.isEmpty()) {
+                applyDelete(topicId);
+            } else {
+                applyUpsert(rows.get(0));
+            }
+        } catch (RuntimeException e) {
+            log.warn("按广播修补词汇主题树失败: key={}, error={}", event.getKey(), e.getMessage());
+        }
+    }
+
+    private boolean isRebuilding() {
+        lock.readLock().lock();
+        try {
+            return changedDuringRebuild != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeTopic(Long topicId) {
+        Node node = nodes.get(topicId);
+        if (node == null) {
+            return;
+        }
+        adjustAncestors(node, -(1 + node.descendantCount));
+        detachFromParent(node);
+        removeSubtree(node);
+    }
+
+    private static AvVocabTopic readTopic(ResultSet rs) throws SQLException {
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        return AvVocabTopic.builder()
+                .id(rs.getLong("id"))
+                .parentId(rs.getObject("parent_id", Long.class))
+                .code(rs.getString("code"))
+                .nameZh(rs.getString("name_zh"))
+                .nameEn(rs.getString("name_en"))
+                .description(rs.getString("description"))
+                .displayOrder(rs.getInt("display_order"))
+                .createdAt(createdAt != null ? createdAt.toLocalDateTime() : null)
+                .build();
+    }
+
+    /**
+     * 插入新节点或就地更新已有节点；返回 false 表示需要全量重建
+     */
+    private boolean insertOrPatch(AvVocabTopic topic) {
+        if (nodes.containsKey(topic.getId())) {
+            return patch(topic);
+        }
+        if (topic.getParentId() != null && !nodes.containsKey(topic.getParentId())) {
+            return false;
+        }
+        Node node = new Node(detach(topic));
+        nodes.put(topic.getId(), node);
+        attach(node);
+        node.path = pathFor(node.parent);
+        adjustAncestors(node, 1);
+        return true;
+    }
+
+    /**
+     * 就地更新节点；返回 false 表示无法增量处理（新父级不存在或会形成环）
+     */
+    private boolean patch(AvVocabTopic topic) {
+        Node node = nodes.get(topic.getId());
+        Long newParentId = topic.getParentId();
+        Long oldParentId = node.parent != null ? node.parent.topic.getId() : null;
+        node.topic = detach(topic);
+
+        if (Objects.equals(oldParentId, newParentId)) {
+            resort(node.parent);
+            return true;
+        }
+        if (newParentId != null) {
+            Node newParent = nodes.get(newParentId);
+            if (newParent == null || newParent == node || isAncestorOf(node, newParent)) {
+                return false;
+            }
+        }
+
+        int weight = 1 + node.descendantCount;
+        adjustAncestors(node, -weight);
+        detachFromParent(node);
+        attach(node);
+        computeSubtree(node, pathFor(node.parent));
+        adjustAncestors(node, weight);
+        return true;
+    }
+
+    private void attach(Node node) {
+        Long parentId = node.topic.getParentId();
+        Node parent = parentId != null ? nodes.get(parentId) : null;
+        node.parent = parent;
+        List<Node> siblings = parent != null ? parent.children : roots;
+        siblings.add(node);
+        siblings.sort(DISPLAY_ORDER);
+    }
+
+    private void detachFromParent(Node node) {
+        List<Node> siblings = node.parent != null ? node.parent.children : roots;
+        siblings.remove(node);
+        node.parent = null;
+    }
+
+    private void resort(Node parent) {
+        (parent != null ? parent.children : roots).sort(DISPLAY_ORDER);
+    }
+
+    private void removeSubtree(Node node) {
+        nodes.remove(node.topic.getId());
+        for (Node child : node.children) {
+            removeSubtree(child);
+        }
+    }
+
+    private void adjustAncestors(Node node, int delta) {
+        for (Node p = node.parent; p != null; p = p.parent) {
+            p.descendantCount += delta;
+        }
+    }
+
+    private boolean isAncestorOf(Node ancestor, Node node) {
+        for (long id : node.path) {
+            if (id == ancestor.topic.getId()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long[] pathFor(Node parent) {
+        if (parent == null) {
+            return new long[0];
+        }
+        long[] path = Arrays.copyOf(parent.path, parent.path.length + 1);
+        path[parent.path.length] = parent.topic.getId();
+        return path;
+    }
+
+    /**
+     * 自顶向下设置路径并自底向上汇总后代数量，返回子树节点数（含自身）
+     */
+    private int computeSubtree(Node node, long[] path) {
+        node.path = path;
+        node.children.sort(DISPLAY_ORDER);
+        int count = 0;
+        long[] childPath = null;
+        for (Node child : node.children) {
+            child.parent = node;
+            if (childPath == null) {
+                childPath = pathFor(node);
+            }
+            count += computeSubtree(child, childPath);
+        }
+        node.descendantCount = count;
+        return count + 1;
+    }
+
+    private Map<String, Object> toHierarchyMap(Node node) {
+        AvVocabTopic topic = node.topic;
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", topic.getId());
+        map.put("parentId", topic.getParentId());
+        map.put("code", topic.getCode());
+        map.put("nameZh", topic.getNameZh());
+        map.put("nameEn", topic.getNameEn());
+        map.put("description", topic.getDescription());
+        map.put("displayOrder", topic.getDisplayOrder());
+        map.put("depth", node.path.length);
+        map.put("descendantCount", node.descendantCount);
+        List<Map<String, Object>> children = new ArrayList<>(node.children.size());
+        for (Node child : node.children) {
+            children.add(toHierarchyMap(child));
+        }
+        map.put("children", children);
+        return map;
+    }
+
+    private static List<AvVocabTopic> topicsOf(List<Node> list) {
+        List<AvVocabTopic> result = new ArrayList<>(list.size());
+        for (Node node : list) {
+            result.add(node.topic);
+        }
+        return result;
+    }
+
+    /**
+     * 复制为不带延迟加载关联的独立对象
+     */
+    private static AvVocabTopic detach(AvVocabTopic topic) {
+        return AvVocabTopic.builder()
+                .id(topic.getId())
+                .parentId(topic.getParentId())
+                .code(topic.getCode())
+                .nameZh(topic.getNameZh())
+                .nameEn(topic.getNameEn())
+                .description(topic.getDescription())
+                .displayOrder(topic.getDisplayOrder())
+                .createdAt(topic.getCreatedAt())
+                .build();
+    }
+
+    private static final class Node {
+        private AvVocabTopic topic;
+        private Node parent;
+        private final List<Node> children = new ArrayList<>();
+        /**
+         * 祖先ID，从根到直接父级
+         */
+        private long[] path = new long[0];
+        private int descendantCount;
+
+        private Node(AvVocabTopic topic) {
+            this.topic = topic;
+        }
+    }
+}
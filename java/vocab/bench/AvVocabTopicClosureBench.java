@@ -0,0 +1,308 @@
+package org.icao4.eqasbackend2.impl.vocab;
+
+import org.icao4.eqasbackend2.entity.vocab.AvVocab;
+import org.icao4.eqasbackend2.entity.vocab.AvVocabTopic;
+import org.icao4.eqasbackend2.repository.vocab.AvVocabRepository;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 词汇主题子树查询压测（手动运行，不随应用启动）
+ * 在空库上生成 5 层、2000 个主题的合成主题树（每层 10/40/150/500/1300 个，父级在上一层随机选取）和词汇映射，验证：
+ * 1. 闭包表全量构建的耗时与行数；
+ * 2. 逐个新建叶子主题时增量维护的耗时，且维护出的闭包行与全量构建一致；
+ * 3. 各层主题的子树分页查询（closure ⋈ av_vocab_topic_map 一次连接）p50/p99，
+ *    与原做法（按 parent_id 逐层取子主题、再逐个主题取映射）对比，两者的总数和首页必须一致。
+ * 默认用 H2 内存库（MySQL 模式），也可传入本地 MySQL 的空库；需要对应驱动在 classpath 上。
+ * 主题移动和删除的增量维护用 MySQL 多表 DELETE 语法，这里不测。
+ * <p>
+ * 运行：java ... AvVocabTopicClosureBench [jdbcUrl=jdbc:h2:mem:closure;MODE=MySQL;DB_CLOSE_DELAY=-1] [用户=sa] [密码=]
+ * [词汇数=50000] [每层查询次数=200]
+ */
+public class AvVocabTopicClosureBench {
+
+    /**
+     * 每层主题数，合计 2000
+     */
+    private static final int[] LEVEL_SIZES = {10, 40, 150, 500, 1300};
+
+    private static final int PAGE_SIZE = 20;
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    /**
+     * 原做法每层最多跑的次数（根主题的子树要逐个主题查询，较慢）
+     */
+    private static final int BASELINE_RUNS = 50;
+
+    private static final String[] CEFR_LEVELS = {"A1", "A2", "B1", "B2", "C1", "C2"};
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS av_vocab_topics (id BIGINT PRIMARY KEY, parent_id BIGINT NULL, "
+                    + "code VARCHAR(100) NOT NULL, name_zh VARCHAR(200) NOT NULL, display_order INT NOT NULL, "
+                    + "created_at TIMESTAMP NULL, INDEX idx_topic_parent (parent_id))",
+            "CREATE TABLE IF NOT EXISTS av_vocabs (id BIGINT PRIMARY KEY, headword VARCHAR(200) NOT NULL, "
+                    + "cefr_level VARCHAR(10) NULL, freq_rank INT NULL, created_at TIMESTAMP NULL)",
+            "CREATE TABLE IF NOT EXISTS av_vocab_topic_map (id BIGINT PRIMARY KEY, topic_id BIGINT NOT NULL, "
+                    + "vocab_id BIGINT NOT NULL, INDEX idx_map_topic (topic_id, vocab_id), INDEX idx_map_vocab (vocab_id))",
+            "CREATE TABLE IF NOT EXISTS av_vocab_topic_closure (ancestor_id BIGINT NOT NULL, "
+                    + "descendant_id BIGINT NOT NULL, depth INT NOT NULL, PRIMARY KEY (ancestor_id, descendant_id), "
+                    + "INDEX idx_closure_descendant (descendant_id, depth))"
+    };
+
+    public static void main(String[] args) {
+        String url = args.length > 0 ? args[0] : "jdbc:h2:mem:closure;MODE=MySQL;DB_CLOSE_DELAY=-1";
+        String user = args.length > 1 ? args[1] : "sa";
+        String password = args.length > 2 ? args[2] : "";
+        int vocabs = args.length > 3 ? Integer.parseInt(args[3]) : 50000;
+        int queries = args.length > 4 ? Integer.parseInt(args[4]) : 200;
+
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, user, password);
+        JdbcTemplate db = new JdbcTemplate(dataSource);
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        for (String sql : SCHEMA) {
+            db.execute(sql);
+        }
+        Integer existing = db.queryForObject("SELECT COUNT(*) FROM av_vocab_topics", Integer.class);
+        if (existing != null && existing > 0) {
+            System.out.println("av_vocab_topics 不为空，请使用空库");
+            System.exit(1);
+        }
+
+        Random random = new Random(42);
+        List<List<Long>> levels = seedTopics(db, random);
+        int mappings = seedVocabs(db, random, vocabs, levels);
+        System.out.printf("[seed] topics=%d vocabs=%d mappings=%d%n",
+                levels.stream().mapToInt(List::size).sum(), vocabs, mappings);
+
+        AvVocabTopicClosureService service = new AvVocabTopicClosureService(db, tx, repository(db));
+        boolean ok = true;
+        ok &= rebuild(db, service);
+        ok &= incremental(db, service, levels);
+        for (int level = 0; level < levels.size(); level++) {
+            ok &= subtree(db, service, random, level, levels.get(level), queries);
+        }
+        System.out.println(ok ? "ALL PASSED" : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+
+    // ==================== 场景 ====================
+
+    private static boolean rebuild(JdbcTemplate db, AvVocabTopicClosureService service) {
+        long start = System.nanoTime();
+        service.rebuild();
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        long rows = closureRows(db);
+        long expected = 0;
+        for (int level = 0; level < LEVEL_SIZES.length; level++) {
+            expected += (long) LEVEL_SIZES[level] * (level + 1);
+        }
+        boolean ok = rows == expected;
+        System.out.printf("[rebuild] closureRows=%d expected=%d ms=%d -> %s%n", rows, expected, ms, ok ? "OK" : "FAIL");
+        return ok;
+    }
+
+    /**
+     * 在最深一层下逐个新建 100 个主题，增量维护的闭包行应与随后全量构建的结果相同；结束时删除这些主题并重建
+     */
+    private static boolean incremental(JdbcTemplate db, AvVocabTopicClosureService service, List<List<Long>> levels) {
+        long before = closureRows(db);
+        List<Long> leaves = levels.get(levels.size() - 1);
+        long nextId = levels.stream().mapToLong(List::size).sum() + 1;
+        List<Long> created = new ArrayList<>();
+        long[] micros = new long[100];
+        for (int i = 0; i < micros.length; i++) {
+            long id = nextId + i;
+            long parentId = leaves.get(i % leaves.size());
+            db.update("INSERT INTO av_vocab_topics (id, parent_id, code, name_zh, display_order, created_at) "
+                    + "VALUES (?, ?, ?, ?, 0, ?)", id, parentId, "BENCH-" + id, "压测主题" + id, now());
+            AvVocabTopic topic = new AvVocabTopic();
+            topic.setId(id);
+            topic.setParentId(parentId);
+            long start = System.nanoTime();
+            service.onCreated(topic);
+            micros[i] = (System.nanoTime() - start) / 1000;
+            created.add(id);
+        }
+        Set<String> maintained = closureSnapshot(db);
+        service.rebuild();
+        Set<String> rebuilt = closureSnapshot(db);
+        for (Long id : created) {
+            db.update("DELETE FROM av_vocab_topics WHERE id = ?", id);
+        }
+        service.rebuild();
+        // 新建的叶子在第 6 层：自身 1 行 + 5 个祖先
+        boolean ok = maintained.equals(rebuilt) && maintained.size() == before + created.size() * 6L
+                && closureRows(db) == before;
+        System.out.printf("[incremental] created=%d p50Micros=%d p99Micros=%d rows=%d rebuiltRows=%d -> %s%n",
+                created.size(), percentile(micros, 50), percentile(micros, 99), maintained.size(), rebuilt.size(),
+                ok ? "OK" : "FAIL");
+        return ok;
+    }
+
+    private static boolean subtree(JdbcTemplate db, AvVocabTopicClosureService service, Random random,
+                                   int level, List<Long> topics, int queries) {
+        Pageable pageable = PageRequest.of(0, PAGE_SIZE, Sort.by(Sort.Direction.ASC, "id"));
+        long[] closureMicros = new long[queries];
+        long[] baselineMicros = new long[Math.min(queries, BASELINE_RUNS)];
+        long totalVocabs = 0;
+        int mismatches = 0;
+        for (int i = 0; i < queries; i++) {
+            Long topicId = topics.get(random.nextInt(topics.size()));
+            long start = System.nanoTime();
+            Page<AvVocab> page = service.findVocabsInSubtree(topicId, null, pageable);
+            closureMicros[i] = (System.nanoTime() - start) / 1000;
+            totalVocabs += page.getTotalElements();
+
+            if (i < baselineMicros.length) {
+                start = System.nanoTime();
+                TreeSet<Long> expected = recursiveWalk(db, topicId);
+                baselineMicros[i] = (System.nanoTime() - start) / 1000;
+                List<Long> firstPage = expected.stream().limit(PAGE_SIZE).collect(Collectors.toList());
+                List<Long> actual = page.getContent().stream().map(AvVocab::getId).collect(Collectors.toList());
+                if (page.getTotalElements() != expected.size() || !actual.equals(firstPage)) {
+                    mismatches++;
+                }
+            }
+        }
+        boolean ok = mismatches == 0;
+        System.out.printf("[subtree] level=%d topics=%d avgVocabs=%d p50Micros=%d p99Micros=%d "
+                        + "baselineP50Micros=%d baselineP99Micros=%d mismatches=%d -> %s%n",
+                level + 1, topics.size(), totalVocabs / queries, percentile(closureMicros, 50),
+                percentile(closureMicros, 99), percentile(baselineMicros, 50), percentile(baselineMicros, 99),
+                mismatches, ok ? "OK" : "FAIL");
+        return ok;
+    }
+
+    // ==================== 辅助 ====================
+
+    /**
+     * 原做法：按 parent_id 逐层取子主题，逐个主题取映射，在内存中去重排序
+     */
+    private static TreeSet<Long> recursiveWalk(JdbcTemplate db, Long topicId) {
+        TreeSet<Long> vocabIds = new TreeSet<>();
+        Deque<Long> pending = new ArrayDeque<>();
+        pending.add(topicId);
+        while (!pending.isEmpty()) {
+            Long current = pending.poll();
+            vocabIds.addAll(db.queryForList("SELECT vocab_id FROM av_vocab_topic_map WHERE topic_id = ?",
+                    Long.class, current));
+            pending.addAll(db.queryForList("SELECT id FROM av_vocab_topics WHERE parent_id = ?", Long.class, current));
+        }
+        return vocabIds;
+    }
+
+    private static List<List<Long>> seedTopics(JdbcTemplate db, Random random) {
+        List<List<Long>> levels = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        long nextId = 1;
+        Timestamp now = now();
+        for (int level = 0; level < LEVEL_SIZES.length; level++) {
+            List<Long> parents = level == 0 ? null : levels.get(level - 1);
+            List<Long> ids = new ArrayList<>(LEVEL_SIZES[level]);
+            for (int i = 0; i < LEVEL_SIZES[level]; i++) {
+                long id = nextId++;
+                Long parentId = parents == null ? null : parents.get(random.nextInt(parents.size()));
+                rows.add(new Object[]{id, parentId, "T" + id, "主题" + id, i, now});
+                ids.add(id);
+            }
+            levels.add(ids);
+        }
+        insert(db, "INSERT INTO av_vocab_topics (id, parent_id, code, name_zh, display_order, created_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", rows);
+        return levels;
+    }
+
+    /**
+     * 每个词汇映射到 1~2 个随机主题
+     */
+    private static int seedVocabs(JdbcTemplate db, Random random, int vocabs, List<List<Long>> levels) {
+        List<Long> topics = levels.stream().flatMap(List::stream).collect(Collectors.toList());
+        List<Object[]> vocabRows = new ArrayList<>(vocabs);
+        List<Object[]> mapRows = new ArrayList<>();
+        Timestamp now = now();
+        long mapId = 1;
+        for (long id = 1; id <= vocabs; id++) {
+            vocabRows.add(new Object[]{id, "word" + id, CEFR_LEVELS[random.nextInt(CEFR_LEVELS.length)],
+                    random.nextInt(20000) + 1, now});
+            Long first = topics.get(random.nextInt(topics.size()));
+            mapRows.add(new Object[]{mapId++, first, id});
+            if (random.nextBoolean()) {
+                Long second = topics.get(random.nextInt(topics.size()));
+                if (!second.equals(first)) {
+                    mapRows.add(new Object[]{mapId++, second, id});
+                }
+            }
+        }
+        insert(db, "INSERT INTO av_vocabs (id, headword, cefr_level, freq_rank, created_at) VALUES (?, ?, ?, ?, ?)",
+                vocabRows);
+        insert(db, "INSERT INTO av_vocab_topic_map (id, topic_id, vocab_id) VALUES (?, ?, ?)", mapRows);
+        return mapRows.size();
+    }
+
+    private static void insert(JdbcTemplate db, String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += INSERT_BATCH_SIZE) {
+            db.batchUpdate(sql, rows.subList(from, Math.min(from + INSERT_BATCH_SIZE, rows.size())));
+        }
+    }
+
+    /**
+     * 回表：按ID一次查询 av_vocabs，代替 JPA 仓库
+     */
+    private static AvVocabRepository repository(JdbcTemplate db) {
+        return (AvVocabRepository) Proxy.newProxyInstance(AvVocabRepository.class.getClassLoader(),
+                new Class<?>[]{AvVocabRepository.class},
+                (proxy, method, methodArgs) -> {
+                    if (!"findAllById".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    List<Long> ids = new ArrayList<>();
+                    ((Iterable<?>) methodArgs[0]).forEach(id -> ids.add((Long) id));
+                    if (ids.isEmpty()) {
+                        return new ArrayList<AvVocab>();
+                    }
+                    return db.query("SELECT id, headword FROM av_vocabs WHERE id IN ("
+                                    + String.join(",", Collections.nCopies(ids.size(), "?")) + ")",
+                            (rs, rowNum) -> {
+                                AvVocab vocab = new AvVocab();
+                                vocab.setId(rs.getLong("id"));
+                                vocab.setHeadword(rs.getString("headword"));
+                                return vocab;
+                            }, ids.toArray());
+                });
+    }
+
+    private static Set<String> closureSnapshot(JdbcTemplate db) {
+        return new HashSet<>(db.query("SELECT ancestor_id, descendant_id, depth FROM av_vocab_topic_closure",
+                (rs, rowNum) -> rs.getLong("ancestor_id") + ":" + rs.getLong("descendant_id") + ":" + rs.getInt("depth")));
+    }
+
+    private static long closureRows(JdbcTemplate db) {
+        Long rows = db.queryForObject("SELECT COUNT(*) FROM av_vocab_topic_closure", Long.class);
+        return rows != null ? rows : 0;
+    }
+
+    private static long percentile(long[] values, int percent) {
+        if (values.length == 0) {
+            return 0;
+        }
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * percent / 100.0) - 1)];
+    }
+
+    private static Timestamp now() {
+        return new Timestamp(System.currentTimeMillis());
+    }
+}